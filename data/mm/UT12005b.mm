@@ -0,0 +1,36 @@
+$( UT12005b.mm -- VerifyProofCacheFile unit test: UT12005a.mm with a
+   different ax-1, so that the proof of a1i is in error. $)
+
+  $c ( ) -> wff |- $.
+  $v ph ps ch $.
+  wph $f wff ph $.
+  wps $f wff ps $.
+  wch $f wff ch $.
+  wi $a wff ( ph -> ps ) $.
+
+  ax-1 $a |- ( ph -> ( ps -> ps ) ) $.
+  ax-2 $a |- ( ( ph -> ( ps -> ch ) ) -> ( ( ph -> ps ) -> ( ph -> ch ) ) ) $.
+  ${
+    min $e |- ph $.
+    maj $e |- ( ph -> ps ) $.
+    ax-mp $a |- ps $.
+  $}
+
+  ${
+    a1i.1 $e |- ph $.
+    a1i $p |- ( ps -> ph ) $=
+      ( wi ax-1 ax-mp ) ABADCABEF $.
+  $}
+
+  ${
+    a2i.1 $e |- ( ph -> ( ps -> ch ) ) $.
+    a2i $p |- ( ( ph -> ps ) -> ( ph -> ch ) ) $=
+      ( wi ax-2 ax-mp ) ABCEEABEACEEDABCFG $.
+  $}
+
+  ${
+    syl.1 $e |- ( ph -> ps ) $.
+    syl.2 $e |- ( ps -> ch ) $.
+    syl $p |- ( ph -> ch ) $=
+      ( wi a1i a2i ax-mp ) ABFACFDABCBCFAEGHI $.
+  $}
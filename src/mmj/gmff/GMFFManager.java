@@ -215,6 +215,15 @@ public class GMFFManager {
         forceReinitialization();
     }
 
+    /**
+     * Returns the Metamath $t Comment statements cached so far.
+     *
+     * @return unmodifiable List of $t Comment statements.
+     */
+    public List<String> getTypesettingCommentsForGMFF() {
+        return Collections.unmodifiableList(typesetDefinitionsCache);
+    }
+
     /**
      * Stores the contents of the {@code GMFFUserExportChoice} from one RunParm
      * for later validation and use.
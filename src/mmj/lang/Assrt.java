@@ -107,6 +107,14 @@ public abstract class Assrt extends Stmt {
      */
     protected ScopeFrame mandFrame;
 
+    /**
+     * mandHypSubstIndex is built on demand by getMandHypSubstIndex() and holds,
+     * for the Formula of each mandatory Hyp and for the Assrt's own Formula,
+     * the MandFrame.hypArray index of the VarHyp to be substituted at each
+     * symbol position.
+     */
+    private volatile int[][] mandHypSubstIndex;
+
     private boolean excluded = false;
 
     /**
@@ -138,6 +146,24 @@ public abstract class Assrt extends Stmt {
         loadLogHypArray();
     }
 
+    /**
+     * Construct Assrt read back by LogicalSystemSnapshot, doing no validation.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param varHypArray Assrt.varHypArray
+     * @param mandFrame Assrt.mandFrame
+     */
+    Assrt(final int seq, final String label, final Formula formula,
+        final VarHyp[] varHypArray, final ScopeFrame mandFrame)
+    {
+        super(seq, label, formula);
+        this.varHypArray = varHypArray;
+        this.mandFrame = mandFrame;
+        loadLogHypArray();
+    }
+
     /**
      * Return the *mandatory* varHypArray.
      * <p>
@@ -214,6 +240,60 @@ public abstract class Assrt extends Stmt {
      */
     public void setMandFrame(final ScopeFrame mandFrame) {
         this.mandFrame = mandFrame;
+        mandHypSubstIndex = null;
+    }
+
+    /**
+     * Return the substitution index of the Assrt's mandatory hypotheses and
+     * Formula.
+     * <p>
+     * Element {@code i} of the result, for {@code i < hypArray.length}, is
+     * parallel to the Formula of {@code mandFrame.hypArray[i]}, and element
+     * {@code hypArray.length} is parallel to the Assrt's own Formula. Each
+     * entry is the index within {@code mandFrame.hypArray} of the VarHyp whose
+     * Var occurs at that position, or -1 for constants (including the Type
+     * Code) and for variables without a mandatory VarHyp. Entries for VarHyps
+     * are not needed and are left null.
+     * <p>
+     * This lets VerifyProofs look up a variable's substitution directly
+     * instead of searching for it. The array is built on first use and must
+     * not be modified.
+     *
+     * @return substitution index arrays.
+     */
+    public int[][] getMandHypSubstIndex() {
+        int[][] index = mandHypSubstIndex;
+        if (index == null) {
+            final Hyp[] hypArray = mandFrame.hypArray;
+            index = new int[hypArray.length + 1][];
+            for (int i = 0; i < hypArray.length; i++)
+                if (!(hypArray[i] instanceof VarHyp))
+                    index[i] = buildSubstIndex(hypArray,
+                        hypArray[i].getFormula());
+            index[hypArray.length] = buildSubstIndex(hypArray, formula);
+            mandHypSubstIndex = index;
+        }
+        return index;
+    }
+
+    private static int[] buildSubstIndex(final Hyp[] hypArray,
+        final Formula f)
+    {
+        final Sym[] sym = f.getSym();
+        final int[] index = new int[f.getCnt()];
+        index[0] = -1;
+        nextSym: for (int j = 1; j < index.length; j++) {
+            index[j] = -1;
+            if (sym[j] instanceof Var)
+                for (int i = 0; i < hypArray.length; i++)
+                    if (hypArray[i] instanceof VarHyp
+                        && ((VarHyp)hypArray[i]).getVar() == sym[j])
+                    {
+                        index[j] = i;
+                        continue nextSym;
+                    }
+        }
+        return index;
     }
 
     /**
@@ -431,40 +511,47 @@ public abstract class Assrt extends Stmt {
      * Dynamically computes, if needed, the Hi and Lo keys of Level 1 (root) of
      * parse trees of logHypArray, and caches the value for later use.
      *
-     * @return Level 1 HiLoKey of parse trees for logHypArray.
+     * @return Level 1 HiLoKey of parse trees for logHypArray, or 0 if there
+     *         are no LogHyps or one of their roots is a VarHyp.
      */
-    public String getLogHypsL1HiLoKey() {
-        if (logHypsL1HiLoKey == null)
+    public long getLogHypsL1HiLoKey() {
+        if (logHypsL1HiLoKey == -1)
             if (logHypArray.length > 0) {
                 Stmt hStmt;
                 int n;
-                String low = null;
-                String high = null;
                 int lowNbr = Integer.MAX_VALUE;
                 int highNbr = Integer.MIN_VALUE;
                 for (final LogHyp element : logHypArray) {
                     hStmt = element.getExprParseTree().getRoot().stmt;
                     if (hStmt instanceof VarHyp) {
-                        setLogHypsL1HiLoKey("");
+                        setLogHypsL1HiLoKey(0);
                         return logHypsL1HiLoKey;
                     }
                     n = hStmt.getSeq();
-                    if (n < lowNbr) {
+                    if (n < lowNbr)
                         lowNbr = n;
-                        low = hStmt.getLabel();
-                    }
-                    if (n > highNbr) {
+                    if (n > highNbr)
                         highNbr = n;
-                        high = hStmt.getLabel();
-                    }
                 }
-                setLogHypsL1HiLoKey(high + " " + low);
+                setLogHypsL1HiLoKey(hiLoKey(highNbr, lowNbr));
             }
             else
-                setLogHypsL1HiLoKey("");
+                setLogHypsL1HiLoKey(0);
         return logHypsL1HiLoKey;
     }
 
+    /**
+     * Packs the sequence numbers of the highest and lowest LogHyp root Syntax
+     * Axioms into a Hi/Lo key.
+     *
+     * @param highSeq the highest root sequence number.
+     * @param lowSeq the lowest root sequence number.
+     * @return the Hi/Lo key (never 0, since sequence numbers are positive).
+     */
+    public static long hiLoKey(final int highSeq, final int lowSeq) {
+        return (long)highSeq << 32 | lowSeq & 0xFFFFFFFFL;
+    }
+
 //not needed in StepSelectorSearch anymore, so comment out for now
     /**
      * Sorts a list of Assrt into an array.
@@ -151,6 +151,23 @@ public class Axiom extends Assrt {
         widthOfWidestExprCnst = formula.computeWidthOfWidestExprCnst();
     }
 
+    /**
+     * Construct Axiom read back by LogicalSystemSnapshot, doing no validation.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param varHypArray Assrt.varHypArray
+     * @param mandFrame Assrt.mandFrame
+     */
+    Axiom(final int seq, final String label, final Formula formula,
+        final VarHyp[] varHypArray, final ScopeFrame mandFrame)
+    {
+        super(seq, label, formula, varHypArray, mandFrame);
+
+        widthOfWidestExprCnst = formula.computeWidthOfWidestExprCnst();
+    }
+
     /**
      * Return Axiom's syntaxAxiomVarHypReseq.
      * <p>
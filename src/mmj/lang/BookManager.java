@@ -775,6 +775,50 @@ public class BookManager implements TheoremLoaderCommitListener {
         }
     }
 
+    /**
+     * Returns the titles of the pending Chapter and Section (either may be
+     * null), for LogicalSystemSnapshot.
+     *
+     * @return the next Chapter and Section titles.
+     */
+    String[] getNextTitles() {
+        return new String[]{nextChapterTitle, nextSectionTitle};
+    }
+
+    /**
+     * Finishes the restore of a BookManager by LogicalSystemSnapshot, which
+     * has added the Chapters and Sections to chapterList and sectionList and
+     * assigned the MObjs to the Sections.
+     *
+     * @param totalNbrMObjs number of MObjs assigned.
+     * @param nextTitles as returned by getNextTitles().
+     */
+    void restoreSnapshotState(final int totalNbrMObjs,
+        final String[] nextTitles)
+    {
+        this.totalNbrMObjs = totalNbrMObjs;
+        nextChapterTitle = nextTitles[0];
+        nextSectionTitle = nextTitles[1];
+        inputSectionCounter = sectionList.size()
+            / LangConstants.SECTION_NBR_CATEGORIES;
+        if (!chapterList.isEmpty())
+            currChapter = chapterList.get(chapterList.size() - 1);
+        final int n = sectionList.size();
+        if (n >= LangConstants.SECTION_NBR_CATEGORIES) {
+            currSymSection = sectionList
+                .get(n - 1 - LangConstants.SECTION_LOGIC_CD
+                    + LangConstants.SECTION_SYM_CD);
+            currVarHypSection = sectionList
+                .get(n - 1 - LangConstants.SECTION_LOGIC_CD
+                    + LangConstants.SECTION_VAR_HYP_CD);
+            currSyntaxSection = sectionList
+                .get(n - 1 - LangConstants.SECTION_LOGIC_CD
+                    + LangConstants.SECTION_SYNTAX_CD);
+            currLogicSection = sectionList.get(n - 1);
+        }
+        invalidateChapterSectionDependencies();
+    }
+
     private void prepareChapterSectionForMObj() {
         if (nextChapterTitle != null) {
 
@@ -0,0 +1,259 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.lang;
+
+import java.util.*;
+
+/**
+ * FlatParseTree is a parse tree laid out in preorder arrays, used as the
+ * unification kernel of the Proof Assistant's innermost loops.
+ * <p>
+ * Each position holds the node's stmt, the node itself and the end of its
+ * sub-tree (the position following the last node of the sub-tree), so a
+ * whole sub-tree can be skipped or compared without walking ParseNodes. The
+ * VarHyp positions are also numbered by variable (in order of first
+ * occurrence), for use when the tree is the pattern of a unification.
+ * <p>
+ * unify() works like ParseNode.unifyWithSubtree(), without work stacks and
+ * without allocating anything on failure: the substitutions are accumulated
+ * in a per-thread frame, and the array of substitutions is only created when
+ * the unification succeeds.
+ * <p>
+ * A FlatParseTree is immutable; it is built by ParseTree.getFlatTree() and
+ * must be rebuilt if the nodes of the tree are modified.
+ */
+public class FlatParseTree {
+
+    private static final ThreadLocal<Frame> FRAME = ThreadLocal
+        .withInitial(Frame::new);
+
+    private final Stmt[] stmt;
+
+    private final ParseNode[] node;
+
+    private final int[] end;
+
+    /** variable number of each VarHyp position, or -1 */
+    private final int[] var;
+
+    /** the distinct VarHyps, in order of first occurrence */
+    private final VarHyp[] varHyp;
+
+    /**
+     * Construct the flattened form of a sub-tree.
+     *
+     * @param root root of the sub-tree.
+     */
+    public FlatParseTree(final ParseNode root) {
+        final int n = count(root);
+        stmt = new Stmt[n];
+        node = new ParseNode[n];
+        end = new int[n];
+        var = new int[n];
+        final List<VarHyp> list = new ArrayList<>();
+        final int last = flatten(root, 0, list);
+        assert last == n;
+        varHyp = list.toArray(new VarHyp[list.size()]);
+    }
+
+    // not ParseNode.countParseNodes(), which updates the nodes
+    private static int count(final ParseNode n) {
+        int count = 1;
+        for (final ParseNode child : n.child)
+            count += count(child);
+        return count;
+    }
+
+    private int flatten(final ParseNode n, final int pos,
+        final List<VarHyp> list)
+    {
+        stmt[pos] = n.stmt;
+        node[pos] = n;
+        if (n.stmt instanceof VarHyp) {
+            int v = list.indexOf(n.stmt);
+            if (v < 0) {
+                v = list.size();
+                list.add((VarHyp)n.stmt);
+            }
+            var[pos] = v;
+        }
+        else
+            var[pos] = -1;
+        int next = pos + 1;
+        for (final ParseNode child : n.child)
+            next = flatten(child, next, list);
+        end[pos] = next;
+        return next;
+    }
+
+    /**
+     * Returns the number of nodes in the tree.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return stmt.length;
+    }
+
+    /**
+     * Unify a parse tree (expression) with this tree and return an array of
+     * substitutions if successful, or null.
+     *
+     * @param subject the flattened parse tree to unify with this.
+     * @param varHypArray the VarHyp's in this tree.
+     * @return array of subtrees that represent substitutions for the
+     *         corresponding VarHyps in the input varHypArray (may contain
+     *         nulls).
+     */
+    public ParseNode[] unify(final FlatParseTree subject,
+        final VarHyp[] varHypArray)
+    {
+        if (subject.stmt.length < stmt.length)
+            return null;
+        final Frame frame = FRAME.get();
+        final int[] bound = frame.getBoundPos(varHyp.length);
+        Arrays.fill(bound, 0, varHyp.length, -1);
+
+        int s = 0;
+        for (int p = 0; p < stmt.length; p++) {
+            final Stmt subjectStmt = subject.stmt[s];
+            if (stmt[p] != subjectStmt) {
+                if (var[p] < 0 || stmt[p].getTyp() != subjectStmt.getTyp())
+                    return null;
+            }
+            else if (var[p] < 0) {
+                s++;
+                continue;
+            }
+            final int v = var[p];
+            if (bound[v] < 0)
+                bound[v] = s;
+            else if (!subject.isDeepDup(bound[v], s))
+                return null; // bad subst, 2 diff values
+            s = subject.end[s];
+        }
+
+        final ParseNode[] substArray = new ParseNode[varHypArray.length];
+        for (int v = 0; v < varHyp.length; v++)
+            substArray[indexOf(varHypArray, v)] = subject.node[bound[v]];
+        return substArray;
+    }
+
+    /**
+     * Unify a parse subtree (expression) with this tree and return an array of
+     * substitutions if successful, or null.
+     * <p>
+     * This version walks the subtree's ParseNodes, for expressions which are
+     * unified once only and so are not worth flattening.
+     *
+     * @param subtreeRoot root of parse subtree to unify with this.
+     * @param varHypArray the VarHyp's in this tree.
+     * @return array of subtrees that represent substitutions for the
+     *         corresponding VarHyps in the input varHypArray (may contain
+     *         nulls).
+     */
+    public ParseNode[] unify(final ParseNode subtreeRoot,
+        final VarHyp[] varHypArray)
+    {
+        final Frame frame = FRAME.get();
+        final ParseNode[] bound = frame.getBoundNode(varHyp.length);
+        ParseNode[] stack = frame.nodeStack;
+        int sp = 0;
+        int maxSp = 1;
+        try {
+            stack[sp++] = subtreeRoot;
+            for (int p = 0; p < stmt.length; p++) {
+                final ParseNode subtreeNode = stack[--sp];
+                if (stmt[p] != subtreeNode.stmt) {
+                    if (var[p] < 0
+                        || stmt[p].getTyp() != subtreeNode.stmt.getTyp())
+                        return null;
+                }
+                else if (var[p] < 0) {
+                    final ParseNode[] child = subtreeNode.child;
+                    if (sp + child.length > stack.length)
+                        stack = frame.growNodeStack(sp + child.length);
+                    for (int i = child.length - 1; i >= 0; i--)
+                        stack[sp++] = child[i];
+                    maxSp = Math.max(maxSp, sp);
+                    continue;
+                }
+                final int v = var[p];
+                if (bound[v] == null)
+                    bound[v] = subtreeNode;
+                else if (!bound[v].isDeepDup(subtreeNode,
+                    frame.compareNodeStack))
+                    return null; // bad subst, 2 diff values
+            }
+
+            final ParseNode[] substArray = new ParseNode[varHypArray.length];
+            for (int v = 0; v < varHyp.length; v++)
+                substArray[indexOf(varHypArray, v)] = bound[v];
+            return substArray;
+        } finally {
+            // don't hold on to the caller's nodes
+            Arrays.fill(bound, 0, varHyp.length, null);
+            Arrays.fill(stack, 0, maxSp, null);
+        }
+    }
+
+    /**
+     * Compares two sub-trees of this tree, like ParseNode.isDeepDup().
+     */
+    private boolean isDeepDup(final int a, final int b) {
+        final int n = end[a] - a;
+        if (end[b] - b != n)
+            return false;
+        for (int i = 0; i < n; i++)
+            if (stmt[a + i] != stmt[b + i]
+                || end[a + i] - a != end[b + i] - b)
+                return false;
+        return true;
+    }
+
+    private int indexOf(final VarHyp[] varHypArray, final int v) {
+        for (int i = 0; i < varHypArray.length; i++)
+            if (varHypArray[i] == varHyp[v])
+                return i;
+
+        // if we're here then we messed up!
+        String msg = "", delim = "";
+        for (final VarHyp element : varHypArray) {
+            msg += delim + element.getLabel();
+            delim = " ";
+        }
+        throw new IllegalArgumentException(new LangException(
+            LangConstants.ERRMSG_UNIFY_SUBST_HYP_NOTFND, varHyp[v].getLabel(),
+            msg));
+    }
+
+    /**
+     * The per-thread work areas of unify(), grown as needed and reused.
+     */
+    private static class Frame {
+        int[] boundPos = new int[16];
+        ParseNode[] boundNode = new ParseNode[16];
+        ParseNode[] nodeStack = new ParseNode[64];
+        final Deque<ParseNode> compareNodeStack = new ArrayDeque<>();
+
+        int[] getBoundPos(final int n) {
+            if (boundPos.length < n)
+                boundPos = new int[Math.max(n, 2 * boundPos.length)];
+            return boundPos;
+        }
+
+        ParseNode[] getBoundNode(final int n) {
+            if (boundNode.length < n)
+                boundNode = new ParseNode[Math.max(n, 2 * boundNode.length)];
+            return boundNode;
+        }
+
+        ParseNode[] growNodeStack(final int n) {
+            nodeStack = Arrays.copyOf(nodeStack,
+                Math.max(n, 2 * nodeStack.length));
+            return nodeStack;
+        }
+    }
+}
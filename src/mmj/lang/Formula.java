@@ -87,8 +87,11 @@ public class Formula {
 
     /**
      * The sorted list of all constants in this formula.
+     * <p>
+     * volatile because it may be computed during parallel unification (see
+     * initConstList()).
      */
-    private Cnst[] constList = null;
+    private volatile Cnst[] constList = null;
 
     /**
      * The comparator for the sorted list of all constants in this formula.
@@ -258,6 +261,27 @@ public class Formula {
         Arrays.sort(constList, comp);
     }
 
+    /**
+     * Computes the sorted constList of a formula which was not included in
+     * ProofAsst.optimizeTheoremSearch(), such as a proof step formula. The
+     * list is only stored once it is sorted, since the proof steps may be
+     * checked by several threads.
+     *
+     * @param comp the comparator
+     */
+    private synchronized void initConstList(final Comparator<Cnst> comp) {
+        if (constList != null)
+            return;
+        final Set<Cnst> set = new HashSet<>();
+        for (final Sym s : getSym())
+            if (s instanceof Cnst)
+                set.add((Cnst)s);
+        final Cnst[] list = set.toArray(new Cnst[set.size()]);
+        Arrays.sort(list, comp);
+        constComp = comp;
+        constList = list;
+    }
+
     /**
      * This function is needed to exclude quickly the incompatible with this
      * formulas.
@@ -267,23 +291,23 @@ public class Formula {
      * @return true if all constants from this formula are in the other formula
      */
     public boolean preunificationCheck(final Formula other) {
-        if (constList == null)
+        final Cnst[] mine = constList;
+        if (mine == null)
             return true;
         assert constComp != null;
 
-        if (other.constList == null) {
-            other.collectConstFrequenceAndInitConstList(null);
-            other.sortConstList(constComp);
-        }
+        if (other.constList == null)
+            other.initConstList(constComp);
+        final Cnst[] theirs = other.constList;
 
-        if (other.constList.length < constList.length)
+        if (theirs.length < mine.length)
             return false;
 
         int i = 0, k = 0;
 
-        mainLoop: while (i < constList.length) {
-            while (k < other.constList.length) {
-                if (constList[i] == other.constList[k]) {
+        mainLoop: while (i < mine.length) {
+            while (k < theirs.length) {
+                if (mine[i] == theirs[k]) {
                     i++;
                     k++;
                     continue mainLoop;
@@ -70,6 +70,21 @@ public abstract class Hyp extends Stmt {
         setActive(active);
     }
 
+    /**
+     * Construct Hyp read back by LogicalSystemSnapshot, doing no validation.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param active Hyp.active
+     */
+    Hyp(final int seq, final String label, final Formula formula,
+        final boolean active)
+    {
+        super(seq, label, formula);
+        this.active = active;
+    }
+
     /**
      * Construct temp Hyp using precomputed values and doing no validation.
      *
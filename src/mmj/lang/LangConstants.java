@@ -313,6 +313,18 @@ public class LangConstants {
 
     public static final int COMPRESS_STEP_INIT_LEN = 20000;
 
+    /**
+     * Compressed proofs are decompressed while the file is loaded by default
+     * (see RunParm LazyProofDecompression).
+     */
+    public static final boolean LAZY_PROOF_DECOMPRESSION_DEFAULT = false;
+
+    /**
+     * By default there is no limit on the number of lazily decompressed proofs
+     * kept in memory.
+     */
+    public static final int DECOMPRESSED_PROOF_CACHE_SIZE_DEFAULT = 0;
+
     // ====================================================
 
     /**
@@ -858,4 +870,13 @@ public class LangConstants {
             + " variables found even though they were previously"
             + " consolidated to eliminate duplicates!"
             + " Original error message follows: %s");
+
+    // =======================================================
+
+    /**
+     * Messages for LogicalSystemSnapshot.java
+     */
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_CORRUPT = of("E-LA-1001",
+        "Snapshot file %s is corrupt.");
 }
@@ -88,6 +88,23 @@ public class LogHyp extends Hyp {
 
     }
 
+    /**
+     * Construct LogHyp read back by LogicalSystemSnapshot, doing no
+     * validation.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param varHypArray LogHyp.varHypArray
+     * @param active Hyp.active
+     */
+    LogHyp(final int seq, final String label, final Formula formula,
+        final VarHyp[] varHypArray, final boolean active)
+    {
+        super(seq, label, formula, active);
+        this.varHypArray = varHypArray;
+    }
+
     /**
      * Construct temp LogHyp using precomputed values and doing no validation.
      *
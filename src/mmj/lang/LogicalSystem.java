@@ -7,7 +7,7 @@
 //*456789012345678 (80-character line to adjust editor window) 456789012345678*/
 
 /*
- * LogicalSystem.java  0.07 11/01/2011
+ * LogicalSystem.java  0.08 10/16/2026
  *
  *     --> 10-Dec-2005: add "prematureEOF" param to finalizeEOF()
  *         so that a user-requested termination of the load at
@@ -46,6 +46,14 @@
  *
  * Version 0.07 - Nov-01-2011:
  *     - Added GMFFManager
+ *
+ * Version 0.08 - Oct-16-2026:
+ *     --> Added reverse proof dependency index and tracking of
+ *         theorems changed by TheoremLoader since the last
+ *         complete proof verification, for incremental
+ *         re-verification (see getProofsToReverify()).
+ *         Building the index reads every proof, so with lazy
+ *         proof decompression it decompresses them all.
  */
 
 package mmj.lang;
@@ -53,6 +61,7 @@ package mmj.lang;
 import java.util.*;
 
 import mmj.gmff.GMFFManager;
+import mmj.lang.ParseTree.RPNStep;
 import mmj.mmio.BlockList;
 import mmj.pa.MMJException;
 import mmj.tl.*;
@@ -108,6 +117,20 @@ public class LogicalSystem implements SystemLoader {
     // faster...)
     private final Map<String, Stmt> stmtTbl;
 
+    // reverse dependency index: Assrt -> Theorems whose proofs
+    // refer to it. Built on demand, then kept up to date by
+    // theoremLoaderCommit().
+    private Map<Assrt, List<Theorem>> proofDependents;
+
+    // Theorems stored by TheoremLoader since the last complete
+    // and successful proof verification; null if there has been
+    // no such verification.
+    private Set<Theorem> changedProofs;
+
+    // set by theoremLoaderCommit(): the LogicalSystem no longer
+    // matches the input .mm file(s).
+    private boolean theoremLoaderUpdated;
+
     /**
      * Construct with full set of parameters.
      *
@@ -742,6 +765,88 @@ public class LogicalSystem implements SystemLoader {
         proofVerifier.verifyAllExprRPNAsProofs(messages, stmtTbl);
     }
 
+    /**
+     * Records that every theorem's proof has just been verified without error.
+     * <p>
+     * From then on, theorems stored by TheoremLoader are remembered until the
+     * next call so that only they, and the theorems depending on them, need be
+     * re-verified (see getProofsToReverify()).
+     */
+    public void setAllProofsVerified() {
+        changedProofs = new HashSet<>();
+    }
+
+    /**
+     * Returns the theorems whose proofs must be verified again to bring the
+     * whole LogicalSystem back to the state recorded by setAllProofsVerified().
+     * <p>
+     * These are the theorems stored by TheoremLoader since then, plus every
+     * theorem whose proof refers to one of them: an updated theorem may come
+     * with new Distinct Variable restrictions, which the proofs using it must
+     * satisfy. Proofs referring only to unchanged assertions are unaffected by
+     * the updates, and need not be looked at.
+     *
+     * @return List of Theorems in MObj.SEQ order, or null if all proofs must
+     *         be verified because setAllProofsVerified() was never called.
+     */
+    public List<Theorem> getProofsToReverify() {
+        if (changedProofs == null)
+            return null;
+        final Set<Theorem> reverify = new HashSet<>(changedProofs);
+        for (final Theorem theorem : changedProofs)
+            reverify.addAll(getProofDependents(theorem));
+        final List<Theorem> list = new ArrayList<>(reverify);
+        Collections.sort(list, MObj.SEQ);
+        return list;
+    }
+
+    /**
+     * Returns the theorems whose proofs refer to an assertion.
+     * <p>
+     * The reverse dependency index is built on the first call and then
+     * maintained by theoremLoaderCommit(). Building it calls getProof() on
+     * every Theorem, which decompresses any proof still kept compressed by
+     * lazy proof decompression.
+     *
+     * @param assrt an Axiom or Theorem.
+     * @return List of Theorems, not to be modified by the caller.
+     */
+    public List<Theorem> getProofDependents(final Assrt assrt) {
+        if (proofDependents == null) {
+            proofDependents = new HashMap<>();
+            for (final Stmt stmt : stmtTbl.values())
+                if (stmt instanceof Theorem)
+                    accumProofDependent((Theorem)stmt);
+        }
+        final List<Theorem> list = proofDependents.get(assrt);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private void accumProofDependent(final Theorem theorem) {
+        for (final Assrt assrt : getProofRefs(theorem.getProof()))
+            proofDependents.computeIfAbsent(assrt, a -> new ArrayList<>())
+                .add(theorem);
+    }
+
+    private void removeProofDependent(final Theorem theorem,
+        final RPNStep[] oldProof)
+    {
+        for (final Assrt assrt : getProofRefs(oldProof)) {
+            final List<Theorem> list = proofDependents.get(assrt);
+            if (list != null)
+                list.remove(theorem);
+        }
+    }
+
+    private static Set<Assrt> getProofRefs(final RPNStep[] proof) {
+        final Set<Assrt> refs = new HashSet<>();
+        if (proof != null)
+            for (final RPNStep step : proof)
+                if (step != null && step.stmt instanceof Assrt)
+                    refs.add((Assrt)step.stmt);
+        return refs;
+    }
+
     /**
      * Get LogicalSystem scopeDefList
      * <p>
@@ -830,6 +935,16 @@ public class LogicalSystem implements SystemLoader {
         return symTbl;
     }
 
+    /**
+     * Returns true if Theorem Loader updates have been committed to the
+     * LogicalSystem, which then no longer matches the input .mm file(s).
+     *
+     * @return true if updated by the Theorem Loader.
+     */
+    public boolean isTheoremLoaderUpdated() {
+        return theoremLoaderUpdated;
+    }
+
     /**
      * Returns the current stmtTbl, a Map containing all {@code Hyp}s and
      * {@code Assrt}s.
@@ -1044,6 +1159,9 @@ public class LogicalSystem implements SystemLoader {
      * <p>
      * Commits BookManager updates.
      * <p>
+     * Updates the reverse proof dependency index and the set of theorems
+     * needing re-verification.
+     * <p>
      * Sends commit() request to every TheoremLoaderCommitListener.
      * <p>
      *
@@ -1053,6 +1171,7 @@ public class LogicalSystem implements SystemLoader {
      */
     public void theoremLoaderCommit(final MMTTheoremSet mmtTheoremSet) {
 
+        theoremLoaderUpdated = true;
         try {
             if (seqAssigner != null)
                 seqAssigner.commit(mmtTheoremSet);
@@ -1060,6 +1179,18 @@ public class LogicalSystem implements SystemLoader {
             if (bookManager != null)
                 bookManager.commit(mmtTheoremSet);
 
+            for (final TheoremStmtGroup g : mmtTheoremSet) {
+                final Theorem theorem = g.getTheorem();
+                if (theorem == null)
+                    continue;
+                if (proofDependents != null) {
+                    removeProofDependent(theorem, g.getOldProof());
+                    accumProofDependent(theorem);
+                }
+                if (changedProofs != null)
+                    changedProofs.add(theorem);
+            }
+
             for (final TheoremLoaderCommitListener l : theoremLoaderCommitListeners)
                 l.commit(mmtTheoremSet);
         } catch (final Exception e) {
@@ -0,0 +1,677 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.lang;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import mmj.lang.ParseTree.RPNStep;
+
+/**
+ * Binary image of a loaded LogicalSystem, so that a later run can skip
+ * tokenizing, validating and decompressing the .mm file.
+ * <p>
+ * The snapshot holds every Sym and Stmt with its sequence number, Formula,
+ * frames, description and Chapter/Section assignment, the decompressed
+ * proofs, the global scope, the BookManager and SeqAssigner state, the $t
+ * typesetting comments and, optionally, the parse trees of the Stmts. Objects
+ * refer to each other by their index in the snapshot, integers being written
+ * as variable length numbers.
+ * <p>
+ * The header records the load parameters and a SHA-256 digest of each .mm
+ * file loaded, include files included. read() returns null if anything there
+ * differs from the current run, and the .mm file must be loaded as usual.
+ * <p>
+ * The Grammar is not part of the snapshot: it is initialized from the Syntax
+ * Axioms as usual, after which restoreParseTrees() stores the parse trees of
+ * the other Stmts instead of parsing them again (so no parse messages are
+ * produced for them).
+ */
+public class LogicalSystemSnapshot {
+
+    private static final byte[] MAGIC = "mmj2 LogicalSystemSnapshot"
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int CNST = 1;
+    private static final int VAR = 2;
+    private static final int VAR_HYP = 3;
+    private static final int LOG_HYP = 4;
+    private static final int AXIOM = 5;
+    private static final int THEOREM = 6;
+
+    private final List<String> sourceFiles;
+
+    private final MObj[] mObjs;
+
+    // positioned at the parse trees, null if there are none or
+    // they have been restored
+    private ByteBuffer parseTrees;
+
+    private LogicalSystemSnapshot(final List<String> sourceFiles,
+        final MObj[] mObjs, final ByteBuffer parseTrees)
+    {
+        this.sourceFiles = sourceFiles;
+        this.mObjs = mObjs;
+        this.parseTrees = parseTrees;
+    }
+
+    /**
+     * Returns the absolute paths of the .mm files the snapshot was made from.
+     *
+     * @return List of absolute file paths, the main file first.
+     */
+    public List<String> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    /**
+     * Returns true if the snapshot holds parse trees not yet restored.
+     *
+     * @return true if restoreParseTrees() can be called.
+     */
+    public boolean hasParseTrees() {
+        return parseTrees != null;
+    }
+
+    /**
+     * Writes a snapshot of a LogicalSystem loaded from .mm file(s).
+     * <p>
+     * The LogicalSystem must be at global scope level and must not have been
+     * updated since the load.
+     *
+     * @param file the snapshot file.
+     * @param logicalSystem the LogicalSystem.
+     * @param loadParms String describing the load parameters, which read()
+     *            requires to be the same.
+     * @param sourceFiles absolute paths of the .mm files loaded, the main file
+     *            first.
+     * @param withParseTrees true if the parse trees are to be written: all
+     *            Stmts must have been parsed successfully.
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(final File file, final LogicalSystem logicalSystem,
+        final String loadParms, final List<String> sourceFiles,
+        final boolean withParseTrees) throws IOException
+    {
+        final List<MObj> list = new ArrayList<>(
+            logicalSystem.getSymTbl().values());
+        list.addAll(logicalSystem.getStmtTbl().values());
+        Collections.sort(list, MObj.SEQ);
+        final Map<MObj, Integer> index = new IdentityHashMap<>(list.size());
+        for (final MObj mObj : list)
+            index.put(mObj, index.size());
+
+        final File temp = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            final Writer w = new Writer(out, index);
+
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            w.string(loadParms);
+            w.nbr(sourceFiles.size());
+            for (final String s : sourceFiles) {
+                w.string(s);
+                out.write(digest(new File(s)));
+            }
+
+            w.nbr(list.size());
+            for (final MObj mObj : list)
+                w.mObj(mObj);
+
+            final ScopeDef global = logicalSystem.getScopeDefList().get(0);
+            w.refs(global.scopeVar);
+            w.refs(global.scopeVarHyp);
+            w.refs(global.scopeLogHyp);
+            w.djVars(global.scopeDjVars);
+
+            final BookManager bookManager = logicalSystem.bookManager;
+            final List<Chapter> chapters = bookManager.getChapterList();
+            w.nbr(chapters.size());
+            for (final Chapter chapter : chapters)
+                w.string(chapter.getChapterTitle());
+            final List<Section> sections = bookManager.getSectionList();
+            w.nbr(sections.size());
+            for (final Section section : sections) {
+                w.nbr(section.getSectionChapter().getChapterNbr());
+                w.string(section.getSectionTitle());
+            }
+            w.nbr(bookManager.getTotalNbrMObjs());
+            for (final String s : bookManager.getNextTitles())
+                w.string(s);
+
+            for (final int i : logicalSystem.seqAssigner
+                .getSnapshotState())
+                w.nbr(i);
+
+            final List<String> comments = logicalSystem.getGMFFManager()
+                .getTypesettingCommentsForGMFF();
+            w.nbr(comments.size());
+            for (final String s : comments)
+                w.string(s);
+
+            for (final MObj mObj : list)
+                if (mObj instanceof Theorem)
+                    w.proof(((Theorem)mObj).getProof());
+
+            out.writeBoolean(withParseTrees);
+            if (withParseTrees)
+                for (final MObj mObj : list)
+                    if (hasOwnParseTree(mObj))
+                        w.parseTree(((Stmt)mObj).getExprParseTree());
+        }
+        Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a snapshot into an empty LogicalSystem.
+     * <p>
+     * If null is returned or an exception thrown, the LogicalSystem, its
+     * BookManager, SeqAssigner and GMFFManager may have been partially loaded
+     * and must be discarded.
+     *
+     * @param file the snapshot file.
+     * @param logicalSystem the empty LogicalSystem.
+     * @param loadParms String describing the load parameters, as given to
+     *            write().
+     * @param mainFile absolute path of the .mm file to be loaded.
+     * @return the snapshot, or null if the file does not exist, was not
+     *         written by this version of mmj2, was made from other .mm files or
+     *         load parameters, or if one of the .mm files has changed since.
+     * @throws IOException if the file could not be read or is corrupt.
+     */
+    public static LogicalSystemSnapshot read(final File file,
+        final LogicalSystem logicalSystem, final String loadParms,
+        final String mainFile) throws IOException
+    {
+        if (!file.isFile())
+            return null;
+        // read, not mapped: a mapped file could not be replaced by the next
+        // write() on Windows while the parse trees are kept
+        final ByteBuffer in = ByteBuffer
+            .wrap(Files.readAllBytes(file.toPath()));
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.getInt() != VERSION
+                || !loadParms.equals(string(in)))
+                return null;
+
+            final List<String> sourceFiles = new ArrayList<>();
+            for (int i = count(in); i > 0; i--) {
+                final String s = string(in);
+                final byte[] d = new byte[32];
+                in.get(d);
+                if (sourceFiles.isEmpty() && !s.equals(mainFile)
+                    || !Arrays.equals(d, digest(new File(s))))
+                    return null;
+                sourceFiles.add(s);
+            }
+
+            return new Reader(in, logicalSystem).read(sourceFiles);
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException
+            | ClassCastException | IllegalArgumentException
+            | LangException e)
+        {
+            throw new IOException(LangConstants.ERRMSG_SNAPSHOT_CORRUPT
+                .message(file.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Stores the parse trees of the snapshot in the Stmts.
+     * <p>
+     * Grammar initialization sets the parse trees of the VarHyps and Syntax
+     * Axioms and clears those of the other Stmts, so this must be called
+     * after the Grammar has been initialized. The cached values derived from
+     * the parse trees are computed here as well.
+     *
+     * @throws IllegalStateException if there are no parse trees or the
+     *             snapshot is corrupt.
+     */
+    public void restoreParseTrees() {
+        if (parseTrees == null)
+            throw new IllegalStateException();
+        final ByteBuffer in = parseTrees;
+        parseTrees = null;
+        try {
+            for (final MObj mObj : mObjs)
+                if (hasOwnParseTree(mObj))
+                    ((Stmt)mObj).setExprParseTree(readParseTree(in));
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException
+            | ClassCastException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        for (final MObj mObj : mObjs)
+            if (hasOwnParseTree(mObj)) {
+                final ParseTree tree = ((Stmt)mObj).getExprParseTree();
+                tree.getMaxDepth();
+                tree.getLevelOneTwo();
+            }
+        for (final MObj mObj : mObjs)
+            if (mObj instanceof Assrt) {
+                ((Assrt)mObj).getLogHypsMaxDepth();
+                ((Assrt)mObj).getLogHypsL1HiLoKey();
+            }
+    }
+
+    private ParseTree readParseTree(final ByteBuffer in) {
+        final Deque<ParseNode> stack = new ArrayDeque<>();
+        for (int i = count(in); i > 0; i--) {
+            final Stmt stmt = (Stmt)mObjs[nbr(in)];
+            final int nbrChildren = nbr(in);
+            if (nbrChildren < 0 || nbrChildren > stack.size())
+                throw new IndexOutOfBoundsException();
+            final ParseNode[] child = new ParseNode[nbrChildren];
+            for (int j = child.length - 1; j >= 0; j--)
+                child[j] = stack.pop();
+            stack.push(new ParseNode(stmt, child));
+        }
+        if (stack.size() != 1)
+            throw new IndexOutOfBoundsException();
+        return new ParseTree(stack.pop());
+    }
+
+    /**
+     * Parse trees of VarHyps and Syntax Axioms come with the Grammar.
+     */
+    private static boolean hasOwnParseTree(final MObj mObj) {
+        return mObj instanceof LogHyp || mObj instanceof Theorem
+            || mObj instanceof Axiom && !((Axiom)mObj).getIsSyntaxAxiom();
+    }
+
+    private static byte[] digest(final File file) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!file.isFile())
+            return new byte[md.getDigestLength()];
+        try (InputStream in = new FileInputStream(file)) {
+            final byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                md.update(buf, 0, n);
+        }
+        return md.digest();
+    }
+
+    private static int nbr(final ByteBuffer in) {
+        int n = 0;
+        int shift = 0;
+        byte b;
+        while ((b = in.get()) < 0) {
+            n |= (b & 0x7F) << shift;
+            if ((shift += 7) > 28)
+                throw new IndexOutOfBoundsException();
+        }
+        return n | b << shift;
+    }
+
+    /**
+     * Reads the number of elements of something which follows in the buffer,
+     * each taking at least one byte, so that a corrupt count is caught here
+     * rather than by allocating a huge or negative size array.
+     */
+    private static int count(final ByteBuffer in) {
+        final int n = nbr(in);
+        if (n < 0 || n > in.remaining())
+            throw new IndexOutOfBoundsException();
+        return n;
+    }
+
+    private static String string(final ByteBuffer in) {
+        final int n = count(in) - 1;
+        if (n < 0)
+            return null;
+        final byte[] b = new byte[n];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static class Writer {
+        private final DataOutputStream out;
+        private final Map<MObj, Integer> index;
+
+        Writer(final DataOutputStream out, final Map<MObj, Integer> index) {
+            this.out = out;
+            this.index = index;
+        }
+
+        void nbr(int n) throws IOException {
+            while ((n & ~0x7F) != 0) {
+                out.writeByte(n & 0x7F | 0x80);
+                n >>>= 7;
+            }
+            out.writeByte(n);
+        }
+
+        void string(final String s) throws IOException {
+            if (s == null) {
+                nbr(0);
+                return;
+            }
+            final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            nbr(b.length + 1);
+            out.write(b);
+        }
+
+        void ref(final MObj mObj) throws IOException {
+            nbr(index.get(mObj));
+        }
+
+        void refs(final Collection<? extends MObj> c) throws IOException {
+            nbr(c.size());
+            for (final MObj mObj : c)
+                ref(mObj);
+        }
+
+        void djVars(final Collection<DjVars> c) throws IOException {
+            nbr(c.size());
+            for (final DjVars dj : c) {
+                ref(dj.getVarLo());
+                ref(dj.getVarHi());
+            }
+        }
+
+        void frame(final ScopeFrame frame) throws IOException {
+            refs(Arrays.asList(frame.hypArray));
+            djVars(Arrays.asList(frame.djVarsArray));
+        }
+
+        void formula(final Formula formula) throws IOException {
+            final Sym[] sym = formula.getSym();
+            nbr(formula.getCnt());
+            for (int i = 0; i < formula.getCnt(); i++)
+                ref(sym[i]);
+        }
+
+        void mObj(final MObj mObj) throws IOException {
+            if (mObj instanceof Cnst)
+                out.writeByte(CNST);
+            else if (mObj instanceof Var)
+                out.writeByte(VAR);
+            else if (mObj instanceof VarHyp)
+                out.writeByte(VAR_HYP);
+            else if (mObj instanceof LogHyp)
+                out.writeByte(LOG_HYP);
+            else if (mObj instanceof Axiom)
+                out.writeByte(AXIOM);
+            else
+                out.writeByte(THEOREM);
+            nbr(mObj.getSeq());
+            string(mObj instanceof Sym ? ((Sym)mObj).getId()
+                : ((Stmt)mObj).getLabel());
+            string(mObj.getDescription());
+
+            if (mObj instanceof Cnst)
+                out.writeBoolean(((Cnst)mObj).isVarTyp());
+            else if (mObj instanceof Var)
+                out.writeBoolean(((Var)mObj).isActive());
+            else {
+                final Stmt stmt = (Stmt)mObj;
+                if (stmt instanceof Hyp)
+                    out.writeBoolean(((Hyp)stmt).isActive());
+                formula(stmt.getFormula());
+                if (stmt instanceof LogHyp)
+                    refs(Arrays.asList(((LogHyp)stmt).getMandVarHypArray()));
+                else if (stmt instanceof Assrt) {
+                    final Assrt assrt = (Assrt)stmt;
+                    refs(Arrays.asList(assrt.getMandVarHypArray()));
+                    frame(assrt.getMandFrame());
+                    if (assrt instanceof Theorem) {
+                        frame(((Theorem)assrt).getOptFrame());
+                        nbr(((Theorem)assrt).getColumn());
+                    }
+                }
+            }
+            nbr(mObj.getSectionNbr());
+            nbr(mObj.getSectionMObjNbr());
+        }
+
+        /**
+         * Each step is one number: 0 for a null step, (backRef << 2 | 1) for a
+         * back reference or a "?" (backRef 0), (index << 2 | 2) for a Stmt
+         * and (index << 2 | 3) followed by -backRef for a Stmt referred to
+         * later.
+         */
+        void proof(final RPNStep[] proof) throws IOException {
+            if (proof == null) {
+                nbr(0);
+                return;
+            }
+            nbr(proof.length + 1);
+            for (final RPNStep step : proof)
+                if (step == null)
+                    nbr(0);
+                else if (step.stmt == null)
+                    nbr(step.backRef << 2 | 1);
+                else if (step.backRef == 0)
+                    nbr(index.get(step.stmt) << 2 | 2);
+                else {
+                    nbr(index.get(step.stmt) << 2 | 3);
+                    nbr(-step.backRef);
+                }
+        }
+
+        void parseTree(final ParseTree tree) throws IOException {
+            final List<ParseNode> nodes = new ArrayList<>();
+            postfix(tree.getRoot(), nodes);
+            nbr(nodes.size());
+            for (final ParseNode node : nodes) {
+                ref(node.stmt);
+                nbr(node.child.length);
+            }
+        }
+
+        private static void postfix(final ParseNode node,
+            final List<ParseNode> nodes)
+        {
+            for (final ParseNode child : node.child)
+                postfix(child, nodes);
+            nodes.add(node);
+        }
+    }
+
+    private static class Reader {
+        private final ByteBuffer in;
+        private final LogicalSystem logicalSystem;
+        private MObj[] mObjs;
+
+        Reader(final ByteBuffer in, final LogicalSystem logicalSystem) {
+            this.in = in;
+            this.logicalSystem = logicalSystem;
+        }
+
+        LogicalSystemSnapshot read(final List<String> sourceFiles)
+            throws LangException
+        {
+            final Map<String, Sym> symTbl = logicalSystem.getSymTbl();
+            final Map<String, Stmt> stmtTbl = logicalSystem.getStmtTbl();
+            if (!symTbl.isEmpty() || !stmtTbl.isEmpty())
+                throw new IllegalStateException();
+
+            mObjs = new MObj[count(in)];
+            final int[] sectionNbr = new int[mObjs.length];
+            final int[] sectionMObjNbr = new int[mObjs.length];
+            for (int i = 0; i < mObjs.length; i++) {
+                final MObj mObj = mObjs[i] = mObj();
+                sectionNbr[i] = nbr(in);
+                sectionMObjNbr[i] = nbr(in);
+                if (mObj instanceof Sym)
+                    symTbl.put(((Sym)mObj).getId(), (Sym)mObj);
+                else
+                    stmtTbl.put(((Stmt)mObj).getLabel(), (Stmt)mObj);
+            }
+
+            final ScopeDef global = logicalSystem.getScopeDefList().get(0);
+            refs(global.scopeVar, Var.class);
+            refs(global.scopeVarHyp, VarHyp.class);
+            refs(global.scopeLogHyp, LogHyp.class);
+            djVars(global.scopeDjVars);
+            for (final VarHyp varHyp : global.scopeVarHyp)
+                if (varHyp.isActive())
+                    varHyp.getVar().setActiveVarHyp(varHyp);
+
+            final BookManager bookManager = logicalSystem.bookManager;
+            final List<Chapter> chapters = bookManager.getChapterList();
+            for (int i = count(in); i > 0; i--)
+                chapters.add(new Chapter(chapters.size() + 1, string(in)));
+            final List<Section> sections = bookManager.getSectionList();
+            for (int i = count(in); i > 0; i--) {
+                final Chapter chapter = chapters.get(nbr(in) - 1);
+                sections.add(
+                    new Section(chapter, sections.size() + 1, string(in)));
+            }
+            final Integer[] order = new Integer[mObjs.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> sectionNbr[a] != sectionNbr[b]
+                ? sectionNbr[a] - sectionNbr[b]
+                : sectionMObjNbr[a] - sectionMObjNbr[b]);
+            for (final int i : order)
+                if (sectionNbr[i] != 0)
+                    sections.get(sectionNbr[i] - 1)
+                        .assignChapterSectionNbrs(mObjs[i]);
+            final int totalNbrMObjs = nbr(in);
+            bookManager.restoreSnapshotState(totalNbrMObjs,
+                new String[]{string(in), string(in)});
+
+            final int[] state = new int[3];
+            for (int i = 0; i < state.length; i++)
+                state[i] = nbr(in);
+            if (!logicalSystem.seqAssigner.restoreSnapshotState(state))
+                return null;
+
+            for (int i = count(in); i > 0; i--)
+                logicalSystem.cacheTypesettingCommentForGMFF(string(in));
+
+            for (final MObj mObj : mObjs)
+                if (mObj instanceof Theorem)
+                    ((Theorem)mObj).setProof(proof());
+
+            ByteBuffer parseTrees = null;
+            if (in.get() != 0)
+                parseTrees = in.slice();
+            return new LogicalSystemSnapshot(
+                Collections.unmodifiableList(sourceFiles), mObjs, parseTrees);
+        }
+
+        private MObj mObj() throws LangException {
+            final int kind = in.get();
+            final int seq = nbr(in);
+            final String id = string(in);
+            final String description = string(in);
+            final MObj mObj;
+            switch (kind) {
+                case CNST:
+                    final Cnst cnst = new Cnst(seq, id);
+                    cnst.setVarTyp(in.get() != 0);
+                    mObj = cnst;
+                    break;
+                case VAR:
+                    mObj = new Var(seq, id, in.get() != 0);
+                    break;
+                case VAR_HYP: {
+                    final boolean active = in.get() != 0;
+                    mObj = new VarHyp(seq, id, formula(), active);
+                    break;
+                }
+                case LOG_HYP: {
+                    final boolean active = in.get() != 0;
+                    mObj = new LogHyp(seq, id, formula(), varHyps(), active);
+                    break;
+                }
+                case AXIOM:
+                    mObj = new Axiom(seq, id, formula(), varHyps(), frame());
+                    break;
+                case THEOREM:
+                    mObj = new Theorem(seq, id, formula(), varHyps(), frame(),
+                        frame(), nbr(in));
+                    break;
+                default:
+                    throw new IndexOutOfBoundsException();
+            }
+            mObj.setDescription(description);
+            return mObj;
+        }
+
+        private <T extends MObj> T ref(final Class<T> c) {
+            return c.cast(mObjs[nbr(in)]);
+        }
+
+        private <T extends MObj> void refs(final Collection<T> c,
+            final Class<T> t)
+        {
+            for (int i = count(in); i > 0; i--)
+                c.add(ref(t));
+        }
+
+        private void djVars(final Collection<DjVars> c) throws LangException {
+            for (int i = count(in); i > 0; i--)
+                c.add(new DjVars(ref(Var.class), ref(Var.class)));
+        }
+
+        private VarHyp[] varHyps() {
+            final List<VarHyp> list = new ArrayList<>();
+            refs(list, VarHyp.class);
+            return list.toArray(new VarHyp[list.size()]);
+        }
+
+        private ScopeFrame frame() throws LangException {
+            final ScopeFrame frame = new ScopeFrame();
+            final List<Hyp> hyps = new ArrayList<>();
+            refs(hyps, Hyp.class);
+            frame.hypArray = hyps.toArray(new Hyp[hyps.size()]);
+            final List<DjVars> djVars = new ArrayList<>();
+            djVars(djVars);
+            frame.djVarsArray = djVars.toArray(new DjVars[djVars.size()]);
+            return frame;
+        }
+
+        private Formula formula() {
+            final Sym[] sym = new Sym[count(in)];
+            for (int i = 0; i < sym.length; i++)
+                sym[i] = ref(Sym.class);
+            return new Formula(sym.length, sym);
+        }
+
+        private RPNStep[] proof() {
+            final int n = count(in) - 1;
+            if (n < 0)
+                return null;
+            final RPNStep[] proof = new RPNStep[n];
+            for (int i = 0; i < n; i++) {
+                final int code = nbr(in);
+                if (code == 0)
+                    continue;
+                final RPNStep step = proof[i] = new RPNStep(
+                    (code & 3) == 1 ? null : ref(code >>> 2, Stmt.class));
+                if ((code & 3) == 1)
+                    step.backRef = code >>> 2;
+                else if ((code & 3) == 3)
+                    step.backRef = -nbr(in);
+            }
+            return proof;
+        }
+
+        private <T extends MObj> T ref(final int i, final Class<T> c) {
+            return c.cast(mObjs[i]);
+        }
+    }
+}
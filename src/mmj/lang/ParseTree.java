@@ -44,24 +44,35 @@ public class ParseTree {
      * greater than the parse tree of the statement to be unified with it, then
      * we know that unification is impossible. The number is computed
      * dynamically if and when someone asks for it (see below in setMaxDepth(),
-     * getMaxDepth() and calcMaxDepth()).
+     * getMaxDepth() and calcMaxDepth()). It is volatile because the Proof
+     * Assistant's unification threads may compute it at the same time.
      */
-    private int maxDepth = -1;
+    private volatile int maxDepth = -1;
 
     /**
      * Computed value for Parse Tree containing no VarHyps in Levels one or two
-     * consisting of the level one and level two statement labels concatenated
-     * with intervening space characters. levelOneTwo is used by Proof Assistant
+     * consisting of a 64-bit fingerprint of the level one and level two
+     * statements (0 if there is a VarHyp). levelOneTwo is used by Proof Assistant
      * to reject unsuitable unification candidates as quickly as possible. The
      * heuristic is that a proof step parse tree formula must overlay a
      * candidate assertion's proof tree, and must match, except where the
      * candidate assertion has a VarHyp (the VarHyp's provide the points where
      * substitution takes place, a sub-tree from the proof step is substituted
-     * for the VarHyp!) The value is computed dynamically if and when someone
-     * asks for it (see below in setLevelOneTwo(), and resetLevelOneTwo() and
-     * calcMaxDepth()).
+     * for the VarHyp!) Different fingerprints mean different statements, but
+     * equal fingerprints do not guarantee a match (which is fine for a
+     * heuristic). The value is computed dynamically if and when someone asks
+     * for it (see below in getLevelOneTwo() and resetLevelOneTwo()), and
+     * like maxDepth it may be computed by several threads at once.
      */
-    private String levelOneTwo = null;
+    private volatile long levelOneTwo = LEVEL_ONE_TWO_UNKNOWN;
+
+    private static final long LEVEL_ONE_TWO_UNKNOWN = -1;
+
+    /**
+     * The tree laid out in preorder arrays for unification, computed if and
+     * when someone asks for it (see getFlatTree()).
+     */
+    private FlatParseTree flatTree = null;
 
     /**
      * Constructor - default, creates empty ParseTree.
@@ -95,6 +106,26 @@ public class ParseTree {
         this.root = root;
         resetMaxDepth();
         resetLevelOneTwo();
+        resetFlatTree();
+    }
+
+    /**
+     * Unify a parse tree (expression) with this tree and return an array of
+     * substitutions if successful, or null.
+     * <p>
+     * Same as ParseNode.unifyWithSubtree(), but using the flattened forms of
+     * both trees (see FlatParseTree).
+     *
+     * @param subject the parse tree to unify with this.
+     * @param varHypArray the VarHyp's in this tree.
+     * @return array of subtrees that represent substitutions for the
+     *         corresponding VarHyps in the input varHypArray (may contain
+     *         nulls).
+     */
+    public ParseNode[] unifyWithTree(final ParseTree subject,
+        final VarHyp[] varHypArray)
+    {
+        return getFlatTree().unify(subject.getFlatTree(), varHypArray);
     }
 
     /**
@@ -420,35 +451,61 @@ public class ParseTree {
     }
 
     /**
-     * Computes the levelOneTwo string (key) value after calculating it if the
-     * answer is not already known.
+     * Computes the levelOneTwo fingerprint (key) value after calculating it if
+     * the answer is not already known.
      *
-     * @return levelOneTwo key string.
+     * @return levelOneTwo key, or 0 if there is a VarHyp in level one or two.
      */
-    public String getLevelOneTwo() {
-        if (levelOneTwo != null)
+    public long getLevelOneTwo() {
+        if (levelOneTwo != LEVEL_ONE_TWO_UNKNOWN)
             return levelOneTwo;
         Stmt stmt = root.stmt;
         if (stmt instanceof VarHyp)
-            levelOneTwo = "";
-        else {
-            String answer = stmt.getLabel();
-            for (final ParseNode child : root.child) {
-                stmt = child.stmt;
-                if (stmt instanceof VarHyp)
-                    return levelOneTwo = "";
-                answer += " " + stmt.getLabel();
-            }
-            levelOneTwo = answer;
+            return levelOneTwo = 0;
+        long answer = stmt.seq;
+        for (final ParseNode child : root.child) {
+            stmt = child.stmt;
+            if (stmt instanceof VarHyp)
+                return levelOneTwo = 0;
+            answer = answer * 0x9E3779B97F4A7C15L + stmt.seq;
         }
-        return levelOneTwo;
+        // spread the bits (MurmurHash3 finalizer)
+        answer ^= answer >>> 33;
+        answer *= 0xFF51AFD7ED558CCDL;
+        answer ^= answer >>> 33;
+        answer *= 0xC4CEB9FE1A85EC53L;
+        answer ^= answer >>> 33;
+        if (answer == 0 || answer == LEVEL_ONE_TWO_UNKNOWN)
+            answer = 1;
+        return levelOneTwo = answer;
     }
 
     /**
-     * Resets the levelOneTwo string key value to the default value;
+     * Resets the levelOneTwo key value to the default value;
      */
     public void resetLevelOneTwo() {
-        levelOneTwo = null;
+        levelOneTwo = LEVEL_ONE_TWO_UNKNOWN;
+    }
+
+    /**
+     * Gets the tree laid out in preorder arrays, after computing it if not
+     * already known.
+     *
+     * @return the FlatParseTree of this tree.
+     */
+    public FlatParseTree getFlatTree() {
+        FlatParseTree t = flatTree;
+        if (t == null)
+            flatTree = t = new FlatParseTree(root);
+        return t;
+    }
+
+    /**
+     * Resets the flattened tree, which must be done if the nodes of the tree
+     * are modified.
+     */
+    public void resetFlatTree() {
+        flatTree = null;
     }
 
     /**
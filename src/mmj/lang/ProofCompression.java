@@ -8,6 +8,11 @@
 
 /*
  * ProofCompression.java 0.01 04/01/2006
+ *
+ *     --> Added lazy decompression: loadOtherRefs() and a
+ *         decompress() variant working from already resolved
+ *         references, plus the bounded cache of decompressed
+ *         proofs (see cacheDecompressedProof()).
  */
 
 package mmj.lang;
@@ -25,6 +30,15 @@ public class ProofCompression {
 
     private boolean usedYet;
 
+    private final boolean lazyDecompression;
+
+    /**
+     * Theorems whose proofs were decompressed lazily, least recently
+     * decompressed first; null if the number of decompressed proofs is not
+     * limited.
+     */
+    private final LinkedHashMap<Theorem, Theorem> decompressedProofCache;
+
     // *******************************************
     // all following variables are work items used
     // within a single execution but are stored
@@ -62,6 +76,63 @@ public class ProofCompression {
     public ProofCompression() {
 
         // don't allocate the stacks until activity requested.
+        lazyDecompression = false;
+        decompressedProofCache = null;
+    }
+
+    /**
+     * Constructor for lazy decompression.
+     * <p>
+     * Theorems built using this ProofCompression keep their proofs in
+     * compressed form, and decompress them on the first call to
+     * Theorem.getProof(). If decompressedProofCacheSize is positive only that
+     * many decompressed proofs are kept, the least recently decompressed ones
+     * being dropped (and decompressed again when needed).
+     *
+     * @param decompressedProofCacheSize maximum number of decompressed proofs
+     *            to keep, or 0 for no limit.
+     */
+    public ProofCompression(final int decompressedProofCacheSize) {
+        lazyDecompression = true;
+        if (decompressedProofCacheSize > 0)
+            decompressedProofCache = new LinkedHashMap<Theorem, Theorem>(16,
+                0.75f, false)
+            {
+                @Override
+                protected boolean removeEldestEntry(
+                    final Map.Entry<Theorem, Theorem> eldest)
+                {
+                    if (size() <= decompressedProofCacheSize)
+                        return false;
+                    eldest.getKey().releaseProof();
+                    return true;
+                }
+            };
+        else
+            decompressedProofCache = null;
+    }
+
+    /**
+     * Returns true if Theorems should keep their proofs compressed until
+     * needed.
+     *
+     * @return true for lazy decompression.
+     */
+    public boolean isLazyDecompression() {
+        return lazyDecompression;
+    }
+
+    /**
+     * Notes that a Theorem's proof has just been decompressed lazily, dropping
+     * the least recently decompressed proof if the cache is full.
+     * <p>
+     * Must be called while synchronized on this ProofCompression.
+     *
+     * @param theorem the Theorem.
+     */
+    void cacheDecompressedProof(final Theorem theorem) {
+        if (decompressedProofCache != null)
+            decompressedProofCache.put(theorem, theorem);
     }
 
     /**
@@ -104,6 +175,81 @@ public class ProofCompression {
         return constructProofArray();
     }
 
+    /**
+     * Resolves and validates the labels in the parenthesized portion of a
+     * compressed proof, the first half of decompress().
+     * <p>
+     * This must be done while the source file is being loaded since it relies
+     * on the Hyps in scope being "active".
+     *
+     * @param theoremLabel Theorem's label, used in error messages that may be
+     *            generated during processing.
+     * @param seq the sequence number of the theorem
+     * @param stmtTbl Stmt lookup map for translating labels into Stmt object
+     *            references.
+     * @param mandHypArray The theorem's MandFrame.hypArray.
+     * @param optHypArray The theorem's OptFrame.optHypArray.
+     * @param otherRefList List of String containing labels of Stmt's provided
+     *            in the parenthesized portion of a compressed proof.
+     * @return array of the referenced Stmt's.
+     * @throws LangException if an error occurred
+     */
+    public Stmt[] loadOtherRefs(final String theoremLabel, final int seq,
+        final Map<String, Stmt> stmtTbl, final Hyp[] mandHypArray,
+        final Hyp[] optHypArray, final List<String> otherRefList)
+        throws LangException
+    {
+        this.theoremLabel = theoremLabel; // for error msgs
+
+        if (!usedYet) {
+            initArrays();
+            usedYet = true;
+        }
+
+        mandHyp = mandHypArray;
+        optHyp = optHypArray;
+
+        loadOtherRefArrays(stmtTbl, otherRefList, seq);
+
+        return otherStmt.toArray(new Stmt[otherStmt.size()]);
+    }
+
+    /**
+     * Decompress a single proof whose other references have already been
+     * resolved by loadOtherRefs(), the second half of decompress().
+     *
+     * @param theoremLabel Theorem's label, used in error messages that may be
+     *            generated during processing.
+     * @param mandHypArray The theorem's MandFrame.hypArray.
+     * @param otherRefs the output of loadOtherRefs().
+     * @param proofBlockList List of String containing the compressed portion of
+     *            the proof.
+     * @return RPNStep array containing decompressed (but still "packed")
+     *         Metamath RPN proof.
+     * @throws LangException if an error occurred
+     */
+    public RPNStep[] decompress(final String theoremLabel,
+        final Hyp[] mandHypArray, final Stmt[] otherRefs,
+        final BlockList proofBlockList) throws LangException
+    {
+        this.theoremLabel = theoremLabel; // for error msgs
+
+        if (!usedYet) {
+            initArrays();
+            usedYet = true;
+        }
+
+        mandHyp = mandHypArray;
+
+        otherStmt.clear();
+        Collections.addAll(otherStmt, otherRefs);
+
+        proofBlockList.rewind();
+        loadSteps(proofBlockList);
+
+        return constructProofArray();
+    }
+
     private void loadOtherRefArrays(final Map<String, Stmt> stmtTbl,
         final List<String> otherRefList, final int seq) throws LangException
     {
@@ -368,6 +368,31 @@ public class SeqAssigner implements TheoremLoaderCommitListener {
         }
     }
 
+    /**
+     * Returns the state of a SeqAssigner with no insertions, for
+     * LogicalSystemSnapshot.
+     *
+     * @return interval size, number of MObjs and number of intervals used.
+     */
+    int[] getSnapshotState() {
+        return new int[]{intervalSize, mObjCount, nbrIntervals};
+    }
+
+    /**
+     * Restores the state returned by getSnapshotState(), for
+     * LogicalSystemSnapshot.
+     *
+     * @param state as returned by getSnapshotState().
+     * @return false if the interval size differs.
+     */
+    boolean restoreSnapshotState(final int[] state) {
+        if (state[0] != intervalSize)
+            return false;
+        mObjCount = state[1];
+        nbrIntervals = state[2];
+        return true;
+    }
+
     private Integer convertSeqToIntervalNumber(final int seq) {
 
         return Integer.valueOf(seq / intervalSize);
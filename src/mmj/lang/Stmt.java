@@ -123,15 +123,16 @@ public abstract class Stmt extends MObj implements JSONString {
      * Assrt.logHypArray. It is stored here so that the value can be easily
      * reinitialized by Grammar if the statements are reparsed and the parse
      * trees are updated. The value is calculated dynamically, if and when
-     * needed in Assrt.
+     * needed in Assrt, as is logHypsL1HiLoKey.
      */
-    protected int logHypsMaxDepth = -1;
+    protected volatile int logHypsMaxDepth = -1;
 
     /**
-     * This contains the labels of the root node Syntax Axiom for the
-     * Assrt.logHypArray with lowest and greates sequence numbers. If one of the
-     * LogHyp root nodes contains a VarHyp then the HiLoKey is set to the
-     * default value. We only want the computed value if every LogHyp has a
+     * This contains the sequence numbers of the root node Syntax Axiom for the
+     * Assrt.logHypArray with lowest and greates sequence numbers, packed into
+     * a long (see Assrt.getLogHypsL1HiLoKey()), or -1 if not yet computed. If
+     * one of the LogHyp root nodes contains a VarHyp then the HiLoKey is set to
+     * 0. We only want the computed value if every LogHyp has a
      * Syntax Axiom in the root node of the parse tree. The Proof Assistant uses
      * this field to reject candidate assertions from consideration for
      * unification with a proof step. Because the Proof Assistant has to compute
@@ -143,9 +144,10 @@ public abstract class Stmt extends MObj implements JSONString {
      * among them, then unification cannot be achieved. It is stored here so
      * that the value can be easily reinitialized by Grammar if the statements
      * are reparsed and the parse trees are updated. The value is calculated
-     * dynamically, if and when needed in Assrt.
+     * dynamically, if and when needed in Assrt (possibly by several
+     * unification threads at once, hence volatile).
      */
-    protected String logHypsL1HiLoKey = null;
+    protected volatile long logHypsL1HiLoKey = -1;
 
     protected int nbrProofRefs;
 
@@ -178,6 +180,19 @@ public abstract class Stmt extends MObj implements JSONString {
         label = labelS;
     }
 
+    /**
+     * Construct Stmt read back by LogicalSystemSnapshot, doing no validation.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     */
+    Stmt(final int seq, final String label, final Formula formula) {
+        super(seq);
+        this.label = label;
+        this.formula = formula;
+    }
+
     /**
      * Construct temp Stmt using precomputed values and doing no validation.
      *
@@ -358,7 +373,7 @@ public abstract class Stmt extends MObj implements JSONString {
      *
      * @param logHypsL1HiLoKey computed value.
      */
-    public void setLogHypsL1HiLoKey(final String logHypsL1HiLoKey) {
+    public void setLogHypsL1HiLoKey(final long logHypsL1HiLoKey) {
         this.logHypsL1HiLoKey = logHypsL1HiLoKey;
     }
 
@@ -367,7 +382,7 @@ public abstract class Stmt extends MObj implements JSONString {
      * value.
      */
     public void resetLogHypsL1HiLoKey() {
-        logHypsL1HiLoKey = null;
+        logHypsL1HiLoKey = -1;
     }
 
     /**
@@ -26,6 +26,9 @@
  *
  * Version 0.08 - Nov-01-2011:  comment update.
  *     --> Add stmt label to ERRMSG_BAD_PARSE_STMT_1
+ *
+ *     --> Compressed proofs may be kept compressed until
+ *         getProof() is called (see ProofCompression).
  */
 
 package mmj.lang;
@@ -71,7 +74,17 @@ import mmj.mmio.BlockList;
  *      Entity-Relationship Notes</a>
  */
 public class Theorem extends Assrt {
-    private RPNStep[] proof;
+    private volatile RPNStep[] proof;
+
+    // compressed form of a proof decompressed lazily, kept for as
+    // long as the proof is not updated (see getProof()). proof and the
+    // compressed fields are only updated while synchronized on
+    // proofCompression, if there is one.
+    private final ProofCompression proofCompression;
+    private Stmt[] compressedOtherRefs;
+    private BlockList compressedProofBlockList;
+    private Messages compressedProofMessages;
+
     private final ScopeFrame optFrame;
     private final int column;
 
@@ -103,6 +116,7 @@ public class Theorem extends Assrt {
 
         optFrame = buildOptFrame(scopeDefList);
         this.column = column;
+        proofCompression = null;
 
         try {
             proof = editProofListDefAndActive(stmtTbl, proofList);
@@ -128,7 +142,9 @@ public class Theorem extends Assrt {
      * @param proofBlockList list containing one or more blocks of compressed
      *            proof symbols.
      * @param proofCompression instance of ProofCompression.java used to
-     *            decompress proof.
+     *            decompress proof. If it does lazy decompression, only the
+     *            labels of the parenthesized portion of the proof are
+     *            validated now, and the rest is left for getProof().
      * @param messages for error reporting
      * @throws LangException if there was a decompression error
      * @see mmj.lang.Theorem#editProofListDefAndActive(Map stmtTbl, List
@@ -145,11 +161,22 @@ public class Theorem extends Assrt {
 
         optFrame = buildOptFrame(scopeDefList);
         this.column = column;
+        this.proofCompression = proofCompression.isLazyDecompression()
+            ? proofCompression : null;
 
         try {
-            proof = proofCompression.decompress(labelS, seq, stmtTbl,
-                mandFrame.hypArray, optFrame.hypArray, proofList,
-                proofBlockList);
+            if (proofCompression.isLazyDecompression()) {
+                compressedOtherRefs = proofCompression.loadOtherRefs(labelS,
+                    seq, stmtTbl, mandFrame.hypArray, optFrame.hypArray,
+                    proofList);
+                proofBlockList.trimToSize();
+                compressedProofBlockList = proofBlockList;
+                compressedProofMessages = messages;
+            }
+            else
+                proof = proofCompression.decompress(labelS, seq, stmtTbl,
+                    mandFrame.hypArray, optFrame.hypArray, proofList,
+                    proofBlockList);
         } catch (final LangException e) {
             proof = new RPNStep[]{new RPNStep(null)};
             messages.accumInfoMessage(e.getMessage());
@@ -157,13 +184,94 @@ public class Theorem extends Assrt {
 
     }
 
+    /**
+     * Construct Theorem read back by LogicalSystemSnapshot, doing no
+     * validation. The proof is stored later, using setProof(RPNStep[]).
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param varHypArray Assrt.varHypArray
+     * @param mandFrame Assrt.mandFrame
+     * @param optFrame Theorem.optFrame
+     * @param column Starting column
+     */
+    Theorem(final int seq, final String label, final Formula formula,
+        final VarHyp[] varHypArray, final ScopeFrame mandFrame,
+        final ScopeFrame optFrame, final int column)
+    {
+        super(seq, label, formula, varHypArray, mandFrame);
+        this.optFrame = optFrame;
+        this.column = column;
+        proofCompression = null;
+    }
+
     /**
      * Return Theorem's proof.
+     * <p>
+     * A proof kept in compressed form is decompressed now. A decompression
+     * error is reported as at load time, and leaves the proof as a single "?"
+     * step.
      *
      * @return Theorem's proof.
      */
     public RPNStep[] getProof() {
-        return proof;
+        final RPNStep[] p = proof;
+        return p != null ? p : decompressProof();
+    }
+
+    private RPNStep[] decompressProof() {
+        final ProofCompression pc = proofCompression;
+        if (pc == null)
+            return proof;
+        synchronized (pc) {
+            RPNStep[] p = proof;
+            if (p != null || compressedProofBlockList == null)
+                return p;
+            try {
+                p = pc.decompress(getLabel(), mandFrame.hypArray,
+                    compressedOtherRefs, compressedProofBlockList);
+            } catch (final LangException e) {
+                p = new RPNStep[]{new RPNStep(null)};
+                compressedProofMessages.accumInfoMessage(e.getMessage());
+                dropCompressedProof();
+            }
+            proof = p;
+            if (compressedProofBlockList != null)
+                pc.cacheDecompressedProof(this);
+            return p;
+        }
+    }
+
+    /**
+     * Drops the decompressed proof if the Theorem also has it in compressed
+     * form. Called by ProofCompression, while synchronized on it, to limit the
+     * number of decompressed proofs in memory.
+     */
+    void releaseProof() {
+        if (compressedProofBlockList != null)
+            proof = null;
+    }
+
+    /**
+     * Replaces the proof, dropping the compressed one.
+     */
+    private void replaceProof(final RPNStep[] p) {
+        final ProofCompression pc = proofCompression;
+        if (pc == null) {
+            proof = p;
+            return;
+        }
+        synchronized (pc) {
+            dropCompressedProof();
+            proof = p;
+        }
+    }
+
+    private void dropCompressedProof() {
+        compressedOtherRefs = null;
+        compressedProofBlockList = null;
+        compressedProofMessages = null;
     }
 
     /**
@@ -180,8 +288,19 @@ public class Theorem extends Assrt {
     public RPNStep[] setProof(final Map<String, Stmt> stmtTbl,
         final List<String> proofList) throws LangException
     {
-        proof = editProofListDefAndActive(stmtTbl, proofList);
-        return proof;
+        final RPNStep[] p = editProofListDefAndActive(stmtTbl, proofList);
+        replaceProof(p);
+        return p;
+    }
+
+    /**
+     * Set Theorem's proof read back by LogicalSystemSnapshot, doing no
+     * validation.
+     *
+     * @param proof Theorem's proof.
+     */
+    void setProof(final RPNStep[] proof) {
+        replaceProof(proof);
     }
 
     /**
@@ -367,7 +486,7 @@ public class Theorem extends Assrt {
         final DjVars[] newDjVarsArray, final DjVars[] newOptDjVarsArray)
     {
 
-        proof = newProof;
+        replaceProof(newProof);
         mandFrame.djVarsArray = newDjVarsArray;
         optFrame.djVarsArray = newOptDjVarsArray;
     }
@@ -110,6 +110,21 @@ public class VarHyp extends Hyp {
 
     }
 
+    /**
+     * Construct VarHyp read back by LogicalSystemSnapshot, doing no
+     * validation. The Var's activeVarHyp is left to the caller.
+     *
+     * @param seq MObj.seq
+     * @param label Stmt.label
+     * @param formula Stmt.formula
+     * @param active Hyp.active
+     */
+    VarHyp(final int seq, final String label, final Formula formula,
+        final boolean active)
+    {
+        super(seq, label, formula, active);
+    }
+
     /**
      * Construct VarHyp using precomputed values and doing no validation.
      *
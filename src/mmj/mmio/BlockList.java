@@ -70,6 +70,15 @@ public class BlockList {
         }
     }
 
+    public void trimToSize() {
+        blocks.trimToSize();
+    }
+
+    public void rewind() {
+        index = 0;
+        marked = false;
+    }
+
     public boolean isEmpty() {
         return blocks.length() == 0;
     }
@@ -281,6 +281,35 @@ public class MMIOConstants {
      */
     public static final boolean LOAD_PROOFS_DEFAULT = true;
 
+    /**
+     * Load Memory Mapped Default equal false.
+     * <p>
+     * If set to true then a 7-bit ASCII input file is read through a
+     * MappedTokenizer instead of a Reader. (The file remains mapped until the
+     * mapping is garbage collected, which on some systems prevents it from
+     * being modified or deleted meanwhile.)
+     */
+    public static final boolean LOAD_MEMORY_MAPPED_DEFAULT = false;
+
+    /**
+     * Load Pipelined Default equal false.
+     * <p>
+     * If set to true then Systemizer reads and parses the input statements in
+     * a separate thread, ahead of loading them into the SystemLoader.
+     */
+    public static final boolean LOAD_PIPELINED_DEFAULT = false;
+
+    /**
+     * Number of SrcStmts handed over at once from the reading thread to the
+     * loading thread in a pipelined load.
+     */
+    public static final int LOAD_PIPELINE_BATCH_SIZE = 256;
+
+    /**
+     * Maximum number of batches of SrcStmts read ahead in a pipelined load.
+     */
+    public static final int LOAD_PIPELINE_QUEUE_SIZE = 16;
+
     public static class FileContext extends FormatContext {
         public final String sourceId;
 
@@ -0,0 +1,249 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.mmio;
+
+import static mmj.mmio.MMIOConstants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import mmj.mmio.MMIOConstants.FileContext;
+import mmj.mmio.MMIOConstants.LineColumnContext;
+import mmj.pa.MMJException;
+
+/**
+ * Tokenizer working directly on a memory-mapped 7-bit ASCII .mm file.
+ * <p>
+ * The Reader based Tokenizer goes through {@code Reader.read()} and the line,
+ * column and character counters for every character. This one scans the
+ * mapped bytes with simple loops and only does line counting as it goes; the
+ * column and character numbers follow from the scan position.
+ * <p>
+ * {@code getTokenString()} looks each token up by its bytes in a table of the
+ * Strings it returned before, so a symbol or label is only built once, however
+ * often it occurs in formulas and proofs.
+ * <p>
+ * Line, column and character numbers, and so every message, are exactly those
+ * of Tokenizer. Since Tokenizer counts characters, not bytes, this only holds
+ * for files without any non-ASCII bytes -- {@code open()} returns null for the
+ * others, so that they can be read with Tokenizer.
+ */
+public class MappedTokenizer extends Tokenizer {
+
+    private ByteBuffer buf;
+    private final int limit;
+
+    // number of characters read so far, also index of the next one
+    private int pos;
+
+    private long lineNbr;
+
+    // index of the first character of the current line
+    private int lineStart;
+
+    // the Strings returned by getTokenString(): open addressing on
+    // String.hashCode(), at most half full
+    private String[] tokenTbl = new String[1 << 12];
+    private int tokenCount;
+
+    private MappedTokenizer(final ByteBuffer buf, final String sourceId) {
+        super(sourceId);
+        this.buf = buf;
+        limit = buf.limit();
+        lineNbr = limit == 0 ? 0 : 1;
+    }
+
+    /**
+     * Maps a file into memory for tokenizing.
+     *
+     * @param file the .mm file.
+     * @param sourceId Source Id Text, such as filename or test ID. May be empty
+     *            string if N/A. Used solely for diagnostic messages.
+     * @return the MappedTokenizer, or null if the file is too large to map or
+     *         contains non-ASCII characters.
+     * @throws IOException if I/O error
+     */
+    public static MappedTokenizer open(final File file, final String sourceId)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ))
+        {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                return null;
+            final ByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < size; i++)
+                if (buf.get(i) < 0)
+                    return null;
+            return new MappedTokenizer(buf, sourceId);
+        }
+    }
+
+    /**
+     * Reads the character at pos, keeping track of the line number the same
+     * way Tokenizer does: a line starts with the character following a line
+     * feed, or following a carriage return which is not followed by a line
+     * feed.
+     */
+    private void advance() {
+        if (pos > 0) {
+            final byte prev = buf.get(pos - 1);
+            if (prev == '\n' || prev == '\r' && buf.get(pos) != '\n') {
+                lineNbr++;
+                lineStart = pos;
+            }
+        }
+        pos++;
+    }
+
+    private boolean isWhiteSpace(final int i) {
+        return (VALID_CHAR_ARRAY[buf.get(i)] & WHITE_SPACE) != 0;
+    }
+
+    @Override
+    public int getToken(final StringBuilder strBuf, final int offset) {
+        while (pos < limit && isWhiteSpace(pos))
+            advance();
+
+        if (pos == limit)
+            return -1;
+
+        final int start = pos;
+        do
+            advance();
+        while (pos < limit
+            && (VALID_CHAR_ARRAY[buf.get(pos)] & PRINTABLE) != 0);
+
+        insert(strBuf, offset, start);
+        return pos - start;
+    }
+
+    @Override
+    public String getTokenString(final StringBuilder strBuf) {
+        while (pos < limit && isWhiteSpace(pos))
+            advance();
+
+        if (pos == limit)
+            return null;
+
+        // same as String.hashCode() for ASCII
+        final int start = pos;
+        int hash = 0;
+        do {
+            hash = 31 * hash + buf.get(pos);
+            advance();
+        } while (pos < limit
+            && (VALID_CHAR_ARRAY[buf.get(pos)] & PRINTABLE) != 0);
+
+        int i = hash & tokenTbl.length - 1;
+        String s;
+        while ((s = tokenTbl[i]) != null) {
+            if (s.hashCode() == hash && matches(s, start))
+                return s;
+            i = i + 1 & tokenTbl.length - 1;
+        }
+
+        final char[] c = new char[pos - start];
+        for (int j = 0; j < c.length; j++)
+            c[j] = (char)buf.get(start + j);
+        s = new String(c);
+        tokenTbl[i] = s;
+        if (++tokenCount > tokenTbl.length / 2)
+            growTokenTbl();
+        return s;
+    }
+
+    private boolean matches(final String s, final int start) {
+        if (s.length() != pos - start)
+            return false;
+        for (int j = 0; j < s.length(); j++)
+            if (s.charAt(j) != buf.get(start + j))
+                return false;
+        return true;
+    }
+
+    private void growTokenTbl() {
+        final String[] old = tokenTbl;
+        tokenTbl = new String[old.length * 2];
+        for (final String s : old)
+            if (s != null) {
+                int i = s.hashCode() & tokenTbl.length - 1;
+                while (tokenTbl[i] != null)
+                    i = i + 1 & tokenTbl.length - 1;
+                tokenTbl[i] = s;
+            }
+    }
+
+    @Override
+    public int getWhiteSpace(final StringBuilder strBuf, final int offset) {
+        final int start = pos;
+        while (pos < limit && isWhiteSpace(pos))
+            advance();
+
+        if (pos == start && pos == limit)
+            return -1;
+
+        insert(strBuf, offset, start);
+        return pos - start;
+    }
+
+    private void insert(final StringBuilder strBuf, final int offset,
+        final int start)
+    {
+        if (offset == strBuf.length())
+            for (int i = start; i < pos; i++)
+                strBuf.append((char)buf.get(i));
+        else {
+            final char[] c = new char[pos - start];
+            for (int i = start; i < pos; i++)
+                c[i - start] = (char)buf.get(i);
+            strBuf.insert(offset, c);
+        }
+    }
+
+    @Override
+    public long getCurrentLineNbr() {
+        return lineNbr;
+    }
+
+    @Override
+    public long getCurrentColumnNbr() {
+        return pos - lineStart;
+    }
+
+    @Override
+    public long getCurrentCharNbr() {
+        return pos;
+    }
+
+    @Override
+    public void close() {
+        // the mapping itself is released when the buffer is garbage collected
+        buf = null;
+        tokenTbl = null;
+    }
+
+    @Override
+    public long countNbrLines() {
+        while (pos < limit)
+            advance();
+        return lineNbr;
+    }
+
+    @Override
+    public <T extends MMJException> T addContext(final int errorFldChars,
+        final T e)
+    {
+        if (getSourceId() != null)
+            e.addContext(new FileContext(getSourceId()));
+        return MMJException.addContext(new LineColumnContext(lineNbr,
+            getCurrentColumnNbr(), pos - errorFldChars + 1), e);
+    }
+}
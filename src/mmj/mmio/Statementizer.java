@@ -41,6 +41,10 @@
  *
  * Version 0.08 - Nov-01-2011:
  *    - optimize getTitleIfApplicable()
+ *
+ * --> Tokens are read with Tokenizer.getTokenString() into
+ *    nextTokenString, except comment text and compressed proof
+ *    blocks (getNextTextToken()).
  */
 
 package mmj.mmio;
@@ -70,6 +74,9 @@ public class Statementizer implements Closeable {
 
     private final StringBuilder nextToken = new StringBuilder();
 
+    // the last token read, null if EOF reached
+    private String nextTokenString;
+
     private final int offset = 0;
 
     private String prevStmtComment = null;
@@ -262,9 +269,12 @@ public class Statementizer implements Closeable {
      */
     public void bypassErrorStmt() throws IOException {
         while (true) {
-            if (nextToken.indexOf(MMIOConstants.MM_END_COMMENT_KEYWORD) >= 0
-                || nextToken.indexOf(MMIOConstants.MM_END_STMT_KEYWORD) >= 0
-                || nextToken.indexOf(MMIOConstants.MM_END_FILE_KEYWORD) >= 0)
+            if (nextTokenString != null && (nextTokenString
+                .indexOf(MMIOConstants.MM_END_COMMENT_KEYWORD) >= 0
+                || nextTokenString
+                    .indexOf(MMIOConstants.MM_END_STMT_KEYWORD) >= 0
+                || nextTokenString
+                    .indexOf(MMIOConstants.MM_END_FILE_KEYWORD) >= 0))
                 break;
             if (getNextToken() <= 0)
                 break;
@@ -344,8 +354,8 @@ public class Statementizer implements Closeable {
         SrcStmt x = null;
 
         while (x == null && getNextToken() > 0) {
-            x = new SrcStmt(++stmtNbr, nextToken.toString());
-            if (nextToken.charAt(0) == MMIOConstants.MM_KEYWORD_1ST_CHAR)
+            x = new SrcStmt(++stmtNbr, nextTokenString);
+            if (nextTokenString.charAt(0) == MMIOConstants.MM_KEYWORD_1ST_CHAR)
                 switch (x.keyword) {
                     case MMIOConstants.MM_BEGIN_COMMENT_KEYWORD:
                         getComment(x);
@@ -396,11 +406,12 @@ public class Statementizer implements Closeable {
                 if (getNextNonCommentTokenLen() <= 0)
                     raiseParseException(MMIOConstants.ERRMSG_EOF_AFTER_LABEL,
                         x.label);
-                if (nextToken.charAt(0) != MMIOConstants.MM_KEYWORD_1ST_CHAR)
+                if (nextTokenString
+                    .charAt(0) != MMIOConstants.MM_KEYWORD_1ST_CHAR)
                     raiseParseException(
                         MMIOConstants.ERRMSG_MISSING_KEYWORD_AFTER_LABEL,
                         x.label);
-                switch (x.keyword = nextToken.toString()) {
+                switch (x.keyword = nextTokenString) {
                     case MMIOConstants.MM_LOG_HYP_KEYWORD:
                         getLogHypSrcStmt(x);
                         break;
@@ -447,22 +458,25 @@ public class Statementizer implements Closeable {
      * Note the tricky double loop: this handles back-to-back
      * embedded comments.
      *
+     * @param text true if the token is to be read with
+     *        getNextTextToken().
      * @return -1 if EOF or length of next non-comment token.
      */
-    private int getNextNonCommentTokenLen() throws IOException {
+    private int getNextNonCommentTokenLen(final boolean text)
+        throws IOException
+    {
 
-        int xLen = getNextToken();
+        int xLen = text ? getNextTextToken() : getNextToken();
 
         commentStart: while (true)
-            if (nextToken.toString()
-                .equals(MMIOConstants.MM_BEGIN_COMMENT_KEYWORD))
+            if (MMIOConstants.MM_BEGIN_COMMENT_KEYWORD.equals(nextTokenString))
                 while (true) {
-                    if ((xLen = getNextToken()) <= 0)
+                    if ((xLen = getNextTextToken()) <= 0)
                         return xLen;
-                    if (nextToken.toString()
+                    if (nextTokenString
                         .equals(MMIOConstants.MM_END_COMMENT_KEYWORD))
                     {
-                        xLen = getNextToken();
+                        xLen = text ? getNextTextToken() : getNextToken();
                         continue commentStart;
                     }
                 }
@@ -470,13 +484,29 @@ public class Statementizer implements Closeable {
                 return xLen;
     }
 
+    private int getNextNonCommentTokenLen() throws IOException {
+        return getNextNonCommentTokenLen(false);
+    }
+
     private int getNextToken() throws IOException {
+        nextTokenString = tokenizer.getTokenString(nextToken);
+        return nextTokenString == null ? -1 : nextTokenString.length();
+    }
+
+    /*
+     * Reads the next token into nextToken, for comment text and
+     * compressed proof blocks: those are seldom repeated, so they
+     * are not worth a lookup by getTokenString().
+     */
+    private int getNextTextToken() throws IOException {
         nextToken.setLength(0);
-        return tokenizer.getToken(nextToken, offset);
+        final int len = tokenizer.getToken(nextToken, offset);
+        nextTokenString = len < 0 ? null : nextToken.toString();
+        return len;
     }
 
     private String validateNextTokenLabel() throws MMIOException, IOException {
-        final String s = nextToken.toString();
+        final String s = nextTokenString;
         if (!isValidLabel(s))
             raiseParseException(MMIOConstants.ERRMSG_INV_LABEL, s);
         return s;
@@ -563,7 +593,7 @@ public class Statementizer implements Closeable {
         if (getNextNonCommentTokenLen() <= 0)
             raiseParseException(MMIOConstants.ERRMSG_STMT_PREMATURE_EOF,
                 x.keyword);
-        s = nextToken.toString();
+        s = nextTokenString;
         if (!isValidMathSymbol(s))
             if (s.equals(MMIOConstants.MM_END_STMT_KEYWORD))
                 raiseParseException(MMIOConstants.ERRMSG_STMT_MISSING_TYPE,
@@ -580,7 +610,7 @@ public class Statementizer implements Closeable {
         String s;
         x.symList = new ArrayList<>(40);
         while (getNextNonCommentTokenLen() > 0) {
-            s = nextToken.toString();
+            s = nextTokenString;
             if (isValidMathSymbol(s))
                 x.symList.add(s);
             else if (s.equals(MMIOConstants.MM_END_STMT_KEYWORD))
@@ -589,7 +619,7 @@ public class Statementizer implements Closeable {
                 raiseParseException(MMIOConstants.ERRMSG_INV_CHAR_IN_MATH_SYM,
                     s);
         }
-        if (nextToken.length() <= 0)
+        if (nextTokenString == null)
             raiseParseException(MMIOConstants.ERRMSG_STMT_PREMATURE_EOF,
                 x.keyword);
 
@@ -613,7 +643,7 @@ public class Statementizer implements Closeable {
         String s;
         x.symList = new ArrayList<>(40);
         while (getNextNonCommentTokenLen() > 0) {
-            s = nextToken.toString();
+            s = nextTokenString;
             if (isValidMathSymbol(s))
                 x.symList.add(s);
             else if (s.equals(MMIOConstants.MM_START_PROOF_KEYWORD))
@@ -624,7 +654,7 @@ public class Statementizer implements Closeable {
                 raiseParseException(MMIOConstants.ERRMSG_INV_CHAR_IN_MATH_SYM,
                     s);
         }
-        if (nextToken.length() <= 0)
+        if (nextTokenString == null)
             raiseParseException(MMIOConstants.ERRMSG_STMT_PREMATURE_EOF,
                 x.keyword);
 
@@ -635,12 +665,12 @@ public class Statementizer implements Closeable {
     {
         String s;
         if (getNextNonCommentTokenLen() > 0)
-            if (nextToken.length() == 1 && nextToken
+            if (nextTokenString.length() == 1 && nextTokenString
                 .charAt(0) == MMIOConstants.MM_BEGIN_COMPRESSED_PROOF_LIST_CHAR)
                 loadCompressedProof(x);
             else
                 do {
-                    s = nextToken.toString();
+                    s = nextTokenString;
                     if (isValidProofStep(s))
                         x.proofList.add(s);
                     else if (s.equals(MMIOConstants.MM_END_STMT_KEYWORD))
@@ -650,7 +680,7 @@ public class Statementizer implements Closeable {
                             MMIOConstants.ERRMSG_INV_CHAR_IN_PROOF_STEP, s);
                 } while (getNextNonCommentTokenLen() > 0);
 
-        if (nextToken.length() <= 0)
+        if (nextTokenString == null)
             raiseParseException(MMIOConstants.ERRMSG_STMT_PREMATURE_EOF,
                 x.keyword);
     }
@@ -664,13 +694,13 @@ public class Statementizer implements Closeable {
         String s;
 
         while (getNextNonCommentTokenLen() > 0) {
-            if (nextToken.length() == 1 && nextToken
+            if (nextTokenString.length() == 1 && nextTokenString
                 .charAt(0) == MMIOConstants.MM_END_COMPRESSED_PROOF_LIST_CHAR)
             {
                 loadCompressedProofBlockList(x);
                 break;
             }
-            s = nextToken.toString();
+            s = nextTokenString;
             if (isValidProofStep(s)) {
                 x.proofList.add(s);
                 continue;
@@ -697,8 +727,8 @@ public class Statementizer implements Closeable {
     private void loadCompressedProofBlockList(final SrcStmt x)
         throws MMIOException, IOException
     {
-        while (getNextNonCommentTokenLen() > 0) {
-            final String s = nextToken.toString();
+        while (getNextNonCommentTokenLen(true) > 0) {
+            final String s = nextTokenString;
             if (s.equals(MMIOConstants.MM_END_STMT_KEYWORD))
                 break;
 
@@ -724,8 +754,8 @@ public class Statementizer implements Closeable {
             nextToken.setLength(0);
             if (tokenizer.getWhiteSpace(nextToken, offset) > 0)
                 s.append(nextToken);
-            if (getNextToken() > 0) {
-                workToken = nextToken.toString();
+            if (getNextTextToken() > 0) {
+                workToken = nextTokenString;
                 if (workToken.equals(MMIOConstants.MM_END_COMMENT_KEYWORD)) {
                     x.comment = prevStmtComment = s.toString();
                     break;
@@ -753,14 +783,14 @@ public class Statementizer implements Closeable {
         if (getNextNonCommentTokenLen() <= 0)
             raiseParseException(
                 MMIOConstants.ERRMSG_PREMATURE_INCLUDE_STMT_EOF);
-        x.includeFileName = nextToken.toString();
+        x.includeFileName = nextTokenString;
         if (!isValidFileName(x.includeFileName))
             raiseParseException(MMIOConstants.ERRMSG_INV_INCLUDE_FILE_NAME,
                 x.includeFileName);
         if (getNextNonCommentTokenLen() <= 0)
             raiseParseException(
                 MMIOConstants.ERRMSG_PREMATURE_INCLUDE_STMT_EOF);
-        if (!nextToken.toString().equals(MMIOConstants.MM_END_FILE_KEYWORD))
+        if (!nextTokenString.equals(MMIOConstants.MM_END_FILE_KEYWORD))
             raiseParseException(MMIOConstants.ERRMSG_INV_INCLUDE_FILE_NAME);
     }
 
@@ -48,12 +48,19 @@
  *     -> Modified loadComment() to grab $t comments for GMFF.
  *     -> Modified for mmj2 Paths Enhancement:
  *        -> add "path" argument to all load() methods.
+ *
+ *     -> Added loadMemoryMapped option and load(File, Tokenizer).
+ *     -> Added loadPipelined option: SrcStmts are read in a
+ *        separate thread (StmtReader) while the previous ones
+ *        are being loaded.
  */
 
 package mmj.mmio;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import mmj.lang.*;
 import mmj.mmio.MMIOConstants.FileContext;
@@ -97,6 +104,14 @@ public class Systemizer {
 
     private boolean loadProofs = MMIOConstants.LOAD_PROOFS_DEFAULT;
 
+    private boolean loadMemoryMapped = MMIOConstants.LOAD_MEMORY_MAPPED_DEFAULT;
+
+    private boolean loadPipelined = MMIOConstants.LOAD_PIPELINED_DEFAULT;
+
+    // non-null during a pipelined load
+    private StmtReader stmtReader = null;
+    private ReadStmt currReadStmt = null;
+
     private final List<String> defaultProofList = new ArrayList<>(
         Arrays.asList(MMIOConstants.MISSING_PROOF_STEP));
 
@@ -130,6 +145,30 @@ public class Systemizer {
         this.loadProofs = loadProofs;
     }
 
+    /**
+     * Sets whether input files named in load() are memory mapped.
+     *
+     * @param loadMemoryMapped If true then 7-bit ASCII files are read using a
+     *            MappedTokenizer.
+     */
+    public void setLoadMemoryMapped(final boolean loadMemoryMapped) {
+        this.loadMemoryMapped = loadMemoryMapped;
+    }
+
+    /**
+     * Sets whether SrcStmts are read and parsed in a separate thread while the
+     * previous ones are loaded into the SystemLoader.
+     * <p>
+     * The statements are loaded in the same order, and the same messages are
+     * produced, as when everything is done in the calling thread.
+     *
+     * @param loadPipelined If true then load() uses a separate thread to run
+     *            the Statementizer.
+     */
+    public void setLoadPipelined(final boolean loadPipelined) {
+        this.loadPipelined = loadPipelined;
+    }
+
     /**
      * Get SystemLoader, as-is.
      *
@@ -148,6 +187,16 @@ public class Systemizer {
         return messages;
     }
 
+    /**
+     * Get the absolute paths of the files loaded so far, include files
+     * included, in the order in which they were opened.
+     *
+     * @return unmodifiable List of absolute file paths.
+     */
+    public List<String> getFilesLoaded() {
+        return Collections.unmodifiableList(filesAlreadyLoaded);
+    }
+
     /**
      * Loads MetaMath source file via {@code SystemLoader}.
      * <p>
@@ -169,30 +218,55 @@ public class Systemizer {
     public Messages load(final File filePath, final Reader readerIn,
         final String sourceId) throws IOException
     {
+        return load(filePath, new Tokenizer(readerIn, sourceId));
+    }
 
-        tokenizer = new Tokenizer(readerIn, sourceId);
+    /**
+     * Loads MetaMath source file via {@code SystemLoader}.
+     *
+     * @param filePath -- File object holding directory path for the input. Used
+     *            to look up Metamath include files. May be null, or absolute
+     *            path, or relative.
+     * @param tokenizerIn -- Tokenizer for the input. Will be closed at EOF.
+     * @return {@code Messages} object, which can be tested to see if any error
+     *         messages were generated
+     * @throws IOException if I/O error
+     */
+    public Messages load(final File filePath, final Tokenizer tokenizerIn)
+        throws IOException
+    {
+
+        tokenizer = tokenizerIn;
         statementizer = new Statementizer(tokenizer);
 
         // init stack of include files
         fileList = new ArrayDeque<>();
 
-        eofReached = false;
-        getNextStmt();
-        if (eofReached && messages.getErrorMessageCnt() == 0)
-            handleParseException(
-                new MMIOException(MMIOConstants.ERRMSG_INPUT_FILE_EMPTY));
-        else {
-            while (!eofReached && !messages.maxErrorMessagesReached()) {
-                loadStmt(filePath);
-                if (loadLimit.endpointReached) {
-                    finalizePrematureEOF();
-                    tokenizer.close();
-                    return messages;
+        if (loadPipelined)
+            stmtReader = new StmtReader(filePath);
+
+        try {
+            eofReached = false;
+            getNextStmt();
+            if (eofReached && messages.getErrorMessageCnt() == 0)
+                handleParseException(
+                    new MMIOException(MMIOConstants.ERRMSG_INPUT_FILE_EMPTY));
+            else {
+                while (!eofReached && !messages.maxErrorMessagesReached()) {
+                    loadStmt(filePath);
+                    if (loadLimit.endpointReached) {
+                        stopStmtReader();
+                        finalizePrematureEOF();
+                        tokenizer.close();
+                        return messages;
+                    }
+                    getNextStmt();
                 }
-                getNextStmt();
+                if (eofReached == true)
+                    finalizeEOF();
             }
-            if (eofReached == true)
-                finalizeEOF();
+        } finally {
+            stopStmtReader();
         }
         tokenizer.close();
         return messages;
@@ -215,7 +289,7 @@ public class Systemizer {
     public Messages load(final File filePath, final String fileNameIn,
         final String sourceId) throws MMIOException
     {
-        Reader readerIn;
+        Tokenizer tokenizerIn = null;
         File f = new File(fileNameIn);
         try {
             f = isInFilesAlreadyLoaded(filesAlreadyLoaded, filePath,
@@ -224,16 +298,24 @@ public class Systemizer {
                 throw new MMIOException(MMIOConstants.ERRMSG_LOAD_REQ_FILE_DUP,
                     fileNameIn);
 
-            readerIn = new BufferedReader(
-                new InputStreamReader(new FileInputStream(f)),
-                MMIOConstants.READER_BUFFER_SIZE);
+            if (loadMemoryMapped && f.isFile())
+                tokenizerIn = MappedTokenizer.open(f, sourceId);
+            if (tokenizerIn == null)
+                tokenizerIn = new Tokenizer(
+                    new BufferedReader(
+                        new InputStreamReader(new FileInputStream(f)),
+                        MMIOConstants.READER_BUFFER_SIZE),
+                    sourceId);
         } catch (final FileNotFoundException e) {
             throw new MMIOException(MMIOConstants.ERRMSG_LOAD_REQ_FILE_NOTFND,
                 f.getAbsolutePath());
+        } catch (final IOException e) {
+            throw new MMIOException(e, MMIOConstants.ERRMSG_LOAD_MISC_IO,
+                f.getAbsolutePath(), e.getMessage());
         }
 
         try {
-            return load(filePath, readerIn, sourceId);
+            return load(filePath, tokenizerIn);
         } catch (final IOException e) {
             throw new MMIOException(e, MMIOConstants.ERRMSG_LOAD_MISC_IO,
                 f.getAbsolutePath(), e.getMessage());
@@ -272,6 +354,10 @@ public class Systemizer {
      * @throws IOException if an error occurred
      */
     private void getNextStmt() throws IOException {
+        if (stmtReader != null) {
+            takeNextStmt();
+            return;
+        }
         currSrcStmt = null;
         while (true)
             try {
@@ -299,6 +385,42 @@ public class Systemizer {
             }
     }
 
+    /**
+     * Pipelined version of getNextStmt(): takes the next SrcStmt from the
+     * StmtReader, which has already handled end of include files and bypassed
+     * statements with errors, reporting the parse errors it found on the way.
+     *
+     * @throws IOException if an error occurred
+     */
+    private void takeNextStmt() throws IOException {
+        currSrcStmt = null;
+        while (true) {
+            currReadStmt = stmtReader.take();
+            if (currReadStmt.srcStmt != null) {
+                currSrcStmt = currReadStmt.srcStmt;
+                loadLimit.checkEndpointReached(currSrcStmt);
+                return;
+            }
+            if (currReadStmt.error == null) {
+                eofReached = true;
+                return;
+            }
+            handleParseException(currReadStmt.error);
+            if (messages.maxErrorMessagesReached()) {
+                eofReached = true;
+                return;
+            }
+        }
+    }
+
+    private void stopStmtReader() {
+        if (stmtReader != null) {
+            stmtReader.stop();
+            stmtReader = null;
+            currReadStmt = null;
+        }
+    }
+
     /**
      * Loads next SrcStmt from Statementizer into memory. The main quirk here is
      * that an unrecognized keyword indicates a programming error. None such
@@ -356,7 +478,12 @@ public class Systemizer {
                     break;
 
                 case MMIOConstants.MM_BEGIN_FILE_KEYWORD:
-                    initIncludeFile(filePath);
+                    // a pipelined load has already switched to the include
+                    // file, only its error (if any) remains to be reported
+                    if (stmtReader == null)
+                        initIncludeFile(filePath, currSrcStmt.includeFileName);
+                    else if (currReadStmt.error != null)
+                        throw currReadStmt.error;
                     break;
 
                 default:
@@ -550,23 +677,23 @@ public class Systemizer {
      * tokenizer reference for use in error reporting.
      *
      * @param filePath the path to this .mm file (not the include)
+     * @param includeFileName the file name from the include statement
      * @throws MMIOException if an error occurred
      * @throws IOException if an error occurred
      */
-    private void initIncludeFile(final File filePath)
-        throws MMIOException, IOException
+    private void initIncludeFile(final File filePath,
+        final String includeFileName) throws MMIOException, IOException
     {
 
-        File f = new File(currSrcStmt.includeFileName);
+        File f = new File(includeFileName);
         try {
             f = isInFilesAlreadyLoaded(filesAlreadyLoaded, filePath,
-                currSrcStmt.includeFileName);
+                includeFileName);
             if (f == null)
-                raiseParseException(
-                    new MMIOException(MMIOConstants.ERRMSG_INCL_FILE_DUP,
-                        currSrcStmt.includeFileName));
+                raiseParseException(new MMIOException(
+                    MMIOConstants.ERRMSG_INCL_FILE_DUP, includeFileName));
             tokenizer = IncludeFile.initIncludeFile(fileList, f,
-                currSrcStmt.includeFileName, statementizer);
+                includeFileName, statementizer);
         } catch (final FileNotFoundException e) {
             raiseParseException(new MMIOException(
                 MMIOConstants.ERRMSG_INCL_FILE_NOTFND, f.getAbsolutePath()));
@@ -634,12 +761,16 @@ public class Systemizer {
     }
 
     private void handleLangException(final MMJException e) {
-        messages.accumException(tokenizer.addContext(e));
+        messages.accumException(stmtReader == null ? tokenizer.addContext(e)
+            : currReadStmt.addContext(e));
     }
 
     private void handleLangEOFException(final MMJException e) {
+        // the StmtReader may still own the Tokenizer: use the position saved
+        // with the end of input
         messages.accumException(e.addContext(MMIOConstants.EOF_ERRMSG)
-            .addContext(new FileContext(tokenizer.getSourceId())));
+            .addContext(new FileContext(stmtReader == null
+                ? tokenizer.getSourceId() : currReadStmt.sourceId)));
     }
 
     private void handleParseException(final MMIOException e) {
@@ -652,6 +783,181 @@ public class Systemizer {
         throw tokenizer.addContext(e);
     }
 
+    /**
+     * A SrcStmt read by the StmtReader, or a parse error found instead, along
+     * with the input position to be used for errors found while loading it.
+     * A ReadStmt with neither marks the end of the input.
+     */
+    private static class ReadStmt {
+        final SrcStmt srcStmt;
+        final MMIOException error;
+        final String sourceId;
+        final long lineNbr;
+        final long columnNbr;
+        final long charNbr;
+
+        ReadStmt(final SrcStmt srcStmt, final MMIOException error,
+            final Tokenizer t)
+        {
+            this.srcStmt = srcStmt;
+            this.error = error;
+            sourceId = t.getSourceId();
+            lineNbr = t.getCurrentLineNbr();
+            columnNbr = t.getCurrentColumnNbr();
+            charNbr = t.getCurrentCharNbr();
+        }
+
+        /** Same as {@code Tokenizer.addContext()} at the saved position. */
+        <T extends MMJException> T addContext(final T e) {
+            if (sourceId != null)
+                e.addContext(new FileContext(sourceId));
+            return MMJException.addContext(
+                new MMIOConstants.LineColumnContext(lineNbr, columnNbr,
+                    charNbr),
+                e);
+        }
+    }
+
+    /**
+     * Runs the Statementizer in a thread of its own for a pipelined load.
+     * <p>
+     * While it runs it is the only user of the Statementizer, the Tokenizers
+     * and the include file stack. It does what getNextStmt() and
+     * initIncludeFile() do in a non-pipelined load, except that the parse
+     * errors are handed over in sequence with the statements, to be reported
+     * by the loading thread. Reading stops at end of input or when the
+     * loading thread calls stop().
+     */
+    private class StmtReader implements Runnable {
+        private final File filePath;
+        private final Thread thread;
+        private final BlockingQueue<List<ReadStmt>> queue = new ArrayBlockingQueue<>(
+            MMIOConstants.LOAD_PIPELINE_QUEUE_SIZE);
+
+        // used by the reading thread only
+        private List<ReadStmt> batch = newBatch();
+
+        // used by the loading thread only
+        private Iterator<ReadStmt> taken = Collections.emptyIterator();
+
+        // exception which ended the reading thread, if any
+        private volatile Throwable failure = null;
+
+        StmtReader(final File filePath) {
+            this.filePath = filePath;
+            thread = new Thread(this, "Systemizer.StmtReader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private List<ReadStmt> newBatch() {
+            return new ArrayList<>(MMIOConstants.LOAD_PIPELINE_BATCH_SIZE);
+        }
+
+        @Override
+        public void run() {
+            try {
+                readStmts();
+                batch.add(new ReadStmt(null, null, tokenizer));
+            } catch (final InterruptedException e) {
+                return;
+            } catch (final IOException | RuntimeException | Error e) {
+                failure = e;
+            }
+            try {
+                queue.put(batch);
+                if (failure != null)
+                    queue.put(newBatch());
+            } catch (final InterruptedException e) {}
+        }
+
+        private void readStmts() throws IOException, InterruptedException {
+            while (true)
+                try {
+                    final SrcStmt x = statementizer.getStmt();
+                    if (x == null) {
+                        if (fileList.isEmpty())
+                            return;
+                        termIncludeFile();
+                        continue;
+                    }
+                    final ReadStmt r;
+                    if (x.keyword.equals(MMIOConstants.MM_BEGIN_FILE_KEYWORD))
+                    {
+                        MMIOException error = null;
+                        try {
+                            initIncludeFile(filePath, x.includeFileName);
+                        } catch (final MMIOException e) {
+                            error = e;
+                        }
+                        r = new ReadStmt(x, error, tokenizer);
+                    }
+                    else
+                        r = new ReadStmt(x, null, tokenizer);
+                    add(r);
+                } catch (final MMIOException e) {
+                    add(new ReadStmt(null, e, tokenizer));
+                    statementizer.bypassErrorStmt();
+                }
+        }
+
+        private void add(final ReadStmt r) throws InterruptedException {
+            batch.add(r);
+            if (batch.size() >= MMIOConstants.LOAD_PIPELINE_BATCH_SIZE) {
+                queue.put(batch);
+                batch = newBatch();
+            }
+        }
+
+        /**
+         * Returns the next ReadStmt, waiting for the reading thread if
+         * necessary.
+         *
+         * @return the next ReadStmt.
+         * @throws IOException if the reading thread ended with an IOException,
+         *             or the wait was interrupted.
+         */
+        ReadStmt take() throws IOException {
+            while (!taken.hasNext())
+                try {
+                    taken = queue.take().iterator();
+                    if (!taken.hasNext())
+                        rethrowFailure();
+                } catch (final InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            return taken.next();
+        }
+
+        private void rethrowFailure() throws IOException {
+            final Throwable t = failure;
+            if (t instanceof IOException)
+                throw (IOException)t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            if (t instanceof Error)
+                throw (Error)t;
+        }
+
+        /**
+         * Ends the reading thread and waits for it, after which the loading
+         * thread may use the Statementizer, Tokenizers and include file stack
+         * again.
+         */
+        void stop() {
+            thread.interrupt();
+            boolean interrupted = false;
+            while (thread.isAlive())
+                try {
+                    thread.join();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
     private class LoadLimit {
         public int loadEndpointStmtNbr = 0;
         public String loadEndpointStmtLabel = null;
@@ -14,6 +14,9 @@
  *
  * Version 0.03 -- 08/01/2008
  * --> Modified close() to mask IOException for ease of use.
+ *
+ * --> Added protected constructor for MappedTokenizer.
+ * --> Added getTokenString() for Statementizer.
  */
 
 package mmj.mmio;
@@ -102,6 +105,17 @@ public class Tokenizer implements Closeable {
             nextChar &= 0x00ff;
     }
 
+    /**
+     * Constructor for subclasses reading their input in some other way. They
+     * must override every public method.
+     *
+     * @param s Source Id Text, such as filename or test ID. May be empty string
+     *            if N/A. Used solely for diagnostic messages.
+     */
+    protected Tokenizer(final String s) {
+        sourceId = s;
+    }
+
     /**
      * Constructs Tokenizer from a Reader, with "skipahead n", where n =
      * nbrCharsToBypass.
@@ -178,6 +192,24 @@ public class Tokenizer implements Closeable {
         return len;
     }
 
+    /**
+     * Gets next MetaMath token from the input file as a String.
+     * <p>
+     * Same as {@code getToken()} into an empty {@code strBuf}. MappedTokenizer
+     * overrides it to return the String of an earlier token with the same
+     * characters instead of building a new one.
+     *
+     * @param strBuf work {@code StringBuilder}, emptied first.
+     * @return the token, or null if EOF reached.
+     * @throws IOException if I/O error
+     */
+    public String getTokenString(final StringBuilder strBuf)
+        throws IOException
+    {
+        strBuf.setLength(0);
+        return getToken(strBuf, 0) < 0 ? null : strBuf.toString();
+    }
+
     /**
      * Gets next chunk of whitespace from MetaMath file and stores it in
      * {@code strBuf}.
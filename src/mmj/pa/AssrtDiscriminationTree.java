@@ -0,0 +1,272 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.pa;
+
+import java.util.*;
+
+import mmj.lang.*;
+
+/**
+ * AssrtDiscriminationTree is an index of assertions by the parse trees of
+ * their formulas, used by ProofUnifier to find the assertions which may
+ * unify with a proof step's formula without trying every one of them.
+ * <p>
+ * Each assertion's parse tree is stored as the path of its ParseNode stmts
+ * in preorder, with every VarHyp node replaced by a wildcard (a variable of
+ * the assertion can be substituted with any sub-tree). A lookup follows the
+ * preorder of the proof step's parse tree down the index, taking both the
+ * branch for the node's stmt and the wildcard branch, which skips over the
+ * node's entire sub-tree.
+ * <p>
+ * The lookup is a filter only: it does not look at Type Codes or at repeated
+ * occurrences of a variable, which are still checked by
+ * ParseTree.unifyWithTree(). But an assertion which is not returned
+ * cannot unify with the formula.
+ * <p>
+ * For StepUnifier, which can also substitute the Work Vars of the proof step,
+ * the lookup can treat each Work Var node of the step's parse tree as a
+ * wildcard too: it then skips one entire sub-tree of the index, using the
+ * number of children stored with each stmt.
+ */
+public class AssrtDiscriminationTree {
+
+    private final Node root = new Node();
+
+    private int size;
+
+    /**
+     * Construct the index for a list of assertions.
+     *
+     * @param assrtList assertions to be indexed.
+     */
+    public AssrtDiscriminationTree(final List<? extends Assrt> assrtList) {
+        for (final Assrt assrt : assrtList)
+            add(assrt);
+    }
+
+    /**
+     * Add an assertion to the index.
+     * <p>
+     * An assertion without a parse tree is stored as a single wildcard so
+     * that it is returned by every lookup.
+     *
+     * @param assrt the Assrt to add.
+     */
+    public void add(final Assrt assrt) {
+        Node node = root;
+        final ParseTree parseTree = assrt.getExprParseTree();
+        if (parseTree == null)
+            node = node.getWildcard();
+        else {
+            final Deque<ParseNode> stack = new ArrayDeque<>();
+            stack.push(parseTree.getRoot());
+            while (!stack.isEmpty()) {
+                final ParseNode parseNode = stack.pop();
+                if (parseNode.stmt instanceof VarHyp)
+                    node = node.getWildcard();
+                else {
+                    node = node.getChild(parseNode.stmt,
+                        parseNode.child.length);
+                    for (int i = parseNode.child.length - 1; i >= 0; i--)
+                        stack.push(parseNode.child[i]);
+                }
+            }
+        }
+        node.addAssrt(assrt);
+        size++;
+    }
+
+    /**
+     * Returns the number of assertions in the index.
+     *
+     * @return number of assertions added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the assertions whose formulas may unify with a parse tree.
+     * <p>
+     * The VarHyp nodes of the input parse tree (including Work Vars) are
+     * treated as fixed symbols, as in ParseNode.unifyWithSubtree(). The
+     * returned list is in no particular order.
+     *
+     * @param parseTree the parse tree of a proof step formula.
+     * @return list of candidate Assrts.
+     */
+    public List<Assrt> getCandidates(final ParseTree parseTree) {
+        return getCandidates(parseTree, false);
+    }
+
+    /**
+     * Returns the assertions whose formulas may unify with a parse tree,
+     * optionally treating the Work Vars of the parse tree as wildcards.
+     * <p>
+     * The other VarHyp nodes of the input parse tree are treated as fixed
+     * symbols. The returned list is in no particular order, without
+     * duplicates.
+     *
+     * @param parseTree the parse tree of a proof step formula.
+     * @param workVarWildcards true if a WorkVarHyp node may match any
+     *            sub-tree of an assertion's formula, as in StepUnifier.
+     * @return list of candidate Assrts.
+     */
+    public List<Assrt> getCandidates(final ParseTree parseTree,
+        final boolean workVarWildcards)
+    {
+        final List<Stmt> preorder = new ArrayList<>();
+        final List<Integer> subtreeEnd = new ArrayList<>();
+        loadPreorder(parseTree.getRoot(), preorder, subtreeEnd);
+        final int len = preorder.size();
+
+        // with Work Var wildcards the same leaf may be reached twice
+        final Collection<Assrt> candidates = workVarWildcards
+            ? Collections.newSetFromMap(new IdentityHashMap<>())
+            : new ArrayList<>();
+        final Deque<Node> nodeStack = new ArrayDeque<>();
+        final Deque<Integer> posStack = new ArrayDeque<>();
+        // number of index sub-trees still to be skipped for a Work Var
+        final Deque<Integer> skipStack = new ArrayDeque<>();
+        nodeStack.push(root);
+        posStack.push(0);
+        skipStack.push(0);
+        while (!nodeStack.isEmpty()) {
+            final Node node = nodeStack.pop();
+            final int pos = posStack.pop();
+            final int skip = skipStack.pop();
+            if (skip > 0) {
+                if (node.wildcard != null) {
+                    nodeStack.push(node.wildcard);
+                    posStack.push(pos);
+                    skipStack.push(skip - 1);
+                }
+                for (int i = 0; i < node.cnt; i++) {
+                    nodeStack.push(node.next[i]);
+                    posStack.push(pos);
+                    skipStack.push(skip - 1 + node.nbrChildren[i]);
+                }
+                continue;
+            }
+            if (pos == len) {
+                for (int i = 0; i < node.assrtCnt; i++)
+                    candidates.add(node.assrt[i]);
+                continue;
+            }
+            if (workVarWildcards
+                && preorder.get(pos) instanceof WorkVarHyp)
+            {
+                nodeStack.push(node);
+                posStack.push(subtreeEnd.get(pos));
+                skipStack.push(1);
+                continue;
+            }
+            if (node.wildcard != null) {
+                nodeStack.push(node.wildcard);
+                posStack.push(subtreeEnd.get(pos));
+                skipStack.push(0);
+            }
+            final Node next = node.findChild(preorder.get(pos));
+            if (next != null) {
+                nodeStack.push(next);
+                posStack.push(pos + 1);
+                skipStack.push(0);
+            }
+        }
+        return candidates instanceof List ? (List<Assrt>)candidates
+            : new ArrayList<>(candidates);
+    }
+
+    private static void loadPreorder(final ParseNode parseNode,
+        final List<Stmt> preorder, final List<Integer> subtreeEnd)
+    {
+        final int pos = preorder.size();
+        preorder.add(parseNode.stmt);
+        subtreeEnd.add(null);
+        if (parseNode.child != null)
+            for (final ParseNode child : parseNode.child)
+                loadPreorder(child, preorder, subtreeEnd);
+        subtreeEnd.set(pos, preorder.size());
+    }
+
+    /**
+     * One position in the index. The children are kept in arrays sorted by
+     * MObj.seq because most nodes have only a few of them, along with the
+     * number of ParseNode children of each key stmt.
+     */
+    private static class Node {
+        private static final Stmt[] NO_KEYS = new Stmt[0];
+        private static final Node[] NO_NODES = new Node[0];
+        private static final int[] NO_COUNTS = new int[0];
+
+        Stmt[] key = NO_KEYS;
+        Node[] next = NO_NODES;
+        int[] nbrChildren = NO_COUNTS;
+        int cnt;
+
+        Node wildcard;
+
+        Assrt[] assrt;
+        int assrtCnt;
+
+        Node findChild(final Stmt stmt) {
+            final int i = search(stmt);
+            return i < 0 ? null : next[i];
+        }
+
+        Node getChild(final Stmt stmt, final int stmtNbrChildren) {
+            int i = search(stmt);
+            if (i >= 0)
+                return next[i];
+            i = -i - 1;
+            if (cnt == key.length) {
+                final int newLength = cnt == 0 ? 1 : cnt * 2;
+                key = Arrays.copyOf(key, newLength);
+                next = Arrays.copyOf(next, newLength);
+                nbrChildren = Arrays.copyOf(nbrChildren, newLength);
+            }
+            System.arraycopy(key, i, key, i + 1, cnt - i);
+            System.arraycopy(next, i, next, i + 1, cnt - i);
+            System.arraycopy(nbrChildren, i, nbrChildren, i + 1, cnt - i);
+            key[i] = stmt;
+            next[i] = new Node();
+            nbrChildren[i] = stmtNbrChildren;
+            cnt++;
+            return next[i];
+        }
+
+        Node getWildcard() {
+            if (wildcard == null)
+                wildcard = new Node();
+            return wildcard;
+        }
+
+        void addAssrt(final Assrt a) {
+            if (assrt == null)
+                assrt = new Assrt[1];
+            else if (assrtCnt == assrt.length)
+                assrt = Arrays.copyOf(assrt, assrtCnt * 2);
+            assrt[assrtCnt++] = a;
+        }
+
+        private int search(final Stmt stmt) {
+            final int seq = stmt.getSeq();
+            int lo = 0;
+            int hi = cnt - 1;
+            while (lo <= hi) {
+                final int mid = lo + hi >>> 1;
+                final int midSeq = key[mid].getSeq();
+                if (midSeq < seq)
+                    lo = mid + 1;
+                else if (midSeq > seq)
+                    hi = mid - 1;
+                else
+                    // a temporary object may reuse a seq
+                    return key[mid] == stmt ? mid : -(mid + 1);
+            }
+            return -(lo + 1);
+        }
+    }
+}
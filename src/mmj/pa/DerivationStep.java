@@ -86,7 +86,7 @@ public class DerivationStep extends ProofStepStmt {
 
     private String[] hypStep;
 
-    private String logHypsL1HiLoKey;
+    private long logHypsL1HiLoKey;
     private int logHypsMaxDepth;
 
     public MMJException heldDjErrorMessage;
@@ -635,7 +635,7 @@ public class DerivationStep extends ProofStepStmt {
             logHypsMaxDepth = computeLogHypsMaxDepth();
         }
         else {
-            logHypsL1HiLoKey = "";
+            logHypsL1HiLoKey = 0;
             logHypsMaxDepth = 0;
         }
     }
@@ -1017,14 +1017,12 @@ public class DerivationStep extends ProofStepStmt {
                 nbrExpectedHyps, getRefLabel());
     }
 
-    private String computeLogHypsL1HiLoKey() {
-        String hiLoKey = "";
+    private long computeLogHypsL1HiLoKey() {
+        long hiLoKey = 0;
 
         if (hyp.length > 0) {
             Stmt hStmt;
             int n;
-            String low = null;
-            String high = null;
             int lowNbr = Integer.MAX_VALUE;
             int highNbr = Integer.MIN_VALUE;
             for (final ProofStepStmt element : hyp) {
@@ -1038,16 +1036,12 @@ public class DerivationStep extends ProofStepStmt {
                 if (hStmt instanceof VarHyp)
                     return hiLoKey;
                 n = hStmt.getSeq();
-                if (n < lowNbr) {
+                if (n < lowNbr)
                     lowNbr = n;
-                    low = hStmt.getLabel();
-                }
-                if (n > highNbr) {
+                if (n > highNbr)
                     highNbr = n;
-                    high = hStmt.getLabel();
-                }
             }
-            hiLoKey = high + " " + low;
+            hiLoKey = Assrt.hiLoKey(highNbr, lowNbr);
         }
         return hiLoKey;
     }
@@ -1090,7 +1084,7 @@ public class DerivationStep extends ProofStepStmt {
         this.hypStep = hypStep;
     }
 
-    public String getLogHypsL1HiLoKey() {
+    public long getLogHypsL1HiLoKey() {
         return logHypsL1HiLoKey;
     }
 
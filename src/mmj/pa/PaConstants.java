@@ -290,6 +290,15 @@ public class PaConstants {
 
     public static final int UNIFIER_MAX_VAR_HYPS = 500;
 
+    /**
+     * UNIFY_MEMO_MAX_ENTRIES = 10000
+     * <p>
+     * Maximum number of steps without Ref whose unifying assertion is
+     * remembered by ProofUnifier from one Unify request to the next. The least
+     * recently used entries are dropped.
+     */
+    public static final int UNIFY_MEMO_MAX_ENTRIES = 10000;
+
     /**
      * DOT_STEP_CAPTION = ".Step"
      * <p>
@@ -737,6 +746,12 @@ public class PaConstants {
      */
     public static final boolean PROOF_ASST_EXCLUDE_DISCOURAGED_DEFAULT = true;
 
+    /**
+     * Scan the unification candidates of the empty Ref and auto steps on all
+     * available processors (false).
+     */
+    public static final boolean PROOF_ASST_UNIFY_PARALLEL_DEFAULT = false;
+
     /**
      * Default value for StepSelectorMaxResults RunParm.
      * <p>
@@ -2298,6 +2313,15 @@ public class PaConstants {
     public static final ErrorCode ERRMSG_PA_TIME_TOP_HEADER = of("I-PA-0128"
         + " Here is the list of most time consuming theorem unifications: ");
 
+    public static final ErrorCode ERRMSG_ASSRT_TREE_BATCH_TEST_MISMATCH = of(
+        "E-PA-0129 AssrtTreeBatchTest: Formula parse tree = %s. Work Vars"
+            + " as wildcards = %s. Matching assertions not returned = %s."
+            + " Other assertions returned = %s. Duplicates returned = %d.");
+
+    public static final ErrorCode ERRMSG_ASSRT_TREE_BATCH_TEST_DONE = of(
+        "I-PA-0130 AssrtTreeBatchTest: %d lookups checked against a scan"
+            + " of %d assertions.");
+
     // ----------------------------------------------------------
     // Messages from ProofAsstGUI.java
     // ----------------------------------------------------------
@@ -275,6 +275,8 @@ public class ProofAsst implements TheoremLoaderCommitListener {
         if (!getInitializedOK())
             return; // the stmtTbl data has not been stored yet
 
+        proofAsstPreferences.getSearchMgr().invalidateSearchData();
+
         final List<Theorem> listOfAssrtAddsSortedBySeq = mmtTheoremSet
             .buildSortedAssrtListOfAdds(MObj.SEQ);
 
@@ -1262,6 +1264,120 @@ public class ProofAsst implements TheoremLoaderCommitListener {
         }
     }
 
+    /**
+     * Checks the AssrtDiscriminationTree used by ProofUnifier and
+     * StepSelectorSearch against a scan of the unification search list.
+     * <p>
+     * The formula of every assertion in the list, and every sub-tree of it,
+     * is looked up as is; then each formula is looked up with each of its
+     * sub-trees in turn replaced by a Work Var of the same Type Code, with
+     * Work Vars as wildcards. The candidates must be exactly the assertions
+     * whose parse trees match the formula's, a VarHyp of the assertion
+     * matching any sub-tree (and a Work Var of the formula any sub-tree of
+     * the assertion), which any assertion which unifies with the formula
+     * does.
+     *
+     * @param messages Messages object for output messages.
+     */
+    public void assrtTreeBatchTest(final Messages messages) {
+        final List<Assrt> assrtList = getSortedAssrtSearchList();
+        final AssrtDiscriminationTree assrtTree = new AssrtDiscriminationTree(
+            assrtList);
+        final WorkVarManager workVarManager = proofAsstPreferences
+            .getWorkVarManager();
+        int nbrLookups = 0;
+        for (final Assrt assrt : assrtList) {
+            final ParseTree parseTree = assrt.getExprParseTree();
+            if (parseTree == null)
+                continue;
+            final List<ParseNode> nodes = new ArrayList<>();
+            loadPreorder(parseTree.getRoot(), nodes);
+            for (final ParseNode node : nodes) {
+                nbrLookups++;
+                checkAssrtTreeCandidates(messages, assrtList, assrtTree,
+                    new ParseTree(node), false);
+                final WorkVarHyp workVarHyp;
+                try {
+                    workVarHyp = workVarManager
+                        .allocWorkVarHyp(node.stmt.getTyp());
+                } catch (final VerifyException e) {
+                    continue; // no Work Vars for the Type Code
+                }
+                nbrLookups++;
+                checkAssrtTreeCandidates(messages, assrtList, assrtTree,
+                    new ParseTree(replaceNode(parseTree.getRoot(), node,
+                        new ParseNode(workVarHyp))),
+                    true);
+                workVarManager.dealloc(workVarHyp);
+            }
+        }
+        messages.accumMessage(PaConstants.ERRMSG_ASSRT_TREE_BATCH_TEST_DONE,
+            nbrLookups, assrtList.size());
+    }
+
+    private static void checkAssrtTreeCandidates(final Messages messages,
+        final List<Assrt> assrtList, final AssrtDiscriminationTree assrtTree,
+        final ParseTree parseTree, final boolean workVarWildcards)
+    {
+        final List<Assrt> candidates = assrtTree.getCandidates(parseTree,
+            workVarWildcards);
+        final Set<Assrt> candidateSet = new HashSet<>(candidates);
+        final List<String> missing = new ArrayList<>();
+        final List<String> extra = new ArrayList<>();
+        for (final Assrt a : assrtList) {
+            final ParseTree t = a.getExprParseTree();
+            final boolean matches = t == null
+                || assrtTreeMatch(t.getRoot(), parseTree.getRoot());
+            if (matches && !candidateSet.contains(a))
+                missing.add(a.getLabel());
+            else if (!matches && candidateSet.contains(a))
+                extra.add(a.getLabel());
+        }
+        if (!missing.isEmpty() || !extra.isEmpty()
+            || candidateSet.size() != candidates.size())
+            messages.accumMessage(
+                PaConstants.ERRMSG_ASSRT_TREE_BATCH_TEST_MISMATCH, parseTree,
+                workVarWildcards, missing, extra,
+                candidates.size() - candidateSet.size());
+    }
+
+    private static boolean assrtTreeMatch(final ParseNode assrtNode,
+        final ParseNode node)
+    {
+        if (assrtNode.stmt instanceof VarHyp
+            || node.stmt instanceof WorkVarHyp)
+            return true;
+        if (assrtNode.stmt != node.stmt)
+            return false;
+        if (assrtNode.child != null)
+            for (int i = 0; i < assrtNode.child.length; i++)
+                if (!assrtTreeMatch(assrtNode.child[i], node.child[i]))
+                    return false;
+        return true;
+    }
+
+    private static void loadPreorder(final ParseNode node,
+        final List<ParseNode> nodes)
+    {
+        nodes.add(node);
+        if (node.child != null)
+            for (final ParseNode child : node.child)
+                loadPreorder(child, nodes);
+    }
+
+    private static ParseNode replaceNode(final ParseNode node,
+        final ParseNode target, final ParseNode replacement)
+    {
+        if (node == target)
+            return replacement;
+        if (node.child == null)
+            return node;
+        final ParseNode[] child = new ParseNode[node.child.length];
+        for (int i = 0; i < child.length; i++)
+            child[i] = replaceNode(node.child[i], target, replacement);
+        return new ParseNode(node.stmt, child);
+    }
+
     /**
      * Export Theorem proofs to a given Writer.
      * <p>
@@ -207,6 +207,11 @@ public class ProofAsstPreferences {
      * True if discouraged theorems are being excluded from unification search
      */
     public Setting<Boolean> excludeDiscouraged;
+    /**
+     * True if the unification candidates of the empty Ref and auto steps are
+     * scanned on all available processors.
+     */
+    public Setting<Boolean> unifyParallel;
 
     public Setting<Integer> stepSelectorMaxResults;
     public Setting<Boolean> stepSelectorShowSubstitutions;
@@ -354,6 +359,9 @@ public class ProofAsstPreferences {
         excludeDiscouraged = store.addSetting(PFX + "excludeDiscouraged",
             PaConstants.PROOF_ASST_EXCLUDE_DISCOURAGED_DEFAULT);
 
+        unifyParallel = store.addSetting(PFX + "unifyParallel",
+            PaConstants.PROOF_ASST_UNIFY_PARALLEL_DEFAULT);
+
         stepSelectorMaxResults = setIntBound(
             store.addSetting(PFX + "stepSelectorMaxResults",
                 PaConstants.STEP_SELECTOR_MAX_RESULTS_DEFAULT),
@@ -226,8 +226,8 @@ public abstract class ProofStepStmt extends ProofWorkStmt {
     }
 
     /**
-     * Updates the ProofStepStmt ParseTree, resetting maxDepth and levelOneTwo
-     * data.
+     * Updates the ProofStepStmt ParseTree, resetting maxDepth, levelOneTwo and
+     * flattened tree data.
      *
      * @param parseTree the new ParseTree for the step.
      */
@@ -235,6 +235,7 @@ public abstract class ProofStepStmt extends ProofWorkStmt {
         if (parseTree != null) {
             parseTree.resetMaxDepth();
             parseTree.resetLevelOneTwo();
+            parseTree.resetFlatTree();
         }
         formulaParseTree = parseTree;
     }
@@ -464,7 +465,9 @@ public abstract class ProofStepStmt extends ProofWorkStmt {
                 break;
         }
 
+        final Formula oldFormula = formula;
         formula = new Formula(symList);
+        w.stepFormulaChanged(this, oldFormula);
 
         // keep track of step line number here because
         // we are processing the raw input tokens here.
@@ -706,7 +709,9 @@ public abstract class ProofStepStmt extends ProofWorkStmt {
     }
 
     public void setFormula(final Formula formula) {
+        final Formula oldFormula = this.formula;
         this.formula = formula;
+        w.stepFormulaChanged(this, oldFormula);
     }
 
     public ParseNode getCanonicalForm() {
@@ -60,6 +60,14 @@
  *       parameter, and added update of it for TheoremLoader
  *       updates (saving total rebuilds for each TheoremLoader
  *       update.)
+ *
+ *     - Added assrtTree, an AssrtDiscriminationTree over the
+ *       unifySearchList formulas, so that the empty Ref and
+ *       auto step unification passes only try the assertions
+ *       which can possibly unify with each step's formula.
+ *     - Added ProofAsstUnifyParallel option: the candidates of
+ *       those passes are first tried on all processors by
+ *       scan-only copies of ProofUnifier (scanInParallel()).
  */
 
 package mmj.pa;
@@ -68,6 +76,7 @@ import static mmj.pa.ProofWorksheet.addLabelContext;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.stream.IntStream;
 
 import mmj.lang.*;
 import mmj.pa.MacroManager.CallbackType;
@@ -158,6 +167,9 @@ public class ProofUnifier {
         return unifySearchList;
     }
 
+    // index of the unifySearchList formulas
+    private AssrtDiscriminationTree assrtTree;
+
     private boolean tablesInitialized = false;
 
     public boolean getTablesInitialized() {
@@ -168,8 +180,6 @@ public class ProofUnifier {
     // in VerifyProofs for a single step --
     private List<DjVars> holdSoftDjVarsErrorList;
 
-    private final Deque<ParseNode> unifyNodeStack = new ArrayDeque<>();
-
     private final Deque<ParseNode> compareNodeStack = new ArrayDeque<>();
 
     private TransformationManager trManager;
@@ -203,6 +213,15 @@ public class ProofUnifier {
     private ProofStepStmt[] derivStepHypArray;
     private final static ParseNode[] substAnswerImpossible = new ParseNode[0];
 
+    /**
+     * The assertions which unified with steps having no Ref in earlier Unify
+     * requests, by step and hyp formulas, so that the same worksheet lines are
+     * not searched for again on each request (see
+     * emptyRefStepUnificationMethod()). Shared with the scan-only copies,
+     * which do not use it.
+     */
+    private final Map<UnifyMemoKey, Assrt> unifyMemo;
+
     /**
      * The map from hypothesis substitution "level" into the number of variable
      * which become substituted at that level. The level is the number of
@@ -228,6 +247,13 @@ public class ProofUnifier {
      * ***********************************************************/
     private final StepUnifier stepUnifier;
 
+    /**
+     * True in the copies used by UnifyCandidates.scanInParallel(): the
+     * unification stops where the step would be marked unified, and neither
+     * the step nor the worksheet is updated.
+     */
+    private final boolean scanOnly;
+
     /**
      * Standard constructor for set up.
      *
@@ -241,6 +267,60 @@ public class ProofUnifier {
 
         stepUnifier = proofAsstPreferences.getStepUnifierInstance();
 
+        unifyMemo = new LinkedHashMap<UnifyMemoKey, Assrt>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                final Map.Entry<UnifyMemoKey, Assrt> eldest)
+            {
+                return size() > PaConstants.UNIFY_MEMO_MAX_ENTRIES;
+            }
+        };
+
+        scanOnly = false;
+    }
+
+    /**
+     * Construct a scan-only copy of a ProofUnifier for one worker thread of
+     * UnifyCandidates.scanInParallel(), with its own work areas.
+     *
+     * @param proofUnifier the ProofUnifier doing the unification.
+     */
+    private ProofUnifier(final ProofUnifier proofUnifier) {
+        proofAsstPreferences = proofUnifier.proofAsstPreferences;
+        logicalSystem = proofUnifier.logicalSystem;
+        grammar = proofUnifier.grammar;
+        verifyProofs = proofUnifier.verifyProofs;
+        stepUnifier = proofUnifier.stepUnifier;
+        unifyMemo = proofUnifier.unifyMemo;
+
+        provableLogicStmtTyp = proofUnifier.provableLogicStmtTyp;
+        proofWorksheet = proofUnifier.proofWorksheet;
+        messages = proofUnifier.messages;
+        holdSoftDjVarsErrorList = new ArrayList<>();
+
+        scanOnly = true;
+    }
+
+    /**
+     * Scan-only unification of a step with one assertion.
+     * <p>
+     * Returns false only if unifyStepWithoutWorkVars() would reject the
+     * assertion without updating anything; the Distinct Variables checks
+     * are left to the serial pass.
+     *
+     * @param a the candidate assertion.
+     * @param d the derivation step.
+     * @return true if the assertion is to be tried in the serial pass.
+     */
+    private boolean scanOneCandidate(final Assrt a, final DerivationStep d) {
+        assrt = a;
+        assrtNbrLogHyps = assrt.getLogHypArrayLength();
+        derivStep = d;
+        try {
+            return unifyStepWithoutWorkVars().possible();
+        } catch (final VerifyException e) {
+            return true; // the serial pass will report it
+        }
     }
 
     /**
@@ -266,6 +346,8 @@ public class ProofUnifier {
 
         provableLogicStmtTyp = getProvableLogicStmtTyp();
 
+        unifyMemo.clear();
+
         final Map<String, Stmt> stmtTbl = logicalSystem.getStmtTbl();
 
         final List<Assrt> unifySearchListUnsorted = new ArrayList<>(
@@ -304,6 +386,8 @@ public class ProofUnifier {
 
         Collections.sort(unifySearchList, MObj.SEQ);
 
+        assrtTree = new AssrtDiscriminationTree(unifySearchList);
+
         stepSelectorSearch = new StepSelectorSearch(proofAsstPreferences,
             verifyProofs, provableLogicStmtTyp, unifySearchList);
 
@@ -332,6 +416,8 @@ public class ProofUnifier {
 
         stepSelectorSearch
             .mergeListOfAssrtAddsSortedBySeq(listOfAssrtAddsSortedBySeq);
+
+        unifyMemo.clear();
     }
 
     /**
@@ -629,7 +715,10 @@ public class ProofUnifier {
 
         final Map<DerivationStep, UnifyResult> autoBestResults = new HashMap<>();
 
-        for (final Assrt a : unifySearchList) {
+        final UnifyCandidates candidates = new UnifyCandidates(autoDerivSteps,
+            autoDerivStepsCount, maxSeq);
+
+        for (final Assrt a : candidates.assrtList) {
             if (a.getSeq() >= maxSeq)
                 // halt the scan -- the list is sorted!!!
                 break;
@@ -645,6 +734,9 @@ public class ProofUnifier {
                 derivStep = autoDerivSteps[i];
                 assert derivStep.isAutoStep();
 
+                if (!candidates.isCandidate(assrt, derivStep))
+                    continue;
+
                 if (derivStep.getRef() != null)
                     if (assrt != derivStep.getRef())
                         continue;
@@ -742,7 +834,14 @@ public class ProofUnifier {
         final int maxSeq = proofWorksheet.getMaxSeq();
         int nbrCompleted = 0;
 
-        for (final Assrt a : unifySearchList) {
+        unifyMemoizedSteps(maxSeq);
+        if (derivStepsWithEmptyRefCount == 0)
+            return;
+
+        final UnifyCandidates candidates = new UnifyCandidates(
+            derivStepsWithEmptyRef, derivStepsWithEmptyRefCount, maxSeq);
+
+        for (final Assrt a : candidates.assrtList) {
             if (a.getSeq() >= maxSeq)
                 // halt the scan -- the list is sorted!!!
                 break;
@@ -758,7 +857,10 @@ public class ProofUnifier {
                 derivStep = derivStepsWithEmptyRef[i];
                 assert !derivStep.isAutoStep();
 
-                if (derivStep.getHypNumber() == assrtNbrLogHyps) {
+                if (derivStep.getHypNumber() == assrtNbrLogHyps
+                    && candidates.isCandidate(assrt, derivStep))
+                {
+                    final boolean first = derivStep.unificationStatus == UnificationStatus.NotUnified;
                     // this property could be changed after the next call, so
                     // save it
                     final UnifyResult res = unifyStepWithoutWorkVars();
@@ -767,6 +869,8 @@ public class ProofUnifier {
                             // stick fork in it, this one is done!
                             derivStepsWithEmptyRef[i] = null;
                             nbrCompleted++;
+                            if (first)
+                                memoizeStep();
                         }
                 }
                 continue;
@@ -785,6 +889,223 @@ public class ProofUnifier {
             break;
         }
     }
+
+    /**
+     * Tries each step without Ref with the assertion which unified with it in
+     * an earlier Unify request, if any (see unifyMemo).
+     * <p>
+     * A step is only remembered when the first assertion of the scan to unify
+     * with it had no Distinct Variables errors, so no assertion earlier in the
+     * unifySearchList can unify with the same formulas, and the scan would
+     * stop at the remembered assertion again. The steps which are unified
+     * here without Distinct Variables errors are removed from
+     * derivStepsWithEmptyRef; the others are left to the scan, which skips
+     * the assertion already used as their Ref.
+     *
+     * @param maxSeq the worksheet's maximum MObj.seq for assertions.
+     * @throws VerifyException if an error occurs
+     */
+    private void unifyMemoizedSteps(final int maxSeq) throws VerifyException {
+        int nbrCompleted = 0;
+        for (int i = 0; i < derivStepsWithEmptyRefCount; i++) {
+            derivStep = derivStepsWithEmptyRef[i];
+            final UnifyMemoKey key = UnifyMemoKey.of(derivStep);
+            final Assrt a = key == null ? null : unifyMemo.get(key);
+            if (a == null || a.getSeq() >= maxSeq || a.isExcluded()
+                || a.getLogHypArrayLength() != derivStep.getHypNumber())
+                continue;
+            assrt = a;
+            assrtNbrLogHyps = assrt.getLogHypArrayLength();
+            if (unifyStepWithoutWorkVars().proper()
+                && derivStep.djVarsErrorStatus == DjVarsErrorStatus.None)
+            {
+                derivStepsWithEmptyRef[i] = null;
+                nbrCompleted++;
+            }
+        }
+        if (nbrCompleted > 0) {
+            shiftEmptyElements(derivStepsWithEmptyRef,
+                derivStepsWithEmptyRefCount);
+            derivStepsWithEmptyRefCount -= nbrCompleted;
+        }
+    }
+
+    // remember the assertion just unified with derivStep, under its
+    // formulas as they will be shown on the worksheet (hyps rearranged)
+    private void memoizeStep() {
+        if (derivStep.unificationStatus != UnificationStatus.Unified)
+            return;
+        final UnifyMemoKey key = UnifyMemoKey.of(derivStep);
+        if (key != null)
+            unifyMemo.put(key, assrt);
+    }
+
+    /**
+     * The key of a step in unifyMemo: its formula and its hyps' formulas, in
+     * order.
+     */
+    private static class UnifyMemoKey {
+        private final Formula[] formula;
+        private final int hash;
+
+        private UnifyMemoKey(final Formula[] formula) {
+            this.formula = formula;
+            int h = 0;
+            for (final Formula f : formula)
+                h = 31 * h + StepFormulaIndex.hash(f);
+            hash = h;
+        }
+
+        /**
+         * Builds the key of a step.
+         *
+         * @param d the derivation step.
+         * @return the key, or null if the step's formulas are incomplete or
+         *         to be derived.
+         */
+        static UnifyMemoKey of(final DerivationStep d) {
+            if (d.getFormula() == null || d.hasDeriveStepFormula()
+                || d.hasDeriveStepHyps())
+                return null;
+            final Formula[] formula = new Formula[d.getHypNumber() + 1];
+            formula[0] = d.getFormula();
+            for (int i = 0; i < d.getHypNumber(); i++) {
+                if (d.getHyp(i) == null || d.getHyp(i).getFormula() == null)
+                    return null;
+                formula[i + 1] = d.getHyp(i).getFormula();
+            }
+            return new UnifyMemoKey(formula);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof UnifyMemoKey
+                && Arrays.equals(formula, ((UnifyMemoKey)obj).formula);
+        }
+    }
+
+    /**
+     * The assertions to be tried in a unification pass over a set of
+     * derivation steps, looked up in assrtTree.
+     * <p>
+     * assrtList holds the union of the steps' candidates in MObj.seq order,
+     * or the whole unifySearchList if a step's formula cannot be looked up
+     * (it is to be derived, or did not parse). Skipping the other assertions
+     * changes nothing, since unifyStepWithoutWorkVars() rejects them before
+     * it updates anything.
+     * <p>
+     * If ProofAsstUnifyParallel is on, the candidates are then narrowed by
+     * scanInParallel().
+     */
+    private class UnifyCandidates {
+        final List<Assrt> assrtList;
+
+        // null entry = every assertion is a candidate for the step
+        private final Map<DerivationStep, Set<Assrt>> stepCandidates = new IdentityHashMap<>();
+
+        UnifyCandidates(final DerivationStep[] steps, final int count,
+            final int maxSeq)
+        {
+            boolean unindexed = false;
+            for (int i = 0; i < count; i++) {
+                final DerivationStep d = steps[i];
+                if (d.hasDeriveStepFormula() || d.formulaParseTree == null) {
+                    stepCandidates.put(d, null);
+                    unindexed = true;
+                    continue;
+                }
+                final Set<Assrt> set = new HashSet<>();
+                for (final Assrt a : assrtTree
+                    .getCandidates(d.formulaParseTree))
+                    if (a.getSeq() < maxSeq)
+                        set.add(a);
+                stepCandidates.put(d, set);
+            }
+
+            if (proofAsstPreferences.unifyParallel.get())
+                scanInParallel();
+
+            if (unindexed)
+                assrtList = unifySearchList;
+            else {
+                final Set<Assrt> union = new HashSet<>();
+                for (final Set<Assrt> set : stepCandidates.values())
+                    union.addAll(set);
+                assrtList = new ArrayList<>(union);
+                Collections.sort(assrtList, MObj.SEQ);
+            }
+        }
+
+        boolean isCandidate(final Assrt a, final DerivationStep d) {
+            final Set<Assrt> set = stepCandidates.get(d);
+            return set == null || set.contains(a);
+        }
+
+        /**
+         * Tries the (step, candidate) pairs which the serial pass would try
+         * on all available processors, each thread with its own scan-only
+         * copy of this ProofUnifier (see scanOneCandidate()), and drops the
+         * candidates which do not unify.
+         * <p>
+         * The serial pass then unifies the remaining pairs in the usual
+         * order, so the results (lowest MObj.seq proper unification, or
+         * bestAutoResult()) and messages are the same as without the scan.
+         * Steps whose hyps are to be derived are left alone.
+         */
+        private void scanInParallel() {
+            final List<DerivationStep> pairStep = new ArrayList<>();
+            final List<Assrt> pairAssrt = new ArrayList<>();
+            for (final Entry<DerivationStep, Set<Assrt>> e : stepCandidates
+                .entrySet())
+            {
+                final DerivationStep d = e.getKey();
+                if (e.getValue() == null || d.hasDeriveStepHyps())
+                    continue;
+                d.getSortedHypArray(); // cached in the step
+                for (final Assrt a : e.getValue()) {
+                    // only the pairs the serial pass tries: an empty Ref
+                    // step needs as many LogHyps as it has hyps, an auto
+                    // step with a Ref only that Ref
+                    if (d.isAutoStep() ? d.getRef() != null && d.getRef() != a
+                        : d.getHypNumber() != a.getLogHypArrayLength())
+                        continue;
+                    pairStep.add(d);
+                    pairAssrt.add(a);
+                }
+            }
+            if (pairStep.size() < 2)
+                return;
+
+            // the workers only read the worksheet, so compute the
+            // cached values first
+            for (final ProofWorkStmt w : proofWorksheet.getProofWorkStmtList())
+                if (w instanceof ProofStepStmt
+                    && ((ProofStepStmt)w).formulaParseTree != null)
+                {
+                    final ParseTree t = ((ProofStepStmt)w).formulaParseTree;
+                    t.getMaxDepth();
+                    t.getLevelOneTwo();
+                }
+
+            final ThreadLocal<ProofUnifier> worker = ThreadLocal
+                .withInitial(() -> new ProofUnifier(ProofUnifier.this));
+            final boolean[] unified = new boolean[pairStep.size()];
+            IntStream.range(0, unified.length).parallel()
+                .forEach(i -> unified[i] = worker.get()
+                    .scanOneCandidate(pairAssrt.get(i), pairStep.get(i)));
+
+            for (int i = 0; i < unified.length; i++)
+                if (!unified[i])
+                    stepCandidates.get(pairStep.get(i))
+                        .remove(pairAssrt.get(i));
+        }
+    }
+
     private boolean buildProofsAndErrorUnUnifiedSteps() {
         // ok, finish: error un-unified steps and
         // build proofs for the unified steps!
@@ -1101,9 +1422,8 @@ public class ProofUnifier {
             if (!assrt.getFormula().preunificationCheck(derivStep.getFormula()))
                 return badUnification;
 
-            assrtFormulaSubst = assrtParseTree.getRoot().unifyWithSubtree(
-                derivStep.formulaParseTree.getRoot(), assrtVarHypArray,
-                unifyNodeStack, compareNodeStack);
+            assrtFormulaSubst = assrtParseTree.unifyWithTree(
+                derivStep.formulaParseTree, assrtVarHypArray);
             if (assrtFormulaSubst == null)
                 return badUnification;
         }
@@ -1197,10 +1517,10 @@ public class ProofUnifier {
         assrtParseTree = assrt.getExprParseTree();
 
         if (!derivStep.hasDeriveStepFormula()) {
-            final String assrtLevelOneTwo = assrtParseTree.getLevelOneTwo();
-            if (assrtLevelOneTwo.length() > 0) {
-                if (!assrtLevelOneTwo
-                    .equals(derivStep.formulaParseTree.getLevelOneTwo()))
+            final long assrtLevelOneTwo = assrtParseTree.getLevelOneTwo();
+            if (assrtLevelOneTwo != 0) {
+                if (assrtLevelOneTwo != derivStep.formulaParseTree
+                    .getLevelOneTwo())
                     return false; // unification impossible!
             }
             else { // this checks LevelOne
@@ -1217,17 +1537,16 @@ public class ProofUnifier {
     private boolean checkHypLevelMatch() {
 
         if (!derivStep.hasDeriveStepHyps()) {
-            final String assrtLogHypsL1HiLoKey = assrt.getLogHypsL1HiLoKey();
-            // note: derivStep L1HiLo may be "" if its hyps are derived!
+            final long assrtLogHypsL1HiLoKey = assrt.getLogHypsL1HiLoKey();
+            // note: derivStep L1HiLo may be 0 if its hyps are derived!
             // this step's L1HiLo is not recomputed after
             // its log hyps' formulas are derived in
             // ProofUnifier -- that will slow things down
             // some (unless recomputation is triggered by
             // "Derive" formula.)
-            if (assrtLogHypsL1HiLoKey.length() > 0
-                && derivStep.getLogHypsL1HiLoKey().length() > 0 // see note
-                && !assrtLogHypsL1HiLoKey
-                    .equals(derivStep.getLogHypsL1HiLoKey()))
+            if (assrtLogHypsL1HiLoKey != 0
+                && derivStep.getLogHypsL1HiLoKey() != 0 // see note
+                && assrtLogHypsL1HiLoKey != derivStep.getLogHypsL1HiLoKey())
                 return false;
         }
         return true;
@@ -1588,6 +1907,9 @@ public class ProofUnifier {
         final ProofStepStmt[] hypSortDerivArray, final int i)
     {
         if (i >= assrtLogHypArray.length) {
+            if (scanOnly)
+                return okUnification;
+
             // Great, we successfully substituted all logical hypotheses.
             // Now we could check dj variable restrictions.
 
@@ -1686,6 +2008,9 @@ public class ProofUnifier {
     }
 
     private void markAutoStepUnified(final ProofStepStmt[] hypSortDerivArray) {
+        if (scanOnly)
+            return;
+
         // rearrange it, because we used sorted logical hypothesis array
         final ProofStepStmt[] hypDerivArray = new ProofStepStmt[assrt
             .getLogHypArrayLength()];
@@ -1805,9 +2130,8 @@ public class ProofUnifier {
                 return false;
 
             assrtLogHypSubstArray[assrtLogHypIndex] = assrtLogHypArray[assrtLogHypIndex]
-                .getExprParseTree().getRoot()
-                .unifyWithSubtree(derivHyp.formulaParseTree.getRoot(),
-                    assrtLogHypVarHypArray, unifyNodeStack, compareNodeStack);
+                .getExprParseTree().unifyWithTree(derivHyp.formulaParseTree,
+                    assrtLogHypVarHypArray);
         }
 
         return assrtLogHypSubstArray[assrtLogHypIndex] != null
@@ -1930,6 +2254,8 @@ public class ProofUnifier {
     private void markStepUnified(final boolean usedUnifyWithWorkVars,
         final boolean swapHyps, final int[] rearrangeDerivAssrtXRef)
     {
+        if (scanOnly)
+            return;
 
         VerifyException djMsg = null;
 
@@ -251,6 +251,13 @@ public class ProofWorksheet {
 
     public List<DerivationStep> stepsWithLocalRefs = new ArrayList<>();
 
+    /**
+     * Index of the proof steps by formula for findMatchingStepFormula(), built
+     * when needed and kept up to date as steps are added to the worksheet; null
+     * if it must be rebuilt.
+     */
+    private StepFormulaIndex stepFormulaIndex;
+
     /**
      * Constructor for skeletal ProofWorksheet. This constructor is used in
      * ProofAsst.updateWorksheetWithException(). to create a worksheet that has
@@ -869,17 +876,38 @@ public class ProofWorksheet {
     public ProofStepStmt findMatchingStepFormula(final Formula searchFormula,
         final ProofStepStmt exclusiveEndpointStep)
     {
-        if (searchFormula != null)
-            for (final ProofWorkStmt o : getProofWorkStmtList()) {
-                if (o == exclusiveEndpointStep)
-                    break;
-                if (o instanceof ProofStepStmt) {
-                    final ProofStepStmt matchStep = (ProofStepStmt)o;
-                    if (searchFormula.equals(matchStep.getFormula()))
-                        return matchStep;
-                }
-            }
-        return null;
+        if (searchFormula == null)
+            return null;
+        if (stepFormulaIndex == null
+            || !stepFormulaIndex.update(proofWorkStmtList))
+            stepFormulaIndex = new StepFormulaIndex(proofWorkStmtList);
+        return stepFormulaIndex.find(searchFormula, exclusiveEndpointStep);
+    }
+
+    /**
+     * Called when a step's formula is changed, to update the index used by
+     * findMatchingStepFormula().
+     *
+     * @param step the ProofStepStmt whose formula changed.
+     * @param oldFormula the step's previous formula (may be null).
+     */
+    public void stepFormulaChanged(final ProofStepStmt step,
+        final Formula oldFormula)
+    {
+        if (stepFormulaIndex != null)
+            stepFormulaIndex.formulaChanged(step, oldFormula);
+    }
+
+    // insert a new step before the given stmt, keeping the index of
+    // findMatchingStepFormula() up to date
+    private void insertProofWorkStmt(final ProofWorkStmt x,
+        final ProofWorkStmt next)
+    {
+        final int index = proofWorkStmtList.indexOf(next);
+        proofWorkStmtList.add(index, x);
+        if (stepFormulaIndex != null
+            && !stepFormulaIndex.insert(proofWorkStmtList, index))
+            stepFormulaIndex = null;
     }
 
     /**
@@ -977,7 +1005,7 @@ public class ProofWorksheet {
         final DerivationStep out = generateDerivStep(new ProofStepStmt[0],
             new String[0], "", formula, formulaParseTree, workVarList);
 
-        proofWorkStmtList.add(proofWorkStmtList.indexOf(derivStep), out);
+        insertProofWorkStmt(out, derivStep);
         return out;
     }
 
@@ -990,7 +1018,7 @@ public class ProofWorksheet {
         final DerivationStep out = generateDerivStep(generatedHyp,
             generatedHypStep, refLabel, formula, formulaParseTree, workVarList);
 
-        proofWorkStmtList.add(proofWorkStmtList.indexOf(derivStep), out);
+        insertProofWorkStmt(out, derivStep);
         return out;
     }
 
@@ -1530,6 +1558,7 @@ public class ProofWorksheet {
                     i.remove();
                 }
             }
+            stepFormulaIndex = null;
         }
     }
 
@@ -1538,6 +1567,7 @@ public class ProofWorksheet {
         if (proofInputCursor.cursorIsSet && x == proofInputCursor.proofWorkStmt)
             proofInputCursor.proofWorkStmt = null;
         proofWorkStmtList.remove(x);
+        stepFormulaIndex = null;
     }
 
     private void reorderProofSteps() throws ProofAsstException {
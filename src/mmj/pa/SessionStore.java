@@ -48,6 +48,10 @@ public class SessionStore {
         this.file = file;
     }
 
+    public File getFile() {
+        return file;
+    }
+
     /**
      * Load the data from the storage file, merging the loaded data with the
      * keys already loaded in memory.
@@ -0,0 +1,190 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.pa;
+
+import java.util.*;
+
+import mmj.lang.Formula;
+import mmj.lang.Sym;
+
+/**
+ * StepFormulaIndex is an index of a ProofWorksheet's proof steps by formula,
+ * used by ProofWorksheet.findMatchingStepFormula() instead of a scan of the
+ * whole proofWorkStmtList.
+ * <p>
+ * Each stmt of the list is given a position, spaced out so that steps inserted
+ * by the Derive feature can be placed between their neighbours. The steps are
+ * kept by the hash code of their formula's expression (the Type Code is
+ * skipped, since it may be set after the Formula is built), in worksheet
+ * order, and the candidates are compared with Formula.equals().
+ * <p>
+ * The index is brought up to date with stmts appended to the list, stmts
+ * inserted by the Derive feature and changes to the steps' formulas, but any
+ * other change to the list means the index must be rebuilt (see
+ * ProofWorksheet).
+ */
+class StepFormulaIndex {
+
+    private static final long POSITION_GAP = 1 << 20;
+
+    private final Map<Integer, List<ProofStepStmt>> steps = new HashMap<>();
+
+    private final Map<ProofWorkStmt, Long> position = new IdentityHashMap<>();
+
+    private final List<ProofWorkStmt> list;
+
+    private int size;
+
+    private ProofWorkStmt last;
+
+    /**
+     * Construct the index of a proofWorkStmtList.
+     *
+     * @param list the proofWorkStmtList.
+     */
+    StepFormulaIndex(final List<ProofWorkStmt> list) {
+        this.list = list;
+        append();
+    }
+
+    /**
+     * Brings the index up to date with stmts appended to the list.
+     *
+     * @param current the current proofWorkStmtList.
+     * @return false if the list was changed in some other way, in which case
+     *         the index must be rebuilt.
+     */
+    boolean update(final List<ProofWorkStmt> current) {
+        if (!isCurrent(current, current.size()))
+            return false;
+        append();
+        return true;
+    }
+
+    /**
+     * Adds a stmt which was just inserted in the list.
+     *
+     * @param current the current proofWorkStmtList.
+     * @param index the index of the stmt in the list.
+     * @return false if the index could not be updated, in which case it must
+     *         be rebuilt.
+     */
+    boolean insert(final List<ProofWorkStmt> current, final int index) {
+        final int n = current.size() - 1;
+        if (index == n)
+            return update(current);
+        // the stmts after the insertion point have moved up by one
+        if (current != list || n != size || current.get(size) != last)
+            return false;
+        final long prevPos = index == 0 ? 0
+            : position.get(current.get(index - 1));
+        final long nextPos = position.get(current.get(index + 1));
+        if (nextPos - prevPos < 2)
+            return false;
+        final long pos = prevPos + (nextPos - prevPos) / 2;
+        final ProofWorkStmt x = current.get(index);
+        position.put(x, pos);
+        if (x instanceof ProofStepStmt)
+            addStep((ProofStepStmt)x);
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves an indexed step after its formula was changed.
+     *
+     * @param step the ProofStepStmt.
+     * @param oldFormula the step's previous formula (may be null).
+     */
+    void formulaChanged(final ProofStepStmt step, final Formula oldFormula) {
+        if (!position.containsKey(step))
+            return;
+        if (oldFormula != null) {
+            final List<ProofStepStmt> bucket = steps.get(hash(oldFormula));
+            if (bucket != null)
+                for (int i = 0; i < bucket.size(); i++)
+                    if (bucket.get(i) == step) {
+                        bucket.remove(i);
+                        break;
+                    }
+        }
+        addStep(step);
+    }
+
+    /**
+     * Searches for the first step whose formula matches the input formula.
+     *
+     * @param searchFormula Formula we're looking for
+     * @param exclusiveEndpointStep Exclusive endpoint of the search
+     * @return ProofStepStmt matching the formula or null if Not Found.
+     */
+    ProofStepStmt find(final Formula searchFormula,
+        final ProofWorkStmt exclusiveEndpointStep)
+    {
+        final List<ProofStepStmt> bucket = steps.get(hash(searchFormula));
+        if (bucket == null)
+            return null;
+        final Long endPos = position.get(exclusiveEndpointStep);
+        for (final ProofStepStmt s : bucket) {
+            if (endPos != null && position.get(s) >= endPos)
+                break;
+            if (searchFormula.equals(s.getFormula()))
+                return s;
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the first n stmts of a list are those indexed.
+     */
+    private boolean isCurrent(final List<ProofWorkStmt> current,
+        final int n)
+    {
+        return current == list && n >= size
+            && (size == 0 || current.get(size - 1) == last);
+    }
+
+    private void append() {
+        long pos = size == 0 ? 0 : position.get(last);
+        for (; size < list.size(); size++) {
+            final ProofWorkStmt x = list.get(size);
+            position.put(x, pos += POSITION_GAP);
+            if (x instanceof ProofStepStmt)
+                addStep((ProofStepStmt)x);
+            last = x;
+        }
+    }
+
+    private List<ProofStepStmt> getBucket(final Formula formula) {
+        return steps.computeIfAbsent(hash(formula), k -> new ArrayList<>(1));
+    }
+
+    // add a step in worksheet order (usually at the end of its bucket)
+    private void addStep(final ProofStepStmt step) {
+        if (step.getFormula() == null)
+            return;
+        final long pos = position.get(step);
+        final List<ProofStepStmt> bucket = getBucket(step.getFormula());
+        int i = bucket.size();
+        while (i > 0 && position.get(bucket.get(i - 1)) > pos)
+            i--;
+        bucket.add(i, step);
+    }
+
+    /**
+     * Computes a hash code of a formula's expression, cheaper than
+     * Formula.hashCode().
+     *
+     * @param formula the Formula.
+     * @return hash code of the expression.
+     */
+    static int hash(final Formula formula) {
+        final Sym[] sym = formula.getSym();
+        int h = formula.getCnt();
+        for (int i = 1; i < formula.getCnt(); i++)
+            h = 31 * h + sym[i].hashCode();
+        return h;
+    }
+}
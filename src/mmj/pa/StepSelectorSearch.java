@@ -19,6 +19,11 @@
  * ==> fixed bug in binary search by changing
  *        "mid = (low + high) / 2;"
  *     to "mid = low + ((high - low) / 2);"
+ *
+ * Version 0.03:
+ * ==> added assrtTree, an AssrtDiscriminationTree over the
+ *     assertions, so that only the assertions which can possibly
+ *     unify with the step's formula are passed to StepUnifier.
  */
 
 package mmj.pa;
@@ -47,6 +52,12 @@ public class StepSelectorSearch {
 //  private Assrt[]                assrtArray;
     private final ArrayList<Assrt> assrtAList;
 
+    /*
+     * index of the assrtAList formulas, looked up with the step's
+     * Work Vars as wildcards
+     */
+    private final AssrtDiscriminationTree assrtTree;
+
     /*
      * these instance variables are "global" work items
      * stored here for convenience.
@@ -93,6 +104,8 @@ public class StepSelectorSearch {
         assrtAList.addAll(unifySearchList);
 
         Collections.sort(assrtAList, Assrt.NBR_LOG_HYP_SEQ);
+
+        assrtTree = new AssrtDiscriminationTree(assrtAList);
     }
 
     public void mergeListOfAssrtAddsSortedBySeq(
@@ -106,6 +119,9 @@ public class StepSelectorSearch {
 
         new MergeSortedArrayLists<>(assrtAList, addList, Assrt.NBR_LOG_HYP_SEQ,
             true); // abortIfDupsFound
+
+        for (final Theorem theorem : addList)
+            assrtTree.add(theorem);
     }
 
     /**
@@ -154,6 +170,16 @@ public class StepSelectorSearch {
         final ProofStepStmt[] derivStepSortedHypArray = derivStep
             .getSortedHypArray();
 
+        /* Only the assertions found in the index can unify with
+           the step's formula (null = no formula, try them all).
+         */
+        Set<Assrt> candidates = null;
+        if (derivStep.formulaParseTree != null) {
+            candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidates.addAll(assrtTree
+                .getCandidates(derivStep.formulaParseTree, true));
+        }
+
         /*  Binary search for 1st Assrt w/correct number of log hyps.
          */
         int assrtIndex = computeSearchStart(nbrDerivStepHyps);
@@ -189,7 +215,8 @@ public class StepSelectorSearch {
                         hypIndex++;
                         continue hypLoop;
                     }
-                    if (isAssrtUnifiable())
+                    if ((candidates == null || candidates.contains(assrt))
+                        && isAssrtUnifiable())
                         if (addAssrtToStore(store)) { // isFull()
                             storeOverflow = true;
                             break hypLoop;
@@ -15,6 +15,8 @@
 
 package mmj.search;
 
+import java.util.BitSet;
+
 public class CharStrSearchDataLine extends SearchDataLine {
 
     public CharStrSearchDataLine(final CompiledSearchArgs csa, final int i,
@@ -31,6 +33,23 @@ public class CharStrSearchDataLine extends SearchDataLine {
         loadAssrtDataStringArray();
     }
 
+    @Override
+    public BitSet getSearchTermCandidates(
+        final QuotedSearchTerm quotedSearchTerm, final SearchIndex searchIndex)
+    {
+        switch (searchPartChoice) {
+            case SearchOptionsConstants.PART_FORMULAS_ID:
+                return searchIndex.getFormulaCandidates(quotedSearchTerm.text);
+
+            case SearchOptionsConstants.PART_COMMENTS_ID:
+                return searchIndex.getCommentCandidates(quotedSearchTerm.text);
+
+            case SearchOptionsConstants.PART_LABELS_ID:
+                return searchIndex.getLabelCandidates(quotedSearchTerm.text);
+        }
+        return null;
+    }
+
     @Override
     public boolean evaluateSearchTerm(final QuotedSearchTerm quotedSearchTerm,
         final CompiledSearchArgs csa)
@@ -78,6 +78,8 @@ public class CompiledSearchArgs {
         searchThruChapSecDependencies = null;
         searchCombinedDependencies = null;
         searchDataLines = null;
+        searchIndex = null;
+        searchCandidates = null;
         searchArgs = args;
         this.searchMgr = searchMgr;
         this.bookManager = bookManager;
@@ -232,6 +234,13 @@ public class CompiledSearchArgs {
                     break;
                 if (!searchForWhat[k].equals("")) {
                     searchDataLines = new SearchDataLines(this);
+                    if (searchOutput.searchReturnCode == 0
+                        && searchArgs.useSearchIndex)
+                    {
+                        searchIndex = searchMgr.getSearchIndex();
+                        searchCandidates = searchDataLines
+                            .getCandidates(searchIndex);
+                    }
                     break;
                 }
                 k++;
@@ -332,4 +341,6 @@ public class CompiledSearchArgs {
     BitSet searchThruChapSecDependencies;
     BitSet searchCombinedDependencies;
     SearchDataLines searchDataLines;
+    SearchIndex searchIndex;
+    BitSet searchCandidates;
 }
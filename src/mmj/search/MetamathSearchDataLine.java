@@ -15,6 +15,7 @@
 
 package mmj.search;
 
+import java.util.*;
 import java.util.regex.Pattern;
 
 public class MetamathSearchDataLine extends SearchDataLine {
@@ -37,6 +38,31 @@ public class MetamathSearchDataLine extends SearchDataLine {
         loadAssrtDataStringArray();
     }
 
+    @Override
+    public BitSet getSearchTermCandidates(
+        final QuotedSearchTerm quotedSearchTerm, final SearchIndex searchIndex)
+    {
+        BitSet candidates = null;
+        switch (searchPartChoice) {
+            case SearchOptionsConstants.PART_LABELS_ID:
+                return searchIndex.getLabelCandidates(
+                    label -> quotedSearchTerm.pattern.matcher(label).matches());
+
+            case SearchOptionsConstants.PART_FORMULAS_ID:
+                for (final String literal : quotedSearchTerm.literalList)
+                    candidates = SearchIndex.and(candidates,
+                        searchIndex.getFormulaCandidates(literal));
+                break;
+
+            case SearchOptionsConstants.PART_COMMENTS_ID:
+                for (final String literal : quotedSearchTerm.literalList)
+                    candidates = SearchIndex.and(candidates,
+                        searchIndex.getCommentCandidates(literal));
+                break;
+        }
+        return candidates;
+    }
+
     @Override
     public boolean evaluateSearchTerm(final QuotedSearchTerm quotedSearchTerm,
         final CompiledSearchArgs csa)
@@ -59,6 +85,7 @@ public class MetamathSearchDataLine extends SearchDataLine {
             final QuotedSearchTerm quotedSearchTerm = quotedSearchTermList
                 .get(i);
             final StringBuffer stringbuffer = new StringBuffer();
+            quotedSearchTerm.literalList = new ArrayList<>();
             int j = 0;
             StringBuffer stringbuffer1 = new StringBuffer();
             do {
@@ -69,6 +96,8 @@ public class MetamathSearchDataLine extends SearchDataLine {
                     final char c1 = quotedSearchTerm.text.charAt(j);
                     if (c1 == '*' || c1 == '?') {
                         if (stringbuffer1.length() > 0) {
+                            quotedSearchTerm.literalList
+                                .add(stringbuffer1.toString());
                             stringbuffer.append(Pattern.quote(stringbuffer1
                                 .toString()));
                             stringbuffer1 = new StringBuffer();
@@ -83,6 +112,8 @@ public class MetamathSearchDataLine extends SearchDataLine {
                     && (searchPartChoice == SearchOptionsConstants.PART_LABELS_ID || searchPartChoice == SearchOptionsConstants.PART_LABELS_RPN_ID))
                 {
                     if (stringbuffer1.length() > 0) {
+                        quotedSearchTerm.literalList
+                            .add(stringbuffer1.toString());
                         stringbuffer.append(Pattern.quote(stringbuffer1
                             .toString()));
                         stringbuffer1 = new StringBuffer();
@@ -93,8 +124,10 @@ public class MetamathSearchDataLine extends SearchDataLine {
                 else
                     stringbuffer1.append(c);
             } while (true);
-            if (stringbuffer1.length() > 0)
+            if (stringbuffer1.length() > 0) {
+                quotedSearchTerm.literalList.add(stringbuffer1.toString());
                 stringbuffer.append(Pattern.quote(stringbuffer1.toString()));
+            }
             quotedSearchTerm.text = stringbuffer.toString();
         }
 
@@ -15,6 +15,7 @@
 
 package mmj.search;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 public class QuotedSearchTerm {
@@ -27,6 +28,7 @@ public class QuotedSearchTerm {
         errorMessage = null;
         orIsSet = false;
         pattern = null;
+        literalList = null;
         parsedSearchTerm = null;
     }
 
@@ -38,6 +40,7 @@ public class QuotedSearchTerm {
         errorMessage = null;
         orIsSet = false;
         pattern = null;
+        literalList = null;
         parsedSearchTerm = null;
     }
 
@@ -121,5 +124,6 @@ public class QuotedSearchTerm {
     public String errorMessage;
     public boolean orIsSet;
     Pattern pattern;
+    List<String> literalList;
     public ParsedSearchTerm parsedSearchTerm;
 }
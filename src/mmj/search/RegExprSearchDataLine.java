@@ -15,6 +15,8 @@
 
 package mmj.search;
 
+import java.util.BitSet;
+
 public class RegExprSearchDataLine extends SearchDataLine {
 
     public RegExprSearchDataLine(final CompiledSearchArgs csa, final int i,
@@ -30,6 +32,16 @@ public class RegExprSearchDataLine extends SearchDataLine {
         loadAssrtDataStringArray();
     }
 
+    @Override
+    public BitSet getSearchTermCandidates(
+        final QuotedSearchTerm quotedSearchTerm, final SearchIndex searchIndex)
+    {
+        if (searchPartChoice == SearchOptionsConstants.PART_LABELS_ID)
+            return searchIndex.getLabelCandidates(
+                label -> quotedSearchTerm.pattern.matcher(label).matches());
+        return null;
+    }
+
     @Override
     public boolean evaluateSearchTerm(final QuotedSearchTerm quotedSearchTerm,
         final CompiledSearchArgs csa)
@@ -27,6 +27,7 @@ public class SearchArgs {
     ProofWorksheet proofWorksheet;
     StepRequest stepRequest;
     boolean stepSearchMode;
+    boolean useSearchIndex;
     DerivationStep stepSearchStmt;
     Stmt searchReferenceStmt;
     int searchMaxSeq;
@@ -104,6 +105,7 @@ public class SearchArgs {
         proofWorksheet = null;
         stepRequest = null;
         stepSearchMode = false;
+        useSearchIndex = true;
         stepSearchStmt = null;
         searchReferenceStmt = null;
         searchMaxSeq = Integer.MAX_VALUE;
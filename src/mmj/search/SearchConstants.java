@@ -34,6 +34,9 @@ public class SearchConstants {
     public static final int SEARCH_SCORE_SELECTED_ITEM = 50;
     public static final int SEARCH_SCORE_NOT_SELECTED_ITEM = 0;
     public static final int SEARCH_SCORE_TRAILER_ITEM = -1;
+    public static final long SEARCH_TEXT_CACHE_MAX_CHARS = 32 * 1024 * 1024;
+    public static final String SEARCH_BATCH_TEST_TITLE = "SearchBatchTest";
+    public static final int SEARCH_BATCH_TEST_MAX_TIME = 600;
     public static final String COMPLETED_ITEM_OUTPUT_LITERAL = "(*) ";
     public static final String DOT_STEP_CAPTION = ".Step ";
     public static final String SEARCH_OUTPUT_SEARCH_FORMULA_INDENT = "    ";
@@ -66,6 +69,18 @@ public class SearchConstants {
         + " SearchOptions? System Message = ";
     public static final String ERRMSG_SEARCH_TASK_EXECUTION_1 = "E-SE-0205"
         + " Search task execution exception! System Message = ";
+    public static final String ERRMSG_SEARCH_TASK_TIMEOUT_PARTIAL_1 = "I-SE-0206"
+        + " Search task timed out after %d seconds, showing the %d results"
+        + " found so far. Increase MaxTime option, or modify other"
+        + " SearchOptions?";
+    public static final String ERRMSG_SEARCH_BATCH_TEST_RESULTS_1 = "I-SE-0207"
+        + " SearchBatchTest: ForWhat = %s. MaxResults = %d. Results = %s";
+    public static final String ERRMSG_SEARCH_BATCH_TEST_MISMATCH_1 = "E-SE-0208"
+        + " SearchBatchTest: the search split into chunks of %d assertions"
+        + " found different results = %s";
+    public static final String ERRMSG_SEARCH_BATCH_TEST_INDEX_MISMATCH_1 = "E-SE-0209"
+        + " SearchBatchTest: the search using the symbol index found different"
+        + " results = %s";
     public static final String ERRMSG_ARG_ERROR_1 = "A-SE-0301"
         + " Validation error for field ";
     public static final String ERRMSG_ARG_ERROR_2 = " value = ";
@@ -16,11 +16,11 @@
 package mmj.search;
 
 import mmj.lang.*;
-import mmj.lang.ParseTree.RPNStep;
 
 public class SearchDataGetter {
 
-    public SearchDataGetter() {
+    public SearchDataGetter(final SearchTextCache searchTextCache) {
+        this.searchTextCache = searchTextCache;
         assrt = null;
         assrtFormulaString = null;
         logHypFormulaString = null;
@@ -90,19 +90,15 @@ public class SearchDataGetter {
     }
 
     private String[] getLogHypFormulaString() {
-        if (logHypFormulaString == null) {
-            final LogHyp[] alogHyp = assrt.getLogHypArray();
-            logHypFormulaString = new String[alogHyp.length];
-            for (int i = 0; i < alogHyp.length; i++)
-                logHypFormulaString[i] = alogHyp[i].getFormula().toString();
-
-        }
+        if (logHypFormulaString == null)
+            logHypFormulaString = searchTextCache
+                .getLogHypFormulaString(assrt);
         return logHypFormulaString;
     }
 
     private String getAssrtFormulaString() {
         if (assrtFormulaString == null)
-            assrtFormulaString = assrt.getFormula().toString() + " ";
+            assrtFormulaString = searchTextCache.getFormulaString(assrt);
         return assrtFormulaString;
     }
 
@@ -116,7 +112,7 @@ public class SearchDataGetter {
 
     private String getAssrtCommentString() {
         if (assrtCommentString == null)
-            assrtCommentString = assrt.getDescriptionForSearch().toLowerCase();
+            assrtCommentString = searchTextCache.getCommentString(assrt);
         return assrtCommentString;
     }
 
@@ -189,18 +185,9 @@ public class SearchDataGetter {
     }
 
     private String getLabelRPNString() {
-        if (labelRPNString == null) {
-            final RPNStep[] astmt = ((Theorem)assrt).getProof();
-            final StringBuffer sb = new StringBuffer(5 * astmt.length);
-            String s = "";
-            for (final RPNStep element : astmt) {
-                sb.append(s);
-                sb.append(element);
-                s = " ";
-            }
-
-            labelRPNString = sb.toString();
-        }
+        if (labelRPNString == null)
+            labelRPNString = searchTextCache
+                .getLabelRPNString((Theorem)assrt);
         return labelRPNString;
     }
 
@@ -306,6 +293,7 @@ public class SearchDataGetter {
         return assrtFormulaTree;
     }
 
+    final SearchTextCache searchTextCache;
     Assrt assrt;
     String assrtFormulaString;
     String[] logHypFormulaString;
@@ -15,8 +15,7 @@
 
 package mmj.search;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -102,6 +101,64 @@ public abstract class SearchDataLine {
     public abstract boolean evaluateSearchTerm(
         QuotedSearchTerm quotedSearchTerm, CompiledSearchArgs csa);
 
+    /**
+     * Returns the assertions for which a search term may evaluate to true.
+     *
+     * @param quotedSearchTerm the search term.
+     * @param searchIndex the index of the assertions.
+     * @return set of ordinals, or null if the search term cannot be looked up
+     *         in the index.
+     */
+    public BitSet getSearchTermCandidates(
+        final QuotedSearchTerm quotedSearchTerm, final SearchIndex searchIndex)
+    {
+        return null;
+    }
+
+    /**
+     * Returns the assertions for which evaluate() may return anything but -1.
+     * <p>
+     * This mirrors evaluateSearchTerms(): the terms are evaluated from left to
+     * right without precedence, and the result is that of the last term
+     * evaluated.
+     *
+     * @param searchIndex the index of the assertions.
+     * @return set of ordinals, or null for all assertions.
+     */
+    public BitSet getCandidates(final SearchIndex searchIndex) {
+        if (isOperSetToNot())
+            return null;
+        final int last = quotedSearchTermList.size() - 1;
+        BitSet candidates = getSearchTermCandidates(
+            quotedSearchTermList.get(last), searchIndex);
+        for (int i = last - 1; i >= 0; i--) {
+            final QuotedSearchTerm quotedSearchTerm = quotedSearchTermList
+                .get(i);
+            final BitSet termCandidates = getSearchTermCandidates(
+                quotedSearchTerm, searchIndex);
+            candidates = quotedSearchTerm.orIsSet
+                ? SearchIndex.or(termCandidates, candidates)
+                : SearchIndex.and(termCandidates, candidates);
+        }
+        if (candidates == null)
+            return null;
+
+        // the assertions this line does not want evaluate to 0
+        final BitSet wanted = new BitSet(searchIndex.size());
+        if (wantsAxioms)
+            wanted.or(searchIndex.getAxioms());
+        if (wantsTheorems) {
+            final BitSet theorems = (BitSet)searchIndex.getAxioms().clone();
+            theorems.flip(0, searchIndex.size());
+            wanted.or(theorems);
+        }
+        if (wantsLogHyps)
+            wanted.or(searchIndex.getWithLogHyps());
+        wanted.flip(0, searchIndex.size());
+        candidates.or(wanted);
+        return candidates;
+    }
+
     public int evaluate(final CompiledSearchArgs csa) {
         if (!searchDataLineWantsThisAssrt())
             return 0;
@@ -15,6 +15,8 @@
 
 package mmj.search;
 
+import java.util.BitSet;
+
 import mmj.lang.Assrt;
 
 public class SearchDataLines {
@@ -22,7 +24,7 @@ public class SearchDataLines {
     public SearchDataLines(final CompiledSearchArgs csa) {
         getter = null;
         line = null;
-        getter = new SearchDataGetter();
+        getter = new SearchDataGetter(csa.searchMgr.getSearchTextCache());
         line = new SearchDataLine[4];
         for (int i = 0; i < line.length; i++)
             if (csa.searchForWhat[i].equals(""))
@@ -55,6 +57,31 @@ public class SearchDataLines {
         return flag;
     }
 
+    /**
+     * Returns the assertions for which evaluate() may return true.
+     * <p>
+     * A line which is reached and evaluates to -1 ends the search as false if
+     * it is ANDed with the next one. The lines are reached (except when an
+     * earlier one already returned false) as long as all the previous lines
+     * are ANDed too, so their candidates are intersected up to the first line
+     * which is ORed.
+     *
+     * @param searchIndex the index of the assertions.
+     * @return set of ordinals, or null for all assertions.
+     */
+    public BitSet getCandidates(final SearchIndex searchIndex) {
+        BitSet candidates = null;
+        for (final SearchDataLine element : line) {
+            if (element == null)
+                continue;
+            if (!element.isBoolSetToAnd())
+                break;
+            candidates = SearchIndex.and(candidates,
+                element.getCandidates(searchIndex));
+        }
+        return candidates;
+    }
+
     SearchDataGetter getter;
     SearchDataLine[] line;
 }
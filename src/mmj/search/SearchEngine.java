@@ -15,8 +15,7 @@
 
 package mmj.search;
 
-import java.util.BitSet;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
 
 import mmj.lang.*;
@@ -24,8 +23,29 @@ import mmj.pa.*;
 import mmj.verify.VerifyException;
 import mmj.verify.VerifyProofs;
 
+/**
+ * SearchEngine runs a search over the sorted assertion list.
+ * <p>
+ * The assertions to be searched are split into chunks, each one scanned by a
+ * SearchWorker on a pool of threads shared by all searches. The workers add
+ * the assertions they select to a SearchOutputStore, which keeps the same
+ * results a single scan of the list would. When the MaxTime option runs out
+ * the workers are cancelled and the results found so far are returned.
+ * <p>
+ * Step searches (which unify with the shared StepUnifier) and searches with
+ * a parse expression or parse statement format (which use the shared
+ * SearchUnifier) are done by a single worker.
+ */
 public class SearchEngine {
 
+    /** Chunks per pool thread, so that fast workers help the slow ones. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Minimum number of assertions in a chunk. */
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    private static ExecutorService searchPool = null;
+
     private final SearchMgr searchMgr;
     private SearchArgs searchArgs;
     private CompiledSearchArgs compiledSearchArgs = null;
@@ -39,12 +59,6 @@ public class SearchEngine {
     private final StepUnifier stepUnifier;
     private List<Assrt> assrtAList;
     private DerivationStep derivStep = null;
-    private ProofStepStmt[] derivStepHypArray = null;
-    private Assrt assrt = null;
-    private int assrtNbrLogHyps = 0;
-    private Hyp[] assrtHypArray = null;
-    private LogHyp[] assrtLogHypArray = null;
-    private ParseNode[] assrtSubst = null;
     private boolean stepSearchMode = false;
     private boolean substitutions = false;
 
@@ -66,7 +80,37 @@ public class SearchEngine {
         stepUnifier = proofAsstPreferences.getStepUnifier();
     }
 
+    /**
+     * Returns the pool of threads shared by all searches, creating it on first
+     * use. The threads are daemons so that they do not keep the JVM running.
+     *
+     * @return the search ExecutorService.
+     */
+    private static synchronized ExecutorService getSearchPool() {
+        if (searchPool == null)
+            searchPool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), r -> {
+                    final Thread thread = new Thread(r, "SearchEngine");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return searchPool;
+    }
+
     public SearchOutput execSearch() {
+        return execSearch(0);
+    }
+
+    /**
+     * Runs the search, giving each SearchWorker a chunk of chunkSize
+     * assertions, so that SearchMgr.searchBatchTest() can compare the results
+     * of a single worker with those of several.
+     *
+     * @param chunkSize number of assertions per SearchWorker, or 0 to split
+     *            them among the pool threads.
+     * @return the SearchOutput.
+     */
+    SearchOutput execSearch(final int chunkSize) {
         searchOutput = searchMgr.getSearchOutput();
         searchArgs = searchMgr.getSearchArgs();
         stepSearchMode = searchArgs.stepSearchMode;
@@ -77,58 +121,116 @@ public class SearchEngine {
         compiledSearchArgs = searchArgs.compile(searchMgr, bookManager,
             searchOutput, proofAsst, proofAsstPreferences, verifyProofs,
             provableLogicStmtTyp);
-        if (searchOutput.searchReturnCode == 0) {
-            final FutureTask<SearchOutput> search = new FutureTask<>(
-                new Callable<SearchOutput>()
-            {
-                    public SearchOutput call() throws Exception {
-                        return searchTask();
-                    }
-                });
-            Executors.newSingleThreadExecutor().execute(search);
-            try {
-                searchOutput = search.get(compiledSearchArgs.searchMaxTime,
-                    TimeUnit.SECONDS);
-            } catch (final InterruptedException interruptedexception) {
-                searchOutput.storeError(3, 30,
-                    SearchConstants.ERRMSG_SEARCH_TASK_INTERRUPTED_1
-                        + interruptedexception.getMessage());
-            } catch (final ExecutionException executionexception) {
-                searchOutput.storeError(4, 30,
-                    SearchConstants.ERRMSG_SEARCH_TASK_EXECUTION_1
-                        + executionexception.getCause() + " "
-                        + executionexception.getMessage());
-                throw new IllegalArgumentException(
-                    "Rethrowing ExecutionException", executionexception);
-            } catch (final TimeoutException timeoutexception) {
-                searchOutput.storeError(2, 30,
-                    SearchConstants.ERRMSG_SEARCH_TASK_TIMEOUT_1
-                        + timeoutexception.getMessage());
-            }
-        }
+        if (searchOutput.searchReturnCode == 0)
+            runSearchWorkers(chunkSize);
         searchOutput.finalize(compiledSearchArgs, bookManager,
             proofAsst.getMessages());
         return searchOutput;
     }
 
-    public SearchOutput searchTask() {
+    /**
+     * Splits the assertions to be searched into chunks, runs a SearchWorker
+     * for each one and waits for them until the MaxTime option runs out.
+     *
+     * @param chunkSizeIn number of assertions per SearchWorker, or 0 to split
+     *            them among the pool threads.
+     */
+    private void runSearchWorkers(final int chunkSizeIn) {
         substitutions = compiledSearchArgs.searchSubstitutions;
         store = new SearchOutputStore(compiledSearchArgs.searchMaxResults,
             compiledSearchArgs.searchOutputSortNbr);
+        String step;
+        if (stepSearchMode) {
+            derivStep = searchArgs.stepSearchStmt;
+            step = derivStep.getStep();
+        }
+        else {
+            derivStep = null;
+            step = "";
+        }
+
+        final int start = Math.min(
+            computeSearchStart(compiledSearchArgs.searchMinHyps),
+            assrtAList.size());
+        final int end = compiledSearchArgs.searchMaxHyps == Integer.MAX_VALUE
+            ? assrtAList.size()
+            : Math.min(
+                computeSearchStart(compiledSearchArgs.searchMaxHyps + 1),
+                assrtAList.size());
+
+        final ExecutorService pool = getSearchPool();
+        final int nbrThreads = Runtime.getRuntime().availableProcessors();
+        final boolean split = isParallelSearch()
+            && (nbrThreads > 1 || chunkSizeIn > 0);
+        final int chunkSize = chunkSizeIn > 0 ? chunkSizeIn
+            : Math.max(MIN_CHUNK_SIZE,
+                (end - start + nbrThreads * CHUNKS_PER_THREAD - 1)
+                    / (nbrThreads * CHUNKS_PER_THREAD));
+        final WorkerGate gate = new WorkerGate();
+        final List<Future<?>> workers = new ArrayList<>();
+        if (!split)
+            workers.add(pool.submit(new SearchWorker(gate, start, start, end,
+                compiledSearchArgs.searchDataLines)));
+        else
+            for (int from = start; from < end; from += chunkSize)
+                workers.add(pool.submit(new SearchWorker(gate, start, from,
+                    Math.min(from + chunkSize, end),
+                    compiledSearchArgs.searchDataLines == null ? null
+                        : new SearchDataLines(compiledSearchArgs))));
+
+        boolean timedOut = false;
+        final long deadline = System.nanoTime()
+            + TimeUnit.SECONDS.toNanos(compiledSearchArgs.searchMaxTime);
         try {
-            loadSearchOutput();
-            if (searchOutput.searchReturnCode == 0
-                && compiledSearchArgs.searchResultsChecked > 0)
-            {
-                checkForInterrupt();
-                doExtendedSearch();
-            }
+            for (final Future<?> worker : workers)
+                worker.get(deadline - System.nanoTime(),
+                    TimeUnit.NANOSECONDS);
         } catch (final InterruptedException interruptedexception) {
             searchOutput.storeError(3, 30,
                 SearchConstants.ERRMSG_SEARCH_TASK_INTERRUPTED_1
                     + interruptedexception.getMessage());
+        } catch (final ExecutionException executionexception) {
+            searchOutput.storeError(4, 30,
+                SearchConstants.ERRMSG_SEARCH_TASK_EXECUTION_1
+                    + executionexception.getCause() + " "
+                    + executionexception.getMessage());
+            throw new IllegalArgumentException(
+                "Rethrowing ExecutionException", executionexception);
+        } catch (final TimeoutException timeoutexception) {
+            timedOut = true;
+        } finally {
+            for (final Future<?> worker : workers)
+                worker.cancel(true);
+            // cancel() does not wait for the workers which are running
+            gate.closeAndAwait();
         }
-        return searchOutput;
+
+        if (searchOutput.searchReturnCode != 0)
+            return;
+        if (timedOut)
+            proofAsst.getMessages().accumInfoMessage(
+                SearchConstants.ERRMSG_SEARCH_TASK_TIMEOUT_PARTIAL_1,
+                compiledSearchArgs.searchMaxTime, store.size());
+        store.loadSearchOutput(searchOutput, step,
+            timedOut || store.isFull());
+        if (!timedOut && compiledSearchArgs.searchResultsChecked > 0)
+            doExtendedSearch();
+    }
+
+    /**
+     * Checks whether the search may be split among several workers: the
+     * StepUnifier and the SearchUnifier are shared, so step searches and
+     * parse formats need a single one.
+     */
+    private boolean isParallelSearch() {
+        if (stepSearchMode)
+            return false;
+        for (int i = 0; i < compiledSearchArgs.searchForWhat.length; i++)
+            if (!compiledSearchArgs.searchForWhat[i].equals("")
+                && (compiledSearchArgs.searchFormatChoice[i] == SearchOptionsConstants.FORMAT_PARSE_EXPR_ID
+                    || compiledSearchArgs.searchFormatChoice[i] == SearchOptionsConstants.FORMAT_PARSE_STMT_ID))
+                return false;
+        return true;
     }
 
     public List<Assrt> getAssrtAList() {
@@ -146,263 +248,334 @@ public class SearchEngine {
         }
     }
 
-    private void loadSearchOutput() throws InterruptedException {
-        ProofStepStmt[] aproofStepStmt = null;
-        boolean full = false;
-        final int minSeq = compiledSearchArgs.searchMinSeq;
-        final int maxSeq = compiledSearchArgs.searchMaxSeq;
-        final int nbrDerivStepHyps = compiledSearchArgs.nbrDerivStepHyps;
-        final int minHyps = compiledSearchArgs.searchMinHyps;
-        final int maxHyps = compiledSearchArgs.searchMaxHyps;
-        final int minProofRefs = compiledSearchArgs.searchMinProofRefs;
-        String step;
-        if (stepSearchMode) {
-            derivStep = searchArgs.stepSearchStmt;
-            aproofStepStmt = derivStep.getSortedHypArray();
-            step = derivStep.getStep();
+    private void doExtendedSearch() {}
+
+    private int computeSearchStart(final int minHyps) {
+        if (assrtAList.get(0).getLogHypArrayLength() >= minHyps)
+            return 0;
+        int j = assrtAList.size() - 1;
+        if (minHyps > assrtAList.get(j).getLogHypArrayLength())
+            return Integer.MAX_VALUE;
+        int k = 0;
+        int l = k + (j - k) / 2;
+        int i1;
+        do {
+            i1 = l;
+            if (assrtAList.get(l).getLogHypArrayLength() < minHyps)
+                k = l;
+            else
+                j = l;
+            l = k + (j - k) / 2;
+        } while (l != i1);
+        return ++l;
+    }
+
+    private void checkForInterrupt() throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        else
+            return;
+    }
+
+    /**
+     * WorkerGate lets the SearchWorkers of a search run until the search is
+     * over: once closed, workers which have not started do nothing, and
+     * closeAndAwait() waits for those which have started to end (and add their
+     * statistics).
+     */
+    private static class WorkerGate {
+        private boolean closed;
+        private int running;
+
+        synchronized boolean enter() {
+            if (closed)
+                return false;
+            running++;
+            return true;
         }
-        else {
-            derivStep = null;
-            aproofStepStmt = null;
-            derivStepHypArray = null;
-            step = "";
+
+        synchronized void exit() {
+            if (--running == 0)
+                notifyAll();
         }
-        int k1 = computeSearchStart(minHyps);
-        hypLoop: for (int hyp = minHyps; hyp <= maxHyps; hyp++) {
-            if (stepSearchMode) {
-                derivStepHypArray = new ProofStepStmt[hyp];
-                for (int j2 = 0; j2 < nbrDerivStepHyps; j2++)
-                    derivStepHypArray[j2] = aproofStepStmt[j2];
 
+        synchronized void closeAndAwait() {
+            closed = true;
+            boolean interrupted = false;
+            while (running > 0)
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * SearchWorker scans a range of the assertion list, with its own
+     * SearchDataLines (SearchDataGetter is not thread safe) and statistics,
+     * adding the assertions it selects to the
+     * shared SearchOutputStore.
+     */
+    private class SearchWorker implements Callable<Void> {
+        private final WorkerGate gate;
+        private final int searchStart;
+        private final int from;
+        private final int to;
+        private final SearchOutput stats = new SearchOutput("");
+        private final SearchDataLines searchDataLines;
+        private ProofStepStmt[] derivStepHypArray = null;
+        private Assrt assrt = null;
+        private int assrtNbrLogHyps = 0;
+        private Hyp[] assrtHypArray = null;
+        private LogHyp[] assrtLogHypArray = null;
+        private ParseNode[] assrtSubst = null;
+
+        SearchWorker(final WorkerGate gate, final int searchStart,
+            final int from, final int to,
+            final SearchDataLines searchDataLines)
+        {
+            this.gate = gate;
+            this.searchStart = searchStart;
+            this.from = from;
+            this.to = to;
+            this.searchDataLines = searchDataLines;
+        }
+
+        public Void call() throws Exception {
+            if (!gate.enter())
+                return null;
+            try {
+                search();
+            } catch (final InterruptedException e) {
+                // cancelled after a timeout or an interrupt of the search
+            } finally {
+                searchOutput.addStats(stats);
+                gate.exit();
             }
-            for (; k1 < assrtAList.size(); k1++) {
+            return null;
+        }
+
+        private void search() throws InterruptedException {
+            final int minSeq = compiledSearchArgs.searchMinSeq;
+            final int maxSeq = compiledSearchArgs.searchMaxSeq;
+            final int nbrDerivStepHyps = compiledSearchArgs.nbrDerivStepHyps;
+            final int minProofRefs = compiledSearchArgs.searchMinProofRefs;
+            final BitSet candidates = compiledSearchArgs.searchCandidates;
+            final SearchIndex searchIndex = compiledSearchArgs.searchIndex;
+            final ProofStepStmt[] aproofStepStmt = stepSearchMode
+                ? derivStep.getSortedHypArray() : null;
+            for (int k1 = from; k1 < to; k1++) {
                 checkForInterrupt();
-                if (searchOutput.searchReturnCode != 0)
+                if (searchOutput.searchReturnCode != 0 || store.isFull(k1))
                     break;
                 assrt = assrtAList.get(k1);
-                searchOutput.statsNbrInputAssrtGets++;
+                stats.statsNbrInputAssrtGets++;
                 final int i2 = assrt.getSeq();
                 if (i2 >= maxSeq) {
-                    searchOutput.statsNbrRejectGEMaxSeq++;
-                    k1 = computeSearchStart(hyp + 1);
-                    continue hypLoop;
+                    stats.statsNbrRejectGEMaxSeq++;
+                    continue;
                 }
                 if (i2 <= minSeq) {
-                    searchOutput.statsNbrRejectLEMinSeq++;
-                    k1++;
+                    stats.statsNbrRejectLEMinSeq++;
                     continue;
                 }
-                assrtNbrLogHyps = assrt.getLogHypArrayLength();
-                if (assrtNbrLogHyps != hyp) {
-                    searchOutput.statsNbrRejectGTHypIndex++;
-                    continue hypLoop;
+                final int hyp = assrt.getLogHypArrayLength();
+                if (k1 > searchStart
+                    && assrtAList.get(k1 - 1).getLogHypArrayLength() != hyp)
+                    stats.statsNbrRejectGTHypIndex++; // next nbr of hyps
+                if (stepSearchMode && (derivStepHypArray == null
+                    || derivStepHypArray.length != hyp))
+                {
+                    derivStepHypArray = new ProofStepStmt[hyp];
+                    for (int j2 = 0; j2 < nbrDerivStepHyps; j2++)
+                        derivStepHypArray[j2] = aproofStepStmt[j2];
                 }
+                assrtNbrLogHyps = hyp;
                 if (assrt.getNbrProofRefs() < minProofRefs) {
-                    searchOutput.statsNbrRejectLTMinProofRefs++;
-                    k1++;
+                    stats.statsNbrRejectLTMinProofRefs++;
                     continue;
                 }
                 assrtLogHypArray = assrt.getLogHypArray();
                 assrtHypArray = assrt.getMandFrame().hypArray;
                 if (evaluateOtherExclusionCriteria()) {
+                    if (candidates != null
+                        && !searchIndex.isCandidate(candidates, assrt))
+                    {
+                        stats.statsNbrRejectFailSearchData++;
+                        continue;
+                    }
                     if (stepSearchMode && !isAssrtUnifiable()) {
-                        searchOutput.statsNbrRejectFailUnify++;
-                        k1++;
+                        stats.statsNbrRejectFailUnify++;
                         continue;
                     }
                     if (evaluateSearchDataLines()) {
                         if (searchOutput.searchReturnCode != 0)
                             break;
-                        searchOutput.statsNbrSelected++;
-                        if (addAssrtToStore(computeScore())) {
-                            full = true;
+                        stats.statsNbrSelected++;
+                        addAssrtToStore(k1, computeScore());
+                        // the assertions after k1 may still be kept, unless
+                        // the store is full of assertions found before them
+                        if (store.isFull(k1 + 1))
                             break;
-                        }
                     }
                     else
-                        searchOutput.statsNbrRejectFailSearchData++;
+                        stats.statsNbrRejectFailSearchData++;
                 }
                 else
-                    searchOutput.statsNbrRejectOtherExclCriteria++;
+                    stats.statsNbrRejectOtherExclCriteria++;
             }
         }
-        store.loadSearchOutput(searchOutput, step, full);
-        return;
-    }
-
-    private void doExtendedSearch() throws InterruptedException {
-        checkForInterrupt();
-    }
 
-    private boolean evaluateOtherExclusionCriteria() {
-        final String s = assrt.getLabel();
-        final int i = compiledSearchArgs.searchExclLabelsPattern.length;
-        for (int j = 0; j < i; j++)
-            if (compiledSearchArgs.searchExclLabelsPattern[j].matcher(s)
-                .matches())
-            {
-                searchOutput.statsNbrRejectExclLabels++;
-                return false;
-            }
-
-        final BitSet bitset = compiledSearchArgs.searchCombinedDependencies;
-        if (bitset != null)
-            if (compiledSearchArgs.searchUseChapHierarchy) {
-                if (!bitset.get(assrt.getChapterNbr()))
+        private boolean evaluateOtherExclusionCriteria() {
+            final String s = assrt.getLabel();
+            final int i = compiledSearchArgs.searchExclLabelsPattern.length;
+            for (int j = 0; j < i; j++)
+                if (compiledSearchArgs.searchExclLabelsPattern[j].matcher(s)
+                    .matches())
+                {
+                    stats.statsNbrRejectExclLabels++;
                     return false;
-            }
-            else if (compiledSearchArgs.searchUseSecHierarchy && !bitset
-                .get(BookManager.getOrigSectionNbr(assrt.getSectionNbr())))
-                return false;
-        return true;
-    }
+                }
 
-    private boolean evaluateSearchDataLines() {
-        if (compiledSearchArgs.searchDataLines != null)
-            return compiledSearchArgs.searchDataLines.evaluate(assrt,
-                compiledSearchArgs);
-        else
+            final BitSet bitset = compiledSearchArgs.searchCombinedDependencies;
+            if (bitset != null)
+                if (compiledSearchArgs.searchUseChapHierarchy) {
+                    if (!bitset.get(assrt.getChapterNbr()))
+                        return false;
+                }
+                else if (compiledSearchArgs.searchUseSecHierarchy && !bitset
+                    .get(BookManager.getOrigSectionNbr(assrt.getSectionNbr())))
+                    return false;
             return true;
-    }
+        }
 
-    private int computeSearchStart(final int minHyps) {
-        if (assrtAList.get(0).getLogHypArrayLength() >= minHyps)
-            return 0;
-        int j = assrtAList.size() - 1;
-        if (minHyps > assrtAList.get(j).getLogHypArrayLength())
-            return Integer.MAX_VALUE;
-        int k = 0;
-        int l = k + (j - k) / 2;
-        int i1;
-        do {
-            i1 = l;
-            if (assrtAList.get(l).getLogHypArrayLength() < minHyps)
-                k = l;
+        private boolean evaluateSearchDataLines() {
+            if (searchDataLines != null)
+                return searchDataLines.evaluate(assrt, compiledSearchArgs);
             else
-                j = l;
-            l = k + (j - k) / 2;
-        } while (l != i1);
-        return ++l;
-    }
+                return true;
+        }
 
-    private boolean isAssrtUnifiable() {
-        try {
-            if (unifyStepFormulaWithWorkVars()) {
-                if (assrtNbrLogHyps == 0) {
-                    assrtSubst = stepUnifier.finalizeAndLoadAssrtSubst();
-                    return true;
+        private boolean isAssrtUnifiable() {
+            try {
+                if (unifyStepFormulaWithWorkVars()) {
+                    if (assrtNbrLogHyps == 0) {
+                        assrtSubst = stepUnifier.finalizeAndLoadAssrtSubst();
+                        return true;
+                    }
+                    if ((assrtSubst = stepUnifier.unifyAndMergeHypsSorted(
+                        assrt.getSortedLogHypArray(),
+                        derivStepHypArray)) != null)
+                        return true;
                 }
-                if ((assrtSubst = stepUnifier.unifyAndMergeHypsSorted(
-                    assrt.getSortedLogHypArray(), derivStepHypArray)) != null)
-                    return true;
+            } catch (final VerifyException verifyException) {
+                throw new IllegalArgumentException(
+                    " A work var problem: alloc more via RunParms? "
+                        + verifyException.getMessage());
             }
-        } catch (final VerifyException verifyException) {
-            throw new IllegalArgumentException(
-                " A work var problem: alloc more via RunParms? "
-                    + verifyException.getMessage());
+            return false;
         }
-        return false;
-    }
-
-    private boolean unifyStepFormulaWithWorkVars() throws VerifyException {
-        assrt.getExprParseTree().getRoot();
-        ParseNode parseNode = null;
-        if (derivStep.formulaParseTree != null)
-            parseNode = derivStep.formulaParseTree.getRoot();
-        return stepUnifier.unifyAndMergeStepFormula(false, assrt, parseNode);
-    }
 
-    private int computeScore() {
-        if (stepSearchMode && !compiledSearchArgs.derivStepHypWildcards) {
-            searchOutput.statsNbrCompletedSearchResults++;
-            return 100;
+        private boolean unifyStepFormulaWithWorkVars()
+            throws VerifyException
+        {
+            assrt.getExprParseTree().getRoot();
+            ParseNode parseNode = null;
+            if (derivStep.formulaParseTree != null)
+                parseNode = derivStep.formulaParseTree.getRoot();
+            return stepUnifier.unifyAndMergeStepFormula(false, assrt,
+                parseNode);
         }
-        else
-            return 50;
-    }
-
-    private boolean addAssrtToStore(final int score) {
-        String s;
-        if (score == 100)
-            s = SearchConstants.COMPLETED_ITEM_OUTPUT_LITERAL;
-        else
-            s = "";
-        String s1 = "";
-        int j;
-        if (compiledSearchArgs.searchComments) {
-            s1 = assrt.getDescription();
-            j = 2 + assrtNbrLogHyps;
-        }
-        else
-            j = 1 + assrtNbrLogHyps;
-        final String[] selection = new String[j];
-        int k = 0;
-        final Formula[] aformula = new Formula[assrtNbrLogHyps];
-        Formula formula;
-        if (stepSearchMode && substitutions) {
-            formula = buildSearchSelectionSubstFormula(
-                assrt.getExprParseTree());
-            for (int l = 0; l < assrtNbrLogHyps; l++)
-                aformula[l] = buildSearchSelectionSubstFormula(
-                    assrtLogHypArray[l].getExprParseTree());
 
+        private int computeScore() {
+            if (stepSearchMode && !compiledSearchArgs.derivStepHypWildcards) {
+                stats.statsNbrCompletedSearchResults++;
+                return 100;
+            }
+            else
+                return 50;
         }
-        else {
-            formula = assrt.getFormula();
-            for (int i1 = 0; i1 < assrtNbrLogHyps; i1++)
-                aformula[i1] = assrtLogHypArray[i1].getFormula();
 
-        }
-        if (assrtNbrLogHyps == 0) {
-            if (s1.length() > 0) {
-                selection[k++] = s + assrt.getLabel() + " " + s1;
-                selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
-                    + SearchConstants.SEARCH_OUTPUT_FORMULA_LABEL_SEPARATOR
-                    + formula.toString();
+        private void addAssrtToStore(final int position, final int score) {
+            String s;
+            if (score == 100)
+                s = SearchConstants.COMPLETED_ITEM_OUTPUT_LITERAL;
+            else
+                s = "";
+            String s1 = "";
+            int j;
+            if (compiledSearchArgs.searchComments) {
+                s1 = assrt.getDescription();
+                j = 2 + assrtNbrLogHyps;
             }
             else
-                selection[k++] = s + assrt.getLabel()
+                j = 1 + assrtNbrLogHyps;
+            final String[] selection = new String[j];
+            int k = 0;
+            final Formula[] aformula = new Formula[assrtNbrLogHyps];
+            Formula formula;
+            if (stepSearchMode && substitutions) {
+                formula = buildSearchSelectionSubstFormula(
+                    assrt.getExprParseTree());
+                for (int l = 0; l < assrtNbrLogHyps; l++)
+                    aformula[l] = buildSearchSelectionSubstFormula(
+                        assrtLogHypArray[l].getExprParseTree());
+
+            }
+            else {
+                formula = assrt.getFormula();
+                for (int i1 = 0; i1 < assrtNbrLogHyps; i1++)
+                    aformula[i1] = assrtLogHypArray[i1].getFormula();
+
+            }
+            if (assrtNbrLogHyps == 0) {
+                if (s1.length() > 0) {
+                    selection[k++] = s + assrt.getLabel() + " " + s1;
+                    selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
+                        + SearchConstants.SEARCH_OUTPUT_FORMULA_LABEL_SEPARATOR
+                        + formula.toString();
+                }
+                else
+                    selection[k++] = s + assrt.getLabel()
+                        + SearchConstants.SEARCH_OUTPUT_FORMULA_LABEL_SEPARATOR
+                        + formula.toString();
+            }
+            else {
+                String s3;
+                if (s1.length() > 0) {
+                    selection[k++] = s + assrt.getLabel() + " " + s1;
+                    s3 = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT;
+                }
+                else
+                    s3 = s + assrt.getLabel();
+                selection[k++] = s3
                     + SearchConstants.SEARCH_OUTPUT_FORMULA_LABEL_SEPARATOR
+                    + aformula[0].toString();
+                for (int j1 = 1; j1 < assrtNbrLogHyps; j1++)
+                    selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
+                        + SearchConstants.SEARCH_OUTPUT_FORMULA_LOG_HYP_SEPARATOR
+                        + aformula[j1].toString();
+
+                selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
+                    + SearchConstants.SEARCH_OUTPUT_FORMULA_YIELDS_SEPARATOR
                     + formula.toString();
-        }
-        else {
-            String s3;
-            if (s1.length() > 0) {
-                selection[k++] = s + assrt.getLabel() + " " + s1;
-                s3 = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT;
             }
-            else
-                s3 = s + assrt.getLabel();
-            selection[k++] = s3
-                + SearchConstants.SEARCH_OUTPUT_FORMULA_LABEL_SEPARATOR
-                + aformula[0].toString();
-            for (int j1 = 1; j1 < assrtNbrLogHyps; j1++)
-                selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
-                    + SearchConstants.SEARCH_OUTPUT_FORMULA_LOG_HYP_SEPARATOR
-                    + aformula[j1].toString();
-
-            selection[k++] = SearchConstants.SEARCH_OUTPUT_SEARCH_FORMULA_INDENT
-                + SearchConstants.SEARCH_OUTPUT_FORMULA_YIELDS_SEPARATOR
-                + formula.toString();
+            store.add(position, assrt, selection, score);
         }
-        return store.add(assrt, selection, score);
-    }
-    private Formula buildSearchSelectionSubstFormula(
-        final ParseTree parseTree)
-    {
-        final ParseTree parseTree1 = parseTree
-            .deepCloneApplyingAssrtSubst(assrtHypArray, assrtSubst);
-        final Formula formula = verifyProofs.convertRPNToFormula(
-            parseTree1.convertToRPN(),
-            SearchConstants.DOT_STEP_CAPTION + derivStep.getStep());
-        formula.setTyp(provableLogicStmtTyp);
-        return formula;
-    }
 
-    private void checkForInterrupt() throws InterruptedException {
-        if (Thread.interrupted())
-            throw new InterruptedException();
-        else
-            return;
+        private Formula buildSearchSelectionSubstFormula(
+            final ParseTree parseTree)
+        {
+            final ParseTree parseTree1 = parseTree
+                .deepCloneApplyingAssrtSubst(assrtHypArray, assrtSubst);
+            final Formula formula = verifyProofs.convertRPNToFormula(
+                parseTree1.convertToRPN(),
+                SearchConstants.DOT_STEP_CAPTION + derivStep.getStep());
+            formula.setTyp(provableLogicStmtTyp);
+            return formula;
+        }
     }
 }
@@ -0,0 +1,337 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.search;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import mmj.lang.*;
+
+/**
+ * SearchIndex is an inverted index of the assertions used by the Search
+ * Options engine, so that a search can skip the assertions which cannot
+ * possibly match before any per-assertion evaluation is done.
+ * <p>
+ * Each assertion is given an ordinal, its position in MObj.SEQ order, and
+ * three vocabularies are mapped to the ordinals of the assertions where they
+ * occur:
+ * <ul>
+ * <li>the symbol ids of the assertion's formula and of its logical
+ * hypotheses' formulas;
+ * <li>the assertion's label and the labels of its logical hypotheses;
+ * <li>the words (split at spaces) of the lower case description for search.
+ * </ul>
+ * Posting lists are stored as sorted ordinal arrays, or as a BitSet for the
+ * common entries (like "(" or "|-") where the array would be larger.
+ * <p>
+ * Every lookup returns a superset of the assertions which match, or null if
+ * nothing can be excluded. The candidates are still evaluated in full by
+ * SearchDataLines.
+ */
+public class SearchIndex {
+
+    private final Assrt[] assrt;
+    private final int[] seq;
+
+    private final BitSet axioms;
+    private final BitSet withLogHyps;
+    private final BitSet withoutDescription;
+
+    private final Map<String, Posting> symbols;
+    private final Map<String, Posting> labels;
+    private final Map<String, Posting> words;
+
+    /**
+     * Build the index for a list of assertions.
+     *
+     * @param assrtList the assertions to be searched, in any order.
+     */
+    public SearchIndex(final List<Assrt> assrtList) {
+        assrt = assrtList.toArray(new Assrt[assrtList.size()]);
+        Arrays.sort(assrt, MObj.SEQ);
+        seq = new int[assrt.length];
+
+        axioms = new BitSet(assrt.length);
+        withLogHyps = new BitSet(assrt.length);
+        withoutDescription = new BitSet(assrt.length);
+
+        final Map<String, PostingBuilder> symbolBuilder = new HashMap<>();
+        final Map<String, PostingBuilder> labelBuilder = new HashMap<>();
+        final Map<String, PostingBuilder> wordBuilder = new HashMap<>();
+
+        for (int i = 0; i < assrt.length; i++) {
+            final Assrt a = assrt[i];
+            seq[i] = a.getSeq();
+            if (a instanceof Axiom)
+                axioms.set(i);
+
+            addKey(labelBuilder, a.getLabel(), i);
+            addSymbols(symbolBuilder, a.getFormula(), i);
+            final LogHyp[] logHypArray = a.getLogHypArray();
+            if (logHypArray.length > 0)
+                withLogHyps.set(i);
+            for (final LogHyp logHyp : logHypArray) {
+                addKey(labelBuilder, logHyp.getLabel(), i);
+                addSymbols(symbolBuilder, logHyp.getFormula(), i);
+            }
+
+            if (a.getDescription() == null)
+                withoutDescription.set(i);
+            else
+                for (final String word : a.getDescriptionForSearch()
+                    .toLowerCase().split(" ", -1))
+                    addKey(wordBuilder, word, i);
+        }
+
+        symbols = build(symbolBuilder);
+        labels = build(labelBuilder);
+        words = build(wordBuilder);
+    }
+
+    /**
+     * Returns the number of assertions in the index.
+     *
+     * @return number of assertions.
+     */
+    public int size() {
+        return assrt.length;
+    }
+
+    /**
+     * Returns the ordinal of an assertion in the index.
+     *
+     * @param a the Assrt.
+     * @return the ordinal, or -1 if the assertion is not in the index.
+     */
+    public int getOrdinal(final Assrt a) {
+        final int i = Arrays.binarySearch(seq, a.getSeq());
+        return i >= 0 && assrt[i] == a ? i : -1;
+    }
+
+    /**
+     * Checks whether an assertion is in a set of candidates.
+     * <p>
+     * Assertions which are not in the index are always candidates.
+     *
+     * @param candidates set of ordinals, or null for all assertions.
+     * @param a the Assrt.
+     * @return true if the assertion may match.
+     */
+    public boolean isCandidate(final BitSet candidates, final Assrt a) {
+        if (candidates == null)
+            return true;
+        final int i = getOrdinal(a);
+        return i < 0 || candidates.get(i);
+    }
+
+    /**
+     * Returns the assertions which are Axioms.
+     *
+     * @return set of ordinals (do not modify).
+     */
+    public BitSet getAxioms() {
+        return axioms;
+    }
+
+    /**
+     * Returns the assertions which have logical hypotheses.
+     *
+     * @return set of ordinals (do not modify).
+     */
+    public BitSet getWithLogHyps() {
+        return withLogHyps;
+    }
+
+    /**
+     * Returns the assertions where a formula string (symbol ids separated by
+     * single spaces) may contain the given text.
+     *
+     * @param text the search text.
+     * @return set of ordinals, or null for all assertions.
+     */
+    public BitSet getFormulaCandidates(final String text) {
+        return getContaining(symbols, text);
+    }
+
+    /**
+     * Returns the assertions where the lower case description for search may
+     * contain the given (lower case) text.
+     *
+     * @param text the search text.
+     * @return set of ordinals, or null for all assertions.
+     */
+    public BitSet getCommentCandidates(final String text) {
+        final BitSet bitSet = getContaining(words, text);
+        if (bitSet != null)
+            bitSet.or(withoutDescription);
+        return bitSet;
+    }
+
+    /**
+     * Returns the assertions where the label of the assertion or of one of
+     * its logical hypotheses is accepted by a predicate.
+     *
+     * @param match the predicate applied to each indexed label.
+     * @return set of ordinals.
+     */
+    public BitSet getLabelCandidates(final Predicate<String> match) {
+        final BitSet bitSet = new BitSet(assrt.length);
+        for (final Map.Entry<String, Posting> e : labels.entrySet())
+            if (match.test(e.getKey()))
+                e.getValue().orInto(bitSet);
+        return bitSet;
+    }
+
+    /**
+     * Returns the assertions with a label (of the assertion or one of its
+     * logical hypotheses) equal to the given label.
+     *
+     * @param label the label.
+     * @return set of ordinals.
+     */
+    public BitSet getLabelCandidates(final String label) {
+        final BitSet bitSet = new BitSet(assrt.length);
+        final Posting posting = labels.get(label);
+        if (posting != null)
+            posting.orInto(bitSet);
+        return bitSet;
+    }
+
+    /**
+     * Intersects two candidate sets, either of which may be null for all
+     * assertions. The first argument may be modified.
+     *
+     * @param a the first set.
+     * @param b the second set.
+     * @return the intersection.
+     */
+    public static BitSet and(final BitSet a, final BitSet b) {
+        if (a == null)
+            return b;
+        if (b != null)
+            a.and(b);
+        return a;
+    }
+
+    /**
+     * Unites two candidate sets, either of which may be null for all
+     * assertions. The first argument may be modified.
+     *
+     * @param a the first set.
+     * @param b the second set.
+     * @return the union.
+     */
+    public static BitSet or(final BitSet a, final BitSet b) {
+        if (a == null || b == null)
+            return null;
+        a.or(b);
+        return a;
+    }
+
+    /**
+     * Looks up a text which must be contained in a string of vocabulary
+     * entries separated by single spaces. The text between two spaces must be
+     * a whole entry, the text before the first space must end an entry and
+     * the text after the last space must start one. Without spaces, the text
+     * can be anywhere in an entry.
+     */
+    private BitSet getContaining(final Map<String, Posting> vocabulary,
+        final String text)
+    {
+        final String[] part = text.split(" ", -1);
+        BitSet result = null;
+        for (int i = 0; i < part.length; i++) {
+            final String p = part[i];
+            final boolean first = i == 0;
+            final boolean last = i == part.length - 1;
+            if ((first || last) && p.isEmpty())
+                continue;
+            final BitSet bitSet = new BitSet(assrt.length);
+            if (!first && !last) {
+                final Posting posting = vocabulary.get(p);
+                if (posting != null)
+                    posting.orInto(bitSet);
+            }
+            else
+                for (final Map.Entry<String, Posting> e : vocabulary
+                    .entrySet())
+                {
+                    final String key = e.getKey();
+                    if (first && last ? key.contains(p)
+                        : first ? key.endsWith(p) : key.startsWith(p))
+                        e.getValue().orInto(bitSet);
+                }
+            result = and(result, bitSet);
+        }
+        return result;
+    }
+
+    private static void addSymbols(final Map<String, PostingBuilder> builder,
+        final Formula formula, final int ordinal)
+    {
+        for (final Sym sym : formula.getSym())
+            addKey(builder, sym.getId(), ordinal);
+    }
+
+    private static void addKey(final Map<String, PostingBuilder> builder,
+        final String key, final int ordinal)
+    {
+        builder.computeIfAbsent(key, k -> new PostingBuilder()).add(ordinal);
+    }
+
+    private Map<String, Posting> build(
+        final Map<String, PostingBuilder> builder)
+    {
+        final Map<String, Posting> map = new HashMap<>(builder.size() * 2);
+        for (final Map.Entry<String, PostingBuilder> e : builder.entrySet())
+            map.put(e.getKey(), e.getValue().build(assrt.length));
+        return map;
+    }
+
+    /**
+     * A list of ordinals, added in increasing order, ignoring duplicates.
+     */
+    private static class PostingBuilder {
+        int[] ordinal = new int[4];
+        int cnt;
+
+        void add(final int i) {
+            if (cnt > 0 && ordinal[cnt - 1] == i)
+                return;
+            if (cnt == ordinal.length)
+                ordinal = Arrays.copyOf(ordinal, cnt * 2);
+            ordinal[cnt++] = i;
+        }
+
+        Posting build(final int size) {
+            // a BitSet takes size / 8 bytes, an array 4 bytes per entry
+            if (cnt > size / 32) {
+                final BitSet bitSet = new BitSet(size);
+                for (int i = 0; i < cnt; i++)
+                    bitSet.set(ordinal[i]);
+                return new Posting(null, bitSet);
+            }
+            return new Posting(Arrays.copyOf(ordinal, cnt), null);
+        }
+    }
+
+    private static class Posting {
+        final int[] ordinal;
+        final BitSet bitSet;
+
+        Posting(final int[] ordinal, final BitSet bitSet) {
+            this.ordinal = ordinal;
+            this.bitSet = bitSet;
+        }
+
+        void orInto(final BitSet target) {
+            if (bitSet != null)
+                target.or(bitSet);
+            else
+                for (final int i : ordinal)
+                    target.set(i);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package mmj.search;
 
 import java.awt.Dimension;
 import java.awt.Font;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -69,6 +70,9 @@ public class SearchMgr {
     private final SearchArgs searchArgs = new SearchArgs();
     private SearchOutput searchOutput = new SearchOutput("");
     private SearchEngine searchEngine = null;
+    private SearchIndex searchIndex = null;
+    private final SearchTextCache searchTextCache = new SearchTextCache(
+        SearchConstants.SEARCH_TEXT_CACHE_MAX_CHARS);
     private final SearchUnifier searchUnifier = new SearchUnifier();
 
     public SearchMgr(final ProofAsstPreferences proofAsstPreferences) {
@@ -101,6 +105,37 @@ public class SearchMgr {
         searchArgs.sortedAssrtSearchList = proofAsst.getSortedAssrtSearchList();
         searchEngine = new SearchEngine(this, proofAsst, proofAsstPreferences,
             bookManager, verifyProofs, provableLogicStmtTyp);
+        invalidateSearchData();
+    }
+
+    /**
+     * Returns the index of the assertions searched, building it on first use.
+     *
+     * @return the SearchIndex.
+     */
+    public synchronized SearchIndex getSearchIndex() {
+        if (searchIndex == null)
+            searchIndex = new SearchIndex(proofAsst.getSortedAssrtSearchList());
+        return searchIndex;
+    }
+
+    /**
+     * Returns the cache of the strings searched for each assertion.
+     *
+     * @return the SearchTextCache.
+     */
+    public SearchTextCache getSearchTextCache() {
+        return searchTextCache;
+    }
+
+    /**
+     * Discards the index of the assertions searched and the cached search
+     * strings, which are rebuilt by the next search. Called when TheoremLoader
+     * adds or updates theorems.
+     */
+    public synchronized void invalidateSearchData() {
+        searchIndex = null;
+        searchTextCache.clear();
     }
 
     public void execSearchOptionsNewGeneralSearch(final Stmt stmt) {
@@ -141,6 +176,87 @@ public class SearchMgr {
             return searchOutput;
     }
 
+    /**
+     * Runs a general search for a ForWhat text without the Search Options
+     * screen, first on a single SearchWorker without the symbol index, then
+     * on a single SearchWorker using the index, and then using the index with
+     * the assertions split into chunks of chunkSize, and reports the results
+     * of the first search, or an error if a later search found different
+     * results.
+     * <p>
+     * This is provided for regression testing (see the SearchBatchTest
+     * RunParm).
+     *
+     * @param messages Messages object for error/info messages.
+     * @param forWhat the ForWhat search option.
+     * @param maxResults the MaxResults search option.
+     * @param chunkSize number of assertions per SearchWorker in the last
+     *            search.
+     */
+    public void searchBatchTest(final Messages messages, final String forWhat,
+        final int maxResults, final int chunkSize)
+    {
+        final int size = proofAsst.getSortedAssrtSearchList().size();
+        final List<String> expected = execBatchSearch(messages, forWhat,
+            maxResults, size, false);
+        if (expected == null)
+            return;
+        messages.accumInfoMessage(
+            SearchConstants.ERRMSG_SEARCH_BATCH_TEST_RESULTS_1, forWhat,
+            maxResults, expected);
+        List<String> actual = execBatchSearch(messages, forWhat, maxResults,
+            size, true);
+        if (actual != null && !actual.equals(expected))
+            messages.accumErrorMessage(
+                SearchConstants.ERRMSG_SEARCH_BATCH_TEST_INDEX_MISMATCH_1,
+                actual);
+        actual = execBatchSearch(messages, forWhat, maxResults, chunkSize,
+            true);
+        if (actual != null && !actual.equals(expected))
+            messages.accumErrorMessage(
+                SearchConstants.ERRMSG_SEARCH_BATCH_TEST_MISMATCH_1, chunkSize,
+                actual);
+    }
+
+    /**
+     * Runs a searchBatchTest() search and returns the labels of the
+     * assertions found, followed by the end or more literal, or null if the
+     * search arguments are in error.
+     */
+    private List<String> execBatchSearch(final Messages messages,
+        final String forWhat, final int maxResults, final int chunkSize,
+        final boolean useSearchIndex)
+    {
+        searchArgs.initSearchArgsToDefaults();
+        searchArgs.initSearchKeys(logicalSystem);
+        searchArgs.useSearchIndex = useSearchIndex;
+        searchArgs.forWhat[0].set(forWhat);
+        searchArgs.maxResults.set(Integer.toString(maxResults));
+        searchArgs.maxTime
+            .set(Integer.toString(SearchConstants.SEARCH_BATCH_TEST_MAX_TIME));
+        searchArgs.stats.set("0");
+        searchArgs.sortedAssrtSearchList = proofAsst.getSortedAssrtSearchList();
+        searchOutput = new SearchOutput(SearchConstants.SEARCH_BATCH_TEST_TITLE);
+        searchEngine.execSearch(chunkSize);
+        if (searchOutput.searchReturnCode != 0) {
+            for (final SearchError error : searchOutput.searchErrorList)
+                messages.accumErrorMessage(error.message);
+            return null;
+        }
+        final List<String> results = new ArrayList<>();
+        for (int i = 0; i < searchOutput.sortedAssrtResultsList.size(); i++) {
+            final Assrt assrt = searchOutput.sortedAssrtResultsList.get(i);
+            if (assrt != null)
+                results.add(assrt.getLabel());
+            else if (searchOutput.selectionArray[i]
+                .contains(SearchConstants.SEARCH_OUTPUT_LIST_MORE_LITERAL))
+                results.add(SearchConstants.SEARCH_OUTPUT_LIST_MORE_LITERAL);
+            else
+                results.add(SearchConstants.SEARCH_OUTPUT_LIST_END_LITERAL);
+        }
+        return results;
+    }
+
     public void execShowSearchResults() {
         if (searchOutput.searchReturnCode == 0)
             getSearchResultsFrame().showSearchResults();
@@ -51,6 +51,29 @@ public class SearchOutput {
         this.searchTitle = searchTitle;
     }
 
+    /**
+     * Adds the statistics counted by a search worker.
+     *
+     * @param workerStats SearchOutput holding the worker's counts.
+     */
+    public synchronized void addStats(final SearchOutput workerStats) {
+        statsNbrInputAssrtGets += workerStats.statsNbrInputAssrtGets;
+        statsNbrSelected += workerStats.statsNbrSelected;
+        statsNbrCompletedSearchResults += workerStats
+            .statsNbrCompletedSearchResults;
+        statsNbrRejectGEMaxSeq += workerStats.statsNbrRejectGEMaxSeq;
+        statsNbrRejectGTHypIndex += workerStats.statsNbrRejectGTHypIndex;
+        statsNbrRejectLTMinProofRefs += workerStats
+            .statsNbrRejectLTMinProofRefs;
+        statsNbrRejectLEMinSeq += workerStats.statsNbrRejectLEMinSeq;
+        statsNbrRejectOtherExclCriteria += workerStats
+            .statsNbrRejectOtherExclCriteria;
+        statsNbrRejectExclLabels += workerStats.statsNbrRejectExclLabels;
+        statsNbrRejectFailUnify += workerStats.statsNbrRejectFailUnify;
+        statsNbrRejectFailSearchData += workerStats
+            .statsNbrRejectFailSearchData;
+    }
+
     public void finalize(final CompiledSearchArgs csa,
         final BookManager bookManager, final Messages messages)
     {
@@ -19,19 +19,34 @@ import java.util.*;
 
 import mmj.lang.Assrt;
 
+/**
+ * SearchOutputStore collects the assertions selected by the search workers.
+ * <p>
+ * Results may be added by several threads, in any order. Each one is keyed by
+ * its position in the searched assertion list, and only the maxResults
+ * results with the lowest positions are kept: the same ones a single thread
+ * would find scanning the list in order. loadSearchOutput() may be called at
+ * any time, for instance after a timeout, to return the results found so far.
+ */
 public class SearchOutputStore {
 
     private final int maxResults;
-    private int cntResults = 0;
     private final int outputSortNbr;
-    private final List<SearchSelectionItem> storeList = new LinkedList<>();
+    private final TreeMap<Integer, SearchSelectionItem> storeMap = new TreeMap<>();
+
+    /**
+     * The position from which no assertion can be kept anymore, read without
+     * locking by isFull(int).
+     */
+    private volatile int stopPosition;
 
     public SearchOutputStore(final int maxResults, final int outputSortNbr) {
         this.maxResults = maxResults;
         this.outputSortNbr = outputSortNbr;
+        stopPosition = maxResults > 0 ? Integer.MAX_VALUE : 0;
     }
 
-    public void loadSearchOutput(final SearchOutput searchOutput,
+    public synchronized void loadSearchOutput(final SearchOutput searchOutput,
         final String step, final boolean full)
     {
         final String[] selection = new String[1];
@@ -39,7 +54,9 @@ public class SearchOutputStore {
             selection[0] = SearchConstants.SEARCH_OUTPUT_LIST_MORE_LITERAL;
         else
             selection[0] = SearchConstants.SEARCH_OUTPUT_LIST_END_LITERAL;
-        add(null, selection, -1);
+        final List<SearchSelectionItem> storeList = new ArrayList<>(
+            storeMap.values());
+        storeList.add(new SearchSelectionItem(null, selection, -1));
         final Comparator<SearchSelectionItem> sort = SearchSelectionItem.OUTPUT_SORTS[outputSortNbr];
         if (sort != null)
             Collections.sort(storeList, sort);
@@ -64,15 +81,50 @@ public class SearchOutputStore {
 
         searchOutput.step = step;
     }
-    public boolean add(final Assrt assrt, final String[] selection,
-        final int score)
+
+    /**
+     * Adds a selected assertion.
+     *
+     * @param position the assertion's position in the searched list.
+     * @param assrt the Assrt.
+     * @param selection the lines shown for the assertion.
+     * @param score the score of the assertion.
+     * @return true if the store is full.
+     */
+    public synchronized boolean add(final int position, final Assrt assrt,
+        final String[] selection, final int score)
     {
-        storeList.add(new SearchSelectionItem(assrt, selection, score));
-        cntResults++;
+        storeMap.put(position, new SearchSelectionItem(assrt, selection,
+            score));
+        if (storeMap.size() > maxResults)
+            storeMap.pollLastEntry();
+        if (isFull() && !storeMap.isEmpty())
+            stopPosition = storeMap.lastKey() + 1;
         return isFull();
     }
 
-    public boolean isFull() {
-        return cntResults >= maxResults;
+    public synchronized boolean isFull() {
+        return storeMap.size() >= maxResults;
+    }
+
+    /**
+     * Checks whether the assertions from a position in the searched list on
+     * cannot be kept anymore, because the store is full of assertions found
+     * before that position.
+     *
+     * @param position the position in the searched list.
+     * @return true if the search can stop at that position.
+     */
+    public boolean isFull(final int position) {
+        return position >= stopPosition;
+    }
+
+    /**
+     * Returns the number of results found so far.
+     *
+     * @return number of results.
+     */
+    public synchronized int size() {
+        return storeMap.size();
     }
 }
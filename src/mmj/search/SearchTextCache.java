@@ -0,0 +1,212 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.search;
+
+import java.util.*;
+
+import mmj.lang.*;
+import mmj.lang.ParseTree.RPNStep;
+
+/**
+ * SearchTextCache keeps the strings which SearchDataGetter renders for an
+ * assertion (formulas, lower case comment and RPN label string), so that
+ * repeat searches in a session do not build them again.
+ * <p>
+ * Each string is built on first use. The cache is bounded by the total number
+ * of characters held: when the limit is exceeded the least recently used
+ * assertions are dropped (and their strings rebuilt when needed again).
+ * <p>
+ * The strings depend on the assertion's formulas, description and proof, so
+ * the cache must be cleared when TheoremLoader updates the LogicalSystem.
+ * <p>
+ * The cache may be used by several search workers at once: lookups are
+ * synchronized on the cache, but the strings are built outside the lock.
+ */
+public class SearchTextCache {
+
+    private final long maxChars;
+
+    private long totalChars;
+
+    private final LinkedHashMap<Assrt, Entry> entries = new LinkedHashMap<>(
+        16, 0.75f, true);
+
+    /**
+     * Construct an empty cache.
+     *
+     * @param maxChars maximum number of characters held, or 0 for no limit.
+     */
+    public SearchTextCache(final long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the assertion's formula, as used by Formula searches (followed
+     * by a space).
+     *
+     * @param assrt the Assrt.
+     * @return formula String.
+     */
+    public String getFormulaString(final Assrt assrt) {
+        final Entry entry;
+        synchronized (this) {
+            entry = getEntry(assrt);
+            if (entry.formula != null)
+                return entry.formula;
+        }
+        final String formula = assrt.getFormula().toString() + " ";
+        synchronized (this) {
+            if (entry.formula == null && isCached(assrt, entry)) {
+                entry.formula = formula;
+                added(formula.length());
+            }
+        }
+        return formula;
+    }
+
+    /**
+     * Returns the formulas of the assertion's logical hypotheses.
+     *
+     * @param assrt the Assrt.
+     * @return array of formula Strings (do not modify).
+     */
+    public String[] getLogHypFormulaString(final Assrt assrt) {
+        final Entry entry;
+        synchronized (this) {
+            entry = getEntry(assrt);
+            if (entry.logHypFormula != null)
+                return entry.logHypFormula;
+        }
+        final LogHyp[] alogHyp = assrt.getLogHypArray();
+        final String[] logHypFormula = new String[alogHyp.length];
+        int n = 0;
+        for (int i = 0; i < alogHyp.length; i++) {
+            logHypFormula[i] = alogHyp[i].getFormula().toString();
+            n += logHypFormula[i].length();
+        }
+        synchronized (this) {
+            if (entry.logHypFormula == null && isCached(assrt, entry)) {
+                entry.logHypFormula = logHypFormula;
+                added(n);
+            }
+        }
+        return logHypFormula;
+    }
+
+    /**
+     * Returns the assertion's description for search, in lower case.
+     *
+     * @param assrt the Assrt.
+     * @return comment String.
+     */
+    public String getCommentString(final Assrt assrt) {
+        final Entry entry;
+        synchronized (this) {
+            entry = getEntry(assrt);
+            if (entry.comment != null)
+                return entry.comment;
+        }
+        final String comment = assrt.getDescriptionForSearch().toLowerCase();
+        synchronized (this) {
+            if (entry.comment == null && isCached(assrt, entry)) {
+                entry.comment = comment;
+                added(comment.length());
+            }
+        }
+        return comment;
+    }
+
+    /**
+     * Returns the labels of a theorem's proof steps, separated by spaces.
+     *
+     * @param theorem the Theorem.
+     * @return RPN label String.
+     */
+    public String getLabelRPNString(final Theorem theorem) {
+        final Entry entry;
+        synchronized (this) {
+            entry = getEntry(theorem);
+            if (entry.labelRPN != null)
+                return entry.labelRPN;
+        }
+        final RPNStep[] astmt = theorem.getProof();
+        final StringBuffer sb = new StringBuffer(5 * astmt.length);
+        String s = "";
+        for (final RPNStep element : astmt) {
+            sb.append(s);
+            sb.append(element);
+            s = " ";
+        }
+        final String labelRPN = sb.toString();
+        synchronized (this) {
+            if (entry.labelRPN == null && isCached(theorem, entry)) {
+                entry.labelRPN = labelRPN;
+                added(labelRPN.length());
+            }
+        }
+        return labelRPN;
+    }
+
+    /**
+     * Drops all cached strings.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    private Entry getEntry(final Assrt assrt) {
+        Entry entry = entries.get(assrt);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(assrt, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Checks that an entry was not dropped (or the cache cleared) while its
+     * string was being built outside the lock.
+     */
+    private boolean isCached(final Assrt assrt, final Entry entry) {
+        return entries.get(assrt) == entry;
+    }
+
+    /**
+     * Accounts for a newly cached string of the most recently used entry,
+     * dropping the least recently used entries while over the limit.
+     */
+    private void added(final int chars) {
+        totalChars += chars;
+        if (maxChars <= 0)
+            return;
+        final Iterator<Entry> i = entries.values().iterator();
+        while (totalChars > maxChars && entries.size() > 1) {
+            totalChars -= i.next().chars();
+            i.remove();
+        }
+    }
+
+    private static class Entry {
+        String formula;
+        String[] logHypFormula;
+        String comment;
+        String labelRPN;
+
+        long chars() {
+            long n = 0;
+            if (formula != null)
+                n += formula.length();
+            if (logHypFormula != null)
+                for (final String s : logHypFormula)
+                    n += s.length();
+            if (comment != null)
+                n += comment.length();
+            if (labelRPN != null)
+                n += labelRPN.length();
+            return n;
+        }
+    }
+}
@@ -174,9 +174,9 @@ public class SearchUnifier {
     public boolean checkLevelAndDepth(final ParseTree parseTree,
         final ParseTree parseTree1)
     {
-        final String s = parseTree.getLevelOneTwo();
-        if (s.length() > 0) {
-            if (!s.equals(parseTree1.getLevelOneTwo()))
+        final long s = parseTree.getLevelOneTwo();
+        if (s != 0) {
+            if (s != parseTree1.getLevelOneTwo())
                 return false;
             final Stmt stmt = parseTree.getRoot().stmt;
             if (stmt != parseTree1.getRoot().stmt && !(stmt instanceof VarHyp))
@@ -188,6 +188,11 @@ public class MMTTheoremSet implements Iterable<TheoremStmtGroup> {
      * Likewise, if no errors are encountered during the update,
      * logicalSystem.theoremLoaderCommit() is called to finalize the updates.
      * <p>
+     * The grammar is not changed by the update, since a MMTTheoremFile cannot
+     * contain syntax axioms (or any $a, $c, $v or $f statement), so it is not
+     * re-initialized: each new or changed formula is parsed on its own, by
+     * SyntaxVerifier.parseOneStmt().
+     * <p>
      * FYI, this is called by TheoremLoader.
      *
      * @throws TheoremLoaderException if any errors are encountered during the
@@ -384,6 +384,16 @@ public class TheoremStmtGroup {
         return theorem;
     }
 
+    /**
+     * Gets the proof the Theorem had before it was updated, or null if the
+     * theorem is new.
+     *
+     * @return the old proof or null.
+     */
+    public RPNStep[] getOldProof() {
+        return oldProof;
+    }
+
     /**
      * Gets the wasLogHypInserted flag array.
      *
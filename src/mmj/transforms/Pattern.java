@@ -10,8 +10,7 @@ import mmj.verify.GrammarConstants;
 public class Pattern {
     public final ParseNode root;
     private final VarHyp[] varHypArray;
-    private final Deque<ParseNode> unifyNodeStack = new ArrayDeque<>();
-    private final Deque<ParseNode> compareNodeStack = new ArrayDeque<>();
+    private final FlatParseTree flatTree;
 
     /**
      * Parse a string like "wff x e. A" into its ParseNode representation, in
@@ -42,11 +41,11 @@ public class Pattern {
         final List<VarHyp> list = new ArrayList<>();
         root.accumVarHypUsedListBySeq(list);
         varHypArray = list.toArray(new VarHyp[list.size()]);
+        flatTree = new FlatParseTree(root);
     }
 
     public Map<String, ParseNode> match(final ParseNode expr) {
-        final ParseNode[] subst = root.unifyWithSubtree(expr, varHypArray,
-            unifyNodeStack, compareNodeStack);
+        final ParseNode[] subst = flatTree.unify(expr, varHypArray);
         if (subst == null)
             return null;
         final Map<String, ParseNode> result = new HashMap<>();
@@ -13,9 +13,6 @@ import mmj.transforms.Prover.HypProver;
 import mmj.transforms.Prover.HypProverResult;
 
 public class Provers {
-    private final static Deque<ParseNode> unifyNodeStack = new ArrayDeque<>();
-    private final static Deque<ParseNode> compareNodeStack = new ArrayDeque<>();
-
     private Provers() {}
 
     /**
@@ -56,9 +53,8 @@ public class Provers {
         public HypProverResult hypProve(final WorksheetInfo info,
             final ParseNode root)
         {
-            final ParseNode[] assrtSubst = assrt.getExprParseTree().getRoot()
-                .unifyWithSubtree(root, varHypArray, unifyNodeStack,
-                    compareNodeStack);
+            final ParseNode[] assrtSubst = assrt.getExprParseTree()
+                .getFlatTree().unify(root, varHypArray);
             if (assrtSubst != null) {
                 final HypProverResult r = new HypProverResult(assrt,
                     varHypArray, assrtSubst);
@@ -29,6 +29,8 @@
  *        inevitable "Parse,*" RunParm later.)
  *     -->Totally initialize after "LoadFile" RunParm,
  *        just like "Clear".
+ *     -->"Parse,*" uses the parse trees of the snapshot the
+ *        LogicalSystem was loaded from, if any.
  */
 
 package mmj.util;
@@ -78,6 +80,8 @@ public class GrammarBoss extends Boss {
 
     protected Class<? extends GrammaticalParser> parserPrototype;
 
+    protected boolean parseParallel;
+
     /**
      * Constructor with BatchFramework for access to environment.
      *
@@ -88,6 +92,7 @@ public class GrammarBoss extends Boss {
 
         grammarAmbiguityParm = GrammarConstants.DEFAULT_COMPLETE_GRAMMAR_AMBIG_EDITS;
         statementAmbiguityParm = GrammarConstants.DEFAULT_COMPLETE_STATEMENT_AMBIG_EDITS;
+        parseParallel = GrammarConstants.PARSE_PARALLEL_DEFAULT;
 
         putCommand(RUNPARM_CLEAR, this::clear);
         putCommand(RUNPARM_LOAD_FILE, this::clear);
@@ -106,9 +111,13 @@ public class GrammarBoss extends Boss {
 
         putCommand(RUNPARM_SET_PARSER, this::editParser);
 
+        putCommand(RUNPARM_PARSE_PARALLEL, this::editParseParallel);
+
         putCommand(RUNPARM_INITIALIZE_GRAMMAR, this::doInitializeGrammar);
 
         putCommand(RUNPARM_PARSE, this::doParse);
+
+        putCommand(RUNPARM_PARSER_BATCH_TEST, this::doParserBatchTest);
     }
 
     private boolean clear() {
@@ -123,6 +132,7 @@ public class GrammarBoss extends Boss {
         grammarAmbiguityParm = GrammarConstants.DEFAULT_COMPLETE_GRAMMAR_AMBIG_EDITS;
         statementAmbiguityParm = GrammarConstants.DEFAULT_COMPLETE_STATEMENT_AMBIG_EDITS;
         parserPrototype = GrammarConstants.DEFAULT_PARSER_PROTOTYPE;
+        parseParallel = GrammarConstants.PARSE_PARALLEL_DEFAULT;
         return false; // not "consumed"
     }
 
@@ -217,6 +227,13 @@ public class GrammarBoss extends Boss {
         }
     }
 
+    /**
+     * Validate ParseParallel RunParm.
+     */
+    protected void editParseParallel() {
+        parseParallel = getYesNo(1);
+    }
+
     /**
      * Executes the InitializeGrammar command, prints any messages, etc.
      */
@@ -246,9 +263,16 @@ public class GrammarBoss extends Boss {
             }
         }
 
-        if (get(1).equals(RUNPARM_OPTION_VALUE_ALL)) {
-            grammar.parseAllFormulas(messages, logicalSystem.getSymTbl(),
-                logicalSystem.getStmtTbl());
+        if (get(1).equals(RUNPARM_OPTION_VALUE_ALL)
+            && batchFramework.logicalSystemBoss.restoreSnapshotParseTrees())
+            allStatementsParsedSuccessfully = true;
+        else if (get(1).equals(RUNPARM_OPTION_VALUE_ALL)) {
+            if (parseParallel)
+                grammar.parseAllFormulasInParallel(messages,
+                    logicalSystem.getSymTbl(), logicalSystem.getStmtTbl());
+            else
+                grammar.parseAllFormulas(messages, logicalSystem.getSymTbl(),
+                    logicalSystem.getStmtTbl());
             allStatementsParsedSuccessfully = messages
                 .getErrorMessageCnt() == 0;
         }
@@ -273,6 +297,33 @@ public class GrammarBoss extends Boss {
         batchFramework.outputBoss.printAndClearMessages();
     }
 
+    /**
+     * Executes the ParserBatchTest command: compares the parser selected by
+     * SetParser with EarleyParser, prints any messages, etc.
+     */
+    public void doParserBatchTest() {
+        final LogicalSystem logicalSystem = batchFramework.logicalSystemBoss
+            .getLogicalSystem();
+
+        final Messages messages = batchFramework.outputBoss.getMessages();
+
+        final Grammar grammar = getGrammar();
+
+        if (!grammarInitialized) {
+            grammar.setGrammarInitializedFalse();
+            initializeGrammar();
+            if (!grammarInitialized) {
+                batchFramework.outputBoss.printAndClearMessages();
+                return;
+            }
+        }
+
+        grammar.compareParserWithEarleyParser(messages,
+            logicalSystem.getSymTbl(), logicalSystem.getStmtTbl());
+
+        batchFramework.outputBoss.printAndClearMessages();
+    }
+
     /**
      * An initializeGrammar subroutine.
      */
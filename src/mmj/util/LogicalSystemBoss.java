@@ -18,12 +18,20 @@
  *
  * Version 0.05 - Nov-01-2011:
  *     - Added GMFFManager stuff
+ *
+ *     - Added LoadFromSnapshot and SaveSnapshot RunParms.
+ *     - Added SnapshotBatchTest RunParm.
  */
 
 package mmj.util;
 
 import static mmj.util.UtilConstants.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
 import mmj.gmff.GMFFManager;
 import mmj.lang.*;
 import mmj.mmio.*;
@@ -63,11 +71,26 @@ public class LogicalSystemBoss extends Boss {
 
     protected boolean loadComments;
     protected boolean loadProofs;
+    protected boolean loadMemoryMapped;
+    protected boolean loadPipelined;
+    protected boolean lazyProofDecompression;
+    protected int decompressedProofCacheSize;
+
+    protected File loadFromSnapshotFile;
 
     protected LogicalSystem logicalSystem;
 
     protected Systemizer systemizer;
 
+    // parse trees of the snapshot the LogicalSystem was loaded
+    // from, until used by "Parse,*"
+    protected LogicalSystemSnapshot snapshot;
+
+    // the .mm files of the snapshot the LogicalSystem was loaded from
+    protected List<String> snapshotSourceFiles;
+
+    protected int loadFileCount;
+
     protected boolean logicalSystemLoaded;
 
     /**
@@ -92,6 +115,10 @@ public class LogicalSystemBoss extends Boss {
             this::editLoadEndpointStmtNbr);
         putCommand(RUNPARM_LOAD_COMMENTS, this::editLoadComments);
         putCommand(RUNPARM_LOAD_PROOFS, this::editLoadProofs);
+        putCommand(RUNPARM_LOAD_MEMORY_MAPPED, this::editLoadMemoryMapped);
+        putCommand(RUNPARM_LOAD_PIPELINED, this::editLoadPipelined);
+        putCommand(RUNPARM_LAZY_PROOF_DECOMPRESSION,
+            this::editLazyProofDecompression);
 
         putCommand(RUNPARM_PROVABLE_LOGIC_STMT_TYPE,
             this::editProvableLogicStmtType);
@@ -106,7 +133,13 @@ public class LogicalSystemBoss extends Boss {
         putCommand(RUNPARM_SEQ_ASSIGNER_INTERVAL_TBL_INITIAL_SIZE,
             this::editSeqAssignerIntervalTblInitialSize);
 
+        putCommand(RUNPARM_LOAD_FROM_SNAPSHOT, this::editLoadFromSnapshot);
+
         putCommand(RUNPARM_LOAD_FILE, this::doLoadFile);
+
+        putCommand(RUNPARM_SAVE_SNAPSHOT, this::doSaveSnapshot);
+
+        putCommand(RUNPARM_SNAPSHOT_BATCH_TEST, this::doSnapshotBatchTest);
     }
 
     /**
@@ -125,11 +158,19 @@ public class LogicalSystemBoss extends Boss {
         stmtTblInitialSizeParm = 0;
         loadEndpointStmtNbrParm = 0;
         loadEndpointStmtLabelParm = null;
+        loadFromSnapshotFile = null;
         logicalSystem = null;
         systemizer = null;
+        snapshot = null;
+        snapshotSourceFiles = null;
+        loadFileCount = 0;
 
         loadComments = MMIOConstants.LOAD_COMMENTS_DEFAULT;
         loadProofs = MMIOConstants.LOAD_PROOFS_DEFAULT;
+        loadMemoryMapped = MMIOConstants.LOAD_MEMORY_MAPPED_DEFAULT;
+        loadPipelined = MMIOConstants.LOAD_PIPELINED_DEFAULT;
+        lazyProofDecompression = LangConstants.LAZY_PROOF_DECOMPRESSION_DEFAULT;
+        decompressedProofCacheSize = LangConstants.DECOMPRESSED_PROOF_CACHE_SIZE_DEFAULT;
 
         provableLogicStmtTypeParm = GrammarConstants.DEFAULT_PROVABLE_LOGIC_STMT_TYP_CODES[0];
 
@@ -183,32 +224,18 @@ public class LogicalSystemBoss extends Boss {
 
         final Messages messages = batchFramework.outputBoss.getMessages();
 
-        if (logicalSystem == null) {
-
-            if (gmffManager == null)
-                gmffManager = new GMFFManager(
-                    batchFramework.paths.getMMJ2Path(), messages);
-
-            if (bookManager == null)
-                bookManager = new BookManager(bookManagerEnabledParm,
-                    provableLogicStmtTypeParm);
-
-            if (seqAssigner == null)
-                seqAssigner = new SeqAssigner(seqAssignerIntervalSizeParm,
-                    seqAssignerIntervalTblInitialSizeParm);
+        loadFileCount++;
 
-            int i = symTblInitialSizeParm;
-            if (i <= 0)
-                i = LangConstants.SYM_TBL_INITIAL_SIZE_DEFAULT;
-            int j = symTblInitialSizeParm;
-            if (j <= 0)
-                j = LangConstants.STMT_TBL_INITIAL_SIZE_DEFAULT;
-
-            logicalSystem = new LogicalSystem(provableLogicStmtTypeParm,
-                logicStmtTypeParm, gmffManager, bookManager, seqAssigner, i, j,
-                null, // use null to override default
-                null); // use null to override default
+        if (logicalSystem == null && loadFromSnapshotFile != null
+            && loadFromSnapshotFile.exists() && loadFromSnapshot(messages))
+        {
+            logicalSystemLoaded = true;
+            batchFramework.outputBoss.printAndClearMessages();
+            return;
         }
+
+        if (logicalSystem == null)
+            constructLogicalSystem(messages);
         else {
             gmffManager.forceReinitialization();
             // precautionary, added for 08/01/2008 release
@@ -217,10 +244,16 @@ public class LogicalSystemBoss extends Boss {
             logicalSystem.clearTheoremLoaderCommitListenerList();
         }
 
+        if (lazyProofDecompression)
+            logicalSystem.setProofCompression(
+                new ProofCompression(decompressedProofCacheSize));
+
         if (systemizer == null)
             systemizer = new Systemizer();
         systemizer.init(messages, logicalSystem, loadEndpointStmtNbrParm,
             loadEndpointStmtLabelParm, loadComments, loadProofs);
+        systemizer.setLoadMemoryMapped(loadMemoryMapped);
+        systemizer.setLoadPipelined(loadPipelined);
 
         try {
             systemizer.load(batchFramework.paths.getMetamathPath(), get(1));
@@ -234,6 +267,191 @@ public class LogicalSystemBoss extends Boss {
         batchFramework.outputBoss.printAndClearMessages();
     }
 
+    private void constructLogicalSystem(final Messages messages) {
+
+        if (gmffManager == null)
+            gmffManager = new GMFFManager(batchFramework.paths.getMMJ2Path(),
+                messages);
+
+        if (bookManager == null)
+            bookManager = new BookManager(bookManagerEnabledParm,
+                provableLogicStmtTypeParm);
+
+        if (seqAssigner == null)
+            seqAssigner = new SeqAssigner(seqAssignerIntervalSizeParm,
+                seqAssignerIntervalTblInitialSizeParm);
+
+        int i = symTblInitialSizeParm;
+        if (i <= 0)
+            i = LangConstants.SYM_TBL_INITIAL_SIZE_DEFAULT;
+        int j = symTblInitialSizeParm;
+        if (j <= 0)
+            j = LangConstants.STMT_TBL_INITIAL_SIZE_DEFAULT;
+
+        logicalSystem = new LogicalSystem(provableLogicStmtTypeParm,
+            logicStmtTypeParm, gmffManager, bookManager, seqAssigner, i, j,
+            null, // use null to override default
+            null); // use null to override default
+    }
+
+    /**
+     * Builds the LogicalSystem from the LoadFromSnapshot file, if it was made
+     * from the LoadFile file and is up to date.
+     *
+     * @param messages Messages object.
+     * @return true if loaded; otherwise nothing has been loaded.
+     */
+    private boolean loadFromSnapshot(final Messages messages) {
+        final File mmFile = batchFramework.paths.buildMetamathFilePath(get(1));
+        constructLogicalSystem(messages);
+        try {
+            snapshot = LogicalSystemSnapshot.read(loadFromSnapshotFile,
+                logicalSystem, getSnapshotLoadParms(),
+                mmFile.getAbsolutePath());
+            if (snapshot != null) {
+                snapshotSourceFiles = snapshot.getSourceFiles();
+                messages.accumMessage(ERRMSG_LOADED_FROM_SNAPSHOT,
+                    mmFile.getAbsolutePath(),
+                    loadFromSnapshotFile.getAbsolutePath());
+                return true;
+            }
+            messages.accumMessage(ERRMSG_SNAPSHOT_NOT_USED,
+                loadFromSnapshotFile.getAbsolutePath(),
+                mmFile.getAbsolutePath());
+        } catch (final IOException e) {
+            messages.accumMessage(ERRMSG_SNAPSHOT_READ_ERROR,
+                loadFromSnapshotFile.getAbsolutePath(),
+                mmFile.getAbsolutePath(), e.getMessage());
+        }
+        logicalSystem = null;
+        gmffManager = null;
+        bookManager = null;
+        seqAssigner = null;
+        return false;
+    }
+
+    /**
+     * The load RunParms a snapshot depends on.
+     *
+     * @return String to be stored in and compared with the snapshot.
+     */
+    private String getSnapshotLoadParms() {
+        return String.join(" ", provableLogicStmtTypeParm, logicStmtTypeParm,
+            Boolean.toString(loadComments), Boolean.toString(loadProofs),
+            Integer.toString(loadEndpointStmtNbrParm),
+            String.valueOf(loadEndpointStmtLabelParm),
+            Boolean.toString(bookManagerEnabledParm),
+            Integer.toString(seqAssignerIntervalSizeParm));
+    }
+
+    /**
+     * Stores the parse trees of the snapshot the LogicalSystem was loaded
+     * from, if it has them and they have not been stored yet.
+     * <p>
+     * The Grammar must have been initialized.
+     *
+     * @return true if the parse trees were stored.
+     */
+    public boolean restoreSnapshotParseTrees() {
+        final LogicalSystemSnapshot s = snapshot;
+        snapshot = null;
+        if (s == null || !s.hasParseTrees())
+            return false;
+        s.restoreParseTrees();
+        return true;
+    }
+
+    /**
+     * Execute the SaveSnapshot command: writes a snapshot of the
+     * LogicalSystem, with the parse trees if all statements were parsed
+     * successfully.
+     */
+    public void doSaveSnapshot() {
+        final File file = batchFramework.paths
+            .buildMMJ2FilePath(getFileName(1));
+        final LogicalSystem ls = getLogicalSystem();
+        if (loadFileCount != 1 || ls.isTheoremLoaderUpdated())
+            throw error(ERRMSG_SNAPSHOT_NOT_SAVED);
+
+        final boolean withParseTrees;
+        try {
+            withParseTrees = writeSnapshot(file, ls);
+        } catch (final IOException e) {
+            throw error(ERRMSG_SNAPSHOT_WRITE_ERROR, e,
+                file.getAbsolutePath(), e.getMessage());
+        }
+        batchFramework.outputBoss.getMessages().accumMessage(
+            ERRMSG_SNAPSHOT_SAVED, file.getAbsolutePath(),
+            withParseTrees ? "yes" : "no");
+        batchFramework.outputBoss.printAndClearMessages();
+    }
+
+    /**
+     * Execute the SnapshotBatchTest command: writes a snapshot of the
+     * LogicalSystem to a temporary file and compares it with the snapshot
+     * file it was loaded from by LoadFromSnapshot, so that anything lost or
+     * changed by SaveSnapshot and LoadFromSnapshot is reported.
+     */
+    public void doSnapshotBatchTest() {
+        final File file = batchFramework.paths
+            .buildMMJ2FilePath(getFileName(1));
+        final LogicalSystem ls = getLogicalSystem();
+        if (loadFileCount != 1 || ls.isTheoremLoaderUpdated())
+            throw error(ERRMSG_SNAPSHOT_NOT_SAVED);
+
+        final byte[] expected;
+        final byte[] actual;
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("mmj2", ".snapshot");
+            writeSnapshot(tmp, ls);
+            expected = Files.readAllBytes(file.toPath());
+            actual = Files.readAllBytes(tmp.toPath());
+        } catch (final IOException e) {
+            throw error(ERRMSG_SNAPSHOT_WRITE_ERROR, e,
+                tmp == null ? file.getAbsolutePath() : tmp.getAbsolutePath(),
+                e.getMessage());
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+
+        int i = 0;
+        while (i < expected.length && i < actual.length
+            && expected[i] == actual[i])
+            i++;
+        final Messages messages = batchFramework.outputBoss.getMessages();
+        if (i == expected.length && i == actual.length)
+            messages.accumMessage(ERRMSG_SNAPSHOT_BATCH_TEST_OK,
+                file.getAbsolutePath(), expected.length);
+        else
+            messages.accumMessage(ERRMSG_SNAPSHOT_BATCH_TEST_MISMATCH,
+                file.getAbsolutePath(), i, expected.length, actual.length);
+        batchFramework.outputBoss.printAndClearMessages();
+    }
+
+    /**
+     * Writes a snapshot of the LogicalSystem, with the parse trees if all
+     * statements were parsed successfully.
+     *
+     * @param file the snapshot file.
+     * @param ls the LogicalSystem.
+     * @return true if the parse trees were written.
+     * @throws IOException if the file could not be written.
+     */
+    private boolean writeSnapshot(final File file, final LogicalSystem ls)
+        throws IOException
+    {
+        final List<String> sourceFiles = systemizer != null
+            ? systemizer.getFilesLoaded()
+            : snapshotSourceFiles;
+        final boolean withParseTrees = batchFramework.grammarBoss
+            .getAllStatementsParsedSuccessfully();
+        LogicalSystemSnapshot.write(file, ls, getSnapshotLoadParms(),
+            sourceFiles, withParseTrees);
+        return withParseTrees;
+    }
+
     /**
      * Returns the current value of the LoadProofs RunParm or its default
      * setting.
@@ -298,6 +516,56 @@ public class LogicalSystemBoss extends Boss {
         loadProofs = getYesNo(1);
     }
 
+    /**
+     * Validate Load Memory Mapped Parameter.
+     * <p>
+     * Must equal yes or no.
+     *
+     * @throws IllegalArgumentException if an error occurred
+     */
+    protected void editLoadMemoryMapped() {
+        loadMemoryMapped = getYesNo(1);
+    }
+
+    /**
+     * Validate Load Pipelined Parameter.
+     * <p>
+     * Must equal yes or no.
+     *
+     * @throws IllegalArgumentException if an error occurred
+     */
+    protected void editLoadPipelined() {
+        loadPipelined = getYesNo(1);
+    }
+
+    /**
+     * Validate Load From Snapshot Parameter.
+     *
+     * @throws IllegalArgumentException if an error occurred
+     */
+    protected void editLoadFromSnapshot() {
+        final File file = batchFramework.paths
+            .buildMMJ2FilePath(getFileName(1));
+        if (file.isDirectory())
+            throw error(ERRMSG_NOT_A_FILE, file.getAbsolutePath());
+        loadFromSnapshotFile = file;
+    }
+
+    /**
+     * Validate Lazy Proof Decompression Parameters.
+     * <p>
+     * value1 must equal yes or no, optional value2 must be a non-negative
+     * integer.
+     *
+     * @throws IllegalArgumentException if an error occurred
+     */
+    protected void editLazyProofDecompression() {
+        lazyProofDecompression = getYesNo(1);
+        decompressedProofCacheSize = runParm.values.length > 1
+            ? getNonnegInt(2)
+            : LangConstants.DECOMPRESSED_PROOF_CACHE_SIZE_DEFAULT;
+    }
+
     /**
      * Validate Statement Table Initial Size Parameter.
      *
@@ -236,6 +236,9 @@ public class ProofAsstBoss extends Boss {
         putCommand(RUNPARM_PROOF_ASST_EXCLUDE_DISCOURAGED,
             this::editProofAsstExcludeDiscouraged);
 
+        putCommand(RUNPARM_PROOF_ASST_UNIFY_PARALLEL,
+            this::editProofAsstUnifyParallel);
+
         putCommand(RUNPARM_PROOF_ASST_EXPORT_TO_FILE,
             this::doProofAsstExportToFile);
 
@@ -259,6 +262,10 @@ public class ProofAsstBoss extends Boss {
         putCommand(RUNPARM_PREPROCESS_REQUEST_BATCH_TEST,
             this::doPreprocessRequestBatchTest);
 
+        putCommand(RUNPARM_SEARCH_BATCH_TEST, this::doSearchBatchTest);
+
+        putCommand(RUNPARM_ASSRT_TREE_BATCH_TEST, this::doAssrtTreeBatchTest);
+
         putCommand(RUNPARM_PROOF_ASST_STARTUP_PROOF_WORKSHEET,
             this::editProofAsstStartupProofWorksheet);
 
@@ -639,6 +646,13 @@ public class ProofAsstBoss extends Boss {
         getProofAsstPreferences().excludeDiscouraged.set(getYesNo(1));
     }
 
+    /**
+     * Validate ProofAsstUnifyParallel RunParm.
+     */
+    protected void editProofAsstUnifyParallel() {
+        getProofAsstPreferences().unifyParallel.set(getYesNo(1));
+    }
+
     /**
      * Exports currently loaded theorem proofs to an export file.
      */
@@ -804,6 +818,43 @@ public class ProofAsstBoss extends Boss {
         batchFramework.outputBoss.printAndClearMessages();
     }
 
+    /**
+     * Exercises the SearchEngine code.
+     */
+    public void doSearchBatchTest() {
+
+        // ensures that file loaded and grammar validated
+        // successfully, prints error message if not.
+        final ProofAsst proofAsst = getProofAsst();
+        if (proofAsst == null)
+            return;
+
+        final Messages messages = batchFramework.outputBoss.getMessages();
+
+        require(3);
+
+        getProofAsstPreferences().getSearchMgr().searchBatchTest(messages,
+            get(1), getPosInt(2), getPosInt(3));
+
+        batchFramework.outputBoss.printAndClearMessages();
+    }
+
+    /**
+     * Exercises the AssrtDiscriminationTree code.
+     */
+    public void doAssrtTreeBatchTest() {
+
+        // ensures that file loaded and grammar validated
+        // successfully, prints error message if not.
+        final ProofAsst proofAsst = getProofAsst();
+        if (proofAsst == null)
+            return;
+
+        proofAsst.assrtTreeBatchTest(batchFramework.outputBoss.getMessages());
+
+        batchFramework.outputBoss.printAndClearMessages();
+    }
+
     /**
      * Exercises the PreprocessRequest code.
      */
@@ -768,6 +768,110 @@ public class UtilConstants {
             + "                          warning message is produced though.\n"
             + " </pre>\n" + "\n");
 
+    public static final BatchCommand RUNPARM_LOAD_MEMORY_MAPPED = new BatchCommand(
+        "LoadMemoryMapped",
+        " LoadMemoryMapped\n" + " \n" + " <pre>\n"
+            + " \"LoadMemoryMapped\": value1 = yes/no (default = no)\n"
+            + "                          if yes, LoadFile reads the .mm file\n"
+            + "                          by mapping it into memory instead\n"
+            + "                          of through a Reader, which is\n"
+            + "                          faster for large files. Only used\n"
+            + "                          for files containing nothing but\n"
+            + "                          7-bit ASCII characters (as\n"
+            + "                          Metamath requires); others are\n"
+            + "                          read as usual.\n"
+            + " \n"
+            + "                          Note: on some systems the file\n"
+            + "                          cannot be modified or deleted while\n"
+            + "                          mmj2 still has it mapped.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_LOAD_PIPELINED = new BatchCommand(
+        "LoadPipelined",
+        " LoadPipelined\n" + " \n" + " <pre>\n"
+            + " \"LoadPipelined\": value1 = yes/no (default = no)\n"
+            + "                          if yes, LoadFile reads and parses\n"
+            + "                          the .mm file statements in a\n"
+            + "                          separate thread while the previous\n"
+            + "                          statements are being loaded, which\n"
+            + "                          is faster on multi-processor\n"
+            + "                          machines. The result, including\n"
+            + "                          error messages, is the same.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_LOAD_FROM_SNAPSHOT = new BatchCommand(
+        "LoadFromSnapshot",
+        " LoadFromSnapshot\n" + " \n" + " <pre>\n"
+            + " \"LoadFromSnapshot\": value1 = file name, relative to\n"
+            + "                          the mmj2 path unless absolute.\n"
+            + "                          The next LoadFile builds the\n"
+            + "                          LogicalSystem from the snapshot\n"
+            + "                          written by SaveSnapshot, instead\n"
+            + "                          of reading the .mm file, and\n"
+            + "                          \"Parse,*\" uses the parse trees\n"
+            + "                          stored there (without repeating\n"
+            + "                          the statement ambiguity\n"
+            + "                          messages). The snapshot is\n"
+            + "                          only used if it was made from the\n"
+            + "                          same .mm file(s), unchanged since,\n"
+            + "                          with the same load RunParms;\n"
+            + "                          otherwise the .mm file is loaded\n"
+            + "                          as usual.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_SAVE_SNAPSHOT = new BatchCommand(
+        "SaveSnapshot",
+        " SaveSnapshot\n" + " \n" + " <pre>\n"
+            + " \"SaveSnapshot\": value1 = file name, relative to\n"
+            + "                          the mmj2 path unless absolute.\n"
+            + "                          Writes a snapshot of the\n"
+            + "                          LogicalSystem loaded by LoadFile\n"
+            + "                          for use by LoadFromSnapshot,\n"
+            + "                          including the parse trees if\n"
+            + "                          \"Parse,*\" was successful.\n"
+            + "                          Not possible after Theorem Loader\n"
+            + "                          updates or more than one LoadFile.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_SNAPSHOT_BATCH_TEST = new BatchCommand(
+        "SnapshotBatchTest",
+        " SnapshotBatchTest\n" + " \n" + " <pre>\n"
+            + " \"SnapshotBatchTest\": value1 = file name, relative to\n"
+            + "                          the mmj2 path unless absolute.\n"
+            + "                          Writes a snapshot of the\n"
+            + "                          LogicalSystem loaded from this\n"
+            + "                          snapshot file by LoadFromSnapshot\n"
+            + "                          and LoadFile (and parsed by\n"
+            + "                          \"Parse,*\" if the snapshot has\n"
+            + "                          parse trees) to a temporary file,\n"
+            + "                          and reports an error if it\n"
+            + "                          differs from the snapshot file.\n"
+            + " </pre>\n" + " <p>\n"
+            + " This RunParm is provided for regression testing.\n" + "\n");
+
+    public static final BatchCommand RUNPARM_LAZY_PROOF_DECOMPRESSION = new BatchCommand(
+        "LazyProofDecompression",
+        " LazyProofDecompression\n" + " \n" + " <pre>\n"
+            + " \"LazyProofDecompression\": value1 = yes/no (default = no)\n"
+            + "                          value2 = cache size (default = 0)\n"
+            + "                          if yes, compressed proofs are kept\n"
+            + "                          compressed when the .mm file is\n"
+            + "                          loaded, and decompressed the first\n"
+            + "                          time they are used. This shortens\n"
+            + "                          start-up time and saves memory\n"
+            + "                          when few proofs are looked at.\n"
+            + " \n"
+            + "                          Errors in the labels of a\n"
+            + "                          compressed proof are reported at\n"
+            + "                          load time, other errors when the\n"
+            + "                          proof is decompressed.\n"
+            + " \n"
+            + "                          If the cache size is positive, at\n"
+            + "                          most that many decompressed proofs\n"
+            + "                          are kept in memory; 0 means no\n"
+            + "                          limit.\n"
+            + " </pre>\n" + "\n");
+
     // ----------------------------------------------------------
     // Commands for mmj.lang.Messages.java
     // ----------------------------------------------------------
@@ -889,6 +993,47 @@ public class UtilConstants {
             + " \"VerifyProof\": \"*\" or Stmt.label\n" + " </pre>\n" + "\n");
     // Stmt.label
 
+    public static final BatchCommand RUNPARM_VERIFY_PROOF_PARALLEL = new BatchCommand(
+        "VerifyProofParallel",
+        " VerifyProofParallel.\n" + " \n" + " <pre>\n"
+            + " \"VerifyProofParallel\": value1 = yes/no (default = no)\n"
+            + "                          if yes, \"VerifyProof,*\" spreads\n"
+            + "                          the proofs over all available\n"
+            + "                          processors. Error messages are\n"
+            + "                          reported in the same order as in a\n"
+            + "                          single-threaded run.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_VERIFY_PROOF_INCREMENTAL = new BatchCommand(
+        "VerifyProofIncremental",
+        " VerifyProofIncremental.\n" + " \n" + " <pre>\n"
+            + " \"VerifyProofIncremental\": value1 = yes/no (default = no)\n"
+            + "                          if yes, once \"VerifyProof,*\" has\n"
+            + "                          run without errors, the next\n"
+            + "                          \"VerifyProof,*\" only re-verifies\n"
+            + "                          the theorems stored by the Theorem\n"
+            + "                          Loader since then, plus the\n"
+            + "                          theorems whose proofs refer to\n"
+            + "                          them.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_VERIFY_PROOF_CACHE_FILE = new BatchCommand(
+        "VerifyProofCacheFile",
+        " VerifyProofCacheFile.\n" + " \n" + " <pre>\n"
+            + " \"VerifyProofCacheFile\": value1 = file name, relative to\n"
+            + "                          the mmj2 path unless absolute.\n"
+            + "                          \"VerifyProof,*\" records each\n"
+            + "                          proof verified without error in\n"
+            + "                          the file, and in later runs skips\n"
+            + "                          the proofs recorded there if\n"
+            + "                          neither the theorem, its proof nor\n"
+            + "                          the hypotheses, formula and\n"
+            + "                          Distinct Variable restrictions of\n"
+            + "                          any statement the proof refers to\n"
+            + "                          have changed. The file is created\n"
+            + "                          if it does not exist.\n"
+            + " </pre>\n" + "\n");
+
     public static final BatchCommand RUNPARM_VERIFY_PARSE = new BatchCommand(
         "VerifyParse", // "*" or
         " VerifyParse.\n" + " \n" + " <pre>\n"
@@ -903,6 +1048,9 @@ public class UtilConstants {
         "SetParser", // no
         " SetParser.\n" + " \n" + " <pre>\n"
             + " \"SetParser\": fully qualified parser implementation class name.\n"
+            + " mmj.verify.EarleyParser (default),\n"
+            + " mmj.verify.CompiledEarleyParser, mmj.verify.PackratParser\n"
+            + " or mmj.verify.LRParser.\n"
             + " </pre>\n" + "\n");
 
     public static final BatchCommand RUNPARM_PARSE = new BatchCommand("Parse", // "*"
@@ -911,6 +1059,32 @@ public class UtilConstants {
         " Parse.\n" + " \n" + " <pre>\n" + " \"Parse\": \"*\" or Stmt.label\n"
             + " </pre>\n" + "\n");
 
+    public static final BatchCommand RUNPARM_PARSE_PARALLEL = new BatchCommand(
+        "ParseParallel",
+        " ParseParallel.\n" + " \n" + " <pre>\n"
+            + " \"ParseParallel\": value1 = yes/no (default = no)\n"
+            + "                    if yes, \"Parse,*\" spreads the\n"
+            + "                    statements over all available\n"
+            + "                    processors, each with its own copy of\n"
+            + "                    the parser. Messages are reported in\n"
+            + "                    the same order as in a single-threaded\n"
+            + "                    run. Parsers which do not support this\n"
+            + "                    (LRParser) parse single-threaded.\n"
+            + " </pre>\n" + "\n");
+
+    public static final BatchCommand RUNPARM_PARSER_BATCH_TEST = new BatchCommand(
+        "ParserBatchTest",
+        " ParserBatchTest.\n" + " \n" + " <pre>\n"
+            + " \"ParserBatchTest\": no option values\n" + " </pre>\n"
+            + " <p>\n" + " This RunParm is provided for regression testing.\n"
+            + " <p>\n"
+            + " Parses the formula of every statement, and variants of each\n"
+            + " formula with one symbol deleted or the first symbol repeated,\n"
+            + " with the parser chosen by SetParser and with EarleyParser.\n"
+            + " The two must stop at the same symbol position or find the\n"
+            + " same parse trees: each formula on which they disagree is\n"
+            + " reported as an error.\n" + "\n");
+
     public static final BatchCommand RUNPARM_INITIALIZE_GRAMMAR = new BatchCommand(
         "InitializeGrammar", // no
         " InitializeGrammar.\n" + " \n" + " <pre>\n"
@@ -1530,6 +1704,39 @@ public class UtilConstants {
             + " The StepSelectorResults are printed, as well as the ProofWorksheet after\n"
             + " unification -- and any messages.\n" + "\n");
 
+    public static final BatchCommand RUNPARM_SEARCH_BATCH_TEST = new BatchCommand(
+        "SearchBatchTest",
+        " SearchBatchTest\n" + " <p>\n" + " \n" + " <pre>\n"
+            + " \"SearchBatchTest\":\n" + " \n"
+            + "                value1 = Mandatory: \n"
+            + "                         ForWhat search option\n"
+            + "                         (Metamath format, in $ap formulas).\n"
+            + " \n" + "                value2 = MaxResults search option.\n"
+            + " \n"
+            + "                value3 = number of assertions given to\n"
+            + "                         each search thread in the\n"
+            + "                         last search.\n" + " </pre>\n"
+            + " <p>\n" + " This RunParm is provided for regression testing.\n"
+            + " <p>\n"
+            + " Runs the search on a single thread without the symbol index, then\n"
+            + " on a single thread using the index, then using the index with the\n"
+            + " assertions split among several threads. The results of the first\n"
+            + " search are printed; if a later search finds different results they\n"
+            + " are reported as an error.\n" + "\n");
+
+    public static final BatchCommand RUNPARM_ASSRT_TREE_BATCH_TEST = new BatchCommand(
+        "AssrtTreeBatchTest",
+        " AssrtTreeBatchTest\n" + " <p>\n" + " \n" + " <pre>\n"
+            + " \"AssrtTreeBatchTest\": no options\n" + " </pre>\n"
+            + " <p>\n" + " This RunParm is provided for regression testing.\n"
+            + " <p>\n"
+            + " Looks up the formula of every assertion used for unification,\n"
+            + " every sub-formula of it, and every formula with one sub-formula\n"
+            + " replaced by a Work Var, in the index of assertions used by\n"
+            + " unification and the Step Selector, and reports an error if the\n"
+            + " assertions returned are not those found by a scan of every\n"
+            + " assertion.\n" + "\n");
+
     public static final BatchCommand RUNPARM_PREPROCESS_REQUEST_BATCH_TEST = new BatchCommand(
         "PreprocessRequestBatchTest", // all
         " PreprocessRequestBatchTest\n" + " <p>\n" + " \n" + " <pre>\n"
@@ -1609,6 +1816,15 @@ public class UtilConstants {
             + " Exclude discouraged theorems from unification search,\n"
             + " default = yes.\n" + " </code>\n" + "\n");
 
+    public static final BatchCommand RUNPARM_PROOF_ASST_UNIFY_PARALLEL = new BatchCommand(
+        "ProofAsstUnifyParallel",
+        "*\n" + " ProofAsstUnifyParallel\n" + " <p>\n" + " <code>\n"
+            + " \"ProofAsstUnifyParallel\": yes or no.\n" + " <p>\n"
+            + " When searching for the Ref of steps without one (and of\n"
+            + " auto steps), try the candidate assertions on all\n"
+            + " available processors first. The results are the same as\n"
+            + " with \"no\", default = no.\n" + " </code>\n" + "\n");
+
     // ----------------------------------------------------------
     // Commands for mmj.tmff.Preferences.java interface
     // ----------------------------------------------------------
@@ -2780,6 +2996,37 @@ public class UtilConstants {
             + " the '%2$s' RunParm command and the enabled/disabled"
             + " status cannot be changed after %2$s is executed!");
 
+    public static final ErrorCode ERRMSG_LOADED_FROM_SNAPSHOT = of(
+        "I-UT-0205 LoadFile %s: LogicalSystem loaded from snapshot %s.");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_NOT_USED = of(
+        "I-UT-0206 Snapshot %s not used because it was made from"
+            + " other or changed .mm files, or with other load RunParms;"
+            + " loading %s.");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_READ_ERROR = of(
+        "I-UT-0207 Snapshot %s could not be read, loading %s: %s");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_NOT_SAVED = of(
+        "A-UT-0208 SaveSnapshot requires a LogicalSystem loaded"
+            + " without errors by a single LoadFile RunParm and not"
+            + " updated by the Theorem Loader since.");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_SAVED = of(
+        "I-UT-0209 Snapshot %s written; parse trees included: %s.");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_WRITE_ERROR = of(
+        "E-UT-0210 Snapshot %s could not be written: %s");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_BATCH_TEST_OK = of(
+        "I-UT-0211 SnapshotBatchTest: the LogicalSystem saves to the"
+            + " same snapshot as %s (%d bytes).");
+
+    public static final ErrorCode ERRMSG_SNAPSHOT_BATCH_TEST_MISMATCH = of(
+        "E-UT-0212 SnapshotBatchTest: the LogicalSystem saved again differs"
+            + " from snapshot %s at byte %d. Snapshot length = %d,"
+            + " new length = %d.");
+
     // ----------------------------------------------------------
     // Messages from Dump.java
     // ----------------------------------------------------------
@@ -2878,6 +3125,21 @@ public class UtilConstants {
         "I-UT-0701 VerifyProof RunParm request ignored because"
             + " 'LoadProofs' RunParm 'no' input.");
 
+    public static final ErrorCode ERRMSG_VERIFY_PROOF_INCREMENTAL = of(
+        "I-UT-0702 VerifyProof re-verified %d proofs affected by"
+            + " Theorem Loader updates since the last VerifyProof.");
+
+    public static final ErrorCode ERRMSG_VERIFY_PROOF_CACHE_IGNORED = of(
+        "I-UT-0703 VerifyProofCacheFile %s was not written by this"
+            + " version of mmj2 and will be overwritten.");
+
+    public static final ErrorCode ERRMSG_VERIFY_PROOF_CACHE_IO_ERROR = of(
+        "E-UT-0704 VerifyProofCacheFile %s could not be used: %s");
+
+    public static final ErrorCode ERRMSG_VERIFY_PROOF_CACHE_SKIPPED = of(
+        "I-UT-0705 VerifyProofCacheFile %s: %d proofs verified in an"
+            + " earlier run were not verified again.");
+
     // ----------------------------------------------------------
     // Messages from WorkVarBoss.java
     // ----------------------------------------------------------
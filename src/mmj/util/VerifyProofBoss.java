@@ -23,9 +23,12 @@ package mmj.util;
 
 import static mmj.util.UtilConstants.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 import mmj.lang.*;
-import mmj.verify.VerifyException;
-import mmj.verify.VerifyProofs;
+import mmj.verify.*;
 
 /**
  * Responsible for building, loading, maintaining and fetching ProofVerifier,
@@ -48,6 +51,12 @@ public class VerifyProofBoss extends Boss {
 
     protected boolean allStatementsParsedSuccessfully;
 
+    protected boolean verifyProofParallel = ProofConstants.VERIFY_PROOF_PARALLEL_DEFAULT;
+
+    protected boolean verifyProofIncremental = ProofConstants.VERIFY_PROOF_INCREMENTAL_DEFAULT;
+
+    protected File verifyProofCacheFile;
+
     /**
      * Constructor with BatchFramework for access to environment.
      *
@@ -60,6 +69,9 @@ public class VerifyProofBoss extends Boss {
             verifyProofs = null;
             allProofsVerifiedSuccessfully = false;
             allStatementsParsedSuccessfully = false;
+            verifyProofParallel = ProofConstants.VERIFY_PROOF_PARALLEL_DEFAULT;
+            verifyProofIncremental = ProofConstants.VERIFY_PROOF_INCREMENTAL_DEFAULT;
+            verifyProofCacheFile = null;
             return false; // not "consumed"
         });
         putCommand(RUNPARM_LOAD_FILE, () -> {
@@ -68,6 +80,12 @@ public class VerifyProofBoss extends Boss {
             return false; // not "consumed"
         });
 
+        putCommand(RUNPARM_VERIFY_PROOF_PARALLEL,
+            this::editVerifyProofParallel);
+        putCommand(RUNPARM_VERIFY_PROOF_INCREMENTAL,
+            this::editVerifyProofIncremental);
+        putCommand(RUNPARM_VERIFY_PROOF_CACHE_FILE,
+            this::editVerifyProofCacheFile);
         putCommand(RUNPARM_VERIFY_PROOF, this::doVerifyProof);
         putCommand(RUNPARM_VERIFY_PARSE, this::doVerifyParse);
 
@@ -101,6 +119,37 @@ public class VerifyProofBoss extends Boss {
         return verifyProofs;
     }
 
+    /**
+     * Validate VerifyProofParallel RunParm.
+     */
+    protected void editVerifyProofParallel() {
+        verifyProofParallel = getYesNo(1);
+    }
+
+    /**
+     * Validate VerifyProofIncremental RunParm.
+     */
+    protected void editVerifyProofIncremental() {
+        verifyProofIncremental = getYesNo(1);
+    }
+
+    /**
+     * Validate VerifyProofCacheFile RunParm.
+     */
+    protected void editVerifyProofCacheFile() {
+        final File filePath = batchFramework.paths.getMMJ2Path();
+        final String fileNameParm = getFileName(1);
+
+        File file = new File(fileNameParm);
+        if (filePath != null && !file.isAbsolute())
+            file = new File(filePath, fileNameParm);
+
+        if (file.isDirectory())
+            throw error(ERRMSG_NOT_A_FILE, file.getAbsolutePath());
+
+        verifyProofCacheFile = file;
+    }
+
     /**
      * Executes the VerifyProof command, prints any messages, etc.
      */
@@ -116,8 +165,33 @@ public class VerifyProofBoss extends Boss {
         if (!batchFramework.logicalSystemBoss.getLoadProofs())
             messages.accumMessage(ERRMSG_IGNORING_VERIFY_PROOF_RUNPARM);
         else if (get(1).equals(RUNPARM_OPTION_VALUE_ALL)) {
-            verifyProofs.verifyAllProofs(messages, logicalSystem.getStmtTbl());
+            final VerifiedProofCache cache = loadVerifiedProofCache(messages);
+            verifyProofs.setVerifiedProofCache(cache);
+            final List<Theorem> reverify = verifyProofIncremental
+                ? logicalSystem.getProofsToReverify() : null;
+            if (reverify != null) {
+                if (verifyProofParallel)
+                    verifyProofs.verifyProofsInParallel(messages, reverify);
+                else
+                    verifyProofs.verifyProofs(messages, reverify);
+                messages.accumMessage(ERRMSG_VERIFY_PROOF_INCREMENTAL,
+                    reverify.size());
+            }
+            else if (verifyProofParallel)
+                verifyProofs.verifyAllProofsInParallel(messages,
+                    logicalSystem.getStmtTbl());
+            else
+                verifyProofs.verifyAllProofs(messages,
+                    logicalSystem.getStmtTbl());
             allProofsVerifiedSuccessfully = messages.getErrorMessageCnt() == 0;
+            if (allProofsVerifiedSuccessfully)
+                logicalSystem.setAllProofsVerified();
+            verifyProofs.setVerifiedProofCache(null);
+            if (cache != null)
+                messages.accumMessage(ERRMSG_VERIFY_PROOF_CACHE_SKIPPED,
+                    verifyProofCacheFile.getAbsolutePath(),
+                    cache.getNbrSkipped());
+            storeVerifiedProofCache(cache, messages);
         }
         else {
             final Theorem theorem = getTheorem(1, logicalSystem);
@@ -168,6 +242,50 @@ public class VerifyProofBoss extends Boss {
 
     }
 
+    /**
+     * Loads the VerifyProofCacheFile, if there is one.
+     *
+     * @param messages Messages object.
+     * @return the VerifiedProofCache, or null if none is in use.
+     */
+    protected VerifiedProofCache loadVerifiedProofCache(
+        final Messages messages)
+    {
+        if (verifyProofCacheFile == null)
+            return null;
+        final VerifiedProofCache cache = new VerifiedProofCache(
+            verifyProofCacheFile);
+        try {
+            if (!cache.load())
+                messages.accumMessage(ERRMSG_VERIFY_PROOF_CACHE_IGNORED,
+                    verifyProofCacheFile.getAbsolutePath());
+        } catch (final IOException e) {
+            messages.accumMessage(ERRMSG_VERIFY_PROOF_CACHE_IO_ERROR,
+                verifyProofCacheFile.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the VerifyProofCacheFile after a verification run.
+     *
+     * @param cache the VerifiedProofCache, or null if none is in use.
+     * @param messages Messages object.
+     */
+    protected void storeVerifiedProofCache(final VerifiedProofCache cache,
+        final Messages messages)
+    {
+        if (cache == null)
+            return;
+        try {
+            cache.store();
+        } catch (final IOException e) {
+            messages.accumMessage(ERRMSG_VERIFY_PROOF_CACHE_IO_ERROR,
+                verifyProofCacheFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+
     protected void initializeVerifyProofsIfNeeded() {
         if (verifyProofs == null) {
             verifyProofs = new VerifyProofs();
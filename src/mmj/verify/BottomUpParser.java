@@ -7,6 +7,8 @@
 
 /*
  * BottomUpParser.java  0.02 08/26/2005
+ *
+ *     - Added newWorkerParser() for parallel parsing.
  */
 
 package mmj.verify;
@@ -75,6 +77,17 @@ public class BottomUpParser implements GrammaticalParser {
             maxFormulaLength = 100;
     }
 
+    /**
+     * Returns a new BottomUpParser which can parse on another thread; the
+     * parser keeps nothing in the shared Grammar objects.
+     *
+     * @return new BottomUpParser for the same Grammar.
+     */
+    @Override
+    public GrammaticalParser newWorkerParser() {
+        return new BottomUpParser(grammar, maxFormulaLength);
+    }
+
     /**
      * BottomUpParser - returns 'n' = the number of ParseTree objects generated
      * for the input formula and stored in parseTreeArray.
@@ -139,8 +152,11 @@ public class BottomUpParser implements GrammaticalParser {
                     throw new IllegalStateException(new VerifyException(
                         GrammarConstants.ERRMSG_MAX_RETRIES_EXCEEDED,
                         GrammarConstants.MAX_PARSE_RETRIES));
-                grammar.getMessages().accumException(new VerifyException(e,
-                    GrammarConstants.ERRMSG_RETRY_TO_BE_INITIATED, e));
+                // worker parsers may share the Messages object
+                synchronized (grammar.getMessages()) {
+                    grammar.getMessages().accumException(new VerifyException(
+                        e, GrammarConstants.ERRMSG_RETRY_TO_BE_INITIATED, e));
+                }
                 reInitArrays(retryCnt);
             }
 
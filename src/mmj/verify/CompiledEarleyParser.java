@@ -0,0 +1,700 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.verify;
+
+import java.util.*;
+
+import mmj.lang.*;
+
+/**
+ * CompiledEarleyParser is a variant of EarleyParser which runs the Earley
+ * algorithm on a compiled form of the grammar, for long expressions such as
+ * those of set.mm proof worksheets.
+ * <p>
+ * The special cases, the Cnst gimmes and the results are those of
+ * EarleyParser; only the recognition and the tree building differ:
+ * <ul>
+ * <li>Each dot position of each NotationRule is numbered, and an Earley item
+ * is an int pair (dot position, origin) held in int arrays. The items of an
+ * item set are kept unique with an int hash table, and once a set is finished
+ * its items are indexed by the symbol after the dot, so the Scanner and the
+ * Completor only visit the items which they advance.
+ * <li>The Predictor uses tables computed once: the FIRST set of each Type Code
+ * (the earleyFIRST of EarleyParser, as bitsets), the Type Codes which can
+ * begin each Type Code and, for each Type Code, its rules by first symbol.
+ * <li>Each item records how it was derived (the item it advanced and, for a
+ * completion, the completed item), with extra links when a grammatical
+ * ambiguity derives it again. These links form a shared packed parse forest,
+ * from which the ParseTrees are built only when the parse succeeds.
+ * </ul>
+ * Use the SetParser RunParm to select this parser.
+ */
+public class CompiledEarleyParser extends EarleyParser {
+
+    private static final int NO_LINK = -1;
+
+    /** child of a link which scanned the input symbol */
+    private static final int SCANNED = -1;
+
+    private Tables tables;
+
+    // the item sets: the items of set p are setStart[p] .. setStart[p + 1]-1
+    private int[] setStart = new int[64];
+    private int itemCnt;
+    private int[] itemDot = new int[1024];
+    private int[] itemOrigin = new int[1024];
+    private int[] itemPrev = new int[1024];
+    private int[] itemChild = new int[1024];
+    private int[] itemMoreLinks = new int[1024];
+
+    // links after the first, chained from itemMoreLinks
+    private int linkCnt;
+    private int[] linkPrev = new int[64];
+    private int[] linkChild = new int[64];
+    private int[] linkNext = new int[64];
+
+    // the items of the finished sets, by the symbol after the dot
+    private int[] waitStart = new int[64];
+    private int[] waitSym = new int[1024];
+    private int[] waitItem = new int[1024];
+    private long[] waitSort = new long[64];
+
+    // the current set's items, by (dot position, origin)
+    private int[] hashItem = new int[256];
+    private int[] hashStamp = new int[256];
+    private int hashStampNow;
+    private int hashCnt;
+
+    private int[] exprSym = new int[64];
+    private boolean[] predictorTyp = new boolean[0];
+    private int[] predictorTypList = new int[0];
+
+    // the parse (sub)trees of the completed items, built on demand
+    private ParseNode[][] itemTrees = new ParseNode[1024][];
+
+    /**
+     * Construct using reference to Grammar and a parameter signifying the
+     * maximum length of a formula in the database.
+     *
+     * @param grammarIn Grammar object
+     * @param maxFormulaLengthIn gives us a hint about what to expect.
+     */
+    public CompiledEarleyParser(final Grammar grammarIn,
+        final int maxFormulaLengthIn)
+    {
+        super(grammarIn, maxFormulaLengthIn);
+    }
+
+    /**
+     * Returns a new CompiledEarleyParser which can parse on another thread,
+     * sharing this parser's compiled grammar.
+     *
+     * @return new CompiledEarleyParser for the same Grammar.
+     */
+    @Override
+    public GrammaticalParser newWorkerParser() {
+        final CompiledEarleyParser worker = newInstance();
+        worker.tables = getTables();
+        return worker;
+    }
+
+    /**
+     * Returns a new parser of this class for the same Grammar, to which
+     * newWorkerParser() gives this parser's compiled grammar.
+     *
+     * @return new CompiledEarleyParser.
+     */
+    CompiledEarleyParser newInstance() {
+        return new CompiledEarleyParser(grammar, 0);
+    }
+
+    Tables getTables() {
+        if (tables == null)
+            tables = new Tables(grammar);
+        return tables;
+    }
+
+    @Override
+    int parsePreparedExpr() throws VerifyException {
+        final Tables t = getTables();
+        final int pLast = expr.length - 1; // [0] unused
+
+        if (exprSym.length < expr.length + 1) {
+            exprSym = new int[2 * expr.length];
+            setStart = new int[2 * expr.length];
+            waitStart = new int[2 * expr.length];
+        }
+        for (int i = 1; i <= pLast; i++)
+            exprSym[i] = t.symIndex(expr[i].getCnstOrTyp());
+        exprSym[pLast + 1] = -1;
+        if (predictorTyp.length != t.typ.length) {
+            predictorTyp = new boolean[t.typ.length];
+            predictorTypList = new int[t.typ.length];
+        }
+        itemCnt = 0;
+        linkCnt = 0;
+        parseCnt = 0;
+
+        // set 0: the predictions of the Start Rule Type Code(s)
+        final Cnst startRuleTyp = getStartRuleTyp();
+        int predictorTypCnt = addPredictorTyp(t, 0, startRuleTyp);
+        if (!formulaTyp.isProvableLogicStmtTyp()) {
+            final TypeConversionRule[] fromRules = startRuleTyp
+                .getConvFromTypGRArray();
+            if (fromRules != null)
+                for (final TypeConversionRule fromRule : fromRules)
+                    predictorTypCnt = addPredictorTyp(t, predictorTypCnt,
+                        fromRule.getConvTyp());
+        }
+        setStart[0] = 0;
+        startSet();
+        predict(t, 0, predictorTypCnt, exprSym[1]);
+        finishSet(t, 0);
+
+        for (int p = 1; p <= pLast; p++) {
+            startSet();
+            scan(t, p);
+            complete(t, p);
+            predict(t, p, 0, exprSym[p + 1]);
+            if (itemCnt == setStart[p]) {
+                if (p < pLast)
+                    return -p;
+                break;
+            }
+            finishSet(t, p);
+        }
+        setStart[pLast + 1] = itemCnt;
+
+        buildTrees(t, startRuleTyp, pLast);
+        return parseCnt;
+    }
+
+    Cnst getStartRuleTyp() {
+        if (!formulaTyp.isProvableLogicStmtTyp())
+            return formulaTyp;
+        if (grammar.getLogicStmtTypArray().length == 0)
+            throw new IllegalStateException(new VerifyException(
+                GrammarConstants.ERRMSG_START_RULE_TYPE_UNDEF, formulaTyp));
+        return grammar.getLogicStmtTypArray()[0];
+    }
+
+    /**
+     * Scanner: advances the items of set p-1 which expect the symbol at p.
+     */
+    private void scan(final Tables t, final int p) {
+        final int sym = exprSym[p];
+        if (sym < 0)
+            return;
+        for (int w = findWaiting(p - 1, sym); w < waitStart[p]
+            && waitSym[w] == sym; w++)
+        {
+            final int item = waitItem[w];
+            addItem(itemDot[item] + 1, itemOrigin[item], item, SCANNED);
+        }
+    }
+
+    /**
+     * Completor: for each completed item of set p, including those added
+     * here, advances the items of its origin set which expect its Type Code.
+     */
+    private void complete(final Tables t, final int p) {
+        for (int i = setStart[p]; i < itemCnt; i++) {
+            final int dot = itemDot[i];
+            if (t.dotSym[dot] >= 0)
+                continue;
+            final int typ = t.ruleTyp[t.dotRule[dot]];
+            final int origin = itemOrigin[i];
+            for (int w = findWaiting(origin, typ); w < waitStart[origin + 1]
+                && waitSym[w] == typ; w++)
+            {
+                final int item = waitItem[w];
+                addItem(itemDot[item] + 1, itemOrigin[item], item, i);
+            }
+        }
+    }
+
+    /**
+     * Predictor: adds the rules, allowed by highestSeq, of the Type Codes
+     * expected in set p (and of the Type Codes which can begin those) whose
+     * first symbol can begin with the next symbol.
+     */
+    private void predict(final Tables t, final int p, int predictorTypCnt,
+        final int nextSym)
+    {
+        if (nextSym < 0) {
+            clearPredictorTyps(predictorTypCnt);
+            return;
+        }
+        for (int i = setStart[p]; i < itemCnt; i++) {
+            final int sym = t.dotSym[itemDot[i]];
+            if (sym >= 0 && sym < t.typ.length)
+                predictorTypCnt = addPredictorTyp(t, predictorTypCnt,
+                    t.typ[sym]);
+        }
+        final int[] firstTyps = t.firstTyps[nextSym];
+        for (int k = 0; k < predictorTypCnt; k++) {
+            final int[][] rulesByFirst = t.rulesByFirst[predictorTypList[k]];
+            predictRules(t, p, rulesByFirst[nextSym]);
+            for (final int first : firstTyps)
+                if (first != nextSym)
+                    predictRules(t, p, rulesByFirst[first]);
+        }
+        clearPredictorTyps(predictorTypCnt);
+    }
+
+    private void predictRules(final Tables t, final int p, final int[] rules) {
+        if (rules == null)
+            return;
+        for (final int r : rules) {
+            if (t.ruleMaxSeq[r] > highestSeq)
+                break; // rules are sorted by maxSeq
+            newItem(t.ruleStart[r], p, NO_LINK, NO_LINK);
+        }
+    }
+
+    private int addPredictorTyp(final Tables t, int predictorTypCnt,
+        final Cnst typ)
+    {
+        final int i = t.symIndex(typ);
+        if (i < 0 || i >= t.typ.length || predictorTyp[i])
+            return predictorTypCnt;
+        for (final int j : t.typClosure[i])
+            if (!predictorTyp[j]) {
+                predictorTyp[j] = true;
+                predictorTypList[predictorTypCnt++] = j;
+            }
+        return predictorTypCnt;
+    }
+
+    private void clearPredictorTyps(final int predictorTypCnt) {
+        for (int k = 0; k < predictorTypCnt; k++)
+            predictorTyp[predictorTypList[k]] = false;
+    }
+
+    // -----------------------------------------------------------
+    // item sets
+    // -----------------------------------------------------------
+
+    private void startSet() {
+        hashCnt = 0;
+        if (++hashStampNow == Integer.MAX_VALUE) {
+            Arrays.fill(hashStamp, 0);
+            hashStampNow = 1;
+        }
+    }
+
+    /**
+     * Adds an item to the current set, or a link to it if it is already there.
+     */
+    private void addItem(final int dot, final int origin, final int prev,
+        final int child)
+    {
+        final int mask = hashItem.length - 1;
+        int h = hash(dot, origin) & mask;
+        while (hashStamp[h] == hashStampNow) {
+            final int item = hashItem[h];
+            if (itemDot[item] == dot && itemOrigin[item] == origin) {
+                addLink(item, prev, child);
+                return;
+            }
+            h = h + 1 & mask;
+        }
+        hashStamp[h] = hashStampNow;
+        hashItem[h] = itemCnt;
+        newItem(dot, origin, prev, child);
+        if (2 * ++hashCnt > hashItem.length)
+            growHash();
+    }
+
+    private static int hash(final int dot, final int origin) {
+        final int h = dot * 0x9E3779B9 + origin;
+        return h ^ h >>> 16;
+    }
+
+    private void growHash() {
+        final int[] oldItem = hashItem;
+        final int[] oldStamp = hashStamp;
+        hashItem = new int[2 * oldItem.length];
+        hashStamp = new int[2 * oldItem.length];
+        final int mask = hashItem.length - 1;
+        for (int i = 0; i < oldItem.length; i++)
+            if (oldStamp[i] == hashStampNow) {
+                final int item = oldItem[i];
+                int h = hash(itemDot[item], itemOrigin[item]) & mask;
+                while (hashStamp[h] == hashStampNow)
+                    h = h + 1 & mask;
+                hashStamp[h] = hashStampNow;
+                hashItem[h] = item;
+            }
+    }
+
+    private void newItem(final int dot, final int origin, final int prev,
+        final int child)
+    {
+        if (itemCnt == itemDot.length) {
+            final int n = 2 * itemCnt;
+            itemDot = Arrays.copyOf(itemDot, n);
+            itemOrigin = Arrays.copyOf(itemOrigin, n);
+            itemPrev = Arrays.copyOf(itemPrev, n);
+            itemChild = Arrays.copyOf(itemChild, n);
+            itemMoreLinks = Arrays.copyOf(itemMoreLinks, n);
+        }
+        itemDot[itemCnt] = dot;
+        itemOrigin[itemCnt] = origin;
+        itemPrev[itemCnt] = prev;
+        itemChild[itemCnt] = child;
+        itemMoreLinks[itemCnt++] = NO_LINK;
+    }
+
+    private void addLink(final int item, final int prev, final int child) {
+        if (linkCnt == linkPrev.length) {
+            final int n = 2 * linkCnt;
+            linkPrev = Arrays.copyOf(linkPrev, n);
+            linkChild = Arrays.copyOf(linkChild, n);
+            linkNext = Arrays.copyOf(linkNext, n);
+        }
+        linkPrev[linkCnt] = prev;
+        linkChild[linkCnt] = child;
+        linkNext[linkCnt] = itemMoreLinks[item];
+        itemMoreLinks[item] = linkCnt++;
+    }
+
+    /**
+     * Indexes the items of the finished set p by the symbol after the dot.
+     */
+    private void finishSet(final Tables t, final int p) {
+        final int from = setStart[p];
+        setStart[p + 1] = itemCnt;
+        int n = 0;
+        if (waitSort.length < itemCnt - from)
+            waitSort = new long[2 * (itemCnt - from)];
+        for (int i = from; i < itemCnt; i++) {
+            final int sym = t.dotSym[itemDot[i]];
+            if (sym >= 0)
+                waitSort[n++] = (long)sym << 32 | i;
+        }
+        Arrays.sort(waitSort, 0, n);
+        final int w = waitStart[p];
+        if (waitSym.length < w + n) {
+            waitSym = Arrays.copyOf(waitSym, 2 * (w + n));
+            waitItem = Arrays.copyOf(waitItem, 2 * (w + n));
+        }
+        for (int i = 0; i < n; i++) {
+            waitSym[w + i] = (int)(waitSort[i] >>> 32);
+            waitItem[w + i] = (int)waitSort[i];
+        }
+        waitStart[p + 1] = w + n;
+    }
+
+    /**
+     * Returns the index of the first item of finished set p waiting for sym,
+     * or the end of the set's waiting items.
+     */
+    private int findWaiting(final int p, final int sym) {
+        int lo = waitStart[p];
+        int hi = waitStart[p + 1];
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (waitSym[mid] < sym)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // -----------------------------------------------------------
+    // tree building
+    // -----------------------------------------------------------
+
+    /**
+     * Builds the trees of the completed items of the last set which span the
+     * whole expression, as EarleyParser.buildTrees() does.
+     */
+    private void buildTrees(final Tables t, final Cnst startRuleTyp,
+        final int pLast)
+    {
+        if (itemTrees.length < itemCnt)
+            itemTrees = new ParseNode[itemDot.length][];
+        try {
+            buildTreesForTyp(t, startRuleTyp, null, pLast);
+            final TypeConversionRule[] fromRule = startRuleTyp
+                .getConvFromTypGRArray();
+            if (fromRule != null)
+                for (int i = 0; parseCnt < parseTreeArray.length
+                    && i < fromRule.length; i++)
+                    buildTreesForTyp(t, fromRule[i].getConvTyp(), fromRule[i],
+                        pLast);
+        } finally {
+            Arrays.fill(itemTrees, 0, itemCnt, null);
+        }
+    }
+
+    private void buildTreesForTyp(final Tables t, final Cnst searchTyp,
+        final TypeConversionRule typeConversionRule, final int pLast)
+    {
+        final int typ = t.symIndex(searchTyp);
+        final ParseNodeHolder[] convParam = new ParseNodeHolder[1];
+        for (int i = setStart[pLast + 1] - 1; i >= setStart[pLast]; i--) {
+            if (parseCnt >= parseTreeArray.length)
+                return;
+            final int dot = itemDot[i];
+            if (itemOrigin[i] != 0 || t.dotSym[dot] >= 0
+                || t.ruleTyp[t.dotRule[dot]] != typ)
+                continue;
+            for (final ParseNode root : getTrees(t, i, pLast)) {
+                if (parseCnt >= parseTreeArray.length)
+                    return;
+                if (typeConversionRule == null)
+                    parseTreeArray[parseCnt++] = new ParseTree(root);
+                else {
+                    convParam[0] = new ParseNodeHolder(root);
+                    parseTreeArray[parseCnt++] = new ParseTree(
+                        typeConversionRule.buildGrammaticalParseNode(
+                            convParam));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parse (sub)trees of a completed item of set p, at most
+     * parseTreeArray.length of them.
+     */
+    private ParseNode[] getTrees(final Tables t, final int item,
+        final int p)
+    {
+        ParseNode[] trees = itemTrees[item];
+        if (trees == null) {
+            final NotationRule rule = t.rule[t.dotRule[itemDot[item]]];
+            final int nbrHyps = rule.getNbrHypParamsUsed();
+            final List<Params> paramsList = getParams(t, item, p);
+            trees = new ParseNode[paramsList.size()];
+            for (int k = 0; k < trees.length; k++) {
+                Params params = paramsList.get(k);
+                final ParseNodeHolder[] paramArray = new ParseNodeHolder[nbrHyps];
+                for (int i = nbrHyps - 1; i >= 0; i--) {
+                    paramArray[i] = params.holder;
+                    params = params.prev;
+                }
+                trees[k] = rule.buildGrammaticalParseNode(paramArray);
+            }
+            itemTrees[item] = trees;
+        }
+        return trees;
+    }
+
+    /**
+     * Returns the lists of the hypotheses matched by the symbols before the
+     * dot of an item of set p, at most parseTreeArray.length of them.
+     */
+    private List<Params> getParams(final Tables t, final int item,
+        final int p)
+    {
+        final int dot = itemDot[item];
+        if (itemPrev[item] == NO_LINK)
+            return Collections.singletonList(null); // nothing before the dot
+        final boolean isHyp = t.dotIsHyp[dot - 1];
+        final List<Params> out = new ArrayList<>(1);
+        int link = NO_LINK;
+        int prev = itemPrev[item];
+        int child = itemChild[item];
+        while (true) {
+            final int prevSet = child == SCANNED ? p - 1 : itemOrigin[child];
+            for (final Params params : getParams(t, prev, prevSet)) {
+                if (!isHyp)
+                    out.add(params);
+                else if (child == SCANNED)
+                    out.add(new Params(expr[p], params));
+                else
+                    for (final ParseNode tree : getTrees(t, child, p)) {
+                        out.add(new Params(new ParseNodeHolder(tree), params));
+                        if (out.size() >= parseTreeArray.length)
+                            return out;
+                    }
+                if (out.size() >= parseTreeArray.length)
+                    return out;
+            }
+            link = link == NO_LINK ? itemMoreLinks[item] : linkNext[link];
+            if (link == NO_LINK)
+                return out;
+            prev = linkPrev[link];
+            child = linkChild[link];
+        }
+    }
+
+    /**
+     * Hypotheses matched so far, last first.
+     */
+    private static class Params {
+        final ParseNodeHolder holder;
+        final Params prev;
+
+        Params(final ParseNodeHolder holder, final Params prev) {
+            this.holder = holder;
+            this.prev = prev;
+        }
+    }
+
+    // -----------------------------------------------------------
+    // compiled grammar
+    // -----------------------------------------------------------
+
+    /**
+     * The compiled grammar, shared by a parser and its workers.
+     * <p>
+     * Symbols are numbered with the Type Codes first, so that symbol i is a
+     * Type Code if i &lt; typ.length. The dot positions of rule r are
+     * ruleStart[r] (before the first symbol) to ruleStart[r] + length (rule
+     * completed).
+     */
+    static class Tables {
+        final Map<Cnst, Integer> symIndexMap = new IdentityHashMap<>();
+        final Cnst[] typ;
+
+        final NotationRule[] rule;
+        final int[] ruleTyp;
+        final int[] ruleMaxSeq;
+        final int[] ruleStart;
+
+        /** symbol after the dot, or -1 if the rule is completed */
+        final int[] dotSym;
+        final int[] dotRule;
+        /** true if the symbol after the dot is a hypothesis of the rule */
+        final boolean[] dotIsHyp;
+
+        /** the Type Codes which can begin each Type Code, with itself */
+        final int[][] typClosure;
+        /** the Type Codes whose FIRST set contains each symbol */
+        final int[][] firstTyps;
+        /** the rules of each Type Code by first symbol, by maxSeq */
+        final int[][][] rulesByFirst;
+
+        /** true if a Type Code can begin with itself */
+        final boolean leftRecursive;
+
+        Tables(final Grammar grammar) {
+            final Set<NotationRule> rules = grammar.getNotationGRSet();
+            rule = rules.toArray(new NotationRule[rules.size()]);
+            final Set<Cnst> typSet = new LinkedHashSet<>(
+                grammar.getVarHypTypSet());
+            for (final NotationRule r : rule)
+                typSet.add(r.getGrammarRuleTyp());
+            final List<Cnst> syms = new ArrayList<>(typSet);
+            typ = syms.toArray(new Cnst[syms.size()]);
+            for (int i = 0; i < typ.length; i++)
+                symIndexMap.put(typ[i], i);
+
+            ruleTyp = new int[rule.length];
+            ruleMaxSeq = new int[rule.length];
+            ruleStart = new int[rule.length + 1];
+            for (int r = 0; r < rule.length; r++) {
+                final Cnst[] expr = rule[r].getRuleFormatExpr();
+                for (final Cnst c : expr)
+                    if (!symIndexMap.containsKey(c)) {
+                        symIndexMap.put(c, syms.size());
+                        syms.add(c);
+                    }
+                ruleTyp[r] = symIndex(rule[r].getGrammarRuleTyp());
+                ruleMaxSeq[r] = rule[r].getMaxSeqNbr();
+                ruleStart[r + 1] = ruleStart[r] + expr.length + 1;
+            }
+
+            dotSym = new int[ruleStart[rule.length]];
+            dotRule = new int[dotSym.length];
+            dotIsHyp = new boolean[dotSym.length];
+            for (int r = 0; r < rule.length; r++) {
+                final Cnst[] expr = rule[r].getRuleFormatExpr();
+                for (int i = 0; i <= expr.length; i++) {
+                    dotRule[ruleStart[r] + i] = r;
+                    dotSym[ruleStart[r] + i] = i < expr.length
+                        ? symIndex(expr[i]) : -1;
+                }
+                for (final int hypPos : rule[r].getRuleHypPos())
+                    dotIsHyp[ruleStart[r] + hypPos] = true;
+            }
+
+            // FIRST set of each Type Code, closed over the Type Codes which
+            // can begin it
+            final BitSet[] first = new BitSet[typ.length];
+            final BitSet[] closure = new BitSet[typ.length];
+            for (int i = 0; i < typ.length; i++) {
+                first[i] = new BitSet(syms.size());
+                closure[i] = new BitSet(typ.length);
+                closure[i].set(i);
+            }
+            for (int r = 0; r < rule.length; r++) {
+                final int sym = dotSym[ruleStart[r]];
+                first[ruleTyp[r]].set(sym);
+                if (sym < typ.length)
+                    closure[ruleTyp[r]].set(sym);
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < typ.length; i++)
+                    for (int j = closure[i].nextSetBit(0); j >= 0; j = closure[i]
+                        .nextSetBit(j + 1))
+                    {
+                        final int n = first[i].cardinality()
+                            + closure[i].cardinality();
+                        first[i].or(first[j]);
+                        closure[i].or(closure[j]);
+                        changed |= n != first[i].cardinality()
+                            + closure[i].cardinality();
+                    }
+            }
+
+            typClosure = new int[typ.length][];
+            for (int i = 0; i < typ.length; i++)
+                typClosure[i] = closure[i].stream().toArray();
+            final List<List<Integer>> firstTypList = new ArrayList<>();
+            for (int s = 0; s < syms.size(); s++)
+                firstTypList.add(new ArrayList<>(1));
+            for (int i = 0; i < typ.length; i++)
+                for (int s = first[i].nextSetBit(0); s >= 0; s = first[i]
+                    .nextSetBit(s + 1))
+                    firstTypList.get(s).add(i);
+            firstTyps = new int[syms.size()][];
+            for (int s = 0; s < syms.size(); s++)
+                firstTyps[s] = firstTypList.get(s).stream()
+                    .mapToInt(Integer::intValue).toArray();
+
+            final List<List<List<Integer>>> byFirst = new ArrayList<>();
+            for (int i = 0; i < typ.length; i++)
+                byFirst.add(new ArrayList<>());
+            rulesByFirst = new int[typ.length][syms.size()][];
+            for (int r = 0; r < rule.length; r++) {
+                final int sym = dotSym[ruleStart[r]];
+                final List<List<Integer>> list = byFirst.get(ruleTyp[r]);
+                while (list.size() <= sym)
+                    list.add(null);
+                if (list.get(sym) == null)
+                    list.set(sym, new ArrayList<>());
+                list.get(sym).add(r);
+            }
+            for (int i = 0; i < typ.length; i++) {
+                final List<List<Integer>> list = byFirst.get(i);
+                for (int s = 0; s < list.size(); s++)
+                    if (list.get(s) != null)
+                        rulesByFirst[i][s] = list.get(s).stream()
+                            .mapToInt(Integer::intValue).toArray();
+            }
+
+            boolean recursive = false;
+            for (int r = 0; r < rule.length; r++) {
+                final int sym = dotSym[ruleStart[r]];
+                recursive |= sym < typ.length
+                    && closure[sym].get(ruleTyp[r]);
+            }
+            leftRecursive = recursive;
+        }
+
+        int symIndex(final Cnst c) {
+            final Integer i = symIndexMap.get(c);
+            return i == null ? -1 : i;
+        }
+    }
+}
@@ -29,6 +29,7 @@
  *     - Added a check of "notationRule.getMaxSeqNbr() <= highestSeq"
  *       when picking off Cnst symbols in the input expression
  *       in order to obey the contract of parseExpr().
+ *     - Added newWorkerParser() for parallel parsing.
  */
 
 package mmj.verify;
@@ -149,20 +150,21 @@ public class EarleyParser implements GrammaticalParser {
     private final ParseNodeHolder[] emptyParamArray = new ParseNodeHolder[0];
 
     /**
-     * these are stored globally only to avoid parameter passing.
+     * these are stored globally only to avoid parameter passing (and are
+     * package-private for CompiledEarleyParser).
      */
 
-    private final Grammar grammar;
+    final Grammar grammar;
 
-    private ParseTree[] parseTreeArray;
-    private Cnst formulaTyp;
+    ParseTree[] parseTreeArray;
+    Cnst formulaTyp;
     private ParseNodeHolder[] parseNodeHolderExpr;
-    private int highestSeq;
+    int highestSeq;
 
-    private int parseCnt;
+    int parseCnt;
 
     private Cnst startRuleTyp;
-    private ParseNodeHolder[] expr;
+    ParseNodeHolder[] expr;
 
     private int twinTreesNeeded;
     private int twinTreesCnt;
@@ -264,6 +266,19 @@ public class EarleyParser implements GrammaticalParser {
         }
         prepareCnstGimmesEtc(); // loads expr, etc.
 
+        return parsePreparedExpr();
+    }
+
+    /**
+     * Parses expr, once the special cases of expressions of length 0 and 1
+     * have been dealt with and the Cnst gimmes have been pre-parsed.
+     *
+     * @return parse count -- number of parse trees generated, or a negative
+     *         number if the parse failed.
+     * @throws VerifyException if an error occurs
+     */
+    int parsePreparedExpr() throws VerifyException {
+
         if (expr.length > pMax) {
             pMax = expr.length + 10;
             initArrays(pMax, pItemSetMax, pCompletedItemSetMax,
@@ -282,14 +297,41 @@ public class EarleyParser implements GrammaticalParser {
                     throw new IllegalStateException(new VerifyException(
                         GrammarConstants.ERRMSG_MAX_RETRIES_EXCEEDED,
                         GrammarConstants.MAX_PARSE_RETRIES));
-                grammar.getMessages().accumException(new VerifyException(e,
-                    GrammarConstants.ERRMSG_RETRY_TO_BE_INITIATED, e));
+                // worker parsers may share the Messages object
+                synchronized (grammar.getMessages()) {
+                    grammar.getMessages().accumException(new VerifyException(
+                        e, GrammarConstants.ERRMSG_RETRY_TO_BE_INITIATED, e));
+                }
                 reInitArrays(retryCnt);
             }
 
         return parseCnt;
     }
 
+    /**
+     * Returns a new EarleyParser which can parse on another thread.
+     * <p>
+     * The Earley rules and FIRST sets are stored in the shared Type Code
+     * Cnst's, so they are loaded here, once, by this parser; the worker gets
+     * only its own work arrays, sized as this parser's are now.
+     *
+     * @return new EarleyParser for the same Grammar.
+     */
+    @Override
+    public GrammaticalParser newWorkerParser() {
+        if (retryCnt == -1) {
+            retryCnt = 0;
+            loadEarleyFIRSTandRules();
+            initArrays(pMax, pItemSetMax, pCompletedItemSetMax,
+                pBringForwardTypMax, pPredictorTypMax);
+        }
+        final EarleyParser worker = new EarleyParser(grammar, pMax - 1);
+        worker.retryCnt = 0;
+        worker.initArrays(pMax, pItemSetMax, pCompletedItemSetMax,
+            pBringForwardTypMax, pPredictorTypMax);
+        return worker;
+    }
+
     /**
      * EarleyParserSpecialCase1 -- Expression length = 0, occurs on Nulls
      * Permitted Syntax Axioms or, in theory, on a Logical Hypothesis, Logical
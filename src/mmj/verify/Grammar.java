@@ -35,15 +35,19 @@
  *                symTbl and stmtTbl data will remain constant
  *                (unless add/upd/del capabilities are added
  *                later.)
+ *              - Added parseAllFormulasInParallel().
  */
 
 package mmj.verify;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import mmj.lang.*;
 import mmj.pa.ErrorCode;
+import mmj.pa.MMJException;
 import mmj.pa.SessionStore;
 import mmj.verify.GrammarConstants.LabelContext;
 
@@ -183,6 +187,23 @@ public class Grammar implements SyntaxVerifier {
 
     private GrammaticalParser grammaticalParser;
 
+    /**
+     * Parse trees of the formulas parsed by parseFormulaWithoutSafetyNet(), by
+     * Type Code, expression (with each Var replaced by its VarHyp, so that Work
+     * Variables and the hypotheses of different theorems are told apart) and
+     * highestSeq. Emptied whenever the grammar is initialized.
+     */
+    private final Map<ParseTreeCacheKey, ParseTree> parseTreeCache = new LinkedHashMap<ParseTreeCacheKey, ParseTree>(
+        16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<ParseTreeCacheKey, ParseTree> eldest)
+        {
+            return size() > GrammarConstants.PARSE_TREE_CACHE_MAX_ENTRIES;
+        }
+    };
+
     private Class<? extends GrammaticalParser> parserPrototype;
 
     /**
@@ -330,9 +351,14 @@ public class Grammar implements SyntaxVerifier {
     /**
      * Set grammarInitialized flag to false. (Don't allow it to be set to true
      * externally.)
+     * <p>
+     * The next parse then rebuilds the whole grammar, which is only needed
+     * when syntax axioms are loaded: TheoremLoader updates add theorems only,
+     * and do not call this.
      */
     public void setGrammarInitializedFalse() {
         grammarInitialized = false;
+        clearParseTreeCache();
     }
 
     /**
@@ -574,8 +600,9 @@ public class Grammar implements SyntaxVerifier {
             // return stmt.getExprRPN();
             return stmt.getExprParseTree();
 
-        return grammaticalParseOneFormula(stmt.getFormula(),
-            stmt.getMandVarHypArray(), stmt.getSeq(), stmt.getLabel());
+        return grammaticalParseOneFormula(grammaticalParser, stmt.getFormula(),
+            stmt.getMandVarHypArray(), stmt.getSeq(), stmt.getLabel(),
+            messages::accumException);
 
     }
 
@@ -617,8 +644,10 @@ public class Grammar implements SyntaxVerifier {
             if (!grammarInitialized)
                 return null;
         }
-        return grammaticalParseOneFormula(formula, varHypArray, highestSeq,
-            defaultStmt == null ? null : defaultStmt.getLabel());
+        return grammaticalParseOneFormula(grammaticalParser, formula,
+            varHypArray, highestSeq,
+            defaultStmt == null ? null : defaultStmt.getLabel(),
+            messages::accumException);
     }
 
     /**
@@ -655,7 +684,8 @@ public class Grammar implements SyntaxVerifier {
                 // already done during initializeGrammarTables()
                 continue;
             ParseTree exprParseTree = grammaticalParseOneFormula(
-                stmt.getFormula(), varHypArray, stmt.getSeq(), stmt.getLabel());
+                grammaticalParser, stmt.getFormula(), varHypArray,
+                stmt.getSeq(), stmt.getLabel(), messages::accumException);
             if (exprParseTree == null)
                 exprParseTree = buildDefaultExprParseTree(stmt, varHypArray);
             stmt.setExprParseTree(exprParseTree);
@@ -678,6 +708,222 @@ public class Grammar implements SyntaxVerifier {
         }
     }
 
+    /**
+     * Parse all Statement Formulas using several threads and update stmtTbl
+     * with results.
+     * <p>
+     * Each thread parses with its own copy of the grammatical parser (see
+     * GrammaticalParser.newWorkerParser()). The statements are parsed in
+     * blocks of PARSE_PARALLEL_BLOCK_SIZE, in sequence; after each block the
+     * ParseTrees are stored and the messages accumulated in statement
+     * sequence, stopping when the maximum number of error messages is reached,
+     * so that the output is the same as parseAllFormulas() produces. The
+     * Assrt caches are primed in a last pass, once every LogHyp has its
+     * ParseTree. If the parser cannot be used this way, parseAllFormulas() is
+     * called instead.
+     *
+     * @param messages Messages object for error/info messages.
+     * @param symTblParam Symbol Table (Map).
+     * @param stmtTblParam Statement Table (Map).
+     */
+    public void parseAllFormulasInParallel(final Messages messages,
+        final Map<String, Sym> symTblParam,
+        final Map<String, Stmt> stmtTblParam)
+    {
+        checkVerifySyntaxParams(messages, symTblParam, stmtTblParam);
+        if (!grammarInitialized) {
+            try {
+                initializeGrammarTables();
+            } catch (final VerifyException e) {
+                messages.accumException(e);
+            }
+            if (!grammarInitialized)
+                return;
+        }
+
+        final GrammaticalParser first = grammaticalParser.newWorkerParser();
+        if (first == null) {
+            parseAllFormulas(messages, symTblParam, stmtTblParam);
+            return;
+        }
+        final Queue<GrammaticalParser> spare = new ArrayDeque<>();
+        spare.add(first);
+        final ThreadLocal<GrammaticalParser> workerParser = ThreadLocal
+            .withInitial(() -> {
+                synchronized (spare) {
+                    final GrammaticalParser p = spare.poll();
+                    return p != null ? p : grammaticalParser.newWorkerParser();
+                }
+            });
+
+        final Stmt[] stmts = stmtTbl.values().stream()
+            .filter(stmt -> !(stmt instanceof VarHyp || stmt instanceof Axiom
+                && ((Axiom)stmt).getIsSyntaxAxiom()))
+            .sorted(MObj.SEQ).toArray(Stmt[]::new);
+        final ParseResult[] results = new ParseResult[stmts.length];
+
+        int parsed = 0;
+        while (parsed < stmts.length && !messages.maxErrorMessagesReached()) {
+            final int blockEnd = Math.min(stmts.length,
+                parsed + GrammarConstants.PARSE_PARALLEL_BLOCK_SIZE);
+            IntStream.range(parsed, blockEnd).parallel().forEach(i -> {
+                final Stmt stmt = stmts[i];
+                final VarHyp[] varHypArray = stmt.getMandVarHypArray();
+                final ParseResult result = new ParseResult();
+                result.parseTree = grammaticalParseOneFormula(
+                    workerParser.get(), stmt.getFormula(), varHypArray,
+                    stmt.getSeq(), stmt.getLabel(), result.messages::add);
+                if (result.parseTree == null)
+                    result.parseTree = buildDefaultExprParseTree(stmt,
+                        varHypArray);
+                result.parseTree.getMaxDepth();
+                result.parseTree.getLevelOneTwo();
+                results[i] = result;
+            });
+
+            // as parseAllFormulas() does, leave the statements following the
+            // last error message alone
+            for (; parsed < blockEnd; parsed++) {
+                if (messages.maxErrorMessagesReached())
+                    break;
+                stmts[parsed].setExprParseTree(results[parsed].parseTree);
+                results[parsed].messages.forEach(messages::accumException);
+                results[parsed] = null;
+            }
+        }
+
+        // the LogHyp ParseTrees are all present now
+        Arrays.stream(stmts, 0, parsed).parallel()
+            .filter(stmt -> stmt instanceof Assrt).forEach(stmt -> {
+                final Assrt assrt = (Assrt)stmt;
+                assrt.getLogHypsMaxDepth();
+                assrt.getLogHypsL1HiLoKey();
+            });
+    }
+
+    /**
+     * The result of parsing one statement in parseAllFormulasInParallel().
+     */
+    private static class ParseResult {
+        ParseTree parseTree;
+        final List<MMJException> messages = new ArrayList<>(0);
+    }
+
+    /**
+     * Compares this Grammar's parser with EarleyParser on the formula of every
+     * statement parsed by parseAllFormulas(), and on variants of each formula
+     * with one symbol deleted or with the first symbol repeated, most of which
+     * do not parse.
+     * <p>
+     * The two parsers must stop at the same symbol position, or find the same
+     * parse trees, in any order. When the maximum number of parse trees is
+     * reached they need only both reach it, since each may keep different
+     * trees. Each formula on which they disagree is reported as an error.
+     * <p>
+     * This is provided for regression testing (see the ParserBatchTest
+     * RunParm).
+     *
+     * @param messages Messages object for error/info messages.
+     * @param symTblParam Symbol Table (Map).
+     * @param stmtTblParam Statement Table (Map).
+     * @return the number of formulas on which the parsers disagree.
+     */
+    public int compareParserWithEarleyParser(final Messages messages,
+        final Map<String, Sym> symTblParam,
+        final Map<String, Stmt> stmtTblParam)
+    {
+        checkVerifySyntaxParams(messages, symTblParam, stmtTblParam);
+        if (!grammarInitialized) {
+            try {
+                initializeGrammarTables();
+            } catch (final VerifyException e) {
+                messages.accumException(e);
+            }
+            if (!grammarInitialized)
+                return 0;
+        }
+
+        final GrammaticalParser earleyParser = new EarleyParser(this,
+            maxFormulaCnt);
+        final Set<Stmt> stmtTblBySeq = new TreeSet<>(MObj.SEQ);
+        stmtTblBySeq.addAll(stmtTbl.values());
+
+        int formulaCnt = 0;
+        int mismatchCnt = 0;
+        for (final Stmt stmt : stmtTblBySeq) {
+            if (messages.maxErrorMessagesReached())
+                break;
+            if (stmt instanceof VarHyp
+                || stmt instanceof Axiom && ((Axiom)stmt).getIsSyntaxAxiom())
+                continue;
+            final VarHyp[] varHypArray = stmt.getMandVarHypArray();
+            final Sym[] sym = stmt.getFormula().getSym();
+            final int cnt = stmt.getFormula().getCnt();
+
+            // variant 0 is the formula, variant k deletes symbol k and
+            // variant cnt repeats the first symbol (sym[0] is the Type Code)
+            for (int k = 0; k <= cnt; k++) {
+                final List<Sym> symList = new ArrayList<>(
+                    Arrays.asList(sym).subList(0, cnt));
+                if (k == cnt) {
+                    if (cnt < 2)
+                        continue;
+                    symList.add(2, symList.get(1));
+                }
+                else if (k > 0)
+                    symList.remove(k);
+                final Formula formula = new Formula(symList);
+
+                final String expected = getParserBatchTestResult(earleyParser,
+                    formula, varHypArray, stmt.getSeq());
+                final String actual = getParserBatchTestResult(
+                    grammaticalParser, formula, varHypArray, stmt.getSeq());
+                formulaCnt++;
+                if (!expected.equals(actual)) {
+                    mismatchCnt++;
+                    messages.accumException(new VerifyException(
+                        GrammarConstants.ERRMSG_PARSER_BATCH_TEST_MISMATCH,
+                        stmt.getLabel(), formula, expected,
+                        parserPrototype.getSimpleName(), actual));
+                }
+            }
+        }
+        messages.accumMessage(GrammarConstants.ERRMSG_PARSER_BATCH_TEST_DONE,
+            parserPrototype.getSimpleName(), formulaCnt - mismatchCnt,
+            formulaCnt);
+        return mismatchCnt;
+    }
+
+    /**
+     * Returns what compareParserWithEarleyParser() compares of the parse of a
+     * formula: the position where the parse stopped, or the sorted parse
+     * trees, or the number of parse trees if it is the maximum.
+     */
+    private static String getParserBatchTestResult(
+        final GrammaticalParser parser, final Formula formula,
+        final VarHyp[] varHypArray, final int highestSeq)
+    {
+        final ParseTree[] parseTreeArray = new ParseTree[GrammarConstants.PARSE_TREE_MAX_FOR_AMBIG_EDIT];
+        final int parseTreeCnt;
+        try {
+            parseTreeCnt = parser.parseExpr(parseTreeArray, formula.getTyp(),
+                formula.getParseNodeHolderExpr(varHypArray), highestSeq);
+        } catch (final VerifyException e) {
+            return e.getMessage();
+        }
+        if (parseTreeCnt < 0)
+            return "parse terminated at symbol position " + -parseTreeCnt;
+        if (parseTreeCnt == 0)
+            return "no parse tree";
+        if (parseTreeCnt == parseTreeArray.length)
+            return parseTreeCnt + " parse trees";
+        final String[] trees = new String[parseTreeCnt];
+        for (int i = 0; i < parseTreeCnt; i++)
+            trees[i] = parseTreeArray[i].toString();
+        Arrays.sort(trees);
+        return parseTreeCnt + " parse trees: " + String.join(" ", trees);
+    }
+
     /**
      * Initializes the grammar.
      * <p>
@@ -758,6 +1004,11 @@ public class Grammar implements SyntaxVerifier {
      * theory this could cause a problem if a non-syntax error comes out and is
      * taken as a syntax error by the user. However, with the current parser
      * that should not be a problem (as seen in the following method).
+     * <p>
+     * The parse trees are cached, so a formula which is parsed again with the
+     * same hypotheses and highestSeq (as on every Proof Assistant request) is
+     * not parsed again. A copy of the cached tree is returned, which the
+     * caller may modify.
      *
      * @param formula formula to be parsed.
      * @param hypArray Hyp's for Formula's Var's.
@@ -768,55 +1019,123 @@ public class Grammar implements SyntaxVerifier {
     public ParseTree parseFormulaWithoutSafetyNet(final Formula formula,
         final Hyp[] hypArray, final int highestSeq)
     {
-        ParseTree exprParseTree = null;
+        final ParseNodeHolder[] parseNodeHolderExpr = formula
+            .getParseNodeHolderExpr(hypArray);
+        final ParseTreeCacheKey key = new ParseTreeCacheKey(formula.getTyp(),
+            parseNodeHolderExpr, highestSeq);
+        ParseTree exprParseTree;
+        synchronized (parseTreeCache) {
+            exprParseTree = parseTreeCache.get(key);
+        }
+        if (exprParseTree != null)
+            return exprParseTree.deepClone();
 
         final ParseTree[] parseTreeArray = new ParseTree[1];
         int parseTreeCnt;
         try {
             parseTreeCnt = grammaticalParser.parseExpr(parseTreeArray,
-                formula.getTyp(), formula.getParseNodeHolderExpr(hypArray),
-                highestSeq);
+                formula.getTyp(), parseNodeHolderExpr, highestSeq);
             if (parseTreeCnt > 0)
                 exprParseTree = parseTreeArray[0];
         } catch (final VerifyException e) {}
+
+        // failures are not kept: they are reported, and soon corrected
+        if (exprParseTree != null)
+            synchronized (parseTreeCache) {
+                parseTreeCache.put(key, exprParseTree.deepClone());
+            }
         return exprParseTree;
     }
 
-    private ParseTree grammaticalParseOneFormula(final Formula formula,
+    /**
+     * Empties the cache of parseFormulaWithoutSafetyNet(), which must be done
+     * if the grammar changes.
+     */
+    public void clearParseTreeCache() {
+        synchronized (parseTreeCache) {
+            parseTreeCache.clear();
+        }
+    }
+
+    /**
+     * Key of parseTreeCache: the Type Code, Cnsts and VarHyps of an expression
+     * to be parsed, compared by identity, and the highestSeq of the parse.
+     */
+    private static class ParseTreeCacheKey {
+        private final MObj[] expr;
+        private final int highestSeq;
+        private final int hash;
+
+        private ParseTreeCacheKey(final Cnst typ,
+            final ParseNodeHolder[] parseNodeHolderExpr, final int highestSeq)
+        {
+            expr = new MObj[parseNodeHolderExpr.length + 1];
+            expr[0] = typ;
+            int h = highestSeq;
+            for (int i = 0; i < parseNodeHolderExpr.length; i++) {
+                expr[i + 1] = parseNodeHolderExpr[i].mObj;
+                h = 31 * h + System.identityHashCode(expr[i + 1]);
+            }
+            this.highestSeq = highestSeq;
+            hash = 31 * h + System.identityHashCode(typ);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof ParseTreeCacheKey))
+                return false;
+            final ParseTreeCacheKey k = (ParseTreeCacheKey)obj;
+            if (k.hash != hash || k.highestSeq != highestSeq
+                || k.expr.length != expr.length)
+                return false;
+            for (int i = 0; i < expr.length; i++)
+                if (k.expr[i] != expr[i])
+                    return false;
+            return true;
+        }
+    }
+
+    private ParseTree grammaticalParseOneFormula(
+        final GrammaticalParser parser, final Formula formula,
         final VarHyp[] varHypArray, final int highestSeq,
-        final String defaultStmtLabel)
+        final String defaultStmtLabel, final Consumer<MMJException> msgs)
     {
         ParseTree exprParseTree = null;
 
         final ParseTree[] parseTreeArray = new ParseTree[parseTreeMax];
         int parseTreeCnt;
         try {
-            parseTreeCnt = grammaticalParser.parseExpr(parseTreeArray,
+            parseTreeCnt = parser.parseExpr(parseTreeArray,
                 formula.getTyp(), formula.getParseNodeHolderExpr(varHypArray),
                 highestSeq);
             if (parseTreeCnt < 0)
-                messages.accumMessage(
+                msgs.accept(new MMJException(
                     GrammarConstants.ERRMSG_PARSE_FAILED_AT_POS,
-                    defaultStmtLabel, -parseTreeCnt);
+                    defaultStmtLabel, -parseTreeCnt));
             else
                 switch (parseTreeCnt) {
                     case 1:
                         exprParseTree = parseTreeArray[0];
                         break;
                     case 0:
-                        messages.accumMessage(
+                        msgs.accept(new MMJException(
                             GrammarConstants.ERRMSG_PARSE_FAILED,
-                            defaultStmtLabel);
+                            defaultStmtLabel));
                         break;
                     case 2:
                         /**
                          * return 1st parse tree of n
                          */
                         exprParseTree = parseTreeArray[0];
-                        messages.accumMessage(
+                        msgs.accept(new MMJException(
                             GrammarConstants.ERRMSG_2_PARSE_TREES,
                             defaultStmtLabel, parseTreeArray[0],
-                            parseTreeArray[1]);
+                            parseTreeArray[1]));
                         break;
                     default:
                         /**
@@ -828,14 +1147,13 @@ public class Grammar implements SyntaxVerifier {
                             s.append(ErrorCode.format(
                                 GrammarConstants.ERRMSG_N_PARSE_TREES_2, i,
                                 parseTreeArray[i]));
-                        messages.accumMessage(
+                        msgs.accept(new MMJException(
                             GrammarConstants.ERRMSG_N_PARSE_TREES,
-                            defaultStmtLabel, s);
+                            defaultStmtLabel, s));
                         break;
                 }
         } catch (final VerifyException e) {
-            messages.accumException(
-                e.addContext(new LabelContext(defaultStmtLabel)));
+            msgs.accept(e.addContext(new LabelContext(defaultStmtLabel)));
         }
         return exprParseTree;
     }
@@ -953,6 +1271,7 @@ public class Grammar implements SyntaxVerifier {
     private boolean initializeGrammarTables() throws VerifyException {
 
         grammarInitialized = false;
+        clearParseTreeCache();
 
         final Set<Axiom> allSyntaxAxiomSet = new TreeSet<>(MObj.SEQ);
 
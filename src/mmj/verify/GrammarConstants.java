@@ -93,6 +93,16 @@ public class GrammarConstants {
     = 2; // normal
 //  /*
 
+    /**
+     * PARSE_TREE_CACHE_MAX_ENTRIES = 20000
+     * <p>
+     * Maximum number of formulas whose parse tree is remembered by
+     * Grammar.parseFormulaWithoutSafetyNet(), so that the Proof Assistant does
+     * not parse unchanged formulas again on every request. The least recently
+     * used entries are dropped.
+     */
+    public static final int PARSE_TREE_CACHE_MAX_ENTRIES = 20000;
+
     /**
      * Default list, for Grammar.java constructor, of Type Codes used on
      * Theorems involving Logical Statements, thus identifying all other Type
@@ -499,5 +509,46 @@ public class GrammarConstants {
     public static final ErrorCode ERRMSG_REDUCE_REDUCE = of(
         "E-GR-0052 Reduce/reduce conflict in grammar: %s => \"%s\" / \"%s\"");
 
+    public static final ErrorCode ERRMSG_LR_TABLE_WRITE_FAIL = of(
+        "W-GR-0053 Unable to write the LR parse table file %s: %s");
+
+    public static final ErrorCode ERRMSG_PARSER_BATCH_TEST_MISMATCH = of(
+        "E-GR-0054 ParserBatchTest: Label = %s. Formula = %s."
+            + " EarleyParser result: %s. %s result: %s");
+
+    public static final ErrorCode ERRMSG_PARSER_BATCH_TEST_DONE = of(
+        "I-GR-0055 ParserBatchTest: %s agrees with EarleyParser"
+            + " on %d of %d formulas.");
+
+    public static final ErrorCode ERRMSG_LR_TABLE_READ = of(
+        "I-GR-0056 LR parse tables read from the file %s");
+
+    public static final ErrorCode ERRMSG_LR_TABLE_WRITTEN = of(
+        "I-GR-0057 LR parse tables generated and written to the file %s");
+
+    /**
+     * Suffix added to the name of the settings file to get the name of the
+     * LR parse table file (see LRParseTable).
+     */
+    public static final String LR_PARSE_TABLE_FILE_SUFFIX = ".lrtable";
+
     public static final Class<? extends GrammaticalParser> DEFAULT_PARSER_PROTOTYPE = EarleyParser.class;
+
+    /**
+     * ParseParallel default equal false.
+     * <p>
+     * If set to true then "Parse,*" parses the statements on all available
+     * processors (see Grammar.parseAllFormulasInParallel()).
+     */
+    public static final boolean PARSE_PARALLEL_DEFAULT = false;
+
+    /**
+     * PARSE_PARALLEL_BLOCK_SIZE = 1000
+     * <p>
+     * Number of statements parsed at once by
+     * Grammar.parseAllFormulasInParallel() before their messages are
+     * accumulated; no more blocks are parsed once the maximum number of error
+     * messages is reached.
+     */
+    public static final int PARSE_PARALLEL_BLOCK_SIZE = 1000;
 }
@@ -50,4 +50,18 @@ public interface GrammaticalParser {
      * @param store The setting storage
      */
     default void addSettings(final SessionStore store) {}
+
+    /**
+     * Returns a new parser for the same Grammar which can parse on another
+     * thread at the same time as this one (see
+     * Grammar.parseAllFormulasInParallel()).
+     * <p>
+     * The default is null, meaning that the parser keeps state which cannot
+     * be shared between threads and must be used serially.
+     *
+     * @return independent parser, or null if not supported.
+     */
+    default GrammaticalParser newWorkerParser() {
+        return null;
+    }
 }
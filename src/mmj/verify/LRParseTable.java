@@ -0,0 +1,440 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.verify;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.Map.Entry;
+
+import mmj.lang.*;
+import mmj.lang.ParseTree.RPNStep;
+
+/**
+ * The parse tables generated by LRParser, in a compact form which is also the
+ * layout of the LR parse table file.
+ * <p>
+ * The tables are held in int arrays. The transitions (shifts and gotos) of
+ * state {@code s} are {@code transSym[i] -> transTarget[i]} for
+ * {@code transStart[s] <= i < transStart[s + 1]}, sorted by symbol, and the
+ * reduction of the state (if any) is given by {@code reduceTyp[s]},
+ * {@code reduceArgs[s]} and the parameter transformation tree, in expanded
+ * RPN, at {@code treeStart[s]}. Symbols and statements are referred to by
+ * their index in the {@code sym} and {@code label} tables.
+ * <p>
+ * The file starts with a SHA-256 fingerprint of the grammar (see
+ * fingerprint()) and is only used if the grammar's fingerprint is unchanged.
+ * It is read whole into memory and its arrays are copied in bulk, so reading
+ * it costs little more than looking up its symbols and statements in the
+ * Grammar. (It is not memory mapped: on Windows, a mapped file cannot be
+ * replaced until the mapping is garbage collected.)
+ * <p>
+ * A LRParseTable is immutable, and may be used by several threads at once.
+ */
+public class LRParseTable {
+
+    private static final int MAGIC = 0x6D6D4C52; // "mmLR"
+
+    private static final int VERSION = 1;
+
+    private final byte[] fingerprint;
+
+    private final String[] sym;
+    private final String[] label;
+
+    private final int[] startSym;
+    private final int[] startState;
+
+    private final int[] transStart;
+    private final int[] transSym;
+    private final int[] transTarget;
+
+    private final int[] reduceTyp;
+    private final int[] reduceArgs;
+
+    private final int[] treeStart;
+    private final int[] treeStmt;
+
+    // the tables resolved in the Grammar (not in the file)
+    private final Map<Cnst, Integer> symIndex = new IdentityHashMap<>();
+    private final ParseTree[] reduceTree;
+
+    /**
+     * Construct the table of a newly generated parser.
+     *
+     * @param grammar the Grammar.
+     * @param fingerprint the Grammar's fingerprint.
+     * @param startStates the start state of each Type Code.
+     * @param rows the parse table rows.
+     */
+    LRParseTable(final Grammar grammar, final byte[] fingerprint,
+        final Map<String, Integer> startStates,
+        final List<LRParser.ParseTableRow> rows)
+    {
+        this.fingerprint = fingerprint;
+        final Map<String, Integer> syms = new HashMap<>();
+        final Map<String, Integer> labels = new HashMap<>();
+
+        startSym = new int[startStates.size()];
+        startState = new int[startStates.size()];
+        int i = 0;
+        for (final Entry<String, Integer> e : startStates.entrySet()) {
+            startSym[i] = index(syms, e.getKey());
+            startState[i++] = e.getValue();
+        }
+
+        final int n = rows.size();
+        transStart = new int[n + 1];
+        reduceTyp = new int[n];
+        reduceArgs = new int[n];
+        treeStart = new int[n + 1];
+        final RPNStep[][] rpn = new RPNStep[n][];
+        for (int s = 0; s < n; s++) {
+            final LRParser.ParseTableRow row = rows.get(s);
+            transStart[s + 1] = transStart[s] + row.transitions.size();
+            reduceTyp[s] = -1;
+            rpn[s] = new RPNStep[0];
+            if (row.typeCode != null) {
+                reduceTyp[s] = index(syms, row.typeCode);
+                reduceArgs[s] = row.args;
+                rpn[s] = row.paramTransformationTree.convertToRPNExpanded();
+            }
+            treeStart[s + 1] = treeStart[s] + rpn[s].length;
+        }
+
+        transSym = new int[transStart[n]];
+        transTarget = new int[transStart[n]];
+        treeStmt = new int[treeStart[n]];
+        for (int s = 0; s < n; s++) {
+            final LRParser.ParseTableRow row = rows.get(s);
+            // sort the transitions by symbol index
+            final long[] t = new long[row.transitions.size()];
+            i = 0;
+            for (final Entry<String, Integer> e : row.transitions.entrySet())
+                t[i++] = (long)index(syms, e.getKey()) << 32 | e.getValue();
+            Arrays.sort(t);
+            for (i = 0; i < t.length; i++) {
+                transSym[transStart[s] + i] = (int)(t[i] >>> 32);
+                transTarget[transStart[s] + i] = (int)t[i];
+            }
+            for (i = 0; i < rpn[s].length; i++)
+                treeStmt[treeStart[s] + i] = index(labels,
+                    rpn[s][i].stmt.getLabel());
+        }
+        sym = toArray(syms);
+        label = toArray(labels);
+
+        reduceTree = new ParseTree[n];
+        if (!resolve(grammar))
+            throw new IllegalStateException(
+                "LR parse table does not match the grammar");
+    }
+
+    private LRParseTable(final byte[] fingerprint, final ByteBuffer b) {
+        this.fingerprint = fingerprint;
+        sym = getStrings(b);
+        label = getStrings(b);
+        startSym = getInts(b);
+        startState = getInts(b);
+        transStart = getInts(b);
+        transSym = getInts(b);
+        transTarget = getInts(b);
+        reduceTyp = getInts(b);
+        reduceArgs = getInts(b);
+        treeStart = getInts(b);
+        treeStmt = getInts(b);
+        reduceTree = new ParseTree[reduceTyp.length];
+    }
+
+    /**
+     * Reads a LR parse table file.
+     *
+     * @param grammar the Grammar.
+     * @param file the LR parse table file.
+     * @param fingerprint the Grammar's fingerprint.
+     * @return the LRParseTable, or null if the file does not exist or was not
+     *         written by this version of mmj2 for this grammar.
+     * @throws IOException if the file could not be read.
+     */
+    public static LRParseTable read(final Grammar grammar, final File file,
+        final byte[] fingerprint) throws IOException
+    {
+        if (!file.exists())
+            return null;
+        final LRParseTable table;
+        try {
+            final ByteBuffer b = ByteBuffer
+                .wrap(Files.readAllBytes(file.toPath()));
+            if (b.getInt() != MAGIC || b.getInt() != VERSION)
+                return null;
+            final byte[] fileFingerprint = new byte[fingerprint.length];
+            b.get(fileFingerprint);
+            if (!Arrays.equals(fingerprint, fileFingerprint))
+                return null;
+            table = new LRParseTable(fingerprint, b);
+        } catch (final BufferUnderflowException e) {
+            return null;
+        }
+        return table.resolve(grammar) ? table : null;
+    }
+
+    /**
+     * Writes the LR parse table file.
+     *
+     * @param file the LR parse table file.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(final File file) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(fingerprint);
+            putStrings(out, sym);
+            putStrings(out, label);
+            for (final int[] a : new int[][]{startSym, startState, transStart,
+                    transSym, transTarget, reduceTyp, reduceArgs, treeStart,
+                    treeStmt})
+            {
+                out.writeInt(a.length);
+                for (final int x : a)
+                    out.writeInt(x);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the start state for a Type Code.
+     *
+     * @param typ the Type Code.
+     * @return the state, or -1 if there is none.
+     */
+    public int getStartState(final Cnst typ) {
+        final Integer s = symIndex.get(typ);
+        if (s != null)
+            for (int i = 0; i < startSym.length; i++)
+                if (startSym[i] == s)
+                    return startState[i];
+        return -1;
+    }
+
+    /**
+     * Returns the state reached by shifting a symbol.
+     *
+     * @param state the current state.
+     * @param c the symbol (a constant or a Type Code).
+     * @return the new state, or -1 if there is no transition.
+     */
+    public int getTransition(final int state, final Cnst c) {
+        final Integer s = symIndex.get(c);
+        return s == null ? -1 : find(state, s);
+    }
+
+    /**
+     * Returns the state reached from a state after the reduction of another
+     * state.
+     *
+     * @param state the state uncovered by the reduction.
+     * @param reduceState the state which was reduced.
+     * @return the new state, or -1 if there is no transition.
+     */
+    public int getReduceTransition(final int state, final int reduceState) {
+        return find(state, reduceTyp[reduceState]);
+    }
+
+    /**
+     * Returns the parameter transformation tree of a state's reduction.
+     *
+     * @param state the state.
+     * @return the tree, or null if the state has no reduction.
+     */
+    public ParseTree getReduceTree(final int state) {
+        return reduceTree[state];
+    }
+
+    /**
+     * Returns the length of the rule of a state's reduction.
+     *
+     * @param state the state.
+     * @return number of symbols of the rule.
+     */
+    public int getReduceArgs(final int state) {
+        return reduceArgs[state];
+    }
+
+    private int find(final int state, final int s) {
+        int lo = transStart[state];
+        int hi = transStart[state + 1] - 1;
+        while (lo <= hi) {
+            final int mid = lo + hi >>> 1;
+            if (transSym[mid] < s)
+                lo = mid + 1;
+            else if (transSym[mid] > s)
+                hi = mid - 1;
+            else
+                return transTarget[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the tables and looks up their symbols and statements in the
+     * Grammar.
+     *
+     * @return false if the tables are inconsistent or refer to symbols or
+     *         statements which are not in the Grammar.
+     */
+    private boolean resolve(final Grammar grammar) {
+        final int n = reduceTyp.length;
+        if (reduceArgs.length != n || transStart.length != n + 1
+            || treeStart.length != n + 1 || startState.length != startSym.length
+            || transStart[0] != 0 || transSym.length != transStart[n]
+            || transTarget.length != transStart[n] || treeStart[0] != 0
+            || treeStmt.length != treeStart[n])
+            return false;
+        for (int i = 0; i < startSym.length; i++)
+            if (!inRange(startSym[i], sym.length)
+                || !inRange(startState[i], n))
+                return false;
+        for (int i = 0; i < transSym.length; i++)
+            if (!inRange(transSym[i], sym.length)
+                || !inRange(transTarget[i], n))
+                return false;
+        for (int s = 0; s < n; s++)
+            if (transStart[s] > transStart[s + 1]
+                || treeStart[s] > treeStart[s + 1]
+                || reduceTyp[s] < -1 || reduceTyp[s] >= sym.length)
+                return false;
+
+        for (int i = 0; i < sym.length; i++) {
+            final Sym c = grammar.symTbl.get(sym[i]);
+            if (!(c instanceof Cnst))
+                return false;
+            symIndex.put((Cnst)c, i);
+        }
+        final Stmt[] stmt = new Stmt[label.length];
+        for (int i = 0; i < label.length; i++)
+            if ((stmt[i] = grammar.stmtTbl.get(label[i])) == null)
+                return false;
+        for (int s = 0; s < n; s++)
+            if (reduceTyp[s] >= 0) {
+                final RPNStep[] rpn = new RPNStep[treeStart[s + 1]
+                    - treeStart[s]];
+                for (int i = 0; i < rpn.length; i++) {
+                    final int j = treeStmt[treeStart[s] + i];
+                    if (!inRange(j, stmt.length))
+                        return false;
+                    rpn[i] = new RPNStep(stmt[j]);
+                }
+                try {
+                    reduceTree[s] = new ParseTree(rpn);
+                } catch (final IllegalArgumentException e) {
+                    return false;
+                }
+            }
+        return true;
+    }
+
+    private static boolean inRange(final int i, final int n) {
+        return i >= 0 && i < n;
+    }
+
+    /**
+     * Computes the fingerprint of a Grammar: a SHA-256 digest of the notation
+     * rules and type conversions from which the LRParser tables are built.
+     *
+     * @param grammar the Grammar.
+     * @return the fingerprint.
+     */
+    public static byte[] fingerprint(final Grammar grammar) {
+        final StringBuilder sb = new StringBuilder();
+        final List<String> typs = new ArrayList<>();
+        for (final Cnst typ : grammar.getVarHypTypSet())
+            typs.add(typ.getId());
+        Collections.sort(typs);
+        sb.append("$t ");
+        for (final String typ : typs)
+            sb.append(typ).append(' ');
+        for (final NotationRule rule : grammar.getNotationGRSet()) {
+            sb.append("$n ").append(rule.getGrammarRuleTyp().getId())
+                .append(' ').append(rule.getIsGimmeMatchNbr()).append(' ');
+            for (final Cnst c : rule.getRuleFormatExpr())
+                sb.append(c.getId()).append(' ');
+            sb.append("$= ");
+            for (final RPNStep step : rule.getParamTransformationTree()
+                .convertToRPNExpanded())
+                sb.append(step.stmt.getLabel()).append(' ');
+        }
+        for (final TypeConversionRule rule : grammar
+            .getTypeConversionGRList())
+            sb.append("$c ").append(rule.getGrammarRuleTyp().getId())
+                .append(' ').append(rule.getConvTyp().getId()).append(' ')
+                .append(rule.getBaseSyntaxAxiom().getLabel()).append(' ');
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int index(final Map<String, Integer> table,
+        final String s)
+    {
+        return table.computeIfAbsent(s, k -> table.size());
+    }
+
+    private static String[] toArray(final Map<String, Integer> table) {
+        final String[] a = new String[table.size()];
+        for (final Entry<String, Integer> e : table.entrySet())
+            a[e.getValue()] = e.getKey();
+        return a;
+    }
+
+    private static void putStrings(final DataOutputStream out,
+        final String[] a) throws IOException
+    {
+        out.writeInt(a.length);
+        for (final String s : a) {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] getStrings(final ByteBuffer b) {
+        final String[] a = new String[getLength(b, 4)];
+        for (int i = 0; i < a.length; i++) {
+            final byte[] bytes = new byte[getLength(b, 1)];
+            b.get(bytes);
+            a[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return a;
+    }
+
+    private static int[] getInts(final ByteBuffer b) {
+        final int[] a = new int[getLength(b, 4)];
+        b.asIntBuffer().get(a);
+        b.position(b.position() + 4 * a.length);
+        return a;
+    }
+
+    // reads an array length, checking that the array fits in the buffer
+    private static int getLength(final ByteBuffer b, final int elementSize) {
+        final int n = b.getInt();
+        if (n < 0 || n > b.remaining() / elementSize)
+            throw new BufferUnderflowException();
+        return n;
+    }
+}
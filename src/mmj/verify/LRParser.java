@@ -11,32 +11,32 @@
 
 package mmj.verify;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import mmj.lang.*;
-import mmj.pa.*;
+import mmj.pa.SessionStore;
 
 /**
  * LR Parser
+ * <p>
+ * The parse tables are kept in a LR parse table file next to the settings
+ * file (see LRParseTable), and are only generated again when the grammar
+ * changes.
  */
 public class LRParser implements GrammaticalParser {
-    private static final String PFX = "~LRParser.";
-
     private SessionStore store;
-    private Setting<Integer> grammarHash;
 
     private final Grammar grammar;
 
-    private Setting<Map<String, Integer>> startStatesSetting;
-    private Setting<List<ParseTableRow>> rowsSetting;
+    private volatile LRParseTable table;
+    private volatile int tableRuleCount;
 
+    // the tables under construction
     private Map<String, Integer> startStates;
     private List<ParseTableRow> rows;
 
@@ -62,29 +62,12 @@ public class LRParser implements GrammaticalParser {
         grammar = grammarIn;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void addSettings(final SessionStore store) {
         this.store = store;
-        // As a crude lock on the grammar hash, only allow setting to and from 0
-        grammarHash = store.addSetting(PFX + "grammarHash", 0)
-            .addListener((o, value) -> o == 0 || value == 0);
-
-        // Doing some type abuse here: since a JSONObject extends
-        // Map<String, Object> we can treat it like a Map<String, Integer> as
-        // long as nothing sneaks in
-        final Map<String, Integer> startDef = (Map<String, Integer>)(Object)new JSONObject();
-        startStatesSetting = store
-            .addSetting(PFX + "startStates", startDef, Serializer.identity())
-            .addListener((o, value) -> o == startDef || value == startDef);
-
-        final List<ParseTableRow> rowDef = new ArrayList<>();
-        rowsSetting = store.new ListSetting<>(PFX + "rows", rowDef,
-            ParseTableRow.serializer(grammar))
-                .addListener((o, value) -> o == rowDef || value == rowDef);
     }
 
-    private void initialize() {
+    private LRParseTable initialize(final byte[] fingerprint) {
         startStates = new HashMap<>();
         rows = new ArrayList<>();
 
@@ -370,12 +353,11 @@ public class LRParser implements GrammaticalParser {
         newRules.clear();
         ParseState.clearCache();
 
-        grammarHash.reset();
-        grammarHash.set(grammar.getNotationGRSet().size());
-        startStatesSetting.reset();
-        startStatesSetting.set(startStates);
-        rowsSetting.reset();
-        rowsSetting.set(rows);
+        final LRParseTable t = new LRParseTable(grammar, fingerprint,
+            startStates, rows);
+        startStates = null;
+        rows = null;
+        return t;
     }
 
     private Integer getState(final ParseSet set) {
@@ -448,28 +430,65 @@ public class LRParser implements GrammaticalParser {
         }*/
     }
 
-    public void load(final boolean fromFile) {
-        if (grammarHash.get().equals(grammar.getNotationGRSet().size())) {
-            startStates = startStatesSetting.get();
-            rows = rowsSetting.get();
-        }
-        if (startStates == null || startStates.isEmpty())
-            if (fromFile) {
+    /**
+     * Returns the parse tables, reading the LR parse table file or generating
+     * them if the grammar has changed since they were last loaded.
+     * <p>
+     * Notation rules are only ever added to a Grammar, so the number of rules
+     * is enough to tell whether the tables in memory are still good; the file
+     * is checked against the fingerprint of the grammar.
+     *
+     * @return the parse tables.
+     */
+    private LRParseTable load() {
+        // table is written before tableRuleCount, so read them the other way
+        final int count = tableRuleCount;
+        final LRParseTable t = table;
+        if (t != null && count == grammar.getNotationGRSet().size())
+            return t;
+        synchronized (this) {
+            final int ruleCount = grammar.getNotationGRSet().size();
+            if (table != null && tableRuleCount == ruleCount)
+                return table;
+
+            final byte[] fingerprint = LRParseTable.fingerprint(grammar);
+            final File file = getTableFile();
+            LRParseTable loaded = null;
+            if (file != null)
                 try {
-                    final List<ProofAsstException> errors = new ArrayList<>();
-                    store.load(true, errors, grammarHash.key(),
-                        startStatesSetting.key(), rowsSetting.key());
-                    for (final ProofAsstException e : errors)
-                        throw e;
-                } catch (final IOException | ProofAsstException e) {
-                    grammarHash.reset();
-                    startStatesSetting.reset();
-                    rowsSetting.reset();
+                    loaded = LRParseTable.read(grammar, file, fingerprint);
+                    if (loaded != null)
+                        grammar.getMessages().accumMessage(
+                            GrammarConstants.ERRMSG_LR_TABLE_READ,
+                            file.getAbsolutePath());
+                } catch (final IOException e) {
+                    // generate the tables again
                 }
-                load(false);
+            if (loaded == null) {
+                loaded = initialize(fingerprint);
+                if (file != null)
+                    try {
+                        loaded.write(file);
+                        grammar.getMessages().accumMessage(
+                            GrammarConstants.ERRMSG_LR_TABLE_WRITTEN,
+                            file.getAbsolutePath());
+                    } catch (final IOException e) {
+                        grammar.getMessages().accumMessage(
+                            GrammarConstants.ERRMSG_LR_TABLE_WRITE_FAIL,
+                            file.getAbsolutePath(), e.getMessage());
+                    }
             }
-            else
-                initialize();
+            table = loaded;
+            tableRuleCount = ruleCount;
+            return loaded;
+        }
+    }
+
+    private File getTableFile() {
+        final File file = store == null ? null : store.getFile();
+        return file == null ? null
+            : new File(file.getPath()
+                + GrammarConstants.LR_PARSE_TABLE_FILE_SUFFIX);
     }
 
     /**
@@ -531,7 +550,7 @@ public class LRParser implements GrammaticalParser {
 
         // Check notation rules to make sure the grammar has not changed since
         // last initialization
-        load(true);
+        final LRParseTable table = load();
         int index = 0;
         final Deque<Integer> stateStack = new ArrayDeque<>();
         final ArrayDeque<ParseNode> outStack = new ArrayDeque<>();
@@ -543,14 +562,17 @@ public class LRParser implements GrammaticalParser {
                 throw new IllegalStateException(new VerifyException(
                     GrammarConstants.ERRMSG_START_RULE_TYPE_UNDEF,
                     formulaTypIn));
-        stateStack.push(startStates.get(startRuleTyp.getId()));
+        final int startState = table.getStartState(startRuleTyp);
+        if (startState < 0)
+            return -1;
+        stateStack.push(startState);
         while (true) {
             final ParseNodeHolder lookahead = index < parseNodeHolderExprIn.length
                 ? parseNodeHolderExprIn[index]
                 : null;
             final int state = stateStack.peek().intValue();
-            Integer transition = null;
-            final ParseTableRow row = rows.get(state);
+            int transition = -1;
+            final ParseTree reduceTree = table.getReduceTree(state);
             NotationRule gimmeMatch = null;
             if (lookahead != null) {
                 Cnst c = lookahead.getCnstOrTyp();
@@ -559,9 +581,9 @@ public class LRParser implements GrammaticalParser {
                     c = gimmeMatch.getGrammarRuleTyp();
                 else
                     gimmeMatch = null;
-                transition = row.getTransition(c);
+                transition = table.getTransition(state, c);
             }
-            if (transition != null) {
+            if (transition >= 0) {
                 if (gimmeMatch != null)
                     outStack
                         .push(new ParseNode(gimmeMatch.getBaseSyntaxAxiom()));
@@ -574,14 +596,14 @@ public class LRParser implements GrammaticalParser {
                 stateStack.push(transition);
                 index++;
             }
-            else if (row.typeCode != null) {
-                outStack.push(row.paramTransformationTree.getRoot()
-                    .deepCloneApplyingStackSubst(outStack));
-                for (int i = row.args; i > 0; i--)
+            else if (reduceTree != null) {
+                outStack.push(
+                    reduceTree.getRoot().deepCloneApplyingStackSubst(outStack));
+                for (int i = table.getReduceArgs(state); i > 0; i--)
                     stateStack.pop();
-                transition = rows.get(stateStack.peek())
-                    .getTransition(row.typeCode);
-                if (transition != null)
+                transition = table.getReduceTransition(stateStack.peek(),
+                    state);
+                if (transition >= 0)
                     stateStack.push(transition);
                 else
                     break;
@@ -816,15 +838,15 @@ public class LRParser implements GrammaticalParser {
         }
     }
 
-    private static class ParseTableRow {
-        public JSONObject transitions;
+    static class ParseTableRow {
+        public Map<String, Integer> transitions;
         public String typeCode;
         public ParseTree paramTransformationTree;
         public int args;
         public NotationRule reduce;
 
         public ParseTableRow() {
-            transitions = new JSONObject();
+            transitions = new HashMap<>();
         }
 
         public Integer getTransition(final Cnst c) {
@@ -832,7 +854,7 @@ public class LRParser implements GrammaticalParser {
         }
 
         public Integer getTransition(final String s) {
-            return (Integer)transitions.opt(s);
+            return transitions.get(s);
         }
 
         public void setReduction(final NotationRule reduce) {
@@ -842,31 +864,5 @@ public class LRParser implements GrammaticalParser {
                 args = reduce.getRuleFormatExpr().length;
             }
         }
-
-        public static Serializer<ParseTableRow> serializer(
-            final Grammar grammar)
-        {
-            final Serializer<ParseTree> ser = ParseTree
-                .serializer(grammar.stmtTbl);
-            return Serializer.of(o -> {
-                final JSONArray map = (JSONArray)o;
-                final ParseTableRow row = new ParseTableRow();
-                row.transitions = map.optJSONObject(0);
-                if (map.length() > 1) {
-                    row.typeCode = map.getString(1);
-                    row.paramTransformationTree = ser.deserialize(map.get(2));
-                    row.args = map.getInt(3);
-                }
-                return row;
-            }, row -> {
-                final JSONArray a = new JSONArray()
-                    .put(row.transitions == null ? JSONObject.NULL
-                        : row.transitions);
-                return row.typeCode == null ? a
-                    : a.put(row.typeCode)
-                        .put(ser.serialize(row.paramTransformationTree))
-                        .put(row.args);
-            });
-        }
     }
 }
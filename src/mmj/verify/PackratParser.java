@@ -0,0 +1,218 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.verify;
+
+import java.util.Arrays;
+
+import mmj.lang.*;
+
+/**
+ * PackratParser is a memoizing recursive descent parser, run on the compiled
+ * form of the grammar built by CompiledEarleyParser, for set.mm style
+ * grammars.
+ * <p>
+ * Each Type Code is parsed at each position of the expression at most once:
+ * the result (the positions where a parse of the Type Code can end, with the
+ * parse (sub)trees ending there) is kept in a table indexed by Type Code and
+ * position. The rules tried for a Type Code are those whose first symbol can
+ * begin with the next symbol of the expression, and all of them are tried, so
+ * that ambiguous expressions get several parse trees, as with EarleyParser.
+ * <p>
+ * Recursive descent cannot parse a left-recursive grammar (one in which a
+ * Type Code can begin with itself, as in "wff -&gt; wff wff"), so for such a
+ * grammar this parser parses as CompiledEarleyParser does.
+ * <p>
+ * Use the SetParser RunParm to select this parser.
+ */
+public class PackratParser extends CompiledEarleyParser {
+
+    private static final Result NONE = new Result();
+
+    private static final Result IN_PROGRESS = new Result();
+
+    private Tables t;
+    private int pLast;
+    private int maxScanned;
+    private int[] exprSym = new int[64];
+
+    /** memo[typ * (pLast + 2) + p], the parses of typ starting at p */
+    private Result[] memo = new Result[256];
+
+    /**
+     * Construct using reference to Grammar and a parameter signifying the
+     * maximum length of a formula in the database.
+     *
+     * @param grammarIn Grammar object
+     * @param maxFormulaLengthIn gives us a hint about what to expect.
+     */
+    public PackratParser(final Grammar grammarIn,
+        final int maxFormulaLengthIn)
+    {
+        super(grammarIn, maxFormulaLengthIn);
+    }
+
+    @Override
+    CompiledEarleyParser newInstance() {
+        return new PackratParser(grammar, 0);
+    }
+
+    @Override
+    int parsePreparedExpr() throws VerifyException {
+        t = getTables();
+        if (t.leftRecursive)
+            return super.parsePreparedExpr();
+
+        pLast = expr.length - 1; // [0] unused
+        if (exprSym.length < pLast + 2)
+            exprSym = new int[2 * pLast + 2];
+        for (int i = 1; i <= pLast; i++)
+            exprSym[i] = t.symIndex(expr[i].getCnstOrTyp());
+        exprSym[pLast + 1] = -1;
+        final int memoSize = t.typ.length * (pLast + 2);
+        if (memo.length < memoSize)
+            memo = new Result[2 * memoSize];
+        else
+            Arrays.fill(memo, 0, memoSize, null);
+        maxScanned = 0;
+        parseCnt = 0;
+
+        try {
+            final Cnst startRuleTyp = getStartRuleTyp();
+            addTrees(startRuleTyp, null);
+            final TypeConversionRule[] fromRule = startRuleTyp
+                .getConvFromTypGRArray();
+            if (fromRule != null)
+                for (int i = 0; parseCnt < parseTreeArray.length
+                    && i < fromRule.length; i++)
+                    addTrees(fromRule[i].getConvTyp(), fromRule[i]);
+        } finally {
+            Arrays.fill(memo, 0, memoSize, null);
+        }
+
+        // fail at the first symbol which no parse could get past, as
+        // EarleyParser does
+        if (parseCnt == 0 && maxScanned + 1 < pLast)
+            return -(maxScanned + 1);
+        return parseCnt;
+    }
+
+    /**
+     * Adds the trees of the parses of a start Type Code which span the whole
+     * expression.
+     */
+    private void addTrees(final Cnst searchTyp,
+        final TypeConversionRule typeConversionRule)
+    {
+        final int typ = t.symIndex(searchTyp);
+        if (typ < 0 || typ >= t.typ.length)
+            return;
+        final Result result = parse(typ, 1);
+        final ParseNodeHolder[] convParam = new ParseNodeHolder[1];
+        for (int i = 0; i < result.cnt
+            && parseCnt < parseTreeArray.length; i++)
+        {
+            if (result.end[i] != pLast + 1)
+                continue;
+            if (typeConversionRule == null)
+                parseTreeArray[parseCnt++] = new ParseTree(result.tree[i]);
+            else {
+                convParam[0] = new ParseNodeHolder(result.tree[i]);
+                parseTreeArray[parseCnt++] = new ParseTree(
+                    typeConversionRule.buildGrammaticalParseNode(convParam));
+            }
+        }
+    }
+
+    /**
+     * Returns the parses of a Type Code starting at position p.
+     */
+    private Result parse(final int typ, final int p) {
+        final int m = typ * (pLast + 2) + p;
+        final Result memoResult = memo[m];
+        if (memoResult != null)
+            return memoResult == IN_PROGRESS ? NONE : memoResult;
+        final int nextSym = exprSym[p];
+        if (nextSym < 0)
+            return memo[m] = NONE;
+
+        memo[m] = IN_PROGRESS;
+        final Result result = new Result();
+        final int[][] rulesByFirst = t.rulesByFirst[typ];
+        parseRules(rulesByFirst[nextSym], p, result);
+        for (final int first : t.firstTyps[nextSym])
+            if (first != nextSym)
+                parseRules(rulesByFirst[first], p, result);
+        return memo[m] = result.cnt == 0 ? NONE : result;
+    }
+
+    private void parseRules(final int[] rules, final int p,
+        final Result result)
+    {
+        if (rules == null)
+            return;
+        for (final int r : rules) {
+            if (t.ruleMaxSeq[r] > highestSeq)
+                break; // rules are sorted by maxSeq
+            match(r, t.ruleStart[r], p, 0,
+                new ParseNodeHolder[t.rule[r].getNbrHypParamsUsed()], result);
+        }
+    }
+
+    /**
+     * Matches the symbols of rule r from dot position dot to the expression
+     * from position p, adding a parse for each way the rule can be completed.
+     */
+    private void match(final int r, final int dot, final int p,
+        final int hypIndex, final ParseNodeHolder[] params,
+        final Result result)
+    {
+        final int sym = t.dotSym[dot];
+        if (sym < 0) {
+            result.add(p, t.rule[r].buildGrammaticalParseNode(params),
+                parseTreeArray.length);
+            return;
+        }
+        if (p > pLast)
+            return;
+        if (exprSym[p] == sym) {
+            if (p > maxScanned)
+                maxScanned = p;
+            if (t.dotIsHyp[dot])
+                params[hypIndex] = expr[p];
+            match(r, dot + 1, p + 1,
+                t.dotIsHyp[dot] ? hypIndex + 1 : hypIndex, params, result);
+        }
+        if (!t.dotIsHyp[dot])
+            return;
+        final Result sub = parse(sym, p);
+        for (int i = 0; i < sub.cnt; i++) {
+            params[hypIndex] = new ParseNodeHolder(sub.tree[i]);
+            match(r, dot + 1, sub.end[i], hypIndex + 1, params, result);
+        }
+    }
+
+    /**
+     * The parses of a Type Code at a position: the position following each
+     * parse and its tree, at most parseTreeArray.length trees per end.
+     */
+    private static class Result {
+        int cnt;
+        int[] end = new int[1];
+        ParseNode[] tree = new ParseNode[1];
+
+        void add(final int p, final ParseNode node, final int maxTrees) {
+            int sameEnd = 0;
+            for (int i = 0; i < cnt; i++)
+                if (end[i] == p && ++sameEnd >= maxTrees)
+                    return;
+            if (cnt == end.length) {
+                end = Arrays.copyOf(end, 2 * cnt);
+                tree = Arrays.copyOf(tree, 2 * cnt);
+            }
+            end[cnt] = p;
+            tree[cnt++] = node;
+        }
+    }
+}
@@ -133,6 +133,23 @@ public class ProofConstants {
      */
     public static final int PROOF_SUBST_HARD_FAILURE_LEN = 6400;
 
+    /**
+     * VerifyProofParallel default equal false.
+     * <p>
+     * If set to true then "VerifyProof,*" verifies the proofs on all
+     * available processors (see VerifyProofs.verifyAllProofsInParallel()).
+     */
+    public static final boolean VERIFY_PROOF_PARALLEL_DEFAULT = false;
+
+    /**
+     * VerifyProofIncremental default equal false.
+     * <p>
+     * If set to true then "VerifyProof,*" only verifies the proofs affected by
+     * TheoremLoader updates since the last successful "VerifyProof,*" (see
+     * LogicalSystem.getProofsToReverify()).
+     */
+    public static final boolean VERIFY_PROOF_INCREMENTAL_DEFAULT = false;
+
     /**
      * QED ProofDerivationStepEntry last step number
      */
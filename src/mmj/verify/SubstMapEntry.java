@@ -45,9 +45,23 @@ public class SubstMapEntry {
 
     /**
      * substTo -- an expression or variable to replace substFrom.
+     * <p>
+     * Only the {@code substToCnt} symbols starting at {@code substToStart} are
+     * part of the expression, which lets VerifyProofs point directly into a
+     * Formula or its work arena instead of copying.
      */
     public Sym[] substTo;
 
+    /**
+     * substToStart -- index of the first symbol of substTo.
+     */
+    public int substToStart;
+
+    /**
+     * substToCnt -- number of symbols of substTo.
+     */
+    public int substToCnt;
+
     /**
      * Default Constructor.
      */
@@ -60,8 +74,25 @@ public class SubstMapEntry {
      * @param substTo expression or variable to replace substFrom.
      */
     public SubstMapEntry(final Sym substFrom, final Sym[] substTo) {
+        set(substFrom, substTo, 0, substTo.length);
+    }
+
+    /**
+     * Set substFrom and the range of symbols of substTo.
+     * 
+     * @param substFrom variable to be replaced.
+     * @param substTo array containing the expression or variable to replace
+     *            substFrom.
+     * @param substToStart index of the first symbol within substTo.
+     * @param substToCnt number of symbols within substTo.
+     */
+    public void set(final Sym substFrom, final Sym[] substTo,
+        final int substToStart, final int substToCnt)
+    {
         this.substFrom = substFrom;
         this.substTo = substTo;
+        this.substToStart = substToStart;
+        this.substToCnt = substToCnt;
     }
 
     @Override
@@ -69,8 +100,8 @@ public class SubstMapEntry {
         String s = substFrom + " :>";
         if (substTo == null)
             return s + " null";
-        for (final Sym sym : substTo)
-            s += " " + sym;
+        for (int i = 0; i < substToCnt; i++)
+            s += " " + substTo[substToStart + i];
         return s;
     }
 }
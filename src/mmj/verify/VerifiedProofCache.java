@@ -0,0 +1,232 @@
+//*****************************************************************************/
+//* License terms: GNU General Public License Version 2                       */
+//*                or any later version                                       */
+//*****************************************************************************/
+package mmj.verify;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mmj.lang.*;
+import mmj.lang.ParseTree.RPNStep;
+
+/**
+ * On-disk record of the theorems whose proofs verified without error in a
+ * previous run, so that unchanged proofs need not be verified again.
+ * <p>
+ * Each theorem is recorded with a SHA-256 digest of everything the result of
+ * its verification depends on:
+ * <ul>
+ * <li>its own formula, mandatory and optional hypotheses and Distinct Variable
+ * restrictions;
+ * <li>its proof steps;
+ * <li>for each statement referred to by the proof, its formula and, for an
+ * assertion, its mandatory hypotheses and Distinct Variable restrictions.
+ * </ul>
+ * The proofs of the statements referred to are not part of the digest: a
+ * proof only depends on the frames of the assertions it uses. A change to any
+ * of these gives a different digest, and the proof is verified again.
+ * <p>
+ * The digests of the statements referred to are computed once per cache
+ * object, so a new VerifiedProofCache should be loaded for every verification
+ * run. The methods may be called from several threads.
+ */
+public class VerifiedProofCache {
+
+    private static final String HEADER = "mmj2 VerifiedProofCache 2";
+
+    private final File file;
+
+    private final Map<String, String> verified = new ConcurrentHashMap<>();
+
+    private final Map<Stmt, byte[]> frameDigest = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nbrSkipped = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param file the cache file.
+     */
+    public VerifiedProofCache(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the cache file.
+     * <p>
+     * A missing file, or one written by an incompatible version, leaves the
+     * cache empty.
+     *
+     * @return false if the file existed but could not be used.
+     * @throws IOException if the file could not be read.
+     */
+    public boolean load() throws IOException {
+        verified.clear();
+        if (!file.exists())
+            return true;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            if (!HEADER.equals(r.readLine()))
+                return false;
+            String line;
+            while ((line = r.readLine()) != null) {
+                final int i = line.indexOf(' ');
+                if (i > 0)
+                    verified.put(line.substring(0, i), line.substring(i + 1));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the cache file.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void store() throws IOException {
+        final List<String> labels = new ArrayList<>(verified.keySet());
+        Collections.sort(labels);
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file), StandardCharsets.UTF_8)))
+        {
+            w.write(HEADER);
+            w.newLine();
+            for (final String label : labels) {
+                w.write(label);
+                w.write(' ');
+                w.write(verified.get(label));
+                w.newLine();
+            }
+        }
+    }
+
+    /**
+     * Computes the digest of everything the result of the theorem's
+     * verification depends on, to be passed to isVerified() and setVerified().
+     *
+     * @param theorem the Theorem.
+     * @return the digest.
+     */
+    public String getDigest(final Theorem theorem) {
+        final MessageDigest md = newDigest();
+        md.update(getFrameDigest(theorem));
+        final StringBuilder sb = new StringBuilder();
+        appendFrame(sb, theorem.getOptFrame());
+        final RPNStep[] proof = theorem.getProof();
+        if (proof != null)
+            for (final RPNStep step : proof) {
+                if (step == null) {
+                    sb.append("? ");
+                    continue;
+                }
+                sb.append(step.backRef).append(' ');
+                if (step.stmt == null)
+                    continue;
+                sb.append(step.stmt.getLabel()).append(' ');
+                md.update(getFrameDigest(step.stmt));
+            }
+        md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : md.digest())
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16))
+                .append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    /**
+     * Returns true if the theorem's proof verified without error in a previous
+     * run and nothing it depends on has changed since.
+     *
+     * @param theorem the Theorem.
+     * @param digest the theorem's digest (see getDigest()).
+     * @return true if the proof need not be verified.
+     */
+    public boolean isVerified(final Theorem theorem, final String digest) {
+        if (!digest.equals(verified.get(theorem.getLabel())))
+            return false;
+        nbrSkipped.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the number of calls to isVerified() which returned true.
+     *
+     * @return the number of proofs which were not verified again.
+     */
+    public int getNbrSkipped() {
+        return nbrSkipped.get();
+    }
+
+    /**
+     * Records that the theorem's proof verified without error.
+     *
+     * @param theorem the Theorem.
+     * @param digest the theorem's digest (see getDigest()).
+     */
+    public void setVerified(final Theorem theorem, final String digest) {
+        verified.put(theorem.getLabel(), digest);
+    }
+
+    /**
+     * Removes the theorem from the cache.
+     *
+     * @param theorem the Theorem.
+     */
+    public void setUnverified(final Theorem theorem) {
+        verified.remove(theorem.getLabel());
+    }
+
+    private byte[] getFrameDigest(final Stmt stmt) {
+        byte[] d = frameDigest.get(stmt);
+        if (d == null) {
+            final StringBuilder sb = new StringBuilder();
+            appendStmt(sb, stmt);
+            if (stmt instanceof Assrt)
+                appendFrame(sb, ((Assrt)stmt).getMandFrame());
+            d = newDigest()
+                .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            frameDigest.put(stmt, d);
+        }
+        return d;
+    }
+
+    private static void appendFrame(final StringBuilder sb,
+        final ScopeFrame frame)
+    {
+        sb.append("$( ");
+        for (final Hyp hyp : frame.hypArray)
+            appendStmt(sb, hyp);
+        sb.append("$d ");
+        for (final DjVars dj : frame.djVarsArray)
+            sb.append(dj.getVarLo().getId()).append(' ')
+                .append(dj.getVarHi().getId()).append(' ');
+        sb.append("$) ");
+    }
+
+    private static void appendStmt(final StringBuilder sb, final Stmt stmt) {
+        sb.append(stmt.getLabel()).append(stmt instanceof Assrt ? " $a "
+            : stmt instanceof VarHyp ? " $f " : " $e ");
+        final Formula f = stmt.getFormula();
+        final Sym[] sym = f.getSym();
+        for (int i = 0; i < f.getCnt(); i++)
+            sb.append(sym[i] instanceof Var ? "$v " : "").append(sym[i].getId())
+                .append(' ');
+        sb.append("$. ");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -63,6 +63,8 @@
 package mmj.verify;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import mmj.lang.*;
 import mmj.lang.ParseTree.RPNStep;
@@ -85,9 +87,13 @@ import mmj.pa.PaConstants.*;
  * <p>
  * The main "optimization" was to re-use arrays instead of allocating them for
  * each proof. The arrays are initially allocated at a size that fits set.mm,
- * which has some massive proofs. If an ArrayIndexOutOfBounds exception is
- * detected, the arrays are reallocated with a larger size (an upper limit halts
- * this process), and a "retry" is performed.
+ * which has some massive proofs, and grow as needed up to the "hard failure"
+ * limits in ProofConstants, past which the proof is rejected.
+ * <p>
+ * Proof verification proper does not build a Formula per proof step: the
+ * substituted formulas are written into a reusable work arena, variables are
+ * looked up by their index in the step's mandatory hypotheses (see
+ * Assrt.getMandHypSubstIndex()) and logical hypotheses are compared in place.
  * <p>
  * VerifyProofs uses class SubstMapEntry which is a simple data structure that
  * should probably be an inner class of VerifyProofs. Other clean-ups are
@@ -131,7 +137,8 @@ import mmj.pa.PaConstants.*;
  *      Entity-Relationship Notes</a>
  */
 public class VerifyProofs implements ProofVerifier {
-    private int retryCnt = -1;
+
+    private VerifiedProofCache verifiedProofCache;
 
     // *******************************************
     // all following variables are work items used
@@ -140,21 +147,30 @@ public class VerifyProofs implements ProofVerifier {
     // a bazillion call paramaters.
     // *******************************************
 
-    private int pStackMax;
-    private int pStackHighwater;
     private Deque<Formula> pStack;
 
     // "work" expression/formula
     private int wExprCnt;
-    private int wExprMax;
-    private int wExprHighwater;
     private Sym[] wExpr;
 
     private int substCnt;
-    private int substMax;
-    private int substHighwater;
     private SubstMapEntry[] subst;
 
+    // the expressions (formulas less their Type Code) of the
+    // proof being verified are hash-consed in exprStore: each
+    // distinct expression is stored only once, in the work
+    // arena or as a reference into the Formula of a hypothesis,
+    // and is known by its int id from then on. eStack (the
+    // proof stack) and eBackrefs hold Type Code + expr id.
+    private ExprStore exprStore;
+    private ExprStack eStack;
+    private ExprStack eBackrefs;
+    private int[] substExpr;
+    private int substHash;
+    private int substPow;
+    private int substLen;
+    private Formula[] stackTop;
+
     private boolean isExprRPNVerify;
     private String proofStmtLabel;
     private Formula proofStmtFormula;
@@ -184,7 +200,6 @@ public class VerifyProofs implements ProofVerifier {
      */
     public VerifyProofs() {
         // don't allocate the stacks until verification requested.
-        retryCnt = -1;
 
         /**
          * Load dummy MandFrame and OptFrame objects for use in validating an
@@ -221,43 +236,126 @@ public class VerifyProofs implements ProofVerifier {
         }
     }
 
+    /**
+     * Verify all proofs in Statement Table using all available processors.
+     * <p>
+     * The work is spread over the common fork-join pool. Since a VerifyProofs
+     * object holds the work areas for one proof at a time, each worker thread
+     * is given its own VerifyProofs object to work with. The results are
+     * stored in an array parallel to the theorems in MObj.SEQ order and only
+     * then accumulated in Messages, so the error messages come out in exactly
+     * the same order as those of verifyAllProofs().
+     *
+     * @param messages Messages object for output error messages.
+     * @param stmtTbl Statement Table (map).
+     */
+    public void verifyAllProofsInParallel(final Messages messages,
+        final Map<String, Stmt> stmtTbl)
+    {
+        verifyProofsInParallel(messages,
+            stmtTbl.values().stream().filter(stmt -> stmt instanceof Theorem)
+                .sorted(MObj.SEQ).map(stmt -> (Theorem)stmt)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Verify the proofs of a list of theorems.
+     *
+     * @param messages Messages object for output error messages.
+     * @param theorems the Theorems, in the order errors are to be reported.
+     */
+    public void verifyProofs(final Messages messages,
+        final List<Theorem> theorems)
+    {
+        for (final Theorem theorem : theorems) {
+            if (messages.maxErrorMessagesReached())
+                break;
+            final VerifyException errMsg = verifyOneProof(theorem);
+            if (errMsg != null)
+                messages.accumException(errMsg);
+        }
+    }
+
+    /**
+     * Verify the proofs of a list of theorems using all available processors,
+     * as in verifyAllProofsInParallel().
+     *
+     * @param messages Messages object for output error messages.
+     * @param theoremList the Theorems, in the order errors are to be reported.
+     */
+    public void verifyProofsInParallel(final Messages messages,
+        final List<Theorem> theoremList)
+    {
+        final Theorem[] theorems = theoremList
+            .toArray(new Theorem[theoremList.size()]);
+        final VerifyException[] errMsg = new VerifyException[theorems.length];
+
+        final ThreadLocal<VerifyProofs> context = ThreadLocal
+            .withInitial(() -> {
+                final VerifyProofs v = new VerifyProofs();
+                v.setVerifiedProofCache(verifiedProofCache);
+                return v;
+            });
+        IntStream.range(0, theorems.length).parallel().forEach(
+            i -> errMsg[i] = context.get().verifyOneProof(theorems[i]));
+
+        for (final VerifyException e : errMsg) {
+            if (messages.maxErrorMessagesReached())
+                break;
+            if (e != null)
+                messages.accumException(e);
+        }
+    }
+
     /**
      * Verify a single proof.
+     * <p>
+     * If a VerifiedProofCache is set, a proof it records as verified is not
+     * looked at again, and the result is recorded in it.
      *
      * @param theorem Theorem object reference.
      * @return String error message if error(s), or null.
      */
     public VerifyException verifyOneProof(final Theorem theorem) {
 
-        VerifyException errMsg = null;
-        boolean needToRetry = true;
+        final String digest = verifiedProofCache == null ? null
+            : verifiedProofCache.getDigest(theorem);
+        if (digest != null && verifiedProofCache.isVerified(theorem, digest))
+            return null;
 
+        VerifyException errMsg = null;
+        initArrays();
+        loadTheoremGlobalVerifyVars(theorem);
+        proofDjVarsSoftErrorsIgnore = false;
+        proofSoftDjVarsErrorList = null;
         try {
-            reInitArrays(0);
-            while (needToRetry)
-                try {
-                    errMsg = null;
-                    loadTheoremGlobalVerifyVars(theorem);
-                    proofDjVarsSoftErrorsIgnore = false;
-                    proofSoftDjVarsErrorList = null;
-
-                    verifyProof();
-                    needToRetry = false;
-                } catch (final ArrayIndexOutOfBoundsException e) {
-                    retryCnt++;
-                    reInitArrays(retryCnt);
-                } catch (final VerifyException e) {
-                    needToRetry = false;
-                    errMsg = e;
-                }
+            verifyProof();
         } catch (final VerifyException e) {
             errMsg = e;
         }
 
+        if (verifiedProofCache != null)
+            if (errMsg == null)
+                verifiedProofCache.setVerified(theorem, digest);
+            else
+                verifiedProofCache.setUnverified(theorem);
+
         return errMsg;
 
     }
 
+    /**
+     * Sets the cache of proofs verified in previous runs, which
+     * verifyOneProof() consults and updates.
+     *
+     * @param verifiedProofCache the cache, or null for none.
+     */
+    public void setVerifiedProofCache(
+        final VerifiedProofCache verifiedProofCache)
+    {
+        this.verifiedProofCache = verifiedProofCache;
+    }
+
     /**
      * Verify all Statements' grammatical parse RPNs.
      * <p>
@@ -293,29 +391,16 @@ public class VerifyProofs implements ProofVerifier {
     public VerifyException verifyExprRPNAsProof(final Stmt exprRPNStmt) {
 
         VerifyException errMsg = null;
-        boolean needToRetry = true;
-
+        initArrays();
+        proofDjVarsSoftErrorsIgnore = false;
+        proofSoftDjVarsErrorList = null;
         try {
-            reInitArrays(0);
-            while (needToRetry)
-                try {
-                    errMsg = null;
-                    loadExprRPNGlobalVerifyVars(exprRPNStmt);
-                    proofDjVarsSoftErrorsIgnore = false;
-                    proofSoftDjVarsErrorList = null;
-                    verifyProof();
-                    needToRetry = false;
-                } catch (final ArrayIndexOutOfBoundsException e) {
-                    retryCnt++;
-                    reInitArrays(retryCnt);
-                } catch (final VerifyException e) {
-                    needToRetry = false;
-                    errMsg = new VerifyException(e,
-                        ProofConstants.ERRMSG_RPN_VERIFY_AS_PROOF_FAILURE,
-                        e.getMessage());
-                }
+            loadExprRPNGlobalVerifyVars(exprRPNStmt);
+            verifyProof();
         } catch (final VerifyException e) {
-            errMsg = e;
+            errMsg = new VerifyException(e,
+                ProofConstants.ERRMSG_RPN_VERIFY_AS_PROOF_FAILURE,
+                e.getMessage());
         }
 
         return errMsg;
@@ -351,28 +436,15 @@ public class VerifyProofs implements ProofVerifier {
         proofStmtOptFrame = dummyOptFrame;
 
         VerifyException errMsg = null;
-        boolean needToRetry = true;
-
+        initArrays();
+        proofDjVarsSoftErrorsIgnore = false;
+        proofSoftDjVarsErrorList = null;
         try {
-            reInitArrays(0);
-            while (needToRetry)
-                try {
-                    errMsg = null;
-                    proofDjVarsSoftErrorsIgnore = false;
-                    proofSoftDjVarsErrorList = null;
-                    verifyProof();
-                    needToRetry = false;
-                } catch (final ArrayIndexOutOfBoundsException e) {
-                    retryCnt++;
-                    reInitArrays(retryCnt);
-                } catch (final VerifyException e) {
-                    needToRetry = false;
-                    errMsg = new VerifyException(e,
-                        ProofConstants.ERRMSG_DERIV_STEP_PROOF_FAILURE,
-                        e.getMessage());
-                }
+            verifyProof();
         } catch (final VerifyException e) {
-            errMsg = e;
+            errMsg = new VerifyException(e,
+                ProofConstants.ERRMSG_DERIV_STEP_PROOF_FAILURE,
+                e.getMessage());
         }
 
         return errMsg;
@@ -424,29 +496,15 @@ public class VerifyProofs implements ProofVerifier {
         proofSoftDjVarsErrorList = softDjVarsErrorList;
 
         VerifyException errMsg = null;
-        boolean needToRetry = true;
-
+        initArrays();
         try {
-            reInitArrays(0);
-            while (needToRetry)
-                try {
-                    errMsg = null;
-                    loadDerivStepDjVarsSubst(derivStepAssrtSubst);
-                    if (substCnt > 0) {
-                        if (djVarsSoftErrors == DjVarsSoftErrors.GenerateNew)
-                            // do not use existing $d's
-                            proofStmtFrame = dummyMandFrame;
-                        checkDjVars();
-                    }
-                    needToRetry = false;
-                } catch (final ArrayIndexOutOfBoundsException e) {
-                    retryCnt++;
-                    proofStmtFrame = derivStepComboFrame; // reset
-                    reInitArrays(retryCnt);
-                } catch (final VerifyException e) {
-                    needToRetry = false;
-                    errMsg = e;
-                }
+            loadDerivStepDjVarsSubst(derivStepAssrtSubst);
+            if (substCnt > 0) {
+                if (djVarsSoftErrors == DjVarsSoftErrors.GenerateNew)
+                    // do not use existing $d's
+                    proofStmtFrame = dummyMandFrame;
+                checkDjVars();
+            }
         } catch (final VerifyException e) {
             errMsg = e;
         }
@@ -494,7 +552,7 @@ public class VerifyProofs implements ProofVerifier {
             derivStepList.add(e);
         }
 
-        reInitArrays(0);
+        initArrays();
         loadTheoremGlobalVerifyVars(theorem);
         try {
             proof = new ParseTree(proof).squishTree().convertToRPN();
@@ -547,6 +605,10 @@ public class VerifyProofs implements ProofVerifier {
         final List<ProofDerivationStepEntry> backrefSteps = new ArrayList<>();
 
         sLoop: for (stepNbr = 0; stepNbr < proof.length; stepNbr++) {
+            if (pStack.size() >= ProofConstants.PROOF_PSTACK_HARD_FAILURE_LEN)
+                raiseVerifyException(null,
+                    ProofConstants.ERRMSG_PSTACK_ARRAY_OVERFLOW,
+                    ProofConstants.PROOF_PSTACK_HARD_FAILURE_LEN);
             if (proof[stepNbr] == null
                 || proof[stepNbr].backRef <= 0 && proof[stepNbr].stmt == null)
                 raiseVerifyException(Integer.toString(stepNbr + 1),
@@ -699,12 +761,14 @@ public class VerifyProofs implements ProofVerifier {
      * hypArray (ignoring LogHyp entries).
      *
      * @param derivStepAssrtSubst the ParseNode subtree array
+     * @throws VerifyException if the work areas would be too large
      */
     private void loadDerivStepDjVarsSubst(
-        final ParseNode[] derivStepAssrtSubst)
+        final ParseNode[] derivStepAssrtSubst) throws VerifyException
     {
 
         final Hyp[] hypArray = stepFrame.hypArray;
+        ensureSubstCapacity(hypArray.length);
 
         final Stack<ParseNode> nodeStack = new Stack<>();
 
@@ -720,8 +784,10 @@ public class VerifyProofs implements ProofVerifier {
             nodeStack.push(derivStepAssrtSubst[i]);
             while (!nodeStack.isEmpty()) {
                 node = nodeStack.pop();
-                if (node.stmt instanceof VarHyp)
+                if (node.stmt instanceof VarHyp) {
+                    ensureWExprCapacity(wExprCnt + 1);
                     wExpr[wExprCnt++] = ((VarHyp)node.stmt).getVar();
+                }
                 else {
                     child = node.child;
                     for (final ParseNode element : child)
@@ -731,15 +797,11 @@ public class VerifyProofs implements ProofVerifier {
             if (wExprCnt == 0)
                 continue;
 
-            if (subst[substCnt] == null)
-                subst[substCnt] = new SubstMapEntry();
-            subst[substCnt].substFrom = ((VarHyp)stepFrame.hypArray[i])
-                .getVar();
-
             final Sym[] s = new Sym[wExprCnt];
             for (int w = 0; w < wExprCnt; w++)
                 s[w] = wExpr[w];
-            subst[substCnt].substTo = s;
+            subst[substCnt].set(((VarHyp)stepFrame.hypArray[i]).getVar(), s,
+                0, s.length);
             substCnt++;
         }
     }
@@ -798,19 +860,48 @@ public class VerifyProofs implements ProofVerifier {
      * last entry not equal! disproved!
      * <li>ok! proved.
      * </ol>
-     * <p>
-     * NOTE: try to catch ArrayIndexOutOfBoundsException and reallocate arrays
-     * with larger size...
      * </pre>
      *
      * @throws VerifyException if an error occurred
      */
     private void verifyProof() throws VerifyException {
-        pStack.clear();
-        final List<Formula> backrefs = new ArrayList<>();
+        exprStore.clear();
+        final int proofStmtExpr = exprStore.intern(proofStmtFormula.getSym(),
+            1, proofStmtFormula.getCnt() - 1);
+
+        pushProofSteps(true);
+
+        // interned, so equal expressions have equal ids
+        if (eStack.expr[0] != proofStmtExpr
+            || eStack.typ[0] != proofStmtFormula.getTyp() && !isExprRPNVerify)
+            raiseVerifyException(Integer.toString(stepNbr + 1),
+                ProofConstants.ERRMSG_FINAL_STACK_ENTRY_UNEQUAL,
+                eStack.toFormula(0, exprStore));
+    }
+
+    /**
+     * Runs the proof steps through exprStore, leaving exactly one entry on
+     * eStack, the formula proved.
+     * <p>
+     * Nothing is allocated per step: each expression is interned in exprStore
+     * and the stacks only hold its Type Code and id. A substituted formula is
+     * only written into the work arena if the same expression has not been
+     * seen before in the proof, so repeated subproofs share their storage.
+     *
+     * @param checkDjVars true if DjVars restrictions are to be checked.
+     * @throws VerifyException if an error occurred
+     */
+    private void pushProofSteps(final boolean checkDjVars)
+        throws VerifyException
+    {
+        eStack.size = 0;
+        eBackrefs.size = 0;
         for (stepNbr = 0; stepNbr < proof.length; stepNbr++) {
-            if (stepNbr == 544)
-                hashCode();
+            // each step pushes one entry
+            if (eStack.size >= ProofConstants.PROOF_PSTACK_HARD_FAILURE_LEN)
+                raiseVerifyException(null,
+                    ProofConstants.ERRMSG_PSTACK_ARRAY_OVERFLOW,
+                    ProofConstants.PROOF_PSTACK_HARD_FAILURE_LEN);
             if (proof[stepNbr] == null
                 || proof[stepNbr].backRef <= 0 && proof[stepNbr].stmt == null)
                 raiseVerifyException(Integer.toString(stepNbr + 1),
@@ -818,61 +909,236 @@ public class VerifyProofs implements ProofVerifier {
 
             if (proof[stepNbr].stmt == null) {
                 final int index = proof[stepNbr].backRef - 1;
-                if (index >= backrefs.size())
+                if (index >= eBackrefs.size)
                     raiseVerifyException(Integer.toString(stepNbr + 1),
                         ProofConstants.ERRMSG_PROOF_STEP_RANGE);
-                pStack.push(backrefs.get(index));
+                eStack.push(eBackrefs.typ[index], eBackrefs.expr[index]);
                 continue;
             }
             stepFormula = proof[stepNbr].stmt.getFormula();
             if (proof[stepNbr].stmt instanceof Hyp) {
-                if (proof[stepNbr].backRef < 0)
-                    backrefs.add(stepFormula);
-                pStack.push(stepFormula);
+                pushFormula(stepFormula);
                 continue;
             }
 
             stepAssrt = (Assrt)proof[stepNbr].stmt;
             stepFrame = stepAssrt.getMandFrame();
             if (stepFrame.hypArray.length == 0) {
-                if (proof[stepNbr].backRef < 0)
-                    backrefs.add(stepFormula);
-                pStack.push(stepFormula);
+                pushFormula(stepFormula);
                 continue;
             }
 
             stepLabel = stepAssrt.getLabel();
 
-            findUniqueSubstMapping();
+            final int[][] substIndex = stepAssrt.getMandHypSubstIndex();
+
+            findUniqueSubstMappingInArena(substIndex);
 
             /**
              * Optimization: don't go thru checkDjVars needlessly.
              */
-            if (stepFrame.djVarsArray.length > 0) {
+            if (checkDjVars && stepFrame.djVarsArray.length > 0) {
                 stepNbrOutputString = Integer.toString(stepNbr + 1);
                 checkDjVars();
             }
 
-            stepSubstFormula = applySubstMapping(stepFormula);
+            eStack.push(stepFormula.getTyp(), applySubstMappingInArena(
+                stepFormula, substIndex[stepFrame.hypArray.length]));
             if (proof[stepNbr].backRef < 0)
-                backrefs.add(stepSubstFormula);
-            pStack.push(stepSubstFormula);
-
+                eBackrefs.push(eStack.typ[eStack.size - 1],
+                    eStack.expr[eStack.size - 1]);
         }
 
-        if (pStack.size() != 1)
+        if (eStack.size != 1)
             if (proof.length == 0)
                 raiseVerifyException(Integer.toString(stepNbr),
                     ProofConstants.ERRMSG_PROOF_HAS_ZERO_STEPS);
             else
                 raiseVerifyException(Integer.toString(stepNbr),
                     ProofConstants.ERRMSG_PROOF_STACK_GT_1_AT_END);
+    }
+
+    private void pushFormula(final Formula f) {
+        eStack.push(f.getTyp(),
+            exprStore.intern(f.getSym(), 1, f.getCnt() - 1));
+        if (proof[stepNbr].backRef < 0)
+            eBackrefs.push(eStack.typ[eStack.size - 1],
+                eStack.expr[eStack.size - 1]);
+    }
 
-        if (!proofStmtFormula.equals(pStack.peek())
-            && !(isExprRPNVerify && proofStmtFormula.exprEquals(pStack.peek())))
+    /**
+     * Arena version of findUniqueSubstMapping(): pops the step's hypotheses
+     * from eStack, pointing each VarHyp's SubstMapEntry directly at the
+     * interned expression, and compares each substituted LogHyp in place with
+     * its stack entry.
+     *
+     * @param substIndex stepAssrt.getMandHypSubstIndex()
+     * @throws VerifyException if the stack entries do not match the step's
+     *             hypotheses.
+     */
+    private void findUniqueSubstMappingInArena(final int[][] substIndex)
+        throws VerifyException
+    {
+        final Hyp[] hypArray = stepFrame.hypArray;
+        ensureSubstCapacity(hypArray.length);
+        substCnt = hypArray.length;
+        if (eStack.size < substCnt)
             raiseVerifyException(Integer.toString(stepNbr + 1),
-                ProofConstants.ERRMSG_FINAL_STACK_ENTRY_UNEQUAL, pStack.peek());
+                ProofConstants.ERRMSG_STACK_SIZE_MISMATCH_FOR_STEP_HYPS,
+                stepLabel);
+
+        final ExprStore st = exprStore;
+        final int base = eStack.size - substCnt;
+        for (int i = 0; i < substCnt; i++) {
+            final Hyp hyp = hypArray[i];
+            final int e = base + i;
+            if (hyp.getTyp() != eStack.typ[e])
+                raiseVerifyException(Integer.toString(stepNbr + 1),
+                    ProofConstants.ERRMSG_HYP_TYP_MISMATCH_STACK_TYP, stepLabel,
+                    hyp.getTyp(), eStack.typ[e]);
+            if (hyp instanceof VarHyp) {
+                final int id = eStack.expr[e];
+                substExpr[i] = id;
+                subst[i].set(((VarHyp)hyp).getVar(), st.sym[id], st.start[id],
+                    st.cnt[id]);
+            }
+            else
+                subst[i].substFrom = null;
+        }
+
+        for (int i = 0; i < substCnt; i++) {
+            final Hyp hyp = hypArray[i];
+            if (hyp instanceof VarHyp)
+                continue;
+            final int id = eStack.expr[base + i];
+            final Sym[] hSym = hyp.getFormula().getSym();
+            computeSubstHash(hSym, substIndex[i]);
+            if (st.hash[id] != substHash || st.cnt[id] != substLen
+                || !substEquals(hSym, substIndex[i], st.sym[id], st.start[id]))
+                raiseVerifyException(Integer.toString(stepNbr + 1),
+                    ProofConstants.ERRMSG_STEP_LOG_HYP_SUBST_UNEQUAL, stepLabel,
+                    eStack.toFormula(base + i, st),
+                    applySubstMapping(hyp.getFormula()));
+        }
+
+        eStack.size = base;
+    }
+
+    /**
+     * Computes substHash, substPow and substLen -- the hash, hash multiplier
+     * power and length of the expression of Formula fSym after substitution --
+     * from the hashes of the substituted expressions, without building it.
+     *
+     * @param fSym the Formula to be substituted
+     * @param index f's substitution index (see Assrt.getMandHypSubstIndex())
+     */
+    private void computeSubstHash(final Sym[] fSym, final int[] index) {
+        final ExprStore st = exprStore;
+        int h = 0;
+        int p = 1;
+        int len = 0;
+        for (int i = 1; i < index.length; i++) {
+            final int k = index[i];
+            if (k < 0) {
+                h = h * ExprStore.HASH_MULTIPLIER + fSym[i].hashCode();
+                p *= ExprStore.HASH_MULTIPLIER;
+                len++;
+            }
+            else {
+                final int id = substExpr[k];
+                h = h * st.pow[id] + st.hash[id];
+                p *= st.pow[id];
+                len += st.cnt[id];
+            }
+        }
+        substHash = h;
+        substPow = p;
+        substLen = len;
+    }
+
+    /**
+     * Compares the expression of Formula fSym, after substitution, with an
+     * expression of the same length (substLen) without building it.
+     * <p>
+     * A substituted expression stored at the very same place is equal without
+     * looking at its symbols, which is the common case since equal
+     * expressions are only stored once.
+     *
+     * @param fSym the Formula to be substituted
+     * @param index f's substitution index (see Assrt.getMandHypSubstIndex())
+     * @param s the symbol array holding the expression
+     * @param sStart index of the expression's first symbol within s
+     * @return true if equal
+     */
+    private boolean substEquals(final Sym[] fSym, final int[] index,
+        final Sym[] s, int sStart)
+    {
+        final ExprStore st = exprStore;
+        for (int i = 1; i < index.length; i++) {
+            final int k = index[i];
+            if (k < 0) {
+                if (s[sStart++] != fSym[i])
+                    return false;
+                continue;
+            }
+            final int id = substExpr[k];
+            final Sym[] eSym = st.sym[id];
+            final int eStart = st.start[id];
+            final int eCnt = st.cnt[id];
+            if (eSym != s || eStart != sStart)
+                for (int j = 0; j < eCnt; j++)
+                    if (s[sStart + j] != eSym[eStart + j])
+                        return false;
+            sStart += eCnt;
+        }
+        return true;
     }
+
+    /**
+     * Arena version of applySubstMapping(): returns the id of the expression
+     * of Formula f after substitution, writing it into the work arena only if
+     * it is not already in exprStore.
+     *
+     * @param f the Formula to be substituted
+     * @param index f's substitution index (see Assrt.getMandHypSubstIndex())
+     * @return the expr id of the substituted Formula
+     * @throws VerifyException if the substituted Formula is too long
+     */
+    private int applySubstMappingInArena(final Formula f, final int[] index)
+        throws VerifyException
+    {
+        final Sym[] fSym = f.getSym();
+        computeSubstHash(fSym, index);
+        if (substLen >= ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN)
+            raiseVerifyException(null,
+                ProofConstants.ERRMSG_WEXPR_ARRAY_OVERFLOW,
+                ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN);
+
+        final ExprStore st = exprStore;
+        int slot = st.firstSlot(substHash);
+        for (; st.slotGen[slot] == st.gen; slot = st.nextSlot(slot)) {
+            final int id = st.slotId[slot];
+            if (st.hash[id] == substHash && st.cnt[id] == substLen
+                && substEquals(fSym, index, st.sym[id], st.start[id]))
+                return id;
+        }
+
+        final Sym[] arena = st.reserve(substLen);
+        final int start = st.arenaCnt;
+        for (int i = 1; i < index.length; i++) {
+            final int k = index[i];
+            if (k < 0)
+                arena[st.arenaCnt++] = fSym[i];
+            else {
+                final SubstMapEntry e = subst[k];
+                System.arraycopy(e.substTo, e.substToStart, arena, st.arenaCnt,
+                    e.substToCnt);
+                st.arenaCnt += e.substToCnt;
+            }
+        }
+        return st.add(arena, start, substLen, substHash, substPow, slot);
+    }
+
     /**
      * ok, some input, work and output areas in global (class) work areas...
      *
@@ -903,6 +1169,7 @@ public class VerifyProofs implements ProofVerifier {
      * @throws VerifyException if DjVars (restriction) violation found.
      */
     private void findUniqueSubstMapping() throws VerifyException {
+        ensureSubstCapacity(stepFrame.hypArray.length);
         substCnt = stepFrame.hypArray.length;
         if (pStack.size() < stepFrame.hypArray.length)
             raiseVerifyException(Integer.toString(stepNbr + 1),
@@ -911,8 +1178,9 @@ public class VerifyProofs implements ProofVerifier {
 //            raiseVerifyException(Integer.toString(stepNbr + 1), stepLabel,
 //                ProofConstants.ERRMSG_PROOF_STACK_UNDERFLOW);
 
-        final Formula[] stackTop = new Formula[stepFrame.hypArray.length];
-        for (int i = stepFrame.hypArray.length - 1; i >= 0; i--)
+        if (stackTop.length < substCnt)
+            stackTop = new Formula[substCnt];
+        for (int i = substCnt - 1; i >= 0; i--)
             stackTop[i] = pStack.pop();
 
         // 1) scan stepFrame.hypArray, pulling out VarHyp's and
@@ -925,19 +1193,11 @@ public class VerifyProofs implements ProofVerifier {
                 raiseVerifyException(Integer.toString(stepNbr + 1),
                     ProofConstants.ERRMSG_HYP_TYP_MISMATCH_STACK_TYP, stepLabel,
                     hyp.getTyp(), stackTop[i].getTyp());
-            if (!(hyp instanceof VarHyp)) {
-                subst[i] = null;
-                continue;
-            }
-
-            if (subst[i] == null)
-                subst[i] = new SubstMapEntry(((VarHyp)hyp).getVar(),
-                    stackTop[i].getExpr());
-            else {
-                subst[i].substFrom = ((VarHyp)hyp).getVar();
-                subst[i].substTo = stackTop[i].getExpr();
-            }
-
+            if (hyp instanceof VarHyp)
+                subst[i].set(((VarHyp)hyp).getVar(), stackTop[i].getSym(), 1,
+                    stackTop[i].getCnt() - 1);
+            else
+                subst[i].substFrom = null;
         }
 
         // 2) now! go back through hypArray applying the generated
@@ -972,8 +1232,11 @@ public class VerifyProofs implements ProofVerifier {
      *
      * @param f the formula
      * @return a new Formula
+     * @throws VerifyException if the new Formula is too long
      */
-    private Formula applySubstMapping(final Formula f) {
+    private Formula applySubstMapping(final Formula f)
+        throws VerifyException
+    {
 
         final int fCnt = f.getCnt();
         final Sym[] fSymArray = f.getSym();
@@ -984,15 +1247,18 @@ public class VerifyProofs implements ProofVerifier {
             final Sym fSym = fSymArray[i];
             for (int j = 0; j < substCnt; j++) {
                 final SubstMapEntry substMapEntry = subst[j];
-                if (substMapEntry == null)
+                if (substMapEntry.substFrom == null)
                     // this wasn't a VarHyp subst entry
                     continue;
                 if (fSym == substMapEntry.substFrom) {
-                    for (final Sym element : substMapEntry.substTo)
-                        wExpr[wExprCnt++] = element;
+                    ensureWExprCapacity(wExprCnt + substMapEntry.substToCnt);
+                    for (int k = 0; k < substMapEntry.substToCnt; k++)
+                        wExpr[wExprCnt++] = substMapEntry.substTo[substMapEntry.substToStart
+                            + k];
                     continue nextFSym;
                 }
             }
+            ensureWExprCapacity(wExprCnt + 1);
             wExpr[wExprCnt++] = fSym; // no subst, use orig sym!
         }
 
@@ -1031,9 +1297,9 @@ public class VerifyProofs implements ProofVerifier {
         final int yMax = xMax + 1;
 
         for (int fromX = 0; fromX < xMax; fromX++)
-            if (subst[fromX] != null)
+            if (subst[fromX].substFrom != null)
                 for (int fromY = fromX + 1; fromY < yMax; fromY++)
-                    if (subst[fromY] != null)
+                    if (subst[fromY].substFrom != null)
                         if (ScopeFrame.isVarPairInDjArray(stepFrame,
                             (Var)subst[fromX].substFrom,
                             (Var)subst[fromY].substFrom))
@@ -1083,10 +1349,14 @@ public class VerifyProofs implements ProofVerifier {
     private void checkSubstToVars(final int x, final int y)
         throws VerifyException
     {
-        for (final Sym symI : subst[x].substTo) {
+        final SubstMapEntry substX = subst[x];
+        final SubstMapEntry substY = subst[y];
+        for (int i = 0; i < substX.substToCnt; i++) {
+            final Sym symI = substX.substTo[substX.substToStart + i];
             if (!(symI instanceof Var))
                 continue;
-            for (final Sym symJ : subst[y].substTo) {
+            for (int j = 0; j < substY.substToCnt; j++) {
+                final Sym symJ = substY.substTo[substY.substToStart + j];
                 if (!(symJ instanceof Var))
                     continue;
                 if (symI == symJ)
@@ -1126,96 +1396,57 @@ public class VerifyProofs implements ProofVerifier {
             .addStepContext(stepLabel, new VerifyException(code, args)));
     }
 
-    // *
-    // *******attempting to dynamically resize arrays as needed...
-    // in the face of the unknowable.
-    // *
-    public int getPStackHighwater() {
-        return pStackHighwater;
-    }
-    public int getPExprHighwater() {
-        return wExprHighwater;
-    }
-    public int getSubstHighwater() {
-        return substHighwater;
-    }
+    /**
+     * Allocates the work areas the first time a proof is verified, and empties
+     * them. They are grown as needed (see ensureWExprCapacity() and
+     * ensureSubstCapacity(); ExprStore and ExprStack grow themselves).
+     */
+    private void initArrays() {
+        if (exprStore == null) {
+            pStack = new ArrayDeque<>(ProofConstants.PROOF_PSTACK_INIT_LEN);
+            stackTop = new Formula[ProofConstants.PROOF_SUBST_INIT_LEN];
 
-    private void reInitArrays(final int retry) throws VerifyException {
-        if (retryCnt == -1) {
-            initArrays();
-            return;
-        }
-        retryCnt = retry;
+            exprStore = new ExprStore(ProofConstants.PROOF_WEXPR_INIT_LEN,
+                ProofConstants.PROOF_PSTACK_INIT_LEN);
+            eStack = new ExprStack(ProofConstants.PROOF_PSTACK_INIT_LEN);
+            eBackrefs = new ExprStack(ProofConstants.PROOF_PSTACK_INIT_LEN);
 
-        if (pStack.size() > pStackHighwater)
-            pStackHighwater = pStack.size();
-        if (wExprCnt > wExprHighwater)
-            wExprHighwater = wExprCnt;
-        if (substCnt > wExprHighwater)
-            substHighwater = substCnt;
+            wExpr = new Sym[ProofConstants.PROOF_WEXPR_INIT_LEN];
 
-        if (retry == 0) {
-            pStack.clear();
-            wExprCnt = 0;
-            substCnt = 0;
-            return;
+            subst = new SubstMapEntry[ProofConstants.PROOF_SUBST_INIT_LEN];
+            for (int i = 0; i < subst.length; i++)
+                subst[i] = new SubstMapEntry();
+            substExpr = new int[subst.length];
         }
+        pStack.clear();
+        wExprCnt = 0;
+        substCnt = 0;
+    }
 
-        if (pStackHighwater >= ProofConstants.PROOF_PSTACK_HARD_FAILURE_LEN)
-            raiseVerifyException(null,
-                ProofConstants.ERRMSG_PSTACK_ARRAY_OVERFLOW, pStackHighwater);
-
-        if (wExprMax < ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN) {
-            if (wExprMax < wExprCnt + 10) {
-                wExprMax *= 2;
-                if (wExprMax > ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN)
-                    wExprMax = ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN;
-                wExpr = new Sym[wExprMax];
-            }
-            wExprCnt = 0;
-        }
-        else
-            raiseVerifyException(null,
-                ProofConstants.ERRMSG_WEXPR_ARRAY_OVERFLOW, wExprMax);
-
-        if (substMax < ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN) {
-            if (substMax < substCnt + 10) {
-                substMax *= 2;
-                if (substMax > ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN)
-                    substMax = ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN;
-                subst = new SubstMapEntry[substMax];
-                for (int i = 0; i < substMax; i++)
-                    subst[i] = new SubstMapEntry();
-            }
-            substCnt = 0;
-        }
-        else
+    private void ensureWExprCapacity(final int len) throws VerifyException {
+        if (len <= wExpr.length)
+            return;
+        if (len > ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN)
             raiseVerifyException(null,
-                ProofConstants.ERRMSG_SUBST_ARRAY_OVERFLOW, substMax);
-
-        if (retryCnt > ProofConstants.PROOF_ABSOLUTE_MAX_RETRIES)
-            throw new IllegalStateException(new VerifyException(
-                ProofConstants.ERRMSG_PROOF_ABS_MAX_RETRY_EXCEEDED));
+                ProofConstants.ERRMSG_WEXPR_ARRAY_OVERFLOW,
+                ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN);
+        wExpr = Arrays.copyOf(wExpr, Math.min(Math.max(len, wExpr.length * 2),
+            ProofConstants.PROOF_WEXPR_HARD_FAILURE_LEN));
     }
 
-    private void initArrays() {
-        retryCnt = 0;
-
-        pStackMax = ProofConstants.PROOF_PSTACK_INIT_LEN;
-        pStackHighwater = 0;
-        pStack = new ArrayDeque<>(pStackMax);
-
-        wExprCnt = 0;
-        wExprMax = ProofConstants.PROOF_WEXPR_INIT_LEN;
-        wExprHighwater = 0;
-        wExpr = new Sym[wExprMax];
-
-        substCnt = 0;
-        substMax = ProofConstants.PROOF_SUBST_INIT_LEN;
-        substHighwater = 0;
-        subst = new SubstMapEntry[substMax];
-        for (int i = 0; i < substMax; i++)
+    private void ensureSubstCapacity(final int len) throws VerifyException {
+        if (len <= subst.length)
+            return;
+        if (len > ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN)
+            raiseVerifyException(null,
+                ProofConstants.ERRMSG_SUBST_ARRAY_OVERFLOW,
+                ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN);
+        final int oldLen = subst.length;
+        subst = Arrays.copyOf(subst, Math.min(Math.max(len, oldLen * 2),
+            ProofConstants.PROOF_SUBST_HARD_FAILURE_LEN));
+        for (int i = oldLen; i < subst.length; i++)
             subst[i] = new SubstMapEntry();
+        substExpr = Arrays.copyOf(substExpr, subst.length);
     }
 
     /**
@@ -1233,23 +1464,10 @@ public class VerifyProofs implements ProofVerifier {
         proofStmtLabel = stepLabelForMessages;
 
         VerifyException errMsg = null;
-        boolean needToRetry = true;
-
         Formula out = null;
+        initArrays();
         try {
-            reInitArrays(0);
-            while (needToRetry)
-                try {
-                    errMsg = null;
-                    out = generateFormulaFromRPN();
-                    needToRetry = false;
-                } catch (final ArrayIndexOutOfBoundsException e) {
-                    retryCnt++;
-                    reInitArrays(retryCnt);
-                } catch (final VerifyException e) {
-                    needToRetry = false;
-                    errMsg = e;
-                }
+            out = generateFormulaFromRPN();
         } catch (final VerifyException e) {
             errMsg = e;
         }
@@ -1264,59 +1482,180 @@ public class VerifyProofs implements ProofVerifier {
     }
 
     private Formula generateFormulaFromRPN() throws VerifyException {
-        final List<Formula> backrefs = new ArrayList<>();
-        for (stepNbr = 0; stepNbr < proof.length; stepNbr++) {
-            if (proof[stepNbr] == null
-                || proof[stepNbr].backRef <= 0 && proof[stepNbr].stmt == null)
-                raiseVerifyException(Integer.toString(stepNbr + 1),
-                    ProofConstants.ERRMSG_PROOF_STEP_INCOMPLETE);
+        exprStore.clear();
+        pushProofSteps(false);
+        return eStack.toFormula(0, exprStore);
+    }
 
-            if (proof[stepNbr].stmt == null) {
-                final int index = proof[stepNbr].backRef - 1;
-                if (index >= backrefs.size())
-                    raiseVerifyException(Integer.toString(stepNbr + 1),
-                        ProofConstants.ERRMSG_PROOF_STEP_RANGE);
-                pStack.push(backrefs.get(index));
-                continue;
-            }
+    /**
+     * A stack of formulas, each held as its Type Code and the id of its
+     * expression in an ExprStore.
+     */
+    private static class ExprStack {
+        Cnst[] typ;
+        int[] expr;
+        int size;
+
+        ExprStack(final int initialSize) {
+            typ = new Cnst[initialSize];
+            expr = new int[initialSize];
+        }
 
-            stepFormula = proof[stepNbr].stmt.getFormula();
-            if (proof[stepNbr].stmt instanceof Hyp) {
-                if (proof[stepNbr].backRef < 0)
-                    backrefs.add(stepFormula);
-                pStack.push(stepFormula);
-                continue;
+        void push(final Cnst t, final int e) {
+            if (size == typ.length) {
+                typ = Arrays.copyOf(typ, size * 2);
+                expr = Arrays.copyOf(expr, size * 2);
             }
+            typ[size] = t;
+            expr[size++] = e;
+        }
 
-            stepAssrt = (Assrt)proof[stepNbr].stmt;
-            stepFrame = stepAssrt.getMandFrame();
-            if (stepFrame.hypArray.length == 0) {
-                if (proof[stepNbr].backRef < 0)
-                    backrefs.add(stepFormula);
-                pStack.push(stepFormula);
-                continue;
+        Formula toFormula(final int i, final ExprStore st) {
+            final int e = expr[i];
+            final Sym[] f = new Sym[st.cnt[e] + 1];
+            f[0] = typ[i];
+            System.arraycopy(st.sym[e], st.start[e], f, 1, st.cnt[e]);
+            return new Formula(f.length, f);
+        }
+    }
+
+    /**
+     * Hash-consed store of the expressions of one proof.
+     * <p>
+     * Each expression is a range of symbols within a Sym array -- the work
+     * arena or the symbol array of a Formula -- with a precomputed polynomial
+     * hash, so the hash of a substituted expression can be computed from the
+     * hashes of its parts (see computeSubstHash()). An expression is only
+     * added after a symbol-by-symbol check that it is not already present, so
+     * two expressions are equal if and only if their ids are equal.
+     * <p>
+     * clear() is constant time: slots of the open addressing hash table are
+     * only in use if they are stamped with the current generation.
+     */
+    private static class ExprStore {
+        static final int HASH_MULTIPLIER = 0x01000193;
+
+        Sym[] arena;
+        int arenaCnt;
+
+        Sym[][] sym;
+        int[] start;
+        int[] cnt;
+        int[] hash;
+        int[] pow;
+        int size;
+
+        int[] slotId;
+        int[] slotGen;
+        int gen = 1;
+
+        ExprStore(final int arenaSize, final int initialSize) {
+            arena = new Sym[arenaSize];
+            sym = new Sym[initialSize][];
+            start = new int[initialSize];
+            cnt = new int[initialSize];
+            hash = new int[initialSize];
+            pow = new int[initialSize];
+            slotId = new int[Integer.highestOneBit(initialSize) * 4];
+            slotGen = new int[slotId.length];
+        }
+
+        void clear() {
+            size = 0;
+            arenaCnt = 0;
+            if (++gen == Integer.MAX_VALUE) {
+                Arrays.fill(slotGen, 0);
+                gen = 1;
             }
+        }
 
-            stepLabel = stepAssrt.getLabel();
+        int firstSlot(final int h) {
+            return (h ^ h >>> 16) & slotId.length - 1;
+        }
 
-            findUniqueSubstMapping();
+        int nextSlot(final int slot) {
+            return slot + 1 & slotId.length - 1;
+        }
 
-            stepSubstFormula = applySubstMapping(stepFormula);
-            if (proof[stepNbr].backRef < 0)
-                backrefs.add(stepSubstFormula);
-            pStack.push(stepSubstFormula);
+        /**
+         * Makes room for len symbols at arenaCnt. If the arena is full a
+         * larger one is started; expressions still stored in the old arena
+         * remain valid because they hold their own reference to it.
+         *
+         * @param len number of symbols to be written
+         * @return the arena
+         */
+        Sym[] reserve(final int len) {
+            if (arenaCnt + len > arena.length) {
+                arena = new Sym[Math.max(arena.length * 2, len)];
+                arenaCnt = 0;
+            }
+            return arena;
+        }
 
+        int add(final Sym[] s, final int sStart, final int sCnt, final int h,
+            final int p, final int slot)
+        {
+            if (size == sym.length) {
+                sym = Arrays.copyOf(sym, size * 2);
+                start = Arrays.copyOf(start, size * 2);
+                cnt = Arrays.copyOf(cnt, size * 2);
+                hash = Arrays.copyOf(hash, size * 2);
+                pow = Arrays.copyOf(pow, size * 2);
+            }
+            final int id = size++;
+            sym[id] = s;
+            start[id] = sStart;
+            cnt[id] = sCnt;
+            hash[id] = h;
+            pow[id] = p;
+            slotId[slot] = id;
+            slotGen[slot] = gen;
+            if (size * 2 > slotId.length)
+                rehash();
+            return id;
         }
 
-        if (pStack.size() != 1)
-            if (proof.length == 0)
-                raiseVerifyException(Integer.toString(stepNbr),
-                    ProofConstants.ERRMSG_PROOF_HAS_ZERO_STEPS);
-            else
-                raiseVerifyException(Integer.toString(stepNbr),
-                    ProofConstants.ERRMSG_PROOF_STACK_GT_1_AT_END);
+        private void rehash() {
+            slotId = new int[slotId.length * 2];
+            slotGen = new int[slotId.length];
+            for (int id = 0; id < size; id++) {
+                int slot = firstSlot(hash[id]);
+                while (slotGen[slot] == gen)
+                    slot = nextSlot(slot);
+                slotId[slot] = id;
+                slotGen[slot] = gen;
+            }
+        }
 
-        return new Formula(pStack.peek().getCnt(), pStack.peek().getSym());
+        /**
+         * Returns the id of an expression, adding it (without copying) if it
+         * is not already present.
+         *
+         * @param s the symbol array holding the expression
+         * @param sStart index of the expression's first symbol within s
+         * @param sCnt the expression's length
+         * @return the expr id
+         */
+        int intern(final Sym[] s, final int sStart, final int sCnt) {
+            int h = 0;
+            int p = 1;
+            for (int i = sStart; i < sStart + sCnt; i++) {
+                h = h * HASH_MULTIPLIER + s[i].hashCode();
+                p *= HASH_MULTIPLIER;
+            }
+            int slot = firstSlot(h);
+            nextSlot: for (; slotGen[slot] == gen; slot = nextSlot(slot)) {
+                final int id = slotId[slot];
+                if (hash[id] != h || cnt[id] != sCnt)
+                    continue;
+                if (sym[id] != s || start[id] != sStart)
+                    for (int j = 0; j < sCnt; j++)
+                        if (sym[id][start[id] + j] != s[sStart + j])
+                            continue nextSlot;
+                return id;
+            }
+            return add(s, sStart, sCnt, h, p, slot);
+        }
     }
-
 }
@@ -0,0 +1,36 @@
+ECHO ON
+
+:STEP12001
+CALL %2\test\windows\RunBatchTest.bat %1 UT12001.txt N %2\data %2\data %2\data
+
+:STEP12002
+CALL %2\test\windows\RunBatchTest.bat %1 UT12002.txt N %2\data %2\data %2\data
+
+:STEP12005
+CALL %2\test\windows\RunBatchTest.bat %1 UT12005.txt N %2\data %2\data %2\data
+
+:STEP12007
+CALL %2\test\windows\RunBatchTest.bat %1 UT12007.txt N %2\data %2\data %2\data
+
+:STEP12009
+CALL %2\test\windows\RunBatchTest.bat %1 UT12009.txt N %2\data %2\data %2\data
+
+:STEP12011
+CALL %2\test\windows\RunBatchTest.bat %1 UT12011.txt N %2\data %2\data %2\data
+
+:STEP12012
+CALL %2\test\windows\RunBatchTest.bat %1 UT12012.txt N %2\data %2\data %2\data
+
+:STEP12013
+CALL %2\test\windows\RunBatchTest.bat %1 UT12013.txt N %2\data %2\data %2\data
+
+:STEP12015
+CALL %2\test\windows\RunBatchTest.bat %1 UT12015.txt N %2\data %2\data %2\data
+
+:STEP12021
+CALL %2\test\windows\RunBatchTest.bat %1 UT12021.txt N %2\data %2\data %2\data
+
+GOTO :ENDIT
+
+:ENDIT:
+GOTO :EOF
@@ -0,0 +1,5 @@
+ 
+erase c:\mmj2\data\result\UT12Out20261017y.txt  
+erase c:\mmj2\data\result\UT12Err20261017y.txt  
+
+c:\mmj2\test\windows\RunUT12.bat c:\mmj2\mmj2jar c:\mmj2 20261017y > c:\mmj2\data\result\UT12Out20261017y.txt